@@ -0,0 +1,104 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import java.util.concurrent.Future;
+
+import com.microsoft.exchange.messages.CreateFolder;
+import com.microsoft.exchange.messages.CreateFolderResponse;
+import com.microsoft.exchange.messages.CreateItem;
+import com.microsoft.exchange.messages.CreateItemResponse;
+import com.microsoft.exchange.messages.DeleteFolder;
+import com.microsoft.exchange.messages.DeleteFolderResponse;
+import com.microsoft.exchange.messages.DeleteItem;
+import com.microsoft.exchange.messages.DeleteItemResponse;
+import com.microsoft.exchange.messages.EmptyFolder;
+import com.microsoft.exchange.messages.EmptyFolderResponse;
+import com.microsoft.exchange.messages.FindFolder;
+import com.microsoft.exchange.messages.FindFolderResponse;
+import com.microsoft.exchange.messages.FindItem;
+import com.microsoft.exchange.messages.FindItemResponse;
+import com.microsoft.exchange.messages.GetEvents;
+import com.microsoft.exchange.messages.GetEventsResponse;
+import com.microsoft.exchange.messages.GetFolder;
+import com.microsoft.exchange.messages.GetFolderResponse;
+import com.microsoft.exchange.messages.GetItem;
+import com.microsoft.exchange.messages.GetItemResponse;
+import com.microsoft.exchange.messages.GetUserAvailabilityRequest;
+import com.microsoft.exchange.messages.GetUserAvailabilityResponse;
+import com.microsoft.exchange.messages.ResolveNames;
+import com.microsoft.exchange.messages.ResolveNamesResponse;
+import com.microsoft.exchange.messages.Subscribe;
+import com.microsoft.exchange.messages.SubscribeResponse;
+import com.microsoft.exchange.messages.SyncFolderHierarchy;
+import com.microsoft.exchange.messages.SyncFolderHierarchyResponse;
+import com.microsoft.exchange.messages.SyncFolderItems;
+import com.microsoft.exchange.messages.SyncFolderItemsResponse;
+import com.microsoft.exchange.messages.Unsubscribe;
+import com.microsoft.exchange.messages.UnsubscribeResponse;
+import com.microsoft.exchange.messages.UpdateItem;
+import com.microsoft.exchange.messages.UpdateItemResponse;
+
+/**
+ * {@link Future} based counterpart to {@link ExchangeWebServices}.
+ * 
+ * Each method returns immediately with a {@link Future} for the response.
+ * Nothing is implied about the transport: an implementation may run a blocking client on a thread pool
+ * (see {@link com.microsoft.exchange.impl.ExchangeWebServicesFutureFacade}), in which case its pool bounds the requests in flight.
+ * Implementations must apply the same SOAP headers (impersonation, server version, time zone)
+ * that the synchronous client would apply for the calling thread at the time the method is invoked.
+ * Failures are reported through {@link Future#get()} as an {@link java.util.concurrent.ExecutionException}
+ * wrapping the same runtime exception the synchronous client would have thrown.
+ */
+public interface AsyncExchangeWebServices {
+
+	Future<ResolveNamesResponse> resolveNamesAsync(ResolveNames request);
+	
+	Future<FindFolderResponse> findFolderAsync(FindFolder request);
+	
+	Future<FindItemResponse> findItemAsync(FindItem request);
+	
+	Future<EmptyFolderResponse> emptyFolderAsync(EmptyFolder request);
+	
+	Future<GetFolderResponse> getFolderAsync(GetFolder request);
+	
+	Future<CreateFolderResponse> createFolderAsync(CreateFolder request);
+	
+	Future<DeleteFolderResponse> deleteFolderAsync(DeleteFolder request);
+	
+	Future<SubscribeResponse> subscribeAsync(Subscribe request);
+	
+	Future<UnsubscribeResponse> unsubscribeAsync(Unsubscribe request);
+	
+	Future<GetEventsResponse> getEventsAsync(GetEvents request);
+	
+	Future<SyncFolderHierarchyResponse> syncFolderHierarchyAsync(SyncFolderHierarchy request);
+	
+	Future<SyncFolderItemsResponse> syncFolderItemsAsync(SyncFolderItems request);
+	
+	Future<GetItemResponse> getItemAsync(GetItem request);
+	
+	Future<CreateItemResponse> createItemAsync(CreateItem request);
+	
+	Future<DeleteItemResponse> deleteItemAsync(DeleteItem request);
+	
+	Future<UpdateItemResponse> updateItemAsync(UpdateItem request);
+	
+	Future<GetUserAvailabilityResponse> getUserAvailabilityAsync(GetUserAvailabilityRequest request);
+}
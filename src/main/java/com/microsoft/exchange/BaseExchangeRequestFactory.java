@@ -3,6 +3,7 @@
  */
 package com.microsoft.exchange;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -25,9 +26,13 @@ import com.microsoft.exchange.messages.DeleteItem;
 import com.microsoft.exchange.messages.EmptyFolder;
 import com.microsoft.exchange.messages.FindFolder;
 import com.microsoft.exchange.messages.FindItem;
+import com.microsoft.exchange.messages.GetEvents;
 import com.microsoft.exchange.messages.GetFolder;
 import com.microsoft.exchange.messages.GetItem;
 import com.microsoft.exchange.messages.ResolveNames;
+import com.microsoft.exchange.messages.Subscribe;
+import com.microsoft.exchange.messages.SyncFolderHierarchy;
+import com.microsoft.exchange.messages.SyncFolderItems;
 import com.microsoft.exchange.messages.UpdateFolder;
 import com.microsoft.exchange.messages.UpdateItem;
 import com.microsoft.exchange.types.AffectedTaskOccurrencesType;
@@ -80,15 +85,20 @@ import com.microsoft.exchange.types.NonEmptyArrayOfFolderChangesType;
 import com.microsoft.exchange.types.NonEmptyArrayOfFoldersType;
 import com.microsoft.exchange.types.NonEmptyArrayOfItemChangeDescriptionsType;
 import com.microsoft.exchange.types.NonEmptyArrayOfItemChangesType;
+import com.microsoft.exchange.types.NonEmptyArrayOfNotificationEventTypesType;
 import com.microsoft.exchange.types.NonEmptyArrayOfPathsToElementType;
+import com.microsoft.exchange.types.NotificationEventTypeType;
 import com.microsoft.exchange.types.ObjectFactory;
 import com.microsoft.exchange.types.PathToExtendedFieldType;
 import com.microsoft.exchange.types.PathToUnindexedFieldType;
+import com.microsoft.exchange.types.PullSubscriptionRequestType;
 import com.microsoft.exchange.types.ResolveNamesSearchScopeType;
 import com.microsoft.exchange.types.RestrictionType;
 import com.microsoft.exchange.types.SearchExpressionType;
 import com.microsoft.exchange.types.SetFolderFieldType;
 import com.microsoft.exchange.types.SetItemFieldType;
+import com.microsoft.exchange.types.StreamingSubscriptionRequestType;
+import com.microsoft.exchange.types.SyncFolderItemsScopeType;
 import com.microsoft.exchange.types.TargetFolderIdType;
 import com.microsoft.exchange.types.TaskType;
 import com.microsoft.exchange.types.UnindexedFieldURIType;
@@ -104,7 +114,18 @@ public abstract class BaseExchangeRequestFactory {
     //================================================================================
 	protected static final int FIND_ITEM_MAX 	= 1000;
 	protected static final int INIT_BASE_OFFSET = 0;
+	protected static final int SYNC_FOLDER_ITEMS_MAX = 512;
 	public static final String SMTP = "smtp:";
+	/**
+	 * The item events requested by {@link Subscribe} requests constructed by the {@link ExchangeRequestFactory}
+	 */
+	public static final List<NotificationEventTypeType> ITEM_EVENT_TYPES = Collections.unmodifiableList(Arrays.asList(
+			NotificationEventTypeType.CREATED_EVENT, NotificationEventTypeType.DELETED_EVENT, NotificationEventTypeType.MODIFIED_EVENT, 
+			NotificationEventTypeType.MOVED_EVENT, NotificationEventTypeType.COPIED_EVENT));
+	/**
+	 * The maximum ConnectionTimeout of a GetStreamingEvents request, in minutes
+	 */
+	public static final int STREAMING_CONNECTION_TIMEOUT_MAX = 30;
 	
     //================================================================================
     // Properties
@@ -782,6 +803,32 @@ public abstract class BaseExchangeRequestFactory {
 		return findItem;
 	}
 	
+	//================================================================================
+    // SyncFolderItems
+    //================================================================================	
+	/**
+	 * Construct a {@link SyncFolderItems} request
+	 * @see <a href='https://msdn.microsoft.com/en-us/library/office/aa563967(v=exchg.140).aspx'>SyncFolderItems operation</a>
+	 * @param syncFolderId
+	 * @param syncState - the SyncState returned by the previous request, omit to synchronize from the beginning
+	 * @param maxChangesReturned - between 1 and {@link #SYNC_FOLDER_ITEMS_MAX}
+	 * @param shape
+	 * @return {@link SyncFolderItems}
+	 */
+	protected SyncFolderItems constructSyncFolderItems(TargetFolderIdType syncFolderId, String syncState, int maxChangesReturned, DefaultShapeNamesType shape) {
+		Validate.notNull(syncFolderId, "syncFolderId cannot be null");
+		Validate.isTrue(maxChangesReturned > 0 && maxChangesReturned <= SYNC_FOLDER_ITEMS_MAX, "maxChangesReturned must be between 1 and "+SYNC_FOLDER_ITEMS_MAX);
+		SyncFolderItems syncFolderItems = new SyncFolderItems();
+		syncFolderItems.setItemShape(constructTextualItemResponseShapeInternal(shape));
+		syncFolderItems.setSyncFolderId(syncFolderId);
+		if(StringUtils.isNotBlank(syncState)) {
+			syncFolderItems.setSyncState(syncState);
+		}
+		syncFolderItems.setMaxChangesReturned(maxChangesReturned);
+		syncFolderItems.setSyncScope(SyncFolderItemsScopeType.NORMAL_ITEMS);
+		return syncFolderItems;
+	}
+	
 	//================================================================================
     // DeleteItem
     //================================================================================	
@@ -963,6 +1010,84 @@ public abstract class BaseExchangeRequestFactory {
 		return findFolder;
 	}
 	
+	//================================================================================
+    // SyncFolderHierarchy
+    //================================================================================	
+	/**
+	 * Construct a {@link SyncFolderHierarchy} request which will retrieve {@link DefaultShapeNamesType#ALL_PROPERTIES} for the folders changed since {@code syncState}
+	 * @see <a href='https://msdn.microsoft.com/en-us/library/office/aa580990(v=exchg.140).aspx'>SyncFolderHierarchy operation</a>
+	 * @param syncFolderId - if null the entire mailbox is synchronized
+	 * @param syncState - the SyncState returned by the previous request, omit to synchronize from the beginning
+	 * @return {@link SyncFolderHierarchy}
+	 */
+	protected SyncFolderHierarchy constructSyncFolderHierarchy(TargetFolderIdType syncFolderId, String syncState) {
+		NonEmptyArrayOfPathsToElementType paths = getArrayOfPathsToElementType(getFolderExtendedPropertyPaths());
+		SyncFolderHierarchy syncFolderHierarchy = new SyncFolderHierarchy();
+		syncFolderHierarchy.setFolderShape(constructFolderResponseShapeInternal(DefaultShapeNamesType.ALL_PROPERTIES, paths));
+		if(null != syncFolderId) {
+			syncFolderHierarchy.setSyncFolderId(syncFolderId);
+		}
+		if(StringUtils.isNotBlank(syncState)) {
+			syncFolderHierarchy.setSyncState(syncState);
+		}
+		return syncFolderHierarchy;
+	}
+	
+	//================================================================================
+    // Subscribe
+    //================================================================================	
+	/**
+	 * Construct a {@link Subscribe} request for a streaming subscription to the item events of the specified folders.
+	 * @see <a href='https://msdn.microsoft.com/en-us/library/office/aa566188(v=exchg.150).aspx'>Subscribe operation</a>
+	 * @param folderIds
+	 * @param eventTypes
+	 * @return {@link Subscribe}
+	 */
+	protected Subscribe constructStreamingSubscribe(Collection<? extends BaseFolderIdType> folderIds, Collection<NotificationEventTypeType> eventTypes) {
+		StreamingSubscriptionRequestType streamingRequest = new StreamingSubscriptionRequestType();
+		streamingRequest.setFolderIds(getArrayOfBaseFolderIds(folderIds));
+		streamingRequest.setEventTypes(getArrayOfNotificationEventTypes(eventTypes));
+		Subscribe subscribe = new Subscribe();
+		subscribe.setStreamingSubscriptionRequest(streamingRequest);
+		return subscribe;
+	}
+	
+	/**
+	 * Construct a {@link Subscribe} request for a pull subscription to the item events of the specified folders.
+	 * @param folderIds
+	 * @param eventTypes
+	 * @param watermark - if set, events which occurred after the watermark will be returned by the first {@link GetEvents} request
+	 * @param timeoutMinutes - the number of minutes the subscription remains active without a {@link GetEvents} request, between 1 and 1440
+	 * @return {@link Subscribe}
+	 */
+	protected Subscribe constructPullSubscribe(Collection<? extends BaseFolderIdType> folderIds, Collection<NotificationEventTypeType> eventTypes, String watermark, int timeoutMinutes) {
+		Validate.isTrue(timeoutMinutes >= 1 && timeoutMinutes <= 1440, "timeoutMinutes must be between 1 and 1440");
+		PullSubscriptionRequestType pullRequest = new PullSubscriptionRequestType();
+		pullRequest.setFolderIds(getArrayOfBaseFolderIds(folderIds));
+		pullRequest.setEventTypes(getArrayOfNotificationEventTypes(eventTypes));
+		if(StringUtils.isNotBlank(watermark)) {
+			pullRequest.setWatermark(watermark);
+		}
+		pullRequest.setTimeout(timeoutMinutes);
+		Subscribe subscribe = new Subscribe();
+		subscribe.setPullSubscriptionRequest(pullRequest);
+		return subscribe;
+	}
+	
+	private NonEmptyArrayOfBaseFolderIdsType getArrayOfBaseFolderIds(Collection<? extends BaseFolderIdType> folderIds) {
+		Validate.notEmpty(folderIds, "folderIds cannot be empty");
+		NonEmptyArrayOfBaseFolderIdsType arrayOfFolderIds = new NonEmptyArrayOfBaseFolderIdsType();
+		arrayOfFolderIds.getFolderIdsAndDistinguishedFolderIds().addAll(folderIds);
+		return arrayOfFolderIds;
+	}
+	
+	private NonEmptyArrayOfNotificationEventTypesType getArrayOfNotificationEventTypes(Collection<NotificationEventTypeType> eventTypes) {
+		Validate.notEmpty(eventTypes, "eventTypes cannot be empty");
+		NonEmptyArrayOfNotificationEventTypesType arrayOfEventTypes = new NonEmptyArrayOfNotificationEventTypesType();
+		arrayOfEventTypes.getEventTypes().addAll(eventTypes);
+		return arrayOfEventTypes;
+	}
+	
 	//================================================================================
     // UpdateFolder
     //================================================================================	
@@ -0,0 +1,43 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import java.util.Collection;
+
+import com.microsoft.exchange.types.CalendarItemType;
+
+/**
+ * Receives the outcome of each mailbox of a bulk calendar fetch as soon as that mailbox completes.
+ * 
+ * Callbacks are invoked concurrently from the fetching threads, implementations must be thread safe.
+ */
+public interface BulkCalendarItemsListener {
+
+	/**
+	 * @param upn the mailbox
+	 * @param calendarItems the never null but possibly empty {@link CalendarItemType}s found for {@code upn}
+	 */
+	void onCompleted(String upn, Collection<CalendarItemType> calendarItems);
+	
+	/**
+	 * @param upn the mailbox
+	 * @param failure the final failure after all retries
+	 */
+	void onFailed(String upn, RuntimeException failure);
+}
@@ -0,0 +1,121 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Replaces small files so that readers find either the previous or the new content, never a partial file.
+ * 
+ * {@link #replaceFile(File, String, String)} writes and syncs a temporary file next to the target and renames it over the target.
+ * {@link File#renameTo(File)} cannot replace an existing file on some platforms (e.g. Windows); there the target is first
+ * renamed to its {@link #getBackupFile(File)}.  A crash between the two renames leaves only the backup, which
+ * {@link #recoverFile(File)} renames back before the file is read.
+ */
+public class ExchangeFileUtils {
+	protected static final Log log = LogFactory.getLog(ExchangeFileUtils.class);
+	
+	private static final String BACKUP_SUFFIX = ".bak";
+	
+	/**
+	 * Replace the content of {@code file}, creating its directory if needed.
+	 * 
+	 * @param file
+	 * @param content
+	 * @param encoding
+	 * @throws IOException if the content could not be written or renamed into place, {@code file} then still holds the previous content
+	 * (or its backup does, see {@link #recoverFile(File)})
+	 */
+	public static void replaceFile(File file, String content, String encoding) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temp = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		FileOutputStream out = null;
+		try {
+			FileUtils.forceMkdir(directory);
+			out = new FileOutputStream(temp);
+			out.write(content.getBytes(encoding));
+			out.flush();
+			out.getFD().sync();
+			out.close();
+			out = null;
+			if(temp.renameTo(file)) {
+				return;
+			}
+			File backup = getBackupFile(file);
+			FileUtils.deleteQuietly(backup);
+			if(file.exists() && !file.renameTo(backup)) {
+				throw new IOException("failed to rename "+file+" to "+backup);
+			}
+			if(!temp.renameTo(file)) {
+				if(backup.exists() && !file.exists() && !backup.renameTo(file)) {
+					log.warn("failed to restore "+file+" from "+backup+", it will be recovered when read");
+				}
+				throw new IOException("failed to rename "+temp+" to "+file);
+			}
+			FileUtils.deleteQuietly(backup);
+		} finally {
+			IOUtils.closeQuietly(out);
+			FileUtils.deleteQuietly(temp);
+		}
+	}
+	
+	/**
+	 * Restore {@code file} from its backup if an interrupted {@link #replaceFile(File, String, String)} left only the backup.
+	 * 
+	 * @param file
+	 * @return the file holding the latest content: {@code file}, or the backup if it could not be renamed back; null if neither exists
+	 */
+	public static File recoverFile(File file) {
+		if(file.isFile()) {
+			return file;
+		}
+		File backup = getBackupFile(file);
+		if(!backup.isFile()) {
+			return null;
+		}
+		log.warn("recovering "+file+" from "+backup);
+		return backup.renameTo(file) ? file : backup;
+	}
+	
+	/**
+	 * Delete {@code file} and any backup of it.
+	 * 
+	 * @param file
+	 * @return false if {@code file} exists and could not be deleted
+	 */
+	public static boolean deleteFile(File file) {
+		FileUtils.deleteQuietly(getBackupFile(file));
+		return !file.exists() || file.delete();
+	}
+	
+	/**
+	 * @param file
+	 * @return the file the content of {@code file} is moved to while it is replaced
+	 */
+	public static File getBackupFile(File file) {
+		return new File(file.getAbsoluteFile().getParentFile(), file.getName() + BACKUP_SUFFIX);
+	}
+}
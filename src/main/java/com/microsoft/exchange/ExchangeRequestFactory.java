@@ -34,12 +34,18 @@ import com.microsoft.exchange.messages.DeleteItem;
 import com.microsoft.exchange.messages.EmptyFolder;
 import com.microsoft.exchange.messages.FindFolder;
 import com.microsoft.exchange.messages.FindItem;
+import com.microsoft.exchange.messages.GetEvents;
 import com.microsoft.exchange.messages.GetFolder;
 import com.microsoft.exchange.messages.GetItem;
 import com.microsoft.exchange.messages.GetServerTimeZones;
+import com.microsoft.exchange.messages.GetStreamingEvents;
 import com.microsoft.exchange.messages.GetUserAvailabilityRequest;
 import com.microsoft.exchange.messages.GetUserConfiguration;
 import com.microsoft.exchange.messages.ResolveNames;
+import com.microsoft.exchange.messages.Subscribe;
+import com.microsoft.exchange.messages.SyncFolderHierarchy;
+import com.microsoft.exchange.messages.SyncFolderItems;
+import com.microsoft.exchange.messages.Unsubscribe;
 import com.microsoft.exchange.messages.UpdateFolder;
 import com.microsoft.exchange.types.AcceptItemType;
 import com.microsoft.exchange.types.AffectedTaskOccurrencesType;
@@ -71,7 +77,9 @@ import com.microsoft.exchange.types.MessageType;
 import com.microsoft.exchange.types.NonEmptyArrayOfAllItemsType;
 import com.microsoft.exchange.types.NonEmptyArrayOfBaseFolderIdsType;
 import com.microsoft.exchange.types.NonEmptyArrayOfFoldersType;
+import com.microsoft.exchange.types.NonEmptyArrayOfSubscriptionIdsType;
 import com.microsoft.exchange.types.NonEmptyArrayOfTimeZoneIdType;
+import com.microsoft.exchange.types.NotificationEventTypeType;
 import com.microsoft.exchange.types.ObjectFactory;
 import com.microsoft.exchange.types.PathToExtendedFieldType;
 import com.microsoft.exchange.types.PathToUnindexedFieldType;
@@ -82,6 +90,7 @@ import com.microsoft.exchange.types.SearchFolderTraversalType;
 import com.microsoft.exchange.types.SearchFolderType;
 import com.microsoft.exchange.types.SearchParametersType;
 import com.microsoft.exchange.types.SuggestionsViewOptions;
+import com.microsoft.exchange.types.TargetFolderIdType;
 import com.microsoft.exchange.types.TaskType;
 import com.microsoft.exchange.types.TasksFolderType;
 import com.microsoft.exchange.types.TentativelyAcceptItemType;
@@ -824,4 +833,111 @@ public class ExchangeRequestFactory extends BaseExchangeRequestFactory{
 		}
 		return constructCalendarViewFindItemIdsByDateRange(startTime, endTime, baseFolderIds);
 	}
+	
+	//================================================================================
+    // SyncFolderHierarchy
+    //================================================================================	
+	/**
+	 * Construct a {@link SyncFolderHierarchy} request for all folders in the mailbox which changed since {@code syncState}
+	 * @param syncState - the SyncState returned by the previous request, omit to obtain every folder
+	 * @return {@link SyncFolderHierarchy}
+	 */
+	public SyncFolderHierarchy constructSyncFolderHierarchy(String syncState) {
+		return constructSyncFolderHierarchy(null, syncState);
+	}
+	
+	//================================================================================
+    // SyncFolderItems
+    //================================================================================	
+	/**
+	 * Construct a {@link SyncFolderItems} request which will return the {@link DefaultShapeNamesType#ID_ONLY} changes to the specified folder since {@code syncState}
+	 * @param folderId - if omitted the primary calendar folder will be targeted
+	 * @param syncState - the SyncState returned by the previous request, omit to synchronize from the beginning
+	 * @param maxChangesReturned - between 1 and 512
+	 * @return {@link SyncFolderItems}
+	 */
+	public SyncFolderItems constructSyncFolderItemIds(FolderIdType folderId, String syncState, int maxChangesReturned) {
+		TargetFolderIdType syncFolderId;
+		if(isFolderIdValid(folderId)) {
+			syncFolderId = new TargetFolderIdType();
+			syncFolderId.setFolderId(folderId);
+		}else {
+			syncFolderId = getParentTargetFolderId(DistinguishedFolderIdNameType.CALENDAR);
+		}
+		return constructSyncFolderItems(syncFolderId, syncState, maxChangesReturned, DefaultShapeNamesType.ID_ONLY);
+	}
+	
+	//================================================================================
+    // Subscribe
+    //================================================================================	
+	/**
+	 * Construct a {@link Subscribe} request for a streaming subscription to the {@link #ITEM_EVENT_TYPES} of the specified folders
+	 * @param folderIds - if empty the primary calendar folder will be targeted
+	 * @return {@link Subscribe}
+	 */
+	public Subscribe constructStreamingSubscribe(Collection<? extends BaseFolderIdType> folderIds) {
+		return constructStreamingSubscribe(getSubscriptionFolderIds(folderIds), ITEM_EVENT_TYPES);
+	}
+	
+	/**
+	 * Construct a {@link Subscribe} request for a pull subscription to the {@link #ITEM_EVENT_TYPES} of the specified folders
+	 * @param folderIds - if empty the primary calendar folder will be targeted
+	 * @param watermark - the watermark of the last event received, omit to receive only new events
+	 * @param timeoutMinutes - between 1 and 1440
+	 * @return {@link Subscribe}
+	 */
+	public Subscribe constructPullSubscribe(Collection<? extends BaseFolderIdType> folderIds, String watermark, int timeoutMinutes) {
+		return constructPullSubscribe(getSubscriptionFolderIds(folderIds), ITEM_EVENT_TYPES, watermark, timeoutMinutes);
+	}
+	
+	private Collection<? extends BaseFolderIdType> getSubscriptionFolderIds(Collection<? extends BaseFolderIdType> folderIds) {
+		if(CollectionUtils.isEmpty(folderIds)) {
+			return Collections.singleton(getPrimaryCalendarDistinguishedFolderId());
+		}
+		return folderIds;
+	}
+	
+	/**
+	 * Construct a {@link GetStreamingEvents} request for the specified streaming subscriptions
+	 * @param subscriptionIds - subscriptions created by a {@link #constructStreamingSubscribe(Collection)} request
+	 * @param connectionTimeoutMinutes - between 1 and {@link #STREAMING_CONNECTION_TIMEOUT_MAX}
+	 * @return {@link GetStreamingEvents}
+	 */
+	public GetStreamingEvents constructGetStreamingEvents(Collection<String> subscriptionIds, int connectionTimeoutMinutes) {
+		Validate.notEmpty(subscriptionIds, "subscriptionIds cannot be empty");
+		Validate.isTrue(connectionTimeoutMinutes >= 1 && connectionTimeoutMinutes <= STREAMING_CONNECTION_TIMEOUT_MAX, "connectionTimeoutMinutes must be between 1 and "+STREAMING_CONNECTION_TIMEOUT_MAX);
+		NonEmptyArrayOfSubscriptionIdsType arrayOfSubscriptionIds = new NonEmptyArrayOfSubscriptionIdsType();
+		arrayOfSubscriptionIds.getSubscriptionIds().addAll(subscriptionIds);
+		GetStreamingEvents getStreamingEvents = new GetStreamingEvents();
+		getStreamingEvents.setSubscriptionIds(arrayOfSubscriptionIds);
+		getStreamingEvents.setConnectionTimeout(connectionTimeoutMinutes);
+		return getStreamingEvents;
+	}
+	
+	/**
+	 * Construct a {@link GetEvents} request for a pull subscription
+	 * @param subscriptionId
+	 * @param watermark - the watermark returned by the {@link Subscribe} or previous {@link GetEvents} response
+	 * @return {@link GetEvents}
+	 */
+	public GetEvents constructGetEvents(String subscriptionId, String watermark) {
+		Validate.isTrue(StringUtils.isNotBlank(subscriptionId), "subscriptionId cannot be blank");
+		Validate.isTrue(StringUtils.isNotBlank(watermark), "watermark cannot be blank");
+		GetEvents getEvents = new GetEvents();
+		getEvents.setSubscriptionId(subscriptionId);
+		getEvents.setWatermark(watermark);
+		return getEvents;
+	}
+	
+	/**
+	 * Construct an {@link Unsubscribe} request
+	 * @param subscriptionId
+	 * @return {@link Unsubscribe}
+	 */
+	public Unsubscribe constructUnsubscribe(String subscriptionId) {
+		Validate.isTrue(StringUtils.isNotBlank(subscriptionId), "subscriptionId cannot be blank");
+		Unsubscribe unsubscribe = new Unsubscribe();
+		unsubscribe.setSubscriptionId(subscriptionId);
+		return unsubscribe;
+	}
 }
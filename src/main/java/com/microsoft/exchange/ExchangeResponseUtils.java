@@ -30,13 +30,22 @@ import com.microsoft.exchange.messages.DeleteFolderResponse;
 import com.microsoft.exchange.messages.EmptyFolderResponse;
 import com.microsoft.exchange.messages.FindFolderResponse;
 import com.microsoft.exchange.messages.FindItemResponse;
+import com.microsoft.exchange.messages.GetEventsResponse;
 import com.microsoft.exchange.messages.GetFolderResponse;
 import com.microsoft.exchange.messages.GetItemResponse;
 import com.microsoft.exchange.messages.GetServerTimeZonesResponse;
+import com.microsoft.exchange.messages.GetStreamingEventsResponse;
 import com.microsoft.exchange.messages.ResolveNamesResponse;
 import com.microsoft.exchange.messages.ResponseCodeType;
+import com.microsoft.exchange.messages.SubscribeResponse;
 import com.microsoft.exchange.messages.UpdateFolderResponse;
+import com.microsoft.exchange.messages.SyncFolderHierarchyResponse;
+import com.microsoft.exchange.messages.SyncFolderItemsResponse;
 import com.microsoft.exchange.messages.UpdateItemResponse;
+import com.microsoft.exchange.model.FindItemIdsResult;
+import com.microsoft.exchange.model.SubscriptionEventsResult;
+import com.microsoft.exchange.model.SyncFolderHierarchyResult;
+import com.microsoft.exchange.model.SyncFolderItemsResult;
 import com.microsoft.exchange.types.BaseFolderType;
 import com.microsoft.exchange.types.CalendarItemType;
 import com.microsoft.exchange.types.FolderIdType;
@@ -165,6 +174,71 @@ public interface ExchangeResponseUtils {
 	 */
 	public Pair<Set<ItemIdType>, Integer> parseFindItemIdResponse(FindItemResponse response);
 	
+	/**
+	 * Equivalent of {@link #parseFindItemIdResponse(FindItemResponse)} for a {@link FindItemIdsResult}.
+	 * Throws the same exceptions as {@link #confirmSuccess(BaseResponseMessageType)} for error response codes.
+	 * 
+	 * @param result
+	 * @return a {@link Pair} of the never null {@link Set} of {@link ItemIdType}s and the next offset (-1 if none)
+	 */
+	public Pair<Set<ItemIdType>, Integer> parseFindItemIdResponse(FindItemIdsResult result);
+	
+	/**
+	 * Convert a {@link FindItemResponse} into a {@link FindItemIdsResult}, retaining the paging attributes 
+	 * (e.g. {@link FindItemIdsResult#getTotalItemsInView()}) discarded by {@link #parseFindItemIdResponse(FindItemResponse)}.
+	 * Throws the same exceptions as {@link #confirmSuccess(BaseResponseMessageType)} for error response codes.
+	 * 
+	 * @param response
+	 * @return a successful {@link FindItemIdsResult}
+	 */
+	public FindItemIdsResult parseFindItemIdsResult(FindItemResponse response);
+	
+	/**
+	 * Parse a {@link SyncFolderHierarchyResponse} into a {@link SyncFolderHierarchyResult}.
+	 * Throws the same exceptions as {@link #confirmSuccess(BaseResponseMessageType)} for error response codes, e.g. ErrorInvalidSyncStateData.
+	 * 
+	 * @param response
+	 * @return a successful {@link SyncFolderHierarchyResult}
+	 */
+	public SyncFolderHierarchyResult parseSyncFolderHierarchyResponse(SyncFolderHierarchyResponse response);
+	
+	/**
+	 * Parse a {@link SyncFolderItemsResponse} into a {@link SyncFolderItemsResult}.
+	 * Throws the same exceptions as {@link #confirmSuccess(BaseResponseMessageType)} for error response codes, e.g. ErrorInvalidSyncStateData.
+	 * 
+	 * @param response
+	 * @return a successful {@link SyncFolderItemsResult}
+	 */
+	public SyncFolderItemsResult parseSyncFolderItemsResponse(SyncFolderItemsResponse response);
+	
+	/**
+	 * Parse a {@link SubscribeResponse}.
+	 * Throws the same exceptions as {@link #confirmSuccess(BaseResponseMessageType)} for error response codes.
+	 * 
+	 * @param response
+	 * @return a {@link Pair} of the SubscriptionId and the Watermark, the Watermark is null for streaming subscriptions
+	 */
+	public Pair<String, String> parseSubscribeResponse(SubscribeResponse response);
+	
+	/**
+	 * Parse a {@link GetStreamingEventsResponse} into a {@link SubscriptionEventsResult}.
+	 * Subscriptions reported as failed are returned by {@link SubscriptionEventsResult#getErrorSubscriptionIds()}, 
+	 * any other error response code is thrown as by {@link #confirmSuccess(BaseResponseMessageType)}.
+	 * 
+	 * @param response
+	 * @return a never null {@link SubscriptionEventsResult}
+	 */
+	public SubscriptionEventsResult parseGetStreamingEventsResponse(GetStreamingEventsResponse response);
+	
+	/**
+	 * Parse a {@link GetEventsResponse} into a {@link SubscriptionEventsResult}.
+	 * Throws the same exceptions as {@link #confirmSuccess(BaseResponseMessageType)} for error response codes, e.g. ErrorInvalidWatermark.
+	 * 
+	 * @param response
+	 * @return a successful {@link SubscriptionEventsResult}
+	 */
+	public SubscriptionEventsResult parseGetEventsResponse(GetEventsResponse response);
+	
 	/**
 	 * Parse an {@link UpdateItemResponse} message and return a {@link Set} of {@link ItemIdType} corresponding to the {@link ItemType}s that were updated
 	 * @param response
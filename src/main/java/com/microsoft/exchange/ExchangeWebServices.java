@@ -60,6 +60,8 @@ import com.microsoft.exchange.messages.GetItem;
 import com.microsoft.exchange.messages.GetItemResponse;
 import com.microsoft.exchange.messages.GetServerTimeZones;
 import com.microsoft.exchange.messages.GetServerTimeZonesResponse;
+import com.microsoft.exchange.messages.GetStreamingEvents;
+import com.microsoft.exchange.messages.GetStreamingEventsResponse;
 import com.microsoft.exchange.messages.GetUserAvailabilityRequest;
 import com.microsoft.exchange.messages.GetUserAvailabilityResponse;
 import com.microsoft.exchange.messages.GetUserOofSettingsRequest;
@@ -128,6 +130,8 @@ public interface ExchangeWebServices {
 	
 	GetEventsResponse getEvents(GetEvents request);
 	
+	GetStreamingEventsResponse getStreamingEvents(GetStreamingEvents request);
+	
 	SyncFolderHierarchyResponse syncFolderHierarchy(SyncFolderHierarchy request);
 	
 	SyncFolderItemsResponse syncFolderItems(SyncFolderItems request);
@@ -0,0 +1,38 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import com.microsoft.exchange.messages.FindItem;
+import com.microsoft.exchange.messages.FindItemResponse;
+import com.microsoft.exchange.model.FindItemIdsResult;
+
+/**
+ * Optional extension of {@link ExchangeWebServices} for enumerating item identifiers without unmarshalling a full {@link FindItemResponse}.
+ */
+public interface FindItemIdsOperations {
+
+	/**
+	 * Issue a {@link FindItem} request (normally with an ID_ONLY shape) and read only the item identifiers and paging attributes from the response.
+	 * Error response codes are reported via {@link FindItemIdsResult#getResponseCode()}, not thrown.
+	 * 
+	 * @param request
+	 * @return a never null {@link FindItemIdsResult}
+	 */
+	FindItemIdsResult findItemIds(FindItem request);
+}
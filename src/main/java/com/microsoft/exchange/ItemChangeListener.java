@@ -0,0 +1,48 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import java.util.List;
+
+import com.microsoft.exchange.model.ItemChangeEvent;
+
+/**
+ * Receives the item events of the mailboxes managed by a StreamingSubscriptionManager.
+ * 
+ * Callbacks are invoked from the connection threads, one thread per group of mailboxes; implementations must be thread safe.
+ * Delivery is at least once, an event may be repeated after a subscription is re-established.
+ */
+public interface ItemChangeListener {
+
+	/**
+	 * @param upn the mailbox
+	 * @param events the never empty {@link ItemChangeEvent}s, in the order Exchange reported them
+	 */
+	void onItemEvents(String upn, List<ItemChangeEvent> events);
+	
+	/**
+	 * Events for {@code upn} may have been missed, e.g. the subscription expired before any event was received or its watermark 
+	 * was no longer valid.  The mailbox remains subscribed; resynchronize it by other means, such as SyncFolderItems.
+	 * If the mailbox itself is invalid it is no longer subscribed.
+	 * 
+	 * @param upn the mailbox
+	 * @param cause
+	 */
+	void onSubscriptionLost(String upn, RuntimeException cause);
+}
@@ -0,0 +1,44 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import java.io.Closeable;
+
+import com.microsoft.exchange.messages.GetStreamingEventsResponse;
+
+/**
+ * Receives the responses of a streaming connection as they arrive, see {@link StreamingEventsOperations}.
+ */
+public interface StreamingEventsHandler {
+
+	/**
+	 * Called once the connection is open and before any response is read.
+	 * 
+	 * @param connection closing it aborts the connection, from any thread
+	 */
+	void onOpen(Closeable connection);
+	
+	/**
+	 * Called on the connection's thread for each {@link GetStreamingEventsResponse} envelope, as soon as it has been read.
+	 * A {@link RuntimeException} aborts the connection and is rethrown to the caller.
+	 * 
+	 * @param response
+	 */
+	void onResponse(GetStreamingEventsResponse response);
+}
@@ -0,0 +1,52 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import com.microsoft.exchange.messages.GetStreamingEvents;
+import com.microsoft.exchange.messages.GetStreamingEventsResponse;
+import com.microsoft.exchange.messages.Subscribe;
+import com.microsoft.exchange.messages.SubscribeResponse;
+import com.microsoft.exchange.model.MailboxAffinity;
+
+/**
+ * Optional extension of {@link ExchangeWebServices} for streaming notifications: subscriptions are routed to the mailbox server of a
+ * {@link MailboxAffinity} and the envelopes of a streaming connection are delivered as they arrive instead of when the connection closes.
+ */
+public interface StreamingEventsOperations {
+
+	/**
+	 * Issue a {@link Subscribe} request routed by {@code affinity}, recording the X-BackEndOverrideCookie of the response.
+	 * 
+	 * @param request
+	 * @param affinity
+	 * @return the {@link SubscribeResponse}
+	 */
+	SubscribeResponse subscribe(Subscribe request, MailboxAffinity affinity);
+	
+	/**
+	 * Issue a {@link GetStreamingEvents} request routed by {@code affinity} and pass each {@link GetStreamingEventsResponse} envelope 
+	 * to {@code handler} as soon as it is read.  Returns when Exchange closes the connection (after the request's ConnectionTimeout) 
+	 * or the connection is aborted.
+	 * 
+	 * @param request
+	 * @param affinity
+	 * @param handler
+	 */
+	void getStreamingEvents(GetStreamingEvents request, MailboxAffinity affinity, StreamingEventsHandler handler);
+}
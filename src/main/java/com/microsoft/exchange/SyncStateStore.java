@@ -0,0 +1,45 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+/**
+ * Persists the opaque SyncState returned by SyncFolderItems (or SyncFolderHierarchy) between synchronizations.
+ * 
+ * Implementations must be thread safe.
+ */
+public interface SyncStateStore {
+
+	/**
+	 * @param key identifies the mailbox and folder
+	 * @return the SyncState last stored for {@code key}, or null
+	 */
+	String getSyncState(String key);
+	
+	/**
+	 * @param key identifies the mailbox and folder
+	 * @param syncState
+	 */
+	void putSyncState(String key, String syncState);
+	
+	/**
+	 * Forget the SyncState for {@code key}, the next synchronization starts from the beginning.
+	 * @param key
+	 */
+	void removeSyncState(String key);
+}
@@ -19,21 +19,35 @@
 package com.microsoft.exchange.autodiscover;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.validator.routines.EmailValidator;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.ContentType;
+import org.springframework.beans.factory.DisposableBean;
 
 import com.microsoft.exchange.exception.AutodiscoverException;
 
-public abstract class AbstractExchangeAutodiscoverService implements ExchangeAutodiscoverService {
+public abstract class AbstractExchangeAutodiscoverService implements ExchangeAutodiscoverService, DisposableBean {
 
 	protected Log log = LogFactory.getLog(this.getClass());
-
+	
+	private boolean parallel = false;
+	private long httpsHeadStartMillis = 250;
+	private volatile ExecutorService probeExecutor;
+	private AutodiscoverEndpointCache endpointCache = new AutodiscoverEndpointCache();
+	private final ThreadLocal<String> answeringEndpoint = new ThreadLocal<String>();
 	
 	/**
 	 * Don't use this.  all you should need is an email address to discover an EWS ENDPOINT
@@ -63,6 +77,222 @@ public abstract class AbstractExchangeAutodiscoverService implements ExchangeAut
 		SCHEMES = Collections.unmodifiableList(schemes);
 	}
 	
+	/**
+	 * @return true if the potential endpoints are probed concurrently
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+	/**
+	 * When parallel the https endpoints are probed concurrently, followed by the http endpoints after {@link #getHttpsHeadStartMillis()}
+	 * (or as soon as every https endpoint failed).  The first EWS URL found wins and the remaining probes are cancelled.
+	 * Otherwise the endpoints are probed one at a time in order of preference.
+	 * 
+	 * @param parallel
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+	/**
+	 * @return how long the https endpoints are probed before the http endpoints are started, when parallel
+	 */
+	public long getHttpsHeadStartMillis() {
+		return httpsHeadStartMillis;
+	}
+	/**
+	 * @param httpsHeadStartMillis how long the https endpoints are probed before the http endpoints are started, when parallel
+	 */
+	public void setHttpsHeadStartMillis(long httpsHeadStartMillis) {
+		this.httpsHeadStartMillis = httpsHeadStartMillis;
+	}
+	
+	/**
+	 * @return the per domain cache of the autodiscover endpoint that answered, null if disabled
+	 */
+	public AutodiscoverEndpointCache getEndpointCache() {
+		return endpointCache;
+	}
+	/**
+	 * @param endpointCache the per domain cache of the autodiscover endpoint that answered, null to always perform a full discovery
+	 */
+	public void setEndpointCache(AutodiscoverEndpointCache endpointCache) {
+		this.endpointCache = endpointCache;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		ExecutorService e = probeExecutor;
+		if(null != e) {
+			e.shutdownNow();
+		}
+	}
+	
+	private ExecutorService getProbeExecutor() {
+		ExecutorService e = probeExecutor;
+		if(null == e) {
+			synchronized (this) {
+				e = probeExecutor;
+				if(null == e) {
+					e = EndpointRace.newExecutor();
+					probeExecutor = e;
+				}
+			}
+		}
+		return e;
+	}
+	
+	/**
+	 * Query a single autodiscover endpoint.
+	 * Implementations should pass each HTTP request to {@link #registerRequest(HttpUriRequest)} before executing it.
+	 * Implementations following HTTP redirects should report where the response came from with {@link #setAnsweringEndpoint(String)}.
+	 * 
+	 * @param email
+	 * @param uri one of the {@link #getPotentialAutodiscoverEndpoints(String)}, or an endpoint remembered by the {@link #getEndpointCache()}
+	 * @return the EWS URL, or null if the endpoint did not provide one
+	 * @throws Exception if the endpoint could not be queried or its response was invalid
+	 */
+	protected abstract String probe(String email, String uri) throws Exception;
+	
+	/**
+	 * Called from {@link #probe(String, String)} before each HTTP request is executed, so that in parallel mode 
+	 * the request is aborted once another probe has won.  Interrupting the probe's thread does not stop a blocking request.
+	 * 
+	 * @param request
+	 */
+	protected void registerRequest(HttpUriRequest request) {
+		EndpointRace.register(request);
+	}
+	
+	/**
+	 * Called from {@link #probe(String, String)} when the response came from a different endpoint than the one probed (e.g. after a redirect), 
+	 * the {@link #getEndpointCache()} then remembers that endpoint rather than the one probed.
+	 * 
+	 * @param endpoint
+	 */
+	protected void setAnsweringEndpoint(String endpoint) {
+		answeringEndpoint.set(endpoint);
+	}
+	
+	/**
+	 * Probe the endpoint remembered for the domain of {@code email} if any, otherwise (or if that fails) 
+	 * probe the {@link #getPotentialAutodiscoverEndpoints(String)}, sequentially or concurrently depending on {@link #isParallel()}.
+	 * 
+	 * @param email
+	 * @return the first EWS URL found, or null
+	 */
+	protected String findAutodiscoverEndpoint(final String email) {
+		AutodiscoverEndpointCache cache = getEndpointCache();
+		String domain = null;
+		if(null != cache) {
+			try {
+				domain = extractDomainFromEmail(email);
+			} catch (AutodiscoverException e) {
+				log.debug("not using endpoint cache: "+e.getMessage());
+			}
+		}
+		if(null != domain) {
+			String known = cache.get(getServiceSuffix(), domain);
+			if(null != known) {
+				try {
+					String ewsUrl = probe(email, known);
+					if(StringUtils.isNotBlank(ewsUrl)) {
+						return ewsUrl;
+					}
+					log.info("remembered autodiscover endpoint "+known+" for domain="+domain+" provided no EWS URL, performing full discovery");
+				} catch (Exception e) {
+					log.warn("remembered autodiscover endpoint "+known+" for domain="+domain+" failed, performing full discovery: "+e.getMessage());
+				} finally {
+					answeringEndpoint.remove();
+				}
+				cache.invalidate(getServiceSuffix(), domain);
+			}
+		}
+		Map<String, String> answered = new ConcurrentHashMap<String, String>();
+		String ewsUrl = discover(email, answered);
+		if(null != domain && StringUtils.isNotBlank(ewsUrl)) {
+			String endpoint = answered.get(ewsUrl);
+			if(null != endpoint) {
+				cache.put(getServiceSuffix(), domain, endpoint);
+			}
+		}
+		return ewsUrl;
+	}
+	
+	/*
+	 * full discovery, answered collects the endpoint each EWS URL came from
+	 */
+	private String discover(final String email, final Map<String, String> answered) {
+		List<String> potentials = getPotentialAutodiscoverEndpoints(email);
+		if(!isParallel()) {
+			for(String potential : potentials) {
+				try {
+					String ewsUrl = probeAndRecord(email, potential, answered);
+					if(StringUtils.isNotBlank(ewsUrl)) {
+						return ewsUrl;
+					}
+				} catch (Exception e) {
+					log.warn("caught exception while attempting autodiscover for uri="+potential+": "+e.getMessage());
+				}
+			}
+			return null;
+		}
+		List<Callable<String>> https = new ArrayList<Callable<String>>();
+		List<Callable<String>> others = new ArrayList<Callable<String>>();
+		for(final String potential : potentials) {
+			Callable<String> probe = new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return probeAndRecord(email, potential, answered);
+				}
+			};
+			if(potential.startsWith("https:")) {
+				https.add(probe);
+			}else {
+				others.add(probe);
+			}
+		}
+		try {
+			return EndpointRace.firstNonBlank(getProbeExecutor(), https, others, getHttpsHeadStartMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+	
+	private String probeAndRecord(String email, String uri, Map<String, String> answered) throws Exception {
+		try {
+			String ewsUrl = probe(email, uri);
+			if(StringUtils.isNotBlank(ewsUrl)) {
+				String endpoint = answeringEndpoint.get();
+				answered.put(ewsUrl, null != endpoint ? endpoint : uri);
+			}
+			return ewsUrl;
+		} finally {
+			answeringEndpoint.remove();
+		}
+	}
+	
+	/**
+	 * Resolves the addresses one at a time with {@link #getAutodiscoverEndpoint(String)}.
+	 * 
+	 * @see com.microsoft.exchange.autodiscover.ExchangeAutodiscoverService#getAutodiscoverEndpoints(java.util.Collection)
+	 */
+	@Override
+	public Map<String, String> getAutodiscoverEndpoints(Collection<String> emails) {
+		Map<String, String> ewsUrls = new HashMap<String, String>();
+		for(String email : new LinkedHashSet<String>(emails)) {
+			try {
+				ewsUrls.put(email, getAutodiscoverEndpoint(email));
+			} catch (AutodiscoverException e) {
+				log.warn("autodiscover failure: "+e.getMessage());
+			}
+		}
+		return ewsUrls;
+	}
+	
 	protected ContentType getContentType(){
 		return CONTENT_TYPE;
 	}
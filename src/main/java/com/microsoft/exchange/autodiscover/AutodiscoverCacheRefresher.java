@@ -0,0 +1,294 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.autodiscover;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.microsoft.exchange.exception.AutodiscoverException;
+
+/**
+ * Refresh-ahead for the "autodiscoverCache" behind {@link CompositeAutodiscoverServiceImpl#getAutodiscoverEndpoint(String)}.
+ * 
+ * {@link AutodiscoverDestinationProvider} reports every address it looked up to {@link #accessed(String)}; 
+ * an entry expiring within {@link #getRefreshAheadMillis()} is queued for a background worker which resolves the 
+ * address again through the {@link #getAutodiscoverServices()} and replaces the entry, restarting its time to live.
+ * Callers keep getting the current entry meanwhile; if the refresh fails the entry simply expires as before.
+ * 
+ * The worker takes a token from a token bucket before each refresh, so refresh traffic never exceeds 
+ * {@link #getMaxRefreshesPerSecond()} (after an initial burst of {@link #getMaxRefreshBurst()}) however many entries expire together.
+ * At most {@link #getMaxQueuedRefreshes()} refreshes wait, further entries are left to expire.
+ */
+public class AutodiscoverCacheRefresher implements DisposableBean {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private Ehcache autodiscoverCache;
+	private Collection<ExchangeAutodiscoverService> autodiscoverServices = Collections.emptyList();
+	private long refreshAheadMillis = 2 * 60 * 60 * 1000L;
+	private double maxRefreshesPerSecond = 2.0;
+	private int maxRefreshBurst = 10;
+	private int maxQueuedRefreshes = 10000;
+	
+	private final ConcurrentHashMap<String, Boolean> pending = new ConcurrentHashMap<String, Boolean>();
+	private final AtomicLong refreshCount = new AtomicLong();
+	private final AtomicLong failureCount = new AtomicLong();
+	private volatile ExecutorService worker;
+	
+	private double tokens = -1;
+	private long lastRefillNanos;
+	
+	/**
+	 * @return the cache refreshed
+	 */
+	public Ehcache getAutodiscoverCache() {
+		return autodiscoverCache;
+	}
+	/**
+	 * @param autodiscoverCache the cache backing the {@link com.googlecode.ehcache.annotations.Cacheable} on {@link CompositeAutodiscoverServiceImpl#getAutodiscoverEndpoint(String)}
+	 */
+	public void setAutodiscoverCache(Ehcache autodiscoverCache) {
+		this.autodiscoverCache = autodiscoverCache;
+	}
+	/**
+	 * @return the services queried, in order, to refresh an entry
+	 */
+	public Collection<ExchangeAutodiscoverService> getAutodiscoverServices() {
+		return autodiscoverServices;
+	}
+	/**
+	 * @param autodiscoverServices the services queried, in order, to refresh an entry; not the (cached) composite service
+	 */
+	public void setAutodiscoverServices(Collection<ExchangeAutodiscoverService> autodiscoverServices) {
+		Validate.notNull(autodiscoverServices, "autodiscoverServices cannot be null");
+		this.autodiscoverServices = autodiscoverServices;
+	}
+	/**
+	 * @return how long before it expires an accessed entry is refreshed
+	 */
+	public long getRefreshAheadMillis() {
+		return refreshAheadMillis;
+	}
+	/**
+	 * @param refreshAheadMillis how long before it expires an accessed entry is refreshed
+	 */
+	public void setRefreshAheadMillis(long refreshAheadMillis) {
+		Validate.isTrue(refreshAheadMillis > 0, "refreshAheadMillis must be greater than 0");
+		this.refreshAheadMillis = refreshAheadMillis;
+	}
+	/**
+	 * @return the sustained refresh rate
+	 */
+	public double getMaxRefreshesPerSecond() {
+		return maxRefreshesPerSecond;
+	}
+	/**
+	 * @param maxRefreshesPerSecond the sustained refresh rate
+	 */
+	public void setMaxRefreshesPerSecond(double maxRefreshesPerSecond) {
+		Validate.isTrue(maxRefreshesPerSecond > 0, "maxRefreshesPerSecond must be greater than 0");
+		this.maxRefreshesPerSecond = maxRefreshesPerSecond;
+	}
+	/**
+	 * @return the number of refreshes allowed back to back after a quiet period
+	 */
+	public int getMaxRefreshBurst() {
+		return maxRefreshBurst;
+	}
+	/**
+	 * @param maxRefreshBurst the number of refreshes allowed back to back after a quiet period
+	 */
+	public void setMaxRefreshBurst(int maxRefreshBurst) {
+		Validate.isTrue(maxRefreshBurst > 0, "maxRefreshBurst must be greater than 0");
+		this.maxRefreshBurst = maxRefreshBurst;
+	}
+	/**
+	 * @return the maximum number of refreshes waiting for the worker
+	 */
+	public int getMaxQueuedRefreshes() {
+		return maxQueuedRefreshes;
+	}
+	/**
+	 * @param maxQueuedRefreshes the maximum number of refreshes waiting for the worker, takes effect before the first refresh only
+	 */
+	public void setMaxQueuedRefreshes(int maxQueuedRefreshes) {
+		Validate.isTrue(maxQueuedRefreshes > 0, "maxQueuedRefreshes must be greater than 0");
+		this.maxQueuedRefreshes = maxQueuedRefreshes;
+	}
+	/**
+	 * @return the number of entries refreshed
+	 */
+	public long getRefreshCount() {
+		return refreshCount.get();
+	}
+	/**
+	 * @return the number of refreshes which failed, leaving the entry to expire
+	 */
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+	/**
+	 * @return the number of refreshes queued or running
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+	
+	/**
+	 * Queue a refresh of the entry for {@code email} if it expires within {@link #getRefreshAheadMillis()}.  Never blocks.
+	 * 
+	 * @param email an address just looked up
+	 */
+	public void accessed(String email) {
+		Ehcache cache = getAutodiscoverCache();
+		if(null == cache || StringUtils.isBlank(email)) {
+			return;
+		}
+		Element element = cache.getQuiet(CompositeAutodiscoverServiceImpl.getAutodiscoverCacheKey(email));
+		if(null == element || element.isEternal() || element.isExpired()) {
+			//absent or expired entries are recomputed by the caller
+			return;
+		}
+		if(element.getExpirationTime() - System.currentTimeMillis() > getRefreshAheadMillis()) {
+			return;
+		}
+		if(null != pending.putIfAbsent(email, Boolean.TRUE)) {
+			return;
+		}
+		try {
+			getWorker().execute(new Refresh(email));
+		} catch (RejectedExecutionException e) {
+			pending.remove(email);
+			log.debug("refresh queue full or shut down, "+email+" will expire");
+		}
+	}
+	
+	/**
+	 * Resolve {@code email} through the {@link #getAutodiscoverServices()} and replace its entry.
+	 * 
+	 * @param email
+	 * @return true if the entry was replaced
+	 */
+	protected boolean refresh(String email) {
+		for(ExchangeAutodiscoverService service : getAutodiscoverServices()) {
+			try {
+				String ewsUrl = service.getAutodiscoverEndpoint(email);
+				if(StringUtils.isNotBlank(ewsUrl)) {
+					getAutodiscoverCache().put(new Element(CompositeAutodiscoverServiceImpl.getAutodiscoverCacheKey(email), ewsUrl));
+					return true;
+				}
+			} catch (AutodiscoverException e) {
+				log.debug("autodiscover refresh failure: "+e.getMessage());
+			}
+		}
+		return false;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		ExecutorService w = worker;
+		if(null != w) {
+			w.shutdownNow();
+		}
+	}
+	
+	private ExecutorService getWorker() {
+		ExecutorService w = worker;
+		if(null == w) {
+			synchronized (this) {
+				w = worker;
+				if(null == w) {
+					CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ews-autodiscover-refresh-");
+					threadFactory.setDaemon(true);
+					w = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(getMaxQueuedRefreshes()), threadFactory);
+					worker = w;
+				}
+			}
+		}
+		return w;
+	}
+	
+	/*
+	 * token bucket, only the worker thread takes tokens
+	 */
+	private void acquireToken() throws InterruptedException {
+		long now = System.nanoTime();
+		if(tokens < 0) {
+			tokens = getMaxRefreshBurst();
+		} else {
+			tokens = Math.min(getMaxRefreshBurst(), tokens + (now - lastRefillNanos) / 1e9 * getMaxRefreshesPerSecond());
+		}
+		lastRefillNanos = now;
+		if(tokens < 1) {
+			long waitNanos = (long) ((1 - tokens) / getMaxRefreshesPerSecond() * 1e9);
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+			tokens = 1;
+			lastRefillNanos = System.nanoTime();
+		}
+		tokens -= 1;
+	}
+	
+	private final class Refresh implements Runnable {
+		private final String email;
+		
+		private Refresh(String email) {
+			this.email = email;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				acquireToken();
+				if(refresh(email)) {
+					refreshCount.incrementAndGet();
+				} else {
+					failureCount.incrementAndGet();
+					log.warn("failed to refresh autodiscover entry for "+email+", keeping it until it expires");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (RuntimeException e) {
+				failureCount.incrementAndGet();
+				log.warn("failed to refresh autodiscover entry for "+email, e);
+			} finally {
+				pending.remove(email);
+			}
+		}
+	}
+}
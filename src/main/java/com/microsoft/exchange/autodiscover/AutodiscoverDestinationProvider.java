@@ -44,6 +44,7 @@ public class AutodiscoverDestinationProvider implements DestinationProvider {
 	protected final Log log = LogFactory.getLog(this.getClass());
 	private ImpersonationConnectingSIDSource connectingSIDSource;
 	private ExchangeAutodiscoverService	compositeAutodiscoverService;
+	private AutodiscoverCacheRefresher cacheRefresher;
 	
 	@Value("${endpoint:https://outlook.office365.com/ews/exchange.asmx}")
 	private String defaultUri;
@@ -75,6 +76,21 @@ public class AutodiscoverDestinationProvider implements DestinationProvider {
 		this.compositeAutodiscoverService = compositeAutodiscoverService;
 	}
 	
+	/**
+	 * @return the refresher told about every address looked up, null if entries are not refreshed ahead of expiry
+	 */
+	public AutodiscoverCacheRefresher getCacheRefresher() {
+		return cacheRefresher;
+	}
+	
+	/**
+	 * @param cacheRefresher the refresher told about every address looked up
+	 */
+	@Autowired(required=false)
+	public void setCacheRefresher(AutodiscoverCacheRefresher cacheRefresher) {
+		this.cacheRefresher = cacheRefresher;
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.springframework.ws.client.support.destination.DestinationProvider#getDestination()
 	 */
@@ -90,6 +106,9 @@ public class AutodiscoverDestinationProvider implements DestinationProvider {
 			String upn = connectingSID.getPrincipalName();
 			try {
 				autodiscoverEndpoint = compositeAutodiscoverService.getAutodiscoverEndpoint(upn);
+				if(null != cacheRefresher) {
+					cacheRefresher.accessed(upn);
+				}
 			} catch (AutodiscoverException e) {
 				log.warn("Failed to getAutodiscoverEndpoint for "+upn+": "+e.getMessage());
 				
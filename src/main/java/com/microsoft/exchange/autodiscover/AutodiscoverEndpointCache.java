@@ -0,0 +1,375 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.autodiscover;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Remembers, per email domain, the autodiscover endpoint that last answered for that domain.
+ * The endpoint recorded is the one the response actually came from, i.e. the end of any HTTP redirect chain.
+ * 
+ * Later lookups for addresses in a known domain probe the remembered endpoint first instead of walking 
+ * {@link ExchangeAutodiscoverService#getPotentialAutodiscoverEndpoints(String)}, see {@link AbstractExchangeAutodiscoverService#findAutodiscoverEndpoint(String)}.
+ * 
+ * Entries expire {@link #getTtlMillis()} after they were recorded; at most {@link #getMaxEntries()} domains are held, the least recently used is evicted first.
+ * A single instance may be shared by several services, entries are kept apart by service suffix.
+ * 
+ * With a {@link #getStore()} that has a file the entries survive restarts: {@link #afterPropertiesSet()} loads them in the background 
+ * (endpoints recorded meanwhile take precedence).  Changes are written back in the background, the changes made within 
+ * {@link #getSaveDelayMillis()} of each other are coalesced into one write; {@link #destroy()} writes any pending changes.
+ */
+public class AutodiscoverEndpointCache implements InitializingBean, DisposableBean {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private long ttlMillis = 24 * 60 * 60 * 1000L;
+	private int maxEntries = 10000;
+	private FileAutodiscoverEndpointStore store;
+	/** the store if it has a file, decided by {@link #afterPropertiesSet()} */
+	private volatile FileAutodiscoverEndpointStore activeStore;
+	private long saveDelayMillis = 5000;
+	private volatile ScheduledExecutorService storeExecutor;
+	
+	private long hitCount;
+	private long missCount;
+	private boolean dirty;
+	private boolean saveScheduled;
+	private final CountDownLatch loaded = new CountDownLatch(1);
+	private final Object saveLock = new Object();
+	
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > maxEntries;
+		}
+	};
+	
+	/**
+	 * @return how long a recorded endpoint is used
+	 */
+	public long getTtlMillis() {
+		return ttlMillis;
+	}
+	/**
+	 * @param ttlMillis how long a recorded endpoint is used
+	 */
+	public void setTtlMillis(long ttlMillis) {
+		Validate.isTrue(ttlMillis > 0, "ttlMillis must be greater than 0");
+		this.ttlMillis = ttlMillis;
+	}
+	/**
+	 * @return the maximum number of domains held
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	/**
+	 * @param maxEntries the maximum number of domains held
+	 */
+	public void setMaxEntries(int maxEntries) {
+		Validate.isTrue(maxEntries > 0, "maxEntries must be greater than 0");
+		this.maxEntries = maxEntries;
+	}
+	
+	/**
+	 * @return the store the entries are persisted to, null if they are not persisted
+	 */
+	public FileAutodiscoverEndpointStore getStore() {
+		return store;
+	}
+	/**
+	 * @param store the store the entries are persisted to, null (or a store without a file) to keep them in memory only
+	 */
+	public void setStore(FileAutodiscoverEndpointStore store) {
+		this.store = store;
+	}
+	
+	/**
+	 * @return how long after a change the entries are written to the {@link #getStore()}
+	 */
+	public long getSaveDelayMillis() {
+		return saveDelayMillis;
+	}
+	/**
+	 * @param saveDelayMillis how long after a change the entries are written to the {@link #getStore()}, later changes within the delay share the write
+	 */
+	public void setSaveDelayMillis(long saveDelayMillis) {
+		Validate.isTrue(saveDelayMillis >= 0, "saveDelayMillis cannot be negative");
+		this.saveDelayMillis = saveDelayMillis;
+	}
+	
+	/**
+	 * Start loading the {@link #getStore()} in the background, lookups are answered from memory meanwhile.
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		final FileAutodiscoverEndpointStore s = getStore();
+		if(null == s || null == s.getFile()) {
+			log.info("no autodiscover endpoint store file configured, endpoints are kept in memory only");
+			loaded.countDown();
+			return;
+		}
+		Validate.isTrue(!s.getFile().getPath().contains("${"), "store.file is an unresolved placeholder: "+s.getFile());
+		activeStore = s;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ews-autodiscover-cache-");
+		threadFactory.setDaemon(true);
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+		storeExecutor = executor;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					load(s.load());
+				} catch (RuntimeException e) {
+					log.warn("failed to load autodiscover endpoints from "+s.getFile(), e);
+				} finally {
+					loaded.countDown();
+				}
+				save();
+			}
+		});
+	}
+	
+	/**
+	 * @param timeout
+	 * @param unit
+	 * @return true if the entries of the {@link #getStore()} have been loaded (or there is no store), false if the timeout elapsed first
+	 * @throws InterruptedException
+	 */
+	public boolean awaitLoaded(long timeout, TimeUnit unit) throws InterruptedException {
+		return loaded.await(timeout, unit);
+	}
+	
+	/**
+	 * Stop the background writes and write any pending changes to the {@link #getStore()}.
+	 */
+	@Override
+	public void destroy() {
+		ScheduledExecutorService executor = storeExecutor;
+		if(null != executor) {
+			executor.shutdownNow();
+		}
+		save();
+	}
+	
+	private void load(Map<String, Pair<String, Long>> persisted) {
+		long now = System.currentTimeMillis();
+		int count = 0;
+		synchronized (entries) {
+			for(Map.Entry<String, Pair<String, Long>> p : persisted.entrySet()) {
+				long expires = p.getValue().getRight() + ttlMillis;
+				if(expires > now && !entries.containsKey(p.getKey())) {
+					entries.put(p.getKey(), new Entry(p.getValue().getLeft(), p.getValue().getRight(), expires));
+					count++;
+				}
+			}
+		}
+		log.info("loaded "+count+" autodiscover endpoints from "+activeStore.getFile());
+	}
+	
+	/*
+	 * write the entries after the saveDelayMillis, unless a write is already pending
+	 */
+	private void scheduleSave() {
+		ScheduledExecutorService executor = storeExecutor;
+		if(null == executor) {
+			return;
+		}
+		synchronized (entries) {
+			if(saveScheduled) {
+				return;
+			}
+			saveScheduled = true;
+		}
+		try {
+			executor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (entries) {
+						saveScheduled = false;
+					}
+					save();
+				}
+			}, saveDelayMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// destroyed, destroy() wrote the entries
+			synchronized (entries) {
+				saveScheduled = false;
+			}
+		}
+	}
+	
+	/*
+	 * write the entries if changed, not before the store was loaded lest its entries be lost
+	 */
+	private void save() {
+		FileAutodiscoverEndpointStore s = activeStore;
+		if(null == s || loaded.getCount() > 0) {
+			return;
+		}
+		synchronized (saveLock) {
+			Map<String, Pair<String, Long>> snapshot = new HashMap<String, Pair<String, Long>>();
+			synchronized (entries) {
+				if(!dirty) {
+					return;
+				}
+				dirty = false;
+				for(Map.Entry<String, Entry> e : entries.entrySet()) {
+					snapshot.put(e.getKey(), Pair.of(e.getValue().endpoint, e.getValue().recorded));
+				}
+			}
+			s.save(snapshot);
+		}
+	}
+	
+	/**
+	 * @param serviceSuffix
+	 * @param domain
+	 * @return the endpoint that last answered for {@code domain}, or null if unknown or expired
+	 */
+	public String get(String serviceSuffix, String domain) {
+		String key = key(serviceSuffix, domain);
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if(null != entry && entry.expires <= System.currentTimeMillis()) {
+				entries.remove(key);
+				entry = null;
+			}
+			if(null == entry) {
+				missCount++;
+				return null;
+			}
+			hitCount++;
+			return entry.endpoint;
+		}
+	}
+	
+	/**
+	 * @param serviceSuffix
+	 * @param domain
+	 * @param endpoint the endpoint that answered for {@code domain}
+	 */
+	public void put(String serviceSuffix, String domain, String endpoint) {
+		Validate.notEmpty(endpoint, "endpoint cannot be empty");
+		long now = System.currentTimeMillis();
+		Entry entry = new Entry(endpoint, now, now + ttlMillis);
+		synchronized (entries) {
+			Entry previous = entries.put(key(serviceSuffix, domain), entry);
+			if(null != previous && previous.endpoint.equals(endpoint) && previous.expires > now + ttlMillis / 2) {
+				//only the expiry moved, not worth a write
+				return;
+			}
+			dirty = true;
+		}
+		scheduleSave();
+	}
+	
+	/**
+	 * Forget the endpoint of {@code domain}, the next lookup performs a full discovery.
+	 * 
+	 * @param serviceSuffix
+	 * @param domain
+	 */
+	public void invalidate(String serviceSuffix, String domain) {
+		synchronized (entries) {
+			if(null == entries.remove(key(serviceSuffix, domain))) {
+				return;
+			}
+			dirty = true;
+		}
+		scheduleSave();
+	}
+	
+	/**
+	 * Discard all domains.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			dirty = true;
+		}
+		scheduleSave();
+	}
+	
+	/**
+	 * @return the number of domains held, including expired ones not looked up since
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	/**
+	 * @return the number of lookups answered with a remembered endpoint
+	 */
+	public long getHitCount() {
+		synchronized (entries) {
+			return hitCount;
+		}
+	}
+	/**
+	 * @return the number of lookups for unknown or expired domains
+	 */
+	public long getMissCount() {
+		synchronized (entries) {
+			return missCount;
+		}
+	}
+	
+	private static String key(String serviceSuffix, String domain) {
+		Validate.notEmpty(domain, "domain cannot be empty");
+		return serviceSuffix + ":" + domain.trim().toLowerCase();
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "AutodiscoverEndpointCache [size=" + size() + ", hitCount=" + getHitCount() + ", missCount=" + getMissCount() + "]";
+	}
+	
+	private static final class Entry {
+		private final String endpoint;
+		private final long recorded;
+		private final long expires;
+		
+		private Entry(String endpoint, long recorded, long expires) {
+			this.endpoint = endpoint;
+			this.recorded = recorded;
+			this.expires = expires;
+		}
+	}
+}
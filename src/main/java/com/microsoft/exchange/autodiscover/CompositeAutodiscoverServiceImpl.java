@@ -18,16 +18,32 @@
  */
 package com.microsoft.exchange.autodiscover;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.googlecode.ehcache.annotations.Cacheable;
+import com.googlecode.ehcache.annotations.KeyGenerator;
+import com.googlecode.ehcache.annotations.Property;
+import com.googlecode.ehcache.annotations.key.CacheKeyGenerator;
+import com.googlecode.ehcache.annotations.key.StringCacheKeyGenerator;
 import com.microsoft.exchange.exception.AutodiscoverException;
 
 /**
@@ -40,15 +56,29 @@ import com.microsoft.exchange.exception.AutodiscoverException;
  * @author ctcudd
  *
  */
-public class CompositeAutodiscoverServiceImpl implements ExchangeAutodiscoverService {
+public class CompositeAutodiscoverServiceImpl implements ExchangeAutodiscoverService, DisposableBean {
 	protected final Log log = LogFactory.getLog(this.getClass());
 	
 	@Autowired
 	private Collection<ExchangeAutodiscoverService> autodiscoverServices;
+	
+	/**
+	 * Generates the same keys as the {@link Cacheable} on {@link #getAutodiscoverEndpoint(String)}, 
+	 * so {@link #getAutodiscoverEndpoints(Collection)} can fill the {@link #getAutodiscoverCache()}.
+	 */
+	private static final CacheKeyGenerator<String> AUTODISCOVER_CACHE_KEY_GENERATOR = new StringCacheKeyGenerator(false, false);
+	
+	private boolean parallel = false;
+	private volatile ExecutorService serviceExecutor;
+	private Ehcache autodiscoverCache;
 
 	@Override
-	@Cacheable(cacheName="autodiscoverCache")
+	@Cacheable(cacheName="autodiscoverCache", keyGenerator=@KeyGenerator(name="StringCacheKeyGenerator", properties={
+			@Property(name="includeMethod", value="false"), @Property(name="includeParameterTypes", value="false")}))
 	public String getAutodiscoverEndpoint(String email) throws AutodiscoverException {
+		if(isParallel()) {
+			return getAutodiscoverEndpointParallel(email);
+		}
 		String ewsUrl = null;
 		for(ExchangeAutodiscoverService service : getAutodiscoverServices()){
 			try {
@@ -61,6 +91,105 @@ public class CompositeAutodiscoverServiceImpl implements ExchangeAutodiscoverSer
 		throw new AutodiscoverException("autodiscover failed.  cannot find ewsurl for email="+email);
 	}
 
+	/**
+	 * Query every service concurrently, the first EWS URL found wins and the remaining queries are cancelled.
+	 * @param email
+	 * @return
+	 * @throws AutodiscoverException
+	 */
+	private String getAutodiscoverEndpointParallel(final String email) throws AutodiscoverException {
+		List<Callable<String>> queries = new ArrayList<Callable<String>>();
+		for(final ExchangeAutodiscoverService service : getAutodiscoverServices()){
+			queries.add(new Callable<String>() {
+				@Override
+				public String call() throws AutodiscoverException {
+					return service.getAutodiscoverEndpoint(email);
+				}
+			});
+		}
+		String ewsUrl = null;
+		try {
+			ewsUrl = EndpointRace.firstNonBlank(getServiceExecutor(), queries, Collections.<Callable<String>>emptyList(), 0);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(StringUtils.isNotBlank(ewsUrl)) return ewsUrl;
+		throw new AutodiscoverException("autodiscover failed.  cannot find ewsurl for email="+email);
+	}
+	
+	/**
+	 * Answers what it can from the {@link #getAutodiscoverCache()}, then passes the remaining addresses to each of the 
+	 * {@link #getAutodiscoverServices()} in turn.  Every address resolved is put in the {@link #getAutodiscoverCache()}.
+	 * 
+	 * @see com.microsoft.exchange.autodiscover.ExchangeAutodiscoverService#getAutodiscoverEndpoints(java.util.Collection)
+	 */
+	@Override
+	public Map<String, String> getAutodiscoverEndpoints(Collection<String> emails) {
+		Map<String, String> ewsUrls = new HashMap<String, String>();
+		Set<String> remaining = new LinkedHashSet<String>(emails);
+		Ehcache cache = getAutodiscoverCache();
+		if(null != cache) {
+			for(String email : emails) {
+				Element element = cache.get(getAutodiscoverCacheKey(email));
+				if(null != element && element.getObjectValue() instanceof String) {
+					ewsUrls.put(email, (String) element.getObjectValue());
+					remaining.remove(email);
+				}
+			}
+		}
+		for(ExchangeAutodiscoverService service : getAutodiscoverServices()){
+			if(remaining.isEmpty()) {
+				break;
+			}
+			Map<String, String> found = service.getAutodiscoverEndpoints(new ArrayList<String>(remaining));
+			for(Map.Entry<String, String> entry : found.entrySet()) {
+				if(StringUtils.isNotBlank(entry.getValue()) && remaining.remove(entry.getKey())) {
+					ewsUrls.put(entry.getKey(), entry.getValue());
+					if(null != cache) {
+						cache.put(new Element(getAutodiscoverCacheKey(entry.getKey()), entry.getValue()));
+					}
+				}
+			}
+		}
+		if(!remaining.isEmpty()) {
+			log.warn("autodiscover failed for "+remaining.size()+" of "+emails.size()+" addresses");
+		}
+		return ewsUrls;
+	}
+	
+	/**
+	 * @param email
+	 * @return the key of {@code email} in the {@link #getAutodiscoverCache()}
+	 */
+	static Serializable getAutodiscoverCacheKey(String email) {
+		return AUTODISCOVER_CACHE_KEY_GENERATOR.generateKey(email);
+	}
+	
+	private ExecutorService getServiceExecutor() {
+		ExecutorService e = serviceExecutor;
+		if(null == e) {
+			synchronized (this) {
+				e = serviceExecutor;
+				if(null == e) {
+					e = EndpointRace.newExecutor();
+					serviceExecutor = e;
+				}
+			}
+		}
+		return e;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		ExecutorService e = serviceExecutor;
+		if(null != e) {
+			e.shutdownNow();
+		}
+	}
+
 	@Override
 	public List<String> getPotentialAutodiscoverEndpoints(String email) {
 		List<String> potentials = new ArrayList<String>();
@@ -78,4 +207,33 @@ public class CompositeAutodiscoverServiceImpl implements ExchangeAutodiscoverSer
 		this.autodiscoverServices = autodiscoverServices;
 	}
 
+	/**
+	 * @return the cache backing the {@link Cacheable} on {@link #getAutodiscoverEndpoint(String)}, filled by {@link #getAutodiscoverEndpoints(Collection)}; null if not filled
+	 */
+	public Ehcache getAutodiscoverCache() {
+		return autodiscoverCache;
+	}
+
+	/**
+	 * @param autodiscoverCache the cache backing the {@link Cacheable} on {@link #getAutodiscoverEndpoint(String)} ("autodiscoverCache" in autodiscover-ehcache.xml)
+	 */
+	public void setAutodiscoverCache(Ehcache autodiscoverCache) {
+		this.autodiscoverCache = autodiscoverCache;
+	}
+
+	/**
+	 * @return true if the {@link #getAutodiscoverServices()} are queried concurrently
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Set the services' parallel property as well for their endpoints to be probed concurrently.
+	 * @param parallel true to query the {@link #getAutodiscoverServices()} concurrently rather than in order
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
 }
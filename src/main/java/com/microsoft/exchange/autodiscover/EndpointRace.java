@@ -0,0 +1,216 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.autodiscover;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Runs autodiscover probes concurrently and returns the first non blank result, cancelling the probes still running.
+ * Interrupting a thread does not stop a blocking HTTP request, so probes {@link #register(HttpUriRequest)} their requests 
+ * and the requests of losing probes are aborted, including those of races nested within a probe.
+ * 
+ * Preferred probes (e.g. https candidates) start immediately; deferred probes start once the head start has elapsed 
+ * or every preferred probe has failed, whichever comes first.
+ */
+final class EndpointRace {
+
+	private static final Log log = LogFactory.getLog(EndpointRace.class);
+	private static final ThreadLocal<Probe> CURRENT = new ThreadLocal<Probe>();
+	
+	private EndpointRace() {
+	}
+	
+	/**
+	 * @return a new {@link ExecutorService} for running probes, probes spend most of their time waiting so the pool is unbounded
+	 */
+	static ExecutorService newExecutor() {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ews-autodiscover-");
+		threadFactory.setDaemon(true);
+		return Executors.newCachedThreadPool(threadFactory);
+	}
+	
+	/**
+	 * Called by a probe for each HTTP request it is about to execute, so that the request can be aborted if the probe loses the race.
+	 * Has no effect outside of a race.
+	 * 
+	 * @param request
+	 */
+	static void register(HttpUriRequest request) {
+		Probe probe = CURRENT.get();
+		if(null != probe) {
+			probe.add(request);
+		}
+	}
+	
+	/**
+	 * @param executor
+	 * @param preferred
+	 * @param deferred
+	 * @param headStartMillis
+	 * @return the first non blank result, or null if every probe failed or returned blank
+	 * @throws InterruptedException
+	 */
+	static String firstNonBlank(ExecutorService executor, List<Callable<String>> preferred, List<Callable<String>> deferred, long headStartMillis) throws InterruptedException {
+		CompletionService<String> completionService = new ExecutorCompletionService<String>(executor);
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		List<Probe> probes = new ArrayList<Probe>();
+		try {
+			int pending = submitAll(completionService, preferred, futures, probes);
+			boolean deferredSubmitted = false;
+			if(0 == pending) {
+				pending = submitAll(completionService, deferred, futures, probes);
+				deferredSubmitted = true;
+			}
+			long headStartDeadline = System.currentTimeMillis() + headStartMillis;
+			while(pending > 0) {
+				Future<String> completed;
+				if(deferredSubmitted) {
+					completed = completionService.take();
+				}else {
+					completed = completionService.poll(Math.max(0, headStartDeadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+					if(null == completed) {
+						pending += submitAll(completionService, deferred, futures, probes);
+						deferredSubmitted = true;
+						continue;
+					}
+				}
+				pending--;
+				try {
+					String result = completed.get();
+					if(StringUtils.isNotBlank(result)) {
+						return result;
+					}
+				} catch (ExecutionException e) {
+					log.debug("autodiscover probe failed: "+e.getCause());
+				}
+				if(0 == pending && !deferredSubmitted) {
+					pending = submitAll(completionService, deferred, futures, probes);
+					deferredSubmitted = true;
+				}
+			}
+			return null;
+		} finally {
+			for(Future<String> future : futures) {
+				future.cancel(true);
+			}
+			for(Probe probe : probes) {
+				probe.abort();
+			}
+		}
+	}
+	
+	private static int submitAll(CompletionService<String> completionService, List<Callable<String>> tasks, List<Future<String>> futures, List<Probe> probes) {
+		Probe parent = CURRENT.get();
+		for(Callable<String> task : tasks) {
+			Probe probe = new Probe(task);
+			if(null != parent) {
+				parent.add(probe);
+			}
+			probes.add(probe);
+			futures.add(completionService.submit(probe));
+		}
+		return tasks.size();
+	}
+	
+	/**
+	 * A probe and the HTTP requests (and nested probes) it started.
+	 */
+	private static final class Probe implements Callable<String> {
+		private final Callable<String> task;
+		private final List<HttpUriRequest> requests = new ArrayList<HttpUriRequest>();
+		private final List<Probe> children = new ArrayList<Probe>();
+		private boolean aborted;
+		
+		Probe(Callable<String> task) {
+			this.task = task;
+		}
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		@Override
+		public String call() throws Exception {
+			Probe previous = CURRENT.get();
+			CURRENT.set(this);
+			try {
+				return task.call();
+			} finally {
+				if(null == previous) {
+					CURRENT.remove();
+				}else {
+					CURRENT.set(previous);
+				}
+			}
+		}
+		void add(HttpUriRequest request) {
+			synchronized (this) {
+				if(!aborted) {
+					requests.add(request);
+					return;
+				}
+			}
+			request.abort();
+		}
+		void add(Probe child) {
+			synchronized (this) {
+				if(!aborted) {
+					children.add(child);
+					return;
+				}
+			}
+			child.abort();
+		}
+		void abort() {
+			List<HttpUriRequest> abortRequests;
+			List<Probe> abortChildren;
+			synchronized (this) {
+				if(aborted) {
+					return;
+				}
+				aborted = true;
+				abortRequests = new ArrayList<HttpUriRequest>(requests);
+				abortChildren = new ArrayList<Probe>(children);
+				requests.clear();
+				children.clear();
+			}
+			for(HttpUriRequest request : abortRequests) {
+				if(!request.isAborted()) {
+					request.abort();
+				}
+			}
+			for(Probe child : abortChildren) {
+				child.abort();
+			}
+		}
+	}
+}
@@ -18,7 +18,9 @@
  */
 package com.microsoft.exchange.autodiscover;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.microsoft.exchange.exception.AutodiscoverException;
 
@@ -45,6 +47,14 @@ public interface ExchangeAutodiscoverService {
 	 */
 	public String getAutodiscoverEndpoint(String email) throws AutodiscoverException;
 	
+	/**
+	 * Bulk variant of {@link #getAutodiscoverEndpoint(String)}, implementations may resolve many addresses per request.
+	 * 
+	 * @param emails
+	 * @return the EWS URL of every address that could be resolved, keyed by address; addresses that failed are absent
+	 */
+	public Map<String, String> getAutodiscoverEndpoints(Collection<String> emails);
+	
     /**
      * Return an {@link List} of strings representing autodiscover endpoints, ordered by preference.
      *  returned endoints are based on the domain of the email address and the service specific autodiscover Suffix
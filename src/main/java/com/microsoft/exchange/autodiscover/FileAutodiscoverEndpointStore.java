@@ -0,0 +1,175 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.autodiscover;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.microsoft.exchange.ExchangeFileUtils;
+
+/**
+ * Keeps the entries of an {@link AutodiscoverEndpointCache} in {@link #getFile()}, so remembered endpoints survive restarts.
+ * 
+ * The file starts with a version line; a file of another version is ignored.  Every entry is one line carrying 
+ * its key, endpoint, the time it was recorded and a CRC32 of those, entries failing the check are skipped.
+ * Entries recorded more than {@link #getMaxStalenessMillis()} ago are not loaded.
+ * The whole file is rewritten on every save through {@link ExchangeFileUtils#replaceFile(File, String, String)}, so losing 
+ * the process mid-save costs at most the changes of that save rather than every remembered endpoint.
+ */
+public class FileAutodiscoverEndpointStore {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	static final String VERSION = "ews-autodiscover-endpoints/1";
+	private static final String ENCODING = "UTF-8";
+	private static final char SEPARATOR = '\t';
+	private static final char LINE_SEPARATOR = '\n';
+	
+	private File file;
+	private long maxStalenessMillis = 24 * 60 * 60 * 1000L;
+	
+	/**
+	 * @return the file holding the entries
+	 */
+	public File getFile() {
+		return file;
+	}
+	/**
+	 * Required for {@link #load()} and {@link #save(Map)}, an {@link AutodiscoverEndpointCache} keeps its entries in memory only 
+	 * if the store has no file.  Pick a location private to this application: whatever is found there 
+	 * is trusted as the endpoint to send credentials to.
+	 * @param file the file holding the entries, its directory is created if it does not exist
+	 */
+	public void setFile(File file) {
+		this.file = file;
+	}
+	/**
+	 * @return entries recorded longer ago than this are not loaded
+	 */
+	public long getMaxStalenessMillis() {
+		return maxStalenessMillis;
+	}
+	/**
+	 * @param maxStalenessMillis entries recorded longer ago than this are not loaded
+	 */
+	public void setMaxStalenessMillis(long maxStalenessMillis) {
+		Validate.isTrue(maxStalenessMillis > 0, "maxStalenessMillis must be greater than 0");
+		this.maxStalenessMillis = maxStalenessMillis;
+	}
+	
+	/**
+	 * @return the valid entries no older than {@link #getMaxStalenessMillis()}, keyed by cache key, each with its endpoint and the time it was recorded.
+	 * Empty if the file does not exist, cannot be read or is of another version.
+	 */
+	public Map<String, Pair<String, Long>> load() {
+		Validate.notNull(file, "file is required");
+		Map<String, Pair<String, Long>> entries = new HashMap<String, Pair<String, Long>>();
+		File source = ExchangeFileUtils.recoverFile(file);
+		if(null == source) {
+			return entries;
+		}
+		long oldest = System.currentTimeMillis() - maxStalenessMillis;
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(source), ENCODING));
+			String version = reader.readLine();
+			if(!VERSION.equals(version)) {
+				log.warn("ignoring "+file+", version "+version+" is not "+VERSION);
+				return entries;
+			}
+			int skipped = 0;
+			String line;
+			while(null != (line = reader.readLine())) {
+				String[] fields = StringUtils.splitPreserveAllTokens(line, SEPARATOR);
+				if(fields.length != 4 || !checksum(fields[0], fields[1], fields[2]).equals(fields[3])) {
+					skipped++;
+					continue;
+				}
+				long recorded = Long.parseLong(fields[2]);
+				if(recorded >= oldest) {
+					entries.put(fields[0], Pair.of(fields[1], recorded));
+				}
+			}
+			if(skipped > 0) {
+				log.warn("skipped "+skipped+" corrupt entries in "+file);
+			}
+		} catch (IOException e) {
+			log.warn("failed to read "+file+": "+e.getMessage());
+			entries.clear();
+		} catch (NumberFormatException e) {
+			//the checksum matched, so the file was written by a broken writer
+			log.warn("ignoring "+file+": "+e.getMessage());
+			entries.clear();
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+		return entries;
+	}
+	
+	/**
+	 * Replace the content of the file.
+	 * 
+	 * @param entries keyed by cache key, each with its endpoint and the time it was recorded
+	 */
+	public synchronized void save(Map<String, Pair<String, Long>> entries) {
+		Validate.notNull(file, "file is required");
+		StringBuilder content = new StringBuilder(VERSION).append(LINE_SEPARATOR);
+		for(Map.Entry<String, Pair<String, Long>> entry : entries.entrySet()) {
+			String key = entry.getKey();
+			String endpoint = entry.getValue().getLeft();
+			String recorded = String.valueOf(entry.getValue().getRight());
+			if(StringUtils.containsAny(key, "\t\r\n") || StringUtils.containsAny(endpoint, "\t\r\n")) {
+				continue;
+			}
+			content.append(key).append(SEPARATOR)
+				.append(endpoint).append(SEPARATOR)
+				.append(recorded).append(SEPARATOR)
+				.append(checksum(key, endpoint, recorded)).append(LINE_SEPARATOR);
+		}
+		try {
+			ExchangeFileUtils.replaceFile(file, content.toString(), ENCODING);
+		} catch (IOException e) {
+			log.warn("failed to write "+file+": "+e.getMessage());
+		}
+	}
+	
+	private static String checksum(String key, String endpoint, String recorded) {
+		CRC32 crc = new CRC32();
+		try {
+			crc.update((key + SEPARATOR + endpoint + SEPARATOR + recorded).getBytes(ENCODING));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		return Long.toHexString(crc.getValue());
+	}
+}
@@ -31,11 +31,16 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.w3c.dom.CharacterData;
@@ -93,42 +98,68 @@ public class PoxAutodiscoverServiceImpl extends AbstractExchangeAutodiscoverServ
 	
 	@Override
 	public String getAutodiscoverEndpoint(String email) throws AutodiscoverException {
-		String ewsUrl = null;
-		String responseString = null;
-		String payload = String.format(POX_REQUEST_FORMAT,email);
-		
-		for(String potential : getPotentialAutodiscoverEndpoints(email)){
-			log.info("attempting pox autodiscover for email="+email+" uri="+potential);
-			HttpPost request = new HttpPost(potential);
-			StringEntity requestEntity = new StringEntity(payload, getContentType());
-			request.setEntity(requestEntity);
-			try {
-				HttpResponse response = executeInternal(request);
-				responseString = parseHttpResponseToString(response);
-				if(StringUtils.isNotBlank(responseString)){
-					ewsUrl = parseResponseString(responseString);
-					if(StringUtils.isNotBlank(ewsUrl))
-						return ewsUrl;
-				}
-			} catch (Exception e) {
-				log.warn("caught exception while attempting POX autodiscover: "+e.getMessage());
-			}
+		String ewsUrl = findAutodiscoverEndpoint(email);
+		if(StringUtils.isNotBlank(ewsUrl)) {
+			return ewsUrl;
 		}
 		throw new PoxAutodiscoverException("POX autodiscover failed.  cannot find ewsurl for email="+email);
 	}
-
-
 	
-	private HttpResponse executeInternal(HttpPost request) {
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.autodiscover.AbstractExchangeAutodiscoverService#probe(java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected String probe(String email, String uri) throws Exception {
+		log.info("attempting pox autodiscover for email="+email+" uri="+uri);
+		HttpPost request = new HttpPost(uri);
+		StringEntity requestEntity = new StringEntity(String.format(POX_REQUEST_FORMAT,email), getContentType());
+		request.setEntity(requestEntity);
+		registerRequest(request);
+		HttpContext context = new BasicHttpContext();
+		HttpResponse response = executeInternal(request, context);
+		if(null == response) {
+			return null;
+		}
+		String answering = getAnsweringUri(context);
+		if(null != answering && !answering.equalsIgnoreCase(uri)) {
+			setAnsweringEndpoint(answering);
+		}
+		String responseString = parseHttpResponseToString(response);
+		if(StringUtils.isNotBlank(responseString)){
+			return parseResponseString(responseString);
+		}
+		return null;
+	}
+
+	private HttpResponse executeInternal(HttpPost request, HttpContext context) {
 		HttpResponse response = null;
 		try {
-			response = getHttpClient().execute(request);
+			response = getHttpClient().execute(request, context);
 		} catch (Exception e) {
 			log.error("Failed to execute request="+request+". "+e.getMessage());
 		}
 		return response;
 	}
 	
+	/*
+	 * the uri of the last request executed within context, i.e. the end of the redirect chain
+	 */
+	private static String getAnsweringUri(HttpContext context) {
+		HttpRequest request = (HttpRequest) context.getAttribute(ExecutionContext.HTTP_REQUEST);
+		if(null == request) {
+			return null;
+		}
+		String uri = request.getRequestLine().getUri();
+		if(uri.startsWith("/")) {
+			HttpHost target = (HttpHost) context.getAttribute(ExecutionContext.HTTP_TARGET_HOST);
+			if(null == target) {
+				return null;
+			}
+			uri = target.toURI() + uri;
+		}
+		return uri;
+	}
+	
 	/**
 	 * Parses Autodiscover response {@see http://msdn.microsoft.com/en-us/library/office/bb204082(v=exchg.150).aspx}
 	 * Looking for an EWS url.
@@ -20,13 +20,20 @@ package com.microsoft.exchange.autodiscover;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
 import javax.xml.transform.TransformerException;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.oxm.Marshaller;
@@ -35,6 +42,9 @@ import org.springframework.ws.client.core.WebServiceMessageCallback;
 import org.springframework.ws.client.core.WebServiceOperations;
 import org.springframework.ws.soap.SoapMessage;
 import org.springframework.ws.soap.client.core.SoapActionCallback;
+import org.springframework.ws.transport.context.TransportContext;
+import org.springframework.ws.transport.context.TransportContextHolder;
+import org.springframework.ws.transport.http.HttpComponentsConnection;
 import org.springframework.xml.transform.StringResult;
 
 import com.microsoft.exchange.exception.AutodiscoverException;
@@ -65,6 +75,14 @@ public class SoapAutodiscoverServiceImpl extends AbstractExchangeAutodiscoverSer
     private final static String INTERNAL_EWS_SERVER = "InternalEwsUrl";
     private final static String EXTERNAL_EWS_SERVER = "ExternalEwsUrl";
     private final static String ENDPOINT_SUFFIX = "svc";
+    /**
+     * Exchange rejects GetUserSettings requests for more users
+     */
+    public final static int MAX_USERS_PER_REQUEST = 100;
+    /**
+     * Addresses of a domain tried for discovering its endpoint before giving up on the domain
+     */
+    private final static int MAX_DISCOVERY_SEEDS = 3;
     
     @Override
 	public String getServiceSuffix(){
@@ -84,6 +102,21 @@ public class SoapAutodiscoverServiceImpl extends AbstractExchangeAutodiscoverSer
     }
     
     private Marshaller marshaller;
+    private int maxUsersPerRequest = MAX_USERS_PER_REQUEST;
+    
+	/**
+	 * @return the maximum number of users per GetUserSettings request sent by {@link #getAutodiscoverEndpoints(Collection)}
+	 */
+	public int getMaxUsersPerRequest() {
+		return maxUsersPerRequest;
+	}
+	/**
+	 * @param maxUsersPerRequest the maximum number of users per GetUserSettings request sent by {@link #getAutodiscoverEndpoints(Collection)}, at most {@value #MAX_USERS_PER_REQUEST}
+	 */
+	public void setMaxUsersPerRequest(int maxUsersPerRequest) {
+		Validate.isTrue(maxUsersPerRequest > 0 && maxUsersPerRequest <= MAX_USERS_PER_REQUEST, "maxUsersPerRequest must be between 1 and "+MAX_USERS_PER_REQUEST);
+		this.maxUsersPerRequest = maxUsersPerRequest;
+	}
     
 	public Marshaller getMarshaller() {
 		return marshaller;
@@ -130,8 +163,10 @@ public class SoapAutodiscoverServiceImpl extends AbstractExchangeAutodiscoverSer
         }
         //return userSettings;
 		//UserSettings userSettings = sendMessageAndExtractSingleResponse(getUserSettingsSoapMessage, GET_USER_SETTINGS_ACTION);
-        
-        
+        return parseEwsUrl(userSettings);
+	}
+	
+	private String parseEwsUrl(UserSettings userSettings) {
         //Give preference to Internal URL over External URL
         String internalUri = null;
         String externalUri = null;
@@ -153,12 +188,18 @@ public class SoapAutodiscoverServiceImpl extends AbstractExchangeAutodiscoverSer
 	}
 
     private GetUserSettingsRequestMessage createGetUserSettingsSoapMessage(String emailAddress) {
+    	return createGetUserSettingsSoapMessage(Collections.singletonList(emailAddress));
+    }
+    
+    private GetUserSettingsRequestMessage createGetUserSettingsSoapMessage(List<String> emailAddresses) {
         GetUserSettingsRequest msg = objectFactory.createGetUserSettingsRequest();
 
-        User user = objectFactory.createUser();
-        user.setMailbox(emailAddress);
         Users users = objectFactory.createUsers();
-        users.getUsers().add(user);
+        for(String emailAddress : emailAddresses) {
+        	User user = objectFactory.createUser();
+        	user.setMailbox(emailAddress);
+        	users.getUsers().add(user);
+        }
         msg.setUsers(users);
 
         msg.setRequestedVersion(ExchangeVersion.EXCHANGE_2010);
@@ -196,6 +237,10 @@ public class SoapAutodiscoverServiceImpl extends AbstractExchangeAutodiscoverSer
                 soap.getEnvelope().getHeader().addHeaderElement(REQUEST_SERVER_VERSION_QNAME)
                         .setText(ExchangeVersion.EXCHANGE_2010.value());
                 soap.getEnvelope().getHeader().addHeaderElement(SOAP_ACTION_HEADER_QNAME).setText(soapAction);
+                TransportContext context = TransportContextHolder.getTransportContext();
+                if(null != context && context.getConnection() instanceof HttpComponentsConnection) {
+                    registerRequest(((HttpComponentsConnection) context.getConnection()).getHttpPost());
+                }
             }
 
         };
@@ -230,26 +275,132 @@ public class SoapAutodiscoverServiceImpl extends AbstractExchangeAutodiscoverSer
 
 	@Override
 	public String getAutodiscoverEndpoint(String email) throws AutodiscoverException {
-		String ewsUrl = null;
-		GetUserSettingsRequestMessage request = createGetUserSettingsSoapMessage(email);
-		
-		for(String potential : getPotentialAutodiscoverEndpoints(email)){
-			log.info("attempting soap autodiscover for email="+email+" uri="+potential);
-			GetUserSettingsResponseMessage response = null;
-			 try {
-				response = getUserSettings(potential, request, GET_USER_SETTINGS_ACTION);
-				if(null != response){
-					ewsUrl = parseGetUserSettingsResponse(response);
-					if(StringUtils.isNotBlank(ewsUrl))
-						return ewsUrl;
+		String ewsUrl = findAutodiscoverEndpoint(email);
+		if(StringUtils.isNotBlank(ewsUrl)) {
+			return ewsUrl;
+		}
+		throw new SoapAutodiscoverException("SOAP autodiscover failed.  cannot find ewsurl for email="+email);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.autodiscover.AbstractExchangeAutodiscoverService#probe(java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected String probe(String email, String uri) throws Exception {
+		log.info("attempting soap autodiscover for email="+email+" uri="+uri);
+		GetUserSettingsResponseMessage response = getUserSettings(uri, createGetUserSettingsSoapMessage(email), GET_USER_SETTINGS_ACTION);
+		if(null == response) {
+			return null;
+		}
+		return parseGetUserSettingsResponse(response);
+	}
+	
+	/**
+	 * Packs the addresses of each domain into GetUserSettings requests of at most {@link #getMaxUsersPerRequest()} users, 
+	 * sent to the endpoint the {@link #getEndpointCache()} remembers for the domain.  Unknown endpoints are discovered with 
+	 * the first address of the domain, as is a new endpoint when the remembered one fails a whole request.
+	 * Without an endpoint cache the addresses are resolved one at a time.
+	 * 
+	 * @see com.microsoft.exchange.autodiscover.AbstractExchangeAutodiscoverService#getAutodiscoverEndpoints(java.util.Collection)
+	 */
+	@Override
+	public Map<String, String> getAutodiscoverEndpoints(Collection<String> emails) {
+		if(null == getEndpointCache()) {
+			return super.getAutodiscoverEndpoints(emails);
+		}
+		Map<String, List<String>> byDomain = new LinkedHashMap<String, List<String>>();
+		for(String email : new LinkedHashSet<String>(emails)) {
+			try {
+				String domain = extractDomainFromEmail(email).toLowerCase();
+				List<String> domainEmails = byDomain.get(domain);
+				if(null == domainEmails) {
+					domainEmails = new ArrayList<String>();
+					byDomain.put(domain, domainEmails);
+				}
+				domainEmails.add(email);
+			} catch (AutodiscoverException e) {
+				log.warn("autodiscover failure: "+e.getMessage());
+			}
+		}
+		Map<String, String> ewsUrls = new HashMap<String, String>();
+		for(Map.Entry<String, List<String>> entry : byDomain.entrySet()) {
+			resolveDomain(entry.getKey(), entry.getValue(), ewsUrls);
+		}
+		return ewsUrls;
+	}
+	
+	private void resolveDomain(String domain, List<String> emails, Map<String, String> ewsUrls) {
+		AutodiscoverEndpointCache endpointCache = getEndpointCache();
+		int next = 0;
+		int seeds = 0;
+		while(next < emails.size()) {
+			String endpoint = endpointCache.get(ENDPOINT_SUFFIX, domain);
+			if(null == endpoint) {
+				if(seeds++ == MAX_DISCOVERY_SEEDS) {
+					log.warn("no autodiscover endpoint found for domain="+domain+", "+(emails.size() - next)+" addresses not resolved");
+					return;
+				}
+				//discovering the endpoint resolves the seed address too
+				String email = emails.get(next++);
+				String ewsUrl = findAutodiscoverEndpoint(email);
+				if(StringUtils.isNotBlank(ewsUrl)) {
+					ewsUrls.put(email, ewsUrl);
+				}
+				continue;
+			}
+			List<String> batch = emails.subList(next, Math.min(emails.size(), next + getMaxUsersPerRequest()));
+			if(resolveBatch(endpoint, batch, ewsUrls)) {
+				next += batch.size();
+			} else {
+				log.warn("GetUserSettings for "+batch.size()+" users failed at uri="+endpoint+", rediscovering the endpoint for domain="+domain);
+				endpointCache.invalidate(ENDPOINT_SUFFIX, domain);
+			}
+		}
+	}
+	
+	/*
+	 * true if the endpoint answered for every user of the batch (successfully or not), the users resolved are added to ewsUrls
+	 */
+	private boolean resolveBatch(String endpoint, List<String> batch, Map<String, String> ewsUrls) {
+		log.info("attempting soap autodiscover for "+batch.size()+" users uri="+endpoint);
+		GetUserSettingsResponseMessage response = getUserSettings(endpoint, createGetUserSettingsSoapMessage(batch), GET_USER_SETTINGS_ACTION);
+		if(null == response || null == response.getResponse()) {
+			return false;
+		}
+		GetUserSettingsResponse soapResponse = response.getResponse().getValue();
+		if(!ErrorCode.NO_ERROR.equals(soapResponse.getErrorCode())) {
+			log.warn("GetUserSettings failed at uri="+endpoint+": "+soapResponse.getErrorCode()+" "+getErrorMessage(soapResponse));
+			return false;
+		}
+		JAXBElement<ArrayOfUserResponse> responseArray = soapResponse.getUserResponses();
+		List<UserResponse> responses = null != responseArray && null != responseArray.getValue() ? responseArray.getValue().getUserResponses() : Collections.<UserResponse>emptyList();
+		if(responses.size() != batch.size()) {
+			log.warn("GetUserSettings at uri="+endpoint+" returned "+responses.size()+" responses for "+batch.size()+" users");
+			return false;
+		}
+		//UserResponses are in the order of the Users requested
+		for(int i = 0; i < batch.size(); i++) {
+			String email = batch.get(i);
+			UserResponse userResponse = responses.get(i);
+			try {
+				if(ErrorCode.NO_ERROR.equals(userResponse.getErrorCode()) && null != userResponse.getUserSettings()) {
+					ewsUrls.put(email, parseEwsUrl(userResponse.getUserSettings().getValue()));
+				} else if(ErrorCode.REDIRECT_URL.equals(userResponse.getErrorCode()) && null != userResponse.getRedirectTarget()) {
+					String ewsUrl = probe(email, userResponse.getRedirectTarget().getValue());
+					if(StringUtils.isNotBlank(ewsUrl)) {
+						ewsUrls.put(email, ewsUrl);
+					}
+				} else {
+					log.warn("GetUserSettings for email="+email+" failed: "+userResponse.getErrorCode()+" "+getErrorMessage(userResponse));
 				}
 			} catch (Exception e) {
-				log.warn("caught exception while attempting SOAP autodiscover : "+e.getMessage());
-			} 
+				log.warn("autodiscover failure for email="+email+": "+e.getMessage());
+			}
 		}
-		throw new SoapAutodiscoverException("SOAP autodiscover failed.  cannot find ewsurl for email="+email);
+		return true;
+	}
+	
+	private static String getErrorMessage(AutodiscoverResponse response) {
+		return null != response.getErrorMessage() ? response.getErrorMessage().getValue() : "";
 	}
-
 }
-
-
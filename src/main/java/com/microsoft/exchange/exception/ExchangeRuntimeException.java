@@ -25,6 +25,8 @@ public class ExchangeRuntimeException extends RuntimeException {
 	 * 
 	 */
 	private static final long serialVersionUID = -7665636000368527403L;
+	
+	private String responseCode;
 
 	public ExchangeRuntimeException(Throwable arg0) {
 		super(arg0);
@@ -38,4 +40,18 @@ public class ExchangeRuntimeException extends RuntimeException {
 	public ExchangeRuntimeException(String arg0, Throwable arg1){
 		super(arg0, arg1);
 	}
+
+	/**
+	 * @return the EWS response code (e.g. ErrorServerBusy) which caused this exception, may be null
+	 */
+	public String getResponseCode() {
+		return responseCode;
+	}
+
+	/**
+	 * @param responseCode the EWS response code which caused this exception
+	 */
+	public void setResponseCode(String responseCode) {
+		this.responseCode = responseCode;
+	}
 }
@@ -0,0 +1,45 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.exception;
+
+/**
+ * Thrown when Exchange rejects a request due to throttling, e.g. ErrorServerBusy or ErrorExceededConnectionCount.
+ */
+public class ExchangeThrottledRuntimeException extends ExchangeWebServicesRuntimeException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 6094563210734473514L;
+
+	private final long backOffMillis;
+	
+	public ExchangeThrottledRuntimeException(String responseCode, long backOffMillis, Throwable cause) {
+		super("Request throttled: responseCode="+responseCode+", backOffMillis="+backOffMillis, cause);
+		setResponseCode(responseCode);
+		this.backOffMillis = backOffMillis;
+	}
+
+	/**
+	 * @return the back off hint provided by the server in milliseconds, 0 if none was provided
+	 */
+	public long getBackOffMillis() {
+		return backOffMillis;
+	}
+}
@@ -0,0 +1,300 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+import com.microsoft.exchange.messages.ResponseCodeType;
+
+/**
+ * Additive-increase/multiplicative-decrease (AIMD) controller for the number of concurrent requests issued against
+ * an EWS endpoint on behalf of a single account.
+ * 
+ * Each key (see {@link #getKey(String, String)}) starts at {@link #getMaxLimit()}.  Every successful request grows the limit by 
+ * {@link #getAdditiveIncrease()} per window of requests, every throttling signal ({@link ExchangeOnlineThrottlingPolicy#ERROR_SERVER_BUSY},
+ * {@link ExchangeOnlineThrottlingPolicy#ERROR_EXCEEDED_CONNECTION_COUNT}) multiplies it by {@link #getMultiplicativeDecrease()} and holds new requests
+ * for the back off period suggested by the server (or {@link #getDefaultBackOffMillis()} when none was given).
+ * 
+ * Keys which have recovered to {@link #getMaxLimit()} and have no requests in flight are discarded.
+ */
+public class AdaptiveThrottlingController {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private final ConcurrentMap<String, ThrottleState> states = new ConcurrentHashMap<String, ThrottleState>();
+	
+	private double maxLimit = ExchangeOnlineThrottlingPolicy.MAX_CONCURRENT_CONNECTIONS_IMPERSONATION;
+	private double minLimit = 1;
+	private double additiveIncrease = 1;
+	private double multiplicativeDecrease = 0.5;
+	private long defaultBackOffMillis = 1000;
+	private long maxBackOffMillis = TimeUnit.MINUTES.toMillis(5);
+	/**
+	 * Throttling signals received within this period after a decrease extend the hold but do not decrease the limit again, 
+	 * preventing a burst of rejected in-flight requests from collapsing the limit.
+	 */
+	private long decreaseCooldownMillis = 1000;
+	
+	public double getMaxLimit() {
+		return maxLimit;
+	}
+	public void setMaxLimit(double maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+	public double getMinLimit() {
+		return minLimit;
+	}
+	/**
+	 * @param minLimit must be at least 1
+	 */
+	public void setMinLimit(double minLimit) {
+		if(minLimit < 1) {
+			throw new IllegalArgumentException("minLimit must be at least 1");
+		}
+		this.minLimit = minLimit;
+	}
+	public double getAdditiveIncrease() {
+		return additiveIncrease;
+	}
+	public void setAdditiveIncrease(double additiveIncrease) {
+		this.additiveIncrease = additiveIncrease;
+	}
+	public double getMultiplicativeDecrease() {
+		return multiplicativeDecrease;
+	}
+	/**
+	 * @param multiplicativeDecrease a value between 0 and 1
+	 */
+	public void setMultiplicativeDecrease(double multiplicativeDecrease) {
+		if(multiplicativeDecrease <= 0 || multiplicativeDecrease >= 1) {
+			throw new IllegalArgumentException("multiplicativeDecrease must be between 0 and 1");
+		}
+		this.multiplicativeDecrease = multiplicativeDecrease;
+	}
+	public long getDefaultBackOffMillis() {
+		return defaultBackOffMillis;
+	}
+	public void setDefaultBackOffMillis(long defaultBackOffMillis) {
+		this.defaultBackOffMillis = defaultBackOffMillis;
+	}
+	public long getMaxBackOffMillis() {
+		return maxBackOffMillis;
+	}
+	public void setMaxBackOffMillis(long maxBackOffMillis) {
+		this.maxBackOffMillis = maxBackOffMillis;
+	}
+	public long getDecreaseCooldownMillis() {
+		return decreaseCooldownMillis;
+	}
+	public void setDecreaseCooldownMillis(long decreaseCooldownMillis) {
+		this.decreaseCooldownMillis = decreaseCooldownMillis;
+	}
+	
+	/**
+	 * @param endpoint the EWS endpoint
+	 * @param principal the impersonated principal, may be null
+	 * @return the key used to track the limit for requests to the endpoint on behalf of the principal
+	 */
+	public static String getKey(String endpoint, String principal) {
+		return StringUtils.lowerCase(endpoint) + "|" + StringUtils.defaultString(principal);
+	}
+	
+	/**
+	 * @param responseCode
+	 * @return true if the responseCode indicates the request was rejected by the throttling policy
+	 */
+	public static boolean isThrottlingResponseCode(String responseCode) {
+		return ExchangeOnlineThrottlingPolicy.ERROR_SERVER_BUSY.equals(responseCode) 
+				|| ExchangeOnlineThrottlingPolicy.ERROR_EXCEEDED_CONNECTION_COUNT.equals(responseCode);
+	}
+	/**
+	 * @param responseCode
+	 * @return true if the responseCode indicates the request was rejected by the throttling policy
+	 */
+	public static boolean isThrottlingResponseCode(ResponseCodeType responseCode) {
+		return null != responseCode && isThrottlingResponseCode(responseCode.value());
+	}
+	
+	/**
+	 * Block until the key is below its current limit and outside of any back off period.
+	 * Every call must be paired with a call to {@link #release(String)}.
+	 * 
+	 * @param key
+	 * @throws ExchangeRuntimeException if the thread is interrupted while waiting
+	 */
+	public void acquire(String key) {
+		while(true) {
+			ThrottleState state = getState(key);
+			state.lock.lock();
+			try {
+				if(state.retired) {
+					continue;
+				}
+				state.waiters++;
+				try {
+					while(true) {
+						long hold = state.blockedUntil - System.currentTimeMillis();
+						if(hold > 0) {
+							state.changed.await(hold, TimeUnit.MILLISECONDS);
+						} else if(state.inFlight < (int) state.limit) {
+							break;
+						} else {
+							state.changed.await();
+						}
+					}
+				} finally {
+					state.waiters--;
+				}
+				state.inFlight++;
+				return;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ExchangeRuntimeException("interrupted while waiting on throttling controller for "+key, e);
+			} finally {
+				state.lock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Record a request which completed without a throttling signal, growing the limit.
+	 * @param key
+	 */
+	public void onSuccess(String key) {
+		ThrottleState state = states.get(key);
+		if(null == state) {
+			return;
+		}
+		state.lock.lock();
+		try {
+			if(state.limit < maxLimit) {
+				int previous = (int) state.limit;
+				state.limit = Math.min(maxLimit, state.limit + additiveIncrease / state.limit);
+				if((int) state.limit > previous) {
+					state.changed.signalAll();
+				}
+			}
+		} finally {
+			state.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Record a throttling signal, shrinking the limit and holding new requests for the back off period.
+	 * 
+	 * @param key
+	 * @param backOffMillis the server provided back off hint, <= 0 if none was provided
+	 */
+	public void onThrottled(String key, long backOffMillis) {
+		ThrottleState state = getState(key);
+		state.lock.lock();
+		try {
+			long now = System.currentTimeMillis();
+			long hold = Math.min(maxBackOffMillis, backOffMillis > 0 ? backOffMillis : defaultBackOffMillis);
+			state.blockedUntil = Math.max(state.blockedUntil, now + hold);
+			if(now - state.lastDecrease >= decreaseCooldownMillis) {
+				state.limit = Math.max(minLimit, state.limit * multiplicativeDecrease);
+				state.lastDecrease = now;
+			}
+			log.warn("throttled "+key+", limit="+String.format("%.2f", state.limit)+", holding new requests for "+hold+"ms");
+		} finally {
+			state.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Return the capacity obtained via {@link #acquire(String)}.
+	 * @param key
+	 */
+	public void release(String key) {
+		ThrottleState state = states.get(key);
+		if(null == state) {
+			log.warn("release called for "+key+" without a matching acquire");
+			return;
+		}
+		state.lock.lock();
+		try {
+			state.inFlight--;
+			state.changed.signalAll();
+			if(state.inFlight == 0 && state.waiters == 0 && state.limit >= maxLimit && state.blockedUntil <= System.currentTimeMillis()) {
+				state.retired = true;
+				states.remove(key, state);
+			}
+		} finally {
+			state.lock.unlock();
+		}
+	}
+	
+	/**
+	 * @param key
+	 * @return the current concurrency limit for the key
+	 */
+	public double getLimit(String key) {
+		ThrottleState state = states.get(key);
+		return null == state ? maxLimit : state.limit;
+	}
+	
+	/**
+	 * @param key
+	 * @return the number of requests currently in flight for the key
+	 */
+	public int getInFlight(String key) {
+		ThrottleState state = states.get(key);
+		return null == state ? 0 : state.inFlight;
+	}
+	
+	private ThrottleState getState(String key) {
+		ThrottleState state = states.get(key);
+		if(null == state) {
+			ThrottleState created = new ThrottleState(maxLimit);
+			state = states.putIfAbsent(key, created);
+			if(null == state) {
+				state = created;
+			}
+		}
+		return state;
+	}
+	
+	/**
+	 * Mutable limit and bookkeeping for a single key, guarded by {@link #lock}.
+	 */
+	private static class ThrottleState {
+		private final ReentrantLock lock = new ReentrantLock(true);
+		private final Condition changed = lock.newCondition();
+		private double limit;
+		private int inFlight;
+		private int waiters;
+		private long blockedUntil;
+		private long lastDecrease;
+		private boolean retired;
+		
+		ThrottleState(double limit) {
+			this.limit = limit;
+		}
+	}
+}
@@ -24,10 +24,26 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.xml.bind.JAXBContext;
 
@@ -39,15 +55,21 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.validator.routines.EmailValidator;
 import org.joda.time.Interval;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.CollectionUtils;
 
-import com.microsoft.exchange.ExchangeDateUtils;
+import com.microsoft.exchange.BulkCalendarItemsListener;
 import com.microsoft.exchange.ExchangeRequestFactory;
 import com.microsoft.exchange.ExchangeResponseUtils;
 import com.microsoft.exchange.ExchangeWebServices;
+import com.microsoft.exchange.FindItemIdsOperations;
+import com.microsoft.exchange.StreamingEventsHandler;
+import com.microsoft.exchange.StreamingEventsOperations;
+import com.microsoft.exchange.SyncStateStore;
 import com.microsoft.exchange.exception.ExchangeExceededFindCountLimitRuntimeException;
 import com.microsoft.exchange.exception.ExchangeInvalidUPNRuntimeException;
 import com.microsoft.exchange.exception.ExchangeMissingEmailAddressRuntimeException;
@@ -66,16 +88,36 @@ import com.microsoft.exchange.messages.FindFolder;
 import com.microsoft.exchange.messages.FindFolderResponse;
 import com.microsoft.exchange.messages.FindItem;
 import com.microsoft.exchange.messages.FindItemResponse;
+import com.microsoft.exchange.messages.GetEvents;
+import com.microsoft.exchange.messages.GetEventsResponse;
 import com.microsoft.exchange.messages.GetFolder;
 import com.microsoft.exchange.messages.GetFolderResponse;
 import com.microsoft.exchange.messages.GetItem;
 import com.microsoft.exchange.messages.GetItemResponse;
 import com.microsoft.exchange.messages.GetServerTimeZones;
 import com.microsoft.exchange.messages.GetServerTimeZonesResponse;
+import com.microsoft.exchange.messages.GetStreamingEvents;
+import com.microsoft.exchange.messages.GetStreamingEventsResponse;
 import com.microsoft.exchange.messages.ResolveNames;
 import com.microsoft.exchange.messages.ResolveNamesResponse;
+import com.microsoft.exchange.messages.ResponseCodeType;
+import com.microsoft.exchange.messages.Subscribe;
+import com.microsoft.exchange.messages.SubscribeResponse;
+import com.microsoft.exchange.messages.SyncFolderHierarchy;
+import com.microsoft.exchange.messages.SyncFolderHierarchyResponse;
+import com.microsoft.exchange.messages.SyncFolderItems;
+import com.microsoft.exchange.messages.SyncFolderItemsResponse;
+import com.microsoft.exchange.messages.Unsubscribe;
+import com.microsoft.exchange.messages.UnsubscribeResponse;
 import com.microsoft.exchange.messages.UpdateItem;
 import com.microsoft.exchange.messages.UpdateItemResponse;
+import com.microsoft.exchange.model.CalendarItemChanges;
+import com.microsoft.exchange.model.FindItemIdsResult;
+import com.microsoft.exchange.model.ItemIdKeyedSet;
+import com.microsoft.exchange.model.MailboxAffinity;
+import com.microsoft.exchange.model.SubscriptionEventsResult;
+import com.microsoft.exchange.model.SyncFolderHierarchyResult;
+import com.microsoft.exchange.model.SyncFolderItemsResult;
 import com.microsoft.exchange.types.ArrayOfRecipientsType;
 import com.microsoft.exchange.types.BaseFolderIdType;
 import com.microsoft.exchange.types.BaseFolderType;
@@ -112,11 +154,15 @@ import com.microsoft.exchange.types.TimeZoneDefinitionType;
  * 
  * @author Collin Cudd
  */
-public class BaseExchangeCalendarDataDao {
+public class BaseExchangeCalendarDataDao implements DisposableBean {
 
     //================================================================================
     // Properties 
     //================================================================================
+	/**
+	 * The timeout of the temporary pull subscriptions created by {@link #getItemEventsSince(String, Collection, String)}
+	 */
+	private static final int PULL_SUBSCRIPTION_TIMEOUT_MINUTES = 10;
 	protected final Log log = LogFactory.getLog(this.getClass());
 	private JAXBContext jaxbContext;
 	private ExchangeWebServices webServices;
@@ -124,6 +170,19 @@ public class BaseExchangeCalendarDataDao {
 	private ExchangeResponseUtils responseUtils = new ExchangeResponseUtilsImpl();
 	private int maxRetries = 10;
 	private static Random random = new Random();
+	private volatile RetryExecutor retryExecutor;
+	private boolean ownsRetryExecutor = false;
+	private int getItemsBatchSize = 100;
+	private int getItemsParallelism = 4;
+	private int findItemParallelism = 4;
+	private CalendarRangePlanner rangePlanner = new CalendarRangePlanner();
+	private int bulkMailboxParallelism = ExchangeOnlineThrottlingPolicy.MAX_CONCURRENT_CONNECTIONS_IMPERSONATION;
+	private volatile ThreadPoolExecutor bulkExecutor;
+	private SyncStateStore syncStateStore = new InMemorySyncStateStore();
+	private FolderHierarchyCache folderHierarchyCache;
+	private ResolutionCache<String> resolveUpnCache = new ResolutionCache<String>();
+	private ResolutionCache<Set<String>> resolveEmailAddressesCache = new ResolutionCache<Set<String>>();
+	private int syncMaxChangesReturned = 512;
 
 	/**
 	 * This is the principal/username which is used when performing non-user actions like:
@@ -177,6 +236,241 @@ public class BaseExchangeCalendarDataDao {
 	public void setMaxRetries(int maxRetries) {
 		this.maxRetries = maxRetries;
 	}
+	/**
+	 * If no {@link RetryExecutor} was provided one is created allowing {@link #getMaxRetries()} retries, 
+	 * with a worker pool of {@link #getDefaultRetryPoolSize()} threads.
+	 * @return the {@link RetryExecutor} used for all Exchange operations
+	 */
+	public RetryExecutor getRetryExecutor() {
+		RetryExecutor r = retryExecutor;
+		if(null == r) {
+			synchronized (this) {
+				r = retryExecutor;
+				if(null == r) {
+					r = new RetryExecutor();
+					r.getRetryPolicy().setMaxAttempts(getMaxRetries() + 1);
+					r.setPoolSize(getDefaultRetryPoolSize());
+					ownsRetryExecutor = true;
+					retryExecutor = r;
+				}
+			}
+		}
+		return r;
+	}
+	/**
+	 * A shared executor's {@link RetryExecutor#getPoolSize()} caps the fan-out of every dao using it, see {@link #getDefaultRetryPoolSize()}.
+	 * @param retryExecutor the {@link RetryExecutor} used for all Exchange operations
+	 */
+	@Autowired(required=false)
+	public void setRetryExecutor(RetryExecutor retryExecutor) {
+		this.retryExecutor = retryExecutor;
+		this.ownsRetryExecutor = false;
+	}
+	/**
+	 * Requests fanned out within a mailbox run on the {@link RetryExecutor}'s worker pool, so the pool must hold 
+	 * {@link #getBulkMailboxParallelism()} mailboxes each fanning out up to its per mailbox limit, 
+	 * see {@link #getEffectiveParallelism(int)}; a smaller pool would quietly lower that limit.
+	 * @return the worker pool size of a {@link RetryExecutor} created by this dao
+	 */
+	protected int getDefaultRetryPoolSize() {
+		return getBulkMailboxParallelism() * getEffectiveParallelism(Math.max(getGetItemsParallelism(), getFindItemParallelism()));
+	}
+	
+	/*
+	 * keeps a retry executor created by this dao in step with the parallelism settings
+	 */
+	private void resizeRetryExecutor() {
+		RetryExecutor r = retryExecutor;
+		if(null != r && ownsRetryExecutor) {
+			r.setPoolSize(getDefaultRetryPoolSize());
+		}
+	}
+	/**
+	 * @return the maximum number of {@link ItemIdType}s requested by a single {@link GetItem}
+	 */
+	public int getGetItemsBatchSize() {
+		return getItemsBatchSize;
+	}
+	/**
+	 * @param getItemsBatchSize the maximum number of {@link ItemIdType}s requested by a single {@link GetItem}
+	 */
+	public void setGetItemsBatchSize(int getItemsBatchSize) {
+		Validate.isTrue(getItemsBatchSize > 0, "getItemsBatchSize must be greater than 0");
+		this.getItemsBatchSize = getItemsBatchSize;
+	}
+	/**
+	 * @return the maximum number of {@link GetItem} batches in flight for a single call
+	 */
+	public int getGetItemsParallelism() {
+		return getItemsParallelism;
+	}
+	/**
+	 * The effective value never exceeds the {@link MailboxConcurrencyGovernor#getMaxConcurrentRequestsPerPrincipal()}
+	 * of the {@link ExchangeWebServicesClient}, if one is configured.
+	 * @param getItemsParallelism the maximum number of {@link GetItem} batches in flight for a single call
+	 */
+	public void setGetItemsParallelism(int getItemsParallelism) {
+		Validate.isTrue(getItemsParallelism > 0, "getItemsParallelism must be greater than 0");
+		this.getItemsParallelism = getItemsParallelism;
+		resizeRetryExecutor();
+	}
+	/**
+	 * @return the maximum number of indexed {@link FindItem} pages requested concurrently once the total number of items is known
+	 */
+	public int getFindItemParallelism() {
+		return findItemParallelism;
+	}
+	/**
+	 * The effective value never exceeds the {@link MailboxConcurrencyGovernor#getMaxConcurrentRequestsPerPrincipal()}
+	 * of the {@link ExchangeWebServicesClient}, if one is configured.
+	 * @param findItemParallelism the maximum number of indexed {@link FindItem} pages requested concurrently
+	 */
+	public void setFindItemParallelism(int findItemParallelism) {
+		Validate.isTrue(findItemParallelism > 0, "findItemParallelism must be greater than 0");
+		this.findItemParallelism = findItemParallelism;
+		resizeRetryExecutor();
+	}
+	/**
+	 * @return the maximum number of mailboxes fetched concurrently by {@link #getCalendarItems(Collection, Date, Date, Collection, BulkCalendarItemsListener)}
+	 */
+	public int getBulkMailboxParallelism() {
+		return bulkMailboxParallelism;
+	}
+	/**
+	 * The limit applies to all concurrent calls together, defaults to and may not exceed {@link ExchangeOnlineThrottlingPolicy#MAX_CONCURRENT_CONNECTIONS_IMPERSONATION}.
+	 * @param bulkMailboxParallelism the maximum number of mailboxes fetched concurrently by {@link #getCalendarItems(Collection, Date, Date, Collection, BulkCalendarItemsListener)}
+	 */
+	public void setBulkMailboxParallelism(int bulkMailboxParallelism) {
+		Validate.isTrue(bulkMailboxParallelism > 0 && bulkMailboxParallelism <= ExchangeOnlineThrottlingPolicy.MAX_CONCURRENT_CONNECTIONS_IMPERSONATION, 
+				"bulkMailboxParallelism must be between 1 and "+ExchangeOnlineThrottlingPolicy.MAX_CONCURRENT_CONNECTIONS_IMPERSONATION);
+		synchronized (this) {
+			this.bulkMailboxParallelism = bulkMailboxParallelism;
+			ThreadPoolExecutor e = bulkExecutor;
+			if(null != e) {
+				if(bulkMailboxParallelism > e.getMaximumPoolSize()) {
+					e.setMaximumPoolSize(bulkMailboxParallelism);
+					e.setCorePoolSize(bulkMailboxParallelism);
+				} else {
+					e.setCorePoolSize(bulkMailboxParallelism);
+					e.setMaximumPoolSize(bulkMailboxParallelism);
+				}
+			}
+		}
+		resizeRetryExecutor();
+	}
+	
+	/*
+	 * shared by all bulk calls so bulkMailboxParallelism is a process wide limit
+	 */
+	private ExecutorService getBulkExecutor() {
+		ThreadPoolExecutor e = bulkExecutor;
+		if(null == e) {
+			synchronized (this) {
+				e = bulkExecutor;
+				if(null == e) {
+					CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ews-bulk-");
+					threadFactory.setDaemon(true);
+					e = new ThreadPoolExecutor(bulkMailboxParallelism, bulkMailboxParallelism, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+					e.allowCoreThreadTimeOut(true);
+					bulkExecutor = e;
+				}
+			}
+		}
+		return e;
+	}
+	
+	/**
+	 * Stops the bulk fetching threads, and the {@link #getRetryExecutor()} if it was created by this dao.
+	 */
+	@Override
+	public void destroy() {
+		ExecutorService e = bulkExecutor;
+		if(null != e) {
+			e.shutdownNow();
+		}
+		RetryExecutor r = retryExecutor;
+		if(null != r && ownsRetryExecutor) {
+			r.destroy();
+		}
+	}
+	/**
+	 * @return the {@link FolderHierarchyCache} answering folder lookups, null (the default) if disabled
+	 */
+	public FolderHierarchyCache getFolderHierarchyCache() {
+		return folderHierarchyCache;
+	}
+	/**
+	 * @param folderHierarchyCache the {@link FolderHierarchyCache} answering folder lookups, null to issue GetFolder and a DEEP FindFolder for every lookup
+	 */
+	@Autowired(required=false)
+	public void setFolderHierarchyCache(FolderHierarchyCache folderHierarchyCache) {
+		this.folderHierarchyCache = folderHierarchyCache;
+	}
+	/**
+	 * @return the {@link SyncStateStore} used by {@link #syncCalendarItems(String, FolderIdType)}
+	 */
+	public SyncStateStore getSyncStateStore() {
+		return syncStateStore;
+	}
+	/**
+	 * @param syncStateStore the {@link SyncStateStore} used by {@link #syncCalendarItems(String, FolderIdType)}, defaults to an {@link InMemorySyncStateStore}
+	 */
+	@Autowired(required=false)
+	public void setSyncStateStore(SyncStateStore syncStateStore) {
+		this.syncStateStore = syncStateStore;
+	}
+	/**
+	 * @return the maximum number of changes requested per {@link SyncFolderItems} request
+	 */
+	public int getSyncMaxChangesReturned() {
+		return syncMaxChangesReturned;
+	}
+	/**
+	 * @param syncMaxChangesReturned the maximum number of changes requested per {@link SyncFolderItems} request, between 1 and 512
+	 */
+	public void setSyncMaxChangesReturned(int syncMaxChangesReturned) {
+		Validate.isTrue(syncMaxChangesReturned > 0 && syncMaxChangesReturned <= 512, "syncMaxChangesReturned must be between 1 and 512");
+		this.syncMaxChangesReturned = syncMaxChangesReturned;
+	}
+	/**
+	 * @return the {@link CalendarRangePlanner} used to split CalendarView requests
+	 */
+	public CalendarRangePlanner getRangePlanner() {
+		return rangePlanner;
+	}
+	/**
+	 * @param rangePlanner the {@link CalendarRangePlanner} used to split CalendarView requests
+	 */
+	@Autowired(required=false)
+	public void setRangePlanner(CalendarRangePlanner rangePlanner) {
+		this.rangePlanner = rangePlanner;
+	}
+	/**
+	 * @return the {@link ResolutionCache} used by {@link #resolveUpn(String)}, null if disabled
+	 */
+	public ResolutionCache<String> getResolveUpnCache() {
+		return resolveUpnCache;
+	}
+	/**
+	 * @param resolveUpnCache the {@link ResolutionCache} used by {@link #resolveUpn(String)}, null to disable caching
+	 */
+	@Autowired(required=false)
+	public void setResolveUpnCache(ResolutionCache<String> resolveUpnCache) {
+		this.resolveUpnCache = resolveUpnCache;
+	}
+	/**
+	 * @return the {@link ResolutionCache} used by {@link #resolveEmailAddresses(String)}, null if disabled
+	 */
+	public ResolutionCache<Set<String>> getResolveEmailAddressesCache() {
+		return resolveEmailAddressesCache;
+	}
+	/**
+	 * @param resolveEmailAddressesCache the {@link ResolutionCache} used by {@link #resolveEmailAddresses(String)}, null to disable caching
+	 */
+	@Autowired(required=false)
+	public void setResolveEmailAddressesCache(ResolutionCache<Set<String>> resolveEmailAddressesCache) {
+		this.resolveEmailAddressesCache = resolveEmailAddressesCache;
+	}
 	public ExchangeWebServices getWebServices() {
 		return webServices;
 	}
@@ -235,6 +529,7 @@ public class BaseExchangeCalendarDataDao {
 	 * @param retryCount
 	 *            the number of previously failed attempts.
 	 * @return the number of ms to sleep for.
+	 * @see RetryPolicy#getDelayMillis(int, Throwable) which replaced this for all DAO operations
 	 */
 	public static long getWaitTimeExp(int retryCount) {
 		Long baseMultiplier = 1000L;
@@ -253,6 +548,49 @@ public class BaseExchangeCalendarDataDao {
 		ThreadLocalImpersonationConnectingSIDSourceImpl.setConnectingSID(connectingSID);
 	}
 	
+	/**
+	 * Run {@code operation} on behalf of {@code upn} under the {@link #getRetryExecutor()}, holding the calling thread until the outcome is known.
+	 * Use {@link #submit(String, Object, boolean, Callable, BlockingQueue)} wherever the caller can proceed without the result.
+	 * {@code operation} must not call back into {@link #execute(String, Object, boolean, Callable)} or {@link #submit(String, Object, boolean, Callable, BlockingQueue)}, 
+	 * see {@link RetryExecutor}.
+	 * 
+	 * @param upn the user to impersonate for every attempt
+	 * @param description used in log and exception messages, see {@link RetryExecutor#describe(String, Object...)}
+	 * @param idempotent false if the operation may only be retried when Exchange throttled it (e.g. creating items)
+	 * @param operation
+	 * @return the result of the first successful attempt
+	 */
+	protected <T> T execute(final String upn, Object description, boolean idempotent, final Callable<T> operation) {
+		Validate.isTrue(StringUtils.isNotBlank(upn), "upn argument cannot be blank");
+		return getRetryExecutor().execute(description, idempotent, withContextCredentials(upn, operation));
+	}
+	
+	/**
+	 * Asynchronous variant of {@link #execute(String, Object, boolean, Callable)}, no thread waits for a backoff.
+	 * {@code operation} runs on the {@link RetryExecutor}'s worker pool and must not call back into either method.
+	 * 
+	 * @param upn the user to impersonate for every attempt
+	 * @param description used in log and exception messages
+	 * @param idempotent
+	 * @param operation
+	 * @param completionQueue receives the returned {@link Future} once it is done, may be null
+	 * @return a {@link Future} completed with the result of the first successful attempt or the final failure
+	 */
+	protected <T> Future<T> submit(final String upn, Object description, boolean idempotent, final Callable<T> operation, BlockingQueue<Future<T>> completionQueue) {
+		Validate.isTrue(StringUtils.isNotBlank(upn), "upn argument cannot be blank");
+		return getRetryExecutor().submit(description, idempotent, withContextCredentials(upn, operation), completionQueue);
+	}
+	
+	private <T> Callable<T> withContextCredentials(final String upn, final Callable<T> operation) {
+		return new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				setContextCredentials(upn);
+				return operation.call();
+			}
+		};
+	}
+	
 	//================================================================================
     // GetFolder
     //================================================================================		
@@ -299,10 +637,14 @@ public class BaseExchangeCalendarDataDao {
 	 * @return the {@link BaseFolderType} if found, otherwise <code>null</code>
 	 */
 	public BaseFolderType getFolder(String upn, FolderIdType folderIdType){
-		setContextCredentials(upn);
-		GetFolder getFolderRequest = getRequestFactory().constructGetFolderById(folderIdType);
-		GetFolderResponse getFolderResponse = getWebServices().getFolder(getFolderRequest);
-		Set<BaseFolderType> response = getResponseUtils().parseGetFolderResponse(getFolderResponse);
+		final GetFolder getFolderRequest = getRequestFactory().constructGetFolderById(folderIdType);
+		Set<BaseFolderType> response = execute(upn, RetryExecutor.describe("getFolder", "upn", upn, "folderId", folderIdType), true, new Callable<Set<BaseFolderType>>() {
+			@Override
+			public Set<BaseFolderType> call() {
+				GetFolderResponse getFolderResponse = getWebServices().getFolder(getFolderRequest);
+				return getResponseUtils().parseGetFolderResponse(getFolderResponse);
+			}
+		});
 		return DataAccessUtils.singleResult(response);
 	}
 	
@@ -316,10 +658,14 @@ public class BaseExchangeCalendarDataDao {
 	 * @return
 	 */
 	protected BaseFolderType getPrimaryFolder(String upn, DistinguishedFolderIdNameType parent) {
-		setContextCredentials(upn);
-		GetFolder getFolderRequest = getRequestFactory().constructGetFolderByDistinguishedName(parent);
-		GetFolderResponse getFolderResponse = getWebServices().getFolder(getFolderRequest);
-		Set<BaseFolderType> response = getResponseUtils().parseGetFolderResponse(getFolderResponse);
+		final GetFolder getFolderRequest = getRequestFactory().constructGetFolderByDistinguishedName(parent);
+		Set<BaseFolderType> response = execute(upn, RetryExecutor.describe("getPrimaryFolder", "upn", upn, "parent", parent), true, new Callable<Set<BaseFolderType>>() {
+			@Override
+			public Set<BaseFolderType> call() {
+				GetFolderResponse getFolderResponse = getWebServices().getFolder(getFolderRequest);
+				return getResponseUtils().parseGetFolderResponse(getFolderResponse);
+			}
+		});
 		return DataAccessUtils.singleResult(response);
 	}
 	
@@ -352,6 +698,9 @@ public class BaseExchangeCalendarDataDao {
 	 * @return a never null but possibly empty {@link Set} of {@link BaseFolderIdType}
 	 */
 	private Set<BaseFolderType> getFoldersByType(String upn, DistinguishedFolderIdNameType parent){
+		if(null != getFolderHierarchyCache()) {
+			return getCachedFoldersByType(upn, parent);
+		}
 		Set<BaseFolderType> folders = new HashSet<BaseFolderType>();
 		BaseFolderType baseFolderType = getPrimaryFolder(upn, parent);
 		if(null != baseFolderType) {
@@ -369,6 +718,122 @@ public class BaseExchangeCalendarDataDao {
 		return folders;
 	}
 	
+	/**
+	 * {@link #getFoldersByType(String, DistinguishedFolderIdNameType)} answered from the {@link FolderHierarchyCache}, 
+	 * only the id of the primary folder is obtained from Exchange (once per mailbox).
+	 * 
+	 * @param upn
+	 * @param parent
+	 * @return a never null but possibly empty {@link Set} of {@link BaseFolderIdType}
+	 */
+	private Set<BaseFolderType> getCachedFoldersByType(String upn, DistinguishedFolderIdNameType parent){
+		Set<BaseFolderType> folders = new HashSet<BaseFolderType>();
+		FolderHierarchyCache.MailboxFolders mailboxFolders = getMailboxFolders(upn);
+		String primaryId = mailboxFolders.getDistinguishedFolderId(parent);
+		BaseFolderType primary = null == primaryId ? null : mailboxFolders.getFolder(primaryId);
+		if(null == primary) {
+			primary = getPrimaryFolder(upn, parent);
+			if(null == primary) {
+				return folders;
+			}
+			primaryId = primary.getFolderId().getId();
+			mailboxFolders.putDistinguishedFolderId(parent, primaryId);
+		}
+		folders.add(primary);
+		for(BaseFolderType b : mailboxFolders.getDescendants(primaryId)) {
+			if(primary.getClass().equals(b.getClass())) {
+				folders.add(b);
+			}
+		}
+		return folders;
+	}
+	
+	/**
+	 * Obtain the cached folder hierarchy of {@code upn}, synchronizing it first if it is stale.
+	 * Only one SyncFolderHierarchy per mailbox is in flight: while it runs, other callers are served the previous
+	 * snapshot if the mailbox merely expired, and wait for it if the mailbox was never synchronized or was invalidated.
+	 * 
+	 * @param upn
+	 * @return the {@link FolderHierarchyCache.MailboxFolders} of {@code upn}
+	 */
+	protected FolderHierarchyCache.MailboxFolders getMailboxFolders(String upn) {
+		Validate.isTrue(StringUtils.isNotBlank(upn), "upn argument cannot be blank");
+		FolderHierarchyCache cache = getFolderHierarchyCache();
+		FolderHierarchyCache.MailboxFolders mailboxFolders = cache.getMailboxFolders(upn);
+		if(!cache.isStale(mailboxFolders)) {
+			return mailboxFolders;
+		}
+		ReentrantLock syncLock = mailboxFolders.getSyncLock();
+		if(cache.isServable(mailboxFolders)) {
+			if(!syncLock.tryLock()) {
+				//another caller is synchronizing this mailbox
+				return mailboxFolders;
+			}
+		}else {
+			try {
+				syncLock.lockInterruptibly();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ExchangeRuntimeException("getMailboxFolders(upn="+upn+") interrupted", e);
+			}
+		}
+		try {
+			if(cache.isStale(mailboxFolders)) {
+				String syncState = mailboxFolders.getSyncState();
+				try {
+					syncFolderHierarchy(upn, mailboxFolders, syncState);
+				}catch(ExchangeRuntimeException e) {
+					if(null == syncState || !ResponseCodeType.ERROR_INVALID_SYNC_STATE_DATA.value().equals(e.getResponseCode())) {
+						throw e;
+					}
+					log.warn("getMailboxFolders(upn="+upn+") SyncState was rejected, synchronizing the folder hierarchy from the beginning.");
+					mailboxFolders.reset();
+					syncFolderHierarchy(upn, mailboxFolders, null);
+				}
+				mailboxFolders.synced();
+			}
+		} finally {
+			syncLock.unlock();
+		}
+		return mailboxFolders;
+	}
+	
+	/**
+	 * Synchronize the cached folder hierarchy of {@code upn} on next use.
+	 * @param upn
+	 */
+	protected void invalidateFolderHierarchy(String upn) {
+		if(null != getFolderHierarchyCache()) {
+			getFolderHierarchyCache().invalidate(upn);
+		}
+	}
+	
+	/**
+	 * @param upn
+	 * @param mailboxFolders
+	 * @param syncState
+	 */
+	private void syncFolderHierarchy(String upn, FolderHierarchyCache.MailboxFolders mailboxFolders, String syncState) {
+		boolean initial = null == syncState;
+		SyncFolderHierarchyResult result;
+		do {
+			final SyncFolderHierarchy request = getRequestFactory().constructSyncFolderHierarchy(syncState);
+			result = execute(upn, RetryExecutor.describe("syncFolderHierarchy", "upn", upn), true, new Callable<SyncFolderHierarchyResult>() {
+				@Override
+				public SyncFolderHierarchyResult call() {
+					SyncFolderHierarchyResponse response = getWebServices().syncFolderHierarchy(request);
+					return getResponseUtils().parseSyncFolderHierarchyResponse(response);
+				}
+			});
+			mailboxFolders.apply(result, initial);
+			initial = false;
+			syncState = result.getSyncState();
+		}while(!result.isIncludesLastFolderInRange() && StringUtils.isNotBlank(syncState));
+		if(log.isDebugEnabled()) {
+			log.debug("syncFolderHierarchy(upn="+upn+") "+result+", "+mailboxFolders.size()+" folders cached");
+		}
+	}
+	
 	/**
 	 * Obtain all sub-folders for given {@link DistinguishedFolderIdNameType}
 	 * @param upn
@@ -376,10 +841,14 @@ public class BaseExchangeCalendarDataDao {
 	 * @return
 	 */
 	private Set<BaseFolderType> getSecondaryFolders(String upn, DistinguishedFolderIdNameType parent) {
-		setContextCredentials(upn);
-		FindFolder findFolderRequest = getRequestFactory().constructFindFolder(parent, DefaultShapeNamesType.ALL_PROPERTIES, FolderQueryTraversalType.DEEP,null);
-		FindFolderResponse findFolderResponse = getWebServices().findFolder(findFolderRequest);
-		return getResponseUtils().parseFindFolderResponse(findFolderResponse);
+		final FindFolder findFolderRequest = getRequestFactory().constructFindFolder(parent, DefaultShapeNamesType.ALL_PROPERTIES, FolderQueryTraversalType.DEEP,null);
+		return execute(upn, RetryExecutor.describe("getSecondaryFolders", "upn", upn, "parent", parent), true, new Callable<Set<BaseFolderType>>() {
+			@Override
+			public Set<BaseFolderType> call() {
+				FindFolderResponse findFolderResponse = getWebServices().findFolder(findFolderRequest);
+				return getResponseUtils().parseFindFolderResponse(findFolderResponse);
+			}
+		});
 	}
 
 	/**
@@ -412,6 +881,21 @@ public class BaseExchangeCalendarDataDao {
 	 */
 	//TODO this should definately not throw a RuntimeException
 	public FolderIdType getCalendarFolderId(String upn, String calendarName) {
+		if(null != getFolderHierarchyCache()) {
+			Set<String> calendarFolderIds = new HashSet<String>();
+			for(BaseFolderType calendarFolder : getAllCalendarFolders(upn)) {
+				calendarFolderIds.add(calendarFolder.getFolderId().getId());
+			}
+			for(BaseFolderType folder : getMailboxFolders(upn).getFoldersByDisplayName(calendarName)) {
+				String folderId = folder.getFolderId().getId();
+				if(calendarFolderIds.contains(folderId)) {
+					FolderIdType folderIdType = new FolderIdType();
+					folderIdType.setId(folderId);
+					return folderIdType;
+				}
+			}
+			throw new ExchangeRuntimeException("No calendar folder with name of '"+calendarName+"' for "+upn);
+		}
 		Map<String, String> calendarFolderMap = getCalendarFolderMap(upn);
 		if(!CollectionUtils.isEmpty(calendarFolderMap) && calendarFolderMap.containsValue(calendarName)) {
 			for(String c_id: calendarFolderMap.keySet()) {
@@ -517,12 +1001,8 @@ public class BaseExchangeCalendarDataDao {
 		if(depth > getMaxRetries()) {
 			throw new ExchangeRuntimeException("findCalendarItemIdsInternal(upn="+upn+",startDate="+startDate+",+endDate="+endDate+",...) failed "+getMaxRetries()+ " consecutive attempts.");
 		}else {
-			setContextCredentials(upn);
-			FindItem request = getRequestFactory().constructCalendarViewFindCalendarItemIdsByDateRange(startDate, endDate, calendarIds);
 			try {
-				FindItemResponse response = getWebServices().findItem(request);
-				return getResponseUtils().parseFindItemIdResponseNoOffset(response);
-				
+				return findCalendarItemIdWindows(upn, startDate, endDate, calendarIds);
 			}catch(ExchangeInvalidUPNRuntimeException e0) {
 				log.warn("findCalendarItemIdsInternal(upn="+upn+",startDate="+startDate+",+endDate="+endDate+",...) ExchangeInvalidUPNRuntimeException.  Attempting to resolve valid upn... - failure #"+newDepth);
 				
@@ -533,25 +1013,92 @@ public class BaseExchangeCalendarDataDao {
 					//rethrow
 					throw e0;
 				}
-			}catch(ExchangeExceededFindCountLimitRuntimeException e1) {
-				log.warn("findCalendarItemIdsInternal(upn="+upn+",startDate="+startDate+",+endDate="+endDate+",...) ExceededFindCountLimit splitting request and trying again. - failure #"+newDepth);
-				Set<ItemIdType> foundItems = new HashSet<ItemIdType>();
-				List<Interval> intervals = ExchangeDateUtils.generateIntervals(startDate, endDate);
-				for(Interval i: intervals) {
-					foundItems.addAll(findCalendarItemIdsInternal(upn,i.getStart().toDate(), i.getEnd().toDate(),calendarIds,newDepth));
+			}
+		}
+	}
+	
+	/**
+	 * Query the windows planned by the {@link CalendarRangePlanner} with up to {@link #getFindItemParallelism()} requests in flight.
+	 * A window which exceeds the find count limit is replanned and its replacements are queued, the observed item counts
+	 * are fed back to the planner so that subsequent queries against the same calendar are split up front.
+	 * 
+	 * @param upn
+	 * @param startDate
+	 * @param endDate
+	 * @param calendarIds
+	 * @return a never null but possibly empty {@link Set} of {@link ItemIdType}
+	 */
+	private Set<ItemIdType> findCalendarItemIdWindows(final String upn, Date startDate, Date endDate, final Collection<FolderIdType> calendarIds) {
+		CalendarRangePlanner planner = getRangePlanner();
+		String key = CalendarRangePlanner.getKey(upn, calendarIds);
+		LinkedList<Interval> pending = new LinkedList<Interval>(planner.plan(key, startDate, endDate));
+		
+		int parallelism = getEffectiveParallelism(getFindItemParallelism());
+		BlockingQueue<Future<Set<ItemIdType>>> completed = new LinkedBlockingQueue<Future<Set<ItemIdType>>>();
+		Map<Future<Set<ItemIdType>>, Interval> inFlight = new HashMap<Future<Set<ItemIdType>>, Interval>();
+		Set<ItemIdType> foundItems = new LinkedHashSet<ItemIdType>();
+		int windows = 0;
+		try {
+			while(!pending.isEmpty() || !inFlight.isEmpty()) {
+				while(inFlight.size() < parallelism && !pending.isEmpty()) {
+					Interval window = pending.removeFirst();
+					final FindItem request = getRequestFactory().constructCalendarViewFindCalendarItemIdsByDateRange(window.getStart().toDate(), window.getEnd().toDate(), calendarIds);
+					final Object description = RetryExecutor.describe("findCalendarItemIdsInternal", "upn", upn, "startDate", window.getStart(), "endDate", window.getEnd());
+					final Callable<Set<ItemIdType>> operation = new Callable<Set<ItemIdType>>() {
+						@Override
+						public Set<ItemIdType> call() {
+							return findItemIdPage(request).getLeft();
+						}
+					};
+					if(inFlight.isEmpty() && pending.isEmpty()) {
+						//a lone window runs on the calling thread
+						FutureTask<Set<ItemIdType>> task = new FutureTask<Set<ItemIdType>>(new Callable<Set<ItemIdType>>() {
+							@Override
+							public Set<ItemIdType> call() {
+								return execute(upn, description, true, operation);
+							}
+						});
+						task.run();
+						completed.add(task);
+						inFlight.put(task, window);
+					}else {
+						inFlight.put(submit(upn, description, true, operation, completed), window);
+					}
+					windows++;
 				}
-				return foundItems;
-			}catch(ExchangeRuntimeException e2) {
-				long backoff = getWaitTimeExp(newDepth);
-				log.warn("findCalendarItemIdsInternal(upn="+upn+",startDate="+startDate+",+endDate="+endDate+",...) - failure #"+newDepth+". Sleeping for "+backoff+" before retry. " +e2.getMessage());
+				Future<Set<ItemIdType>> future = completed.take();
+				Interval window = inFlight.remove(future);
 				try {
-					Thread.sleep(backoff);
-				} catch (InterruptedException e1) {
-					log.warn("InterruptedException="+e1);
+					Set<ItemIdType> ids = future.get();
+					planner.recordObservation(key, window, ids.size());
+					foundItems.addAll(ids);
+				} catch (ExecutionException e) {
+					if(!(e.getCause() instanceof ExchangeExceededFindCountLimitRuntimeException)) {
+						throw e;
+					}
+					List<Interval> replacements = planner.replan(key, window);
+					if(replacements.isEmpty()) {
+						throw e;
+					}
+					log.warn("findCalendarItemIdsInternal(upn="+upn+",startDate="+window.getStart()+",+endDate="+window.getEnd()+",...) ExceededFindCountLimit splitting into "+replacements.size()+" windows and trying again.");
+					pending.addAll(0, replacements);
 				}
-				return findCalendarItemIdsInternal(upn, startDate, endDate, calendarIds, newDepth);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExchangeRuntimeException("findCalendarItemIdsInternal(upn="+upn+",...) interrupted", e);
+		} catch (ExecutionException e) {
+			throw RetryExecutor.unwrap(e);
+		} finally {
+			//abandons the remaining windows after a failure
+			for(Future<Set<ItemIdType>> f : inFlight.keySet()) {
+				f.cancel(true);
 			}
 		}
+		if(log.isDebugEnabled()) {
+			log.debug("findCalendarItemIdsInternal(upn="+upn+",startDate="+startDate+",+endDate="+endDate+",...) found "+foundItems.size()+" items in "+windows+" windows, parallelism="+parallelism);
+		}
+		return foundItems;
 	}
 	
 	/**
@@ -570,25 +1117,160 @@ public class BaseExchangeCalendarDataDao {
 	
 	/**
 	 * Obtain all {@link ItemIdType}s within a specified {@link FolderIdType} by
-	 * repeatedly callling {@link FindItem} and paging the results
+	 * repeatedly callling {@link FindItem} and paging the results, see {@link #findAllItemIdPages(FindItem, FindItemPageSource)}
 	 * 
 	 * @param upn
 	 * @param folderIds
 	 * @return a never null but possibly empty {@link Set} of {@link ItemIdType}
 	 */
-	public Set<ItemIdType> findAllItemIds(String upn, Collection<FolderIdType> folderIds){
+	public Set<ItemIdType> findAllItemIds(final String upn, final Collection<FolderIdType> folderIds){
 		FindItem request = getRequestFactory().constructFindFirstItemIdSet(folderIds);
-		Pair<Set<ItemIdType>, Integer> pair = findItemIdsInternal(upn, request, 0);
-		Set<ItemIdType> itemIds = pair.getLeft();
-		Integer nextOffset = pair.getRight();
-		while(nextOffset > 0){
-			request = getRequestFactory().constructFindNextItemIdSet(nextOffset, folderIds);
-			pair = findItemIdsInternal(upn, request, 0);
-			itemIds.addAll(pair.getLeft());
-			nextOffset = pair.getRight();
+		return findAllItemIdPages(request, new FindItemPageSource(upn, "findAllItemIds") {
+			@Override
+			protected FindItem constructRequest(int offset) {
+				return getRequestFactory().constructFindNextItemIdSet(offset, folderIds);
+			}
+		});
+	}
+	
+	/**
+	 * Fetch the first page, then use its {@link FindItemIdsResult#getTotalItemsInView()} to request all remaining 
+	 * pages with up to {@link #getFindItemParallelism()} requests in flight.  Pages are merged in offset order.
+	 * Falls back to sequential paging if the total is not reported, and continues sequentially if the folder grew meanwhile.
+	 * Remaining pages are requested for the upn the first page was served for, see {@link FindItemPageSource#fetchFirst(FindItem)}.
+	 * 
+	 * @param firstRequest the request for the first page
+	 * @param source fetches the page at a given offset
+	 * @return a never null but possibly empty {@link Set} of {@link ItemIdType}
+	 */
+	protected Set<ItemIdType> findAllItemIdPages(FindItem firstRequest, FindItemPageSource source) {
+		FindItemIdsResult first = source.fetchFirst(firstRequest);
+		String upn = source.getUpn();
+		Set<ItemIdType> itemIds = new LinkedHashSet<ItemIdType>(first.getItemIds());
+		int nextOffset = first.getNextOffset();
+		Integer total = first.getTotalItemsInView();
+		int pageSize = first.getItemIds().size();
+		if(nextOffset > 0 && null != total && pageSize > 0) {
+			int parallelism = getEffectiveParallelism(getFindItemParallelism());
+			LinkedList<Future<Pair<Set<ItemIdType>, Integer>>> window = new LinkedList<Future<Pair<Set<ItemIdType>, Integer>>>();
+			int offset = nextOffset;
+			int pages = 1;
+			try {
+				while(offset < total || !window.isEmpty()) {
+					while(window.size() < parallelism && offset < total) {
+						window.add(source.fetch(offset));
+						offset += pageSize;
+					}
+					Pair<Set<ItemIdType>, Integer> page = window.removeFirst().get();
+					pages++;
+					itemIds.addAll(page.getLeft());
+					nextOffset = page.getRight();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ExchangeRuntimeException("findAllItemIdPages(upn="+upn+",...) interrupted", e);
+			} catch (ExecutionException e) {
+				throw RetryExecutor.unwrap(e);
+			} finally {
+				for(Future<Pair<Set<ItemIdType>, Integer>> f : window) {
+					f.cancel(true);
+				}
+			}
+			if(log.isDebugEnabled()) {
+				log.debug("findAllItemIdPages(upn="+upn+",...) fetched "+itemIds.size()+" of "+total+" items in "+pages+" pages, parallelism="+parallelism);
+			}
+			if(nextOffset > 0 && nextOffset < offset) {
+				//the last page already reported the offset of an item we fetched, nothing new
+				nextOffset = -1;
+			}
+		}
+		if(nextOffset > 0) {
+			ItemIdCursor cursor = new ItemIdCursor(Pair.of(Collections.<ItemIdType>emptySet(), nextOffset), source);
+			try {
+				while(cursor.hasNext()) {
+					itemIds.add(cursor.next());
+				}
+			} finally {
+				cursor.close();
+			}
 		}
 		return itemIds;
 	}
+	
+	/**
+	 * Stream all {@link ItemIdType}s within the specified folder(s) one page at a time, the next page is fetched
+	 * in the background while the current one is consumed.  Prefer this over {@link #findAllItemIds(String, Collection)}
+	 * for large mailboxes.
+	 * 
+	 * The first page is fetched before this method returns.
+	 * 
+	 * @param upn
+	 * @param folderIds
+	 * @return an {@link ItemIdCursor}, callers should {@link ItemIdCursor#close()} it if not exhausted
+	 */
+	public ItemIdCursor openItemIdCursor(final String upn, final Collection<FolderIdType> folderIds){
+		FindItem request = getRequestFactory().constructFindFirstItemIdSet(folderIds);
+		FindItemPageSource source = new FindItemPageSource(upn, "openItemIdCursor") {
+			@Override
+			protected FindItem constructRequest(int offset) {
+				return getRequestFactory().constructFindNextItemIdSet(offset, folderIds);
+			}
+		};
+		return new ItemIdCursor(source.fetchFirst(request).toPair(), source);
+	}
+	
+	/**
+	 * {@link ItemIdCursor.PageSource} submitting each page to the {@link #getRetryExecutor()}.
+	 */
+	protected abstract class FindItemPageSource implements ItemIdCursor.PageSource {
+		private volatile String upn;
+		private final String method;
+		
+		/**
+		 * @param upn the user to impersonate
+		 * @param method used in log and exception messages
+		 */
+		protected FindItemPageSource(String upn, String method) {
+			this.upn = upn;
+			this.method = method;
+		}
+		/**
+		 * @return the user to impersonate, the resolved upn once {@link #fetchFirst(FindItem)} had to resolve it
+		 */
+		public String getUpn() {
+			return upn;
+		}
+		/**
+		 * Fetch the first page, resolving the upn if it is rejected as invalid.  The upn the page was 
+		 * served for is retained so that subsequent pages do not repeat the failure.
+		 * 
+		 * @param request the request for the first page
+		 * @return the successful {@link FindItemIdsResult}
+		 */
+		public FindItemIdsResult fetchFirst(FindItem request) {
+			return findItemIdsResultInternal(upn, request, 0, this);
+		}
+		/**
+		 * @param offset
+		 * @return the {@link FindItem} requesting the page at {@code offset}
+		 */
+		protected abstract FindItem constructRequest(int offset);
+		
+		/* (non-Javadoc)
+		 * @see com.microsoft.exchange.impl.ItemIdCursor.PageSource#fetch(int)
+		 */
+		@Override
+		public Future<Pair<Set<ItemIdType>, Integer>> fetch(int offset) {
+			final FindItem request = constructRequest(offset);
+			String upn = this.upn;
+			return submit(upn, RetryExecutor.describe(method, "upn", upn, "offset", offset), true, new Callable<Pair<Set<ItemIdType>, Integer>>() {
+				@Override
+				public Pair<Set<ItemIdType>, Integer> call() {
+					return findItemIdPage(request);
+				}
+			}, null);
+		}
+	}
 
 	/**
 	 * 
@@ -597,51 +1279,90 @@ public class BaseExchangeCalendarDataDao {
 	 * @param depth
 	 * @return
 	 */
-	private Pair<Set<ItemIdType>, Integer> findItemIdsInternal(String upn, FindItem request, int depth){
+	private Pair<Set<ItemIdType>, Integer> findItemIdsInternal(String upn, final FindItem request, int depth){
+		return findItemIdsResultInternal(upn, request, depth).toPair();
+	}
+	
+	/**
+	 * 
+	 * @param upn
+	 * @param request
+	 * @param depth
+	 * @return the successful {@link FindItemIdsResult}
+	 */
+	private FindItemIdsResult findItemIdsResultInternal(String upn, final FindItem request, int depth){
+		return findItemIdsResultInternal(upn, request, depth, null);
+	}
+	
+	/**
+	 * 
+	 * @param upn
+	 * @param request
+	 * @param depth
+	 * @param source if not null, retains the resolved upn
+	 * @return the successful {@link FindItemIdsResult}
+	 */
+	private FindItemIdsResult findItemIdsResultInternal(String upn, final FindItem request, int depth, FindItemPageSource source){
 		Validate.isTrue(StringUtils.isNotBlank(upn), "upn argument cannot be blank");
 		Validate.notNull(request, "request argument cannot be null");
 		int newDepth = depth +1;
 		if(depth > getMaxRetries()) {
 			throw new ExchangeRuntimeException("findCalendarItemIdsInternal(upn="+upn+",request="+request+",...) failed "+getMaxRetries()+ " consecutive attempts.");
 		}else {
-			setContextCredentials(upn);
 			try {
-				FindItemResponse response = getWebServices().findItem(request);
-				Pair<Set<ItemIdType>, Integer> parsed = getResponseUtils().parseFindItemIdResponse(response);
-
-				return parsed;
+				return execute(upn, RetryExecutor.describe("findItemIdsInternal", "upn", upn), true, new Callable<FindItemIdsResult>() {
+					@Override
+					public FindItemIdsResult call() {
+						return findItemIdsResult(request);
+					}
+				});
 			}catch(ExchangeInvalidUPNRuntimeException e0) {
 				log.warn("findCalendarItemIdsInternal(upn="+upn+",request="+request+",...) ExchangeInvalidUPNRuntimeException.  Attempting to resolve valid upn... - failure #"+newDepth);
 				
 				String resolvedUpn = resolveUpn(upn);
 				if(StringUtils.isNotBlank(resolvedUpn) && (!resolvedUpn.equalsIgnoreCase(upn))){
-					return findItemIdsInternal(resolvedUpn, request, newDepth);
+					if(null != source) {
+						source.upn = resolvedUpn;
+					}
+					return findItemIdsResultInternal(resolvedUpn, request, newDepth, source);
 				}else {
 					//rethrow
 					throw e0;
 				}
-//			}catch(ExchangeExceededFindCountLimitRuntimeException e1) {
-//				log.warn("findCalendarItemIdsInternal(upn="+upn+",request="+request+",...) ExceededFindCountLimit splitting request and trying again. - failure #"+newDepth);
-//				Set<ItemIdType> foundItems = new HashSet<ItemIdType>();
-//				List<Interval> intervals = DateHelp.generateIntervals(startDate, endDate);
-//				for(Interval i: intervals) {
-//					foundItems.addAll(findCalendarItemIdsInternal(upn,i.getStart().toDate(), i.getEnd().toDate(),calendarIds,newDepth));
-//				}
-//				return foundItems;
-			}catch(ExchangeRuntimeException e2) {
-				long backoff = getWaitTimeExp(newDepth);
-				log.warn("findCalendarItemIdsInternal(upn="+upn+",request="+request+",...) - failure #"+newDepth+". Sleeping for "+backoff+" before retry. " +e2.getMessage());
-				try {
-					Thread.sleep(backoff);
-				} catch (InterruptedException e1) {
-					log.warn("InterruptedException="+e1);
-				}
-				return findItemIdsInternal(upn, request, newDepth);
 			}
 		}
 		
 	}
 	
+	/**
+	 * Issue a single {@link FindItem} request and parse the {@link ItemIdType}s and next offset from the response.
+	 * Uses the JAXB free {@link FindItemIdsOperations#findItemIds(FindItem)} when {@link #getWebServices()} supports it.
+	 * 
+	 * @param request
+	 * @return a {@link Pair} of the found {@link ItemIdType}s and the next offset (-1 if none)
+	 */
+	protected Pair<Set<ItemIdType>, Integer> findItemIdPage(FindItem request) {
+		return findItemIdsResult(request).toPair();
+	}
+	
+	/**
+	 * Same as {@link #findItemIdPage(FindItem)} but retains all paging attributes, e.g. {@link FindItemIdsResult#getTotalItemsInView()}.
+	 * 
+	 * @param request
+	 * @return the successful {@link FindItemIdsResult}
+	 */
+	protected FindItemIdsResult findItemIdsResult(FindItem request) {
+		ExchangeWebServices ews = getWebServices();
+		if(ews instanceof FindItemIdsOperations) {
+			FindItemIdsResult result = ((FindItemIdsOperations) ews).findItemIds(request);
+			//throws for error response codes
+			getResponseUtils().parseFindItemIdResponse(result);
+			return result;
+		}
+		FindItemResponse response = ews.findItem(request);
+		return getResponseUtils().parseFindItemIdsResult(response);
+	}
+	
 	//================================================================================
     // GetItem
     //================================================================================	
@@ -662,6 +1383,95 @@ public class BaseExchangeCalendarDataDao {
 		return getCalendarItems(upn, itemIds);
 	}
 	
+	/**
+	 * Obtain the {@link CalendarItemType}s between {@code startDate} and {@code endDate} for many mailboxes, 
+	 * see {@link #getCalendarItems(String, Date, Date, Collection)}.
+	 * 
+	 * Mailboxes are started in the order given on a fetching pool shared by all calls, with at most {@link #getBulkMailboxParallelism()} 
+	 * mailboxes in progress at once across the process; each mailbox occupies a single fetching thread until it completes so a large or 
+	 * throttled mailbox cannot starve the others.
+	 * The outcome of each mailbox is delivered to {@code listener} as soon as it is known, a failed mailbox does not abort the batch.
+	 * 
+	 * Requests fanned out within a single mailbox (date windows, {@link GetItem} batches) run on the {@link #getRetryExecutor()}'s worker pool.
+	 * 
+	 * @param upns the mailboxes, duplicates are fetched once
+	 * @param startDate
+	 * @param endDate
+	 * @param calendarIds - if omitted the primary calendar folder will be targeted
+	 * @param listener
+	 * @return the number of mailboxes which failed
+	 */
+	public int getCalendarItems(Collection<String> upns, final Date startDate, final Date endDate, final Collection<FolderIdType> calendarIds, final BulkCalendarItemsListener listener) {
+		Validate.notNull(upns, "upns argument cannot be null");
+		Validate.notNull(startDate, "startDate argument cannot be null");
+		Validate.notNull(endDate, "endDate argument cannot be null");
+		Validate.notNull(listener, "listener argument cannot be null");
+		Set<String> mailboxes = new LinkedHashSet<String>(upns);
+		if(mailboxes.isEmpty()) {
+			return 0;
+		}
+		ExecutorService executor = getBulkExecutor();
+		List<Future<?>> futures = new ArrayList<Future<?>>(mailboxes.size());
+		final AtomicInteger failures = new AtomicInteger();
+		long started = System.currentTimeMillis();
+		try {
+			for(final String upn : mailboxes) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						Collection<CalendarItemType> calendarItems;
+						try {
+							calendarItems = getCalendarItems(upn, startDate, endDate, calendarIds);
+						} catch (RuntimeException e) {
+							failures.incrementAndGet();
+							log.warn("getCalendarItems(upn="+upn+",...) failed: "+e.getMessage());
+							try {
+								listener.onFailed(upn, e);
+							} catch (RuntimeException e1) {
+								log.error("listener failed for upn="+upn, e1);
+							}
+							return;
+						}
+						try {
+							listener.onCompleted(upn, calendarItems);
+						} catch (RuntimeException e) {
+							log.error("listener failed for upn="+upn, e);
+						}
+					}
+				}));
+			}
+			for(Future<?> future : futures) {
+				while(true) {
+					try {
+						future.get(1, TimeUnit.MINUTES);
+						break;
+					} catch (TimeoutException e) {
+						if(log.isDebugEnabled()) {
+							log.debug("getCalendarItems(upns="+mailboxes.size()+",...) still running after "+(System.currentTimeMillis() - started)+"ms");
+						}
+					} catch (ExecutionException e) {
+						//the task handles its own failures
+						log.error("getCalendarItems(upns="+mailboxes.size()+",...) task failed", e.getCause());
+						break;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			for(Future<?> future : futures) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new ExchangeRuntimeException("getCalendarItems(upns="+mailboxes.size()+",...) interrupted", e);
+		} catch (RejectedExecutionException e) {
+			for(Future<?> future : futures) {
+				future.cancel(true);
+			}
+			throw new ExchangeRuntimeException("getCalendarItems(upns="+mailboxes.size()+",...) rejected, dao destroyed", e);
+		}
+		log.info("getCalendarItems(upns="+mailboxes.size()+",startDate="+startDate+",endDate="+endDate+",...) completed in "+(System.currentTimeMillis() - started)+"ms, parallelism="+getBulkMailboxParallelism()+", failures="+failures.get());
+		return failures.get();
+	}
+	
 	/**
 	 * Obtain a {@link CalendarItemType} for each {@link ItemIdType} specified.
 	 * @param upn
@@ -669,8 +1479,8 @@ public class BaseExchangeCalendarDataDao {
 	 * @return a never null but possibly empty {@link Collection} of {@link CalendarItemType}
 	 */
 	public Collection<CalendarItemType> getCalendarItems(String upn, Collection<ItemIdType> itemIds) {
-		Set<CalendarItemType> calendarItems = new HashSet<CalendarItemType>();
-		Set<ItemType> items = getItemsInternal(upn, itemIds, 0);
+		Set<CalendarItemType> calendarItems = new ItemIdKeyedSet<CalendarItemType>();
+		Set<ItemType> items = getItemsInternal(upn, itemIds);
 		for(ItemType item : items){
 			if(item instanceof CalendarItemType){
 				calendarItems.add( (CalendarItemType) item );
@@ -699,8 +1509,8 @@ public class BaseExchangeCalendarDataDao {
 	 * @return a never null but possibly empty {@link Collection} of {@link TaskType}
 	 */
 	public Set<TaskType> getTaskItems(String upn, Set<ItemIdType> itemIds) {
-		Set<TaskType> taskItems = new HashSet<TaskType>();
-		Set<ItemType> items = getItemsInternal(upn, itemIds, 0);
+		Set<TaskType> taskItems = new ItemIdKeyedSet<TaskType>();
+		Set<ItemType> items = getItemsInternal(upn, itemIds);
 		for(ItemType item : items){
 			if(item instanceof TaskType){
 				taskItems.add( (TaskType) item );
@@ -712,39 +1522,395 @@ public class BaseExchangeCalendarDataDao {
 	}
 	
 	/**
+	 * Fetch the items in batches of {@link #getGetItemsBatchSize()}.  When more than one batch is required up to
+	 * {@link #getGetItemsParallelism()} batches are requested concurrently, each batch is retried independently
+	 * and results are merged in completion order.
 	 * 
 	 * @param upn the UserPrincipalName
 	 * @param itemIds the {@link ItemIdType}s
-	 * @param depth the number of recursive calls.
 	 * @return a never null but possbly empty {@link Set} of {@link ItemType}s
 	 */
-	private Set<ItemType> getItemsInternal(String upn, Collection<ItemIdType> itemIds, int depth){
-		Set<ItemType> results = new HashSet<ItemType>();
+	private Set<ItemType> getItemsInternal(String upn, Collection<ItemIdType> itemIds){
 		Validate.isTrue(StringUtils.isNotBlank(upn), "upn argument cannot be blank");
 		if(CollectionUtils.isEmpty(itemIds)) {
-			return results;
+			return new ItemIdKeyedSet<ItemType>();
 		}
-
-		int newDepth = depth +1;
-		if(depth > getMaxRetries()) {
-			throw new ExchangeRuntimeException("getItemsInternal(upn="+upn+",...) failed "+getMaxRetries()+ " consecutive attempts.");
-		}else {
-			setContextCredentials(upn);
-			GetItem request = getRequestFactory().constructGetItems(itemIds);	
-			try {
+		List<List<ItemIdType>> batches = partition(itemIds, getGetItemsBatchSize());
+		if(batches.size() == 1) {
+			return execute(upn, RetryExecutor.describe("getItemsInternal", "upn", upn, "itemIds", itemIds.size()), true, getItemsOperation(itemIds));
+		}
+		
+		int parallelism = getEffectiveParallelism(getGetItemsParallelism());
+		BlockingQueue<Future<Set<ItemType>>> completed = new LinkedBlockingQueue<Future<Set<ItemType>>>();
+		List<Future<Set<ItemType>>> submitted = new ArrayList<Future<Set<ItemType>>>(batches.size());
+		Set<ItemType> results = new ItemIdKeyedSet<ItemType>();
+		int next = 0;
+		int inFlight = 0;
+		try {
+			while(next < batches.size() || inFlight > 0) {
+				while(inFlight < parallelism && next < batches.size()) {
+					Object description = RetryExecutor.describe("getItemsInternal", "upn", upn, "batch", next+1, "of", batches.size());
+					submitted.add(submit(upn, description, true, getItemsOperation(batches.get(next)), completed));
+					next++;
+					inFlight++;
+				}
+				Future<Set<ItemType>> batch = completed.take();
+				inFlight--;
+				results.addAll(batch.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExchangeRuntimeException("getItemsInternal(upn="+upn+",...) interrupted", e);
+		} catch (ExecutionException e) {
+			throw RetryExecutor.unwrap(e);
+		} finally {
+			//no-op for completed batches, abandons the remainder after a failure
+			for(Future<Set<ItemType>> f : submitted) {
+				f.cancel(true);
+			}
+		}
+		if(log.isDebugEnabled()) {
+			log.debug("getItemsInternal(upn="+upn+",...) fetched "+results.size()+" items in "+batches.size()+" batches, parallelism="+parallelism);
+		}
+		return results;
+	}
+	
+	private Callable<Set<ItemType>> getItemsOperation(Collection<ItemIdType> itemIds) {
+		final GetItem request = getRequestFactory().constructGetItems(itemIds);
+		return new Callable<Set<ItemType>>() {
+			@Override
+			public Set<ItemType> call() {
 				GetItemResponse response = getWebServices().getItem(request);
 				return getResponseUtils().parseGetItemResponse(response);
-			}catch(ExchangeRuntimeException e) {
-				long backoff = getWaitTimeExp(newDepth);
-				log.warn("getItemsInternal - failure #"+newDepth+". Sleeping for "+backoff+" before retry. " +e.getMessage());
+			}
+		};
+	}
+	
+	/**
+	 * @param parallelism the requested number of concurrent requests
+	 * @return {@code parallelism} limited by the per mailbox concurrency budget of the {@link ExchangeWebServicesClient}
+	 */
+	protected int getEffectiveParallelism(int parallelism) {
+		if(getWebServices() instanceof ExchangeWebServicesClient) {
+			MailboxConcurrencyGovernor governor = ((ExchangeWebServicesClient) getWebServices()).getConcurrencyGovernor();
+			if(null != governor) {
+				parallelism = Math.min(parallelism, governor.getMaxConcurrentRequestsPerPrincipal());
+			}
+		}
+		return parallelism;
+	}
+	
+	/**
+	 * @param items
+	 * @param size
+	 * @return {@code items} split into consecutive lists of at most {@code size} elements
+	 */
+	static <T> List<List<T>> partition(Collection<T> items, int size) {
+		List<List<T>> batches = new ArrayList<List<T>>();
+		List<T> batch = new ArrayList<T>(Math.min(size, items.size()));
+		for(T item : items) {
+			if(batch.size() == size) {
+				batches.add(batch);
+				batch = new ArrayList<T>(size);
+			}
+			batch.add(item);
+		}
+		if(!batch.isEmpty()) {
+			batches.add(batch);
+		}
+		return batches;
+	}
+	
+	//================================================================================
+    // SyncFolderItems
+    //================================================================================	
+	
+	/**
+	 * Obtain the changes to the primary calendar folder, or {@code folderId}, since the previous call for the same {@code upn} and folder.
+	 * 
+	 * The SyncState is read from and written back to the {@link #getSyncStateStore()}, so after the initial synchronization the cost of a call 
+	 * scales with the number of changes rather than the size of the calendar.  Changes are requested {@link #getSyncMaxChangesReturned()} at a time 
+	 * until IncludesLastItemInRange, created and updated items are then retrieved with {@link #getCalendarItems(String, Collection)}.
+	 * The SyncState is only stored once all pages and items were retrieved, a failed call is repeated in full by the next call.
+	 * If Exchange rejects the stored SyncState (ErrorInvalidSyncStateData) it is discarded and the folder is synchronized from the beginning.
+	 * 
+	 * @see <a href='https://msdn.microsoft.com/en-us/library/office/aa563967(v=exchg.140).aspx'>SyncFolderItems operation</a>
+	 * 
+	 * @param upn
+	 * @param folderId - if omitted the primary calendar folder will be targeted
+	 * @return the never null {@link CalendarItemChanges}
+	 */
+	public CalendarItemChanges syncCalendarItems(String upn, FolderIdType folderId) {
+		Validate.isTrue(StringUtils.isNotBlank(upn), "upn argument cannot be blank");
+		String key = getSyncStateKey(upn, folderId);
+		String syncState = getSyncStateStore().getSyncState(key);
+		CalendarItemChanges changes;
+		try {
+			changes = syncCalendarItemsInternal(upn, folderId, syncState);
+		}catch(ExchangeRuntimeException e) {
+			if(null == syncState || !ResponseCodeType.ERROR_INVALID_SYNC_STATE_DATA.value().equals(e.getResponseCode())) {
+				throw e;
+			}
+			log.warn("syncCalendarItems(upn="+upn+",...) stored SyncState was rejected, synchronizing from the beginning.");
+			getSyncStateStore().removeSyncState(key);
+			changes = syncCalendarItemsInternal(upn, folderId, null);
+		}
+		getSyncStateStore().putSyncState(key, changes.getSyncState());
+		return changes;
+	}
+	
+	/**
+	 * @param upn
+	 * @param folderId
+	 * @param syncState - null to synchronize from the beginning
+	 * @return the net {@link CalendarItemChanges} since {@code syncState}
+	 */
+	private CalendarItemChanges syncCalendarItemsInternal(final String upn, FolderIdType folderId, String syncState) {
+		Map<String, ItemIdType> created = new LinkedHashMap<String, ItemIdType>();
+		Map<String, ItemIdType> updated = new LinkedHashMap<String, ItemIdType>();
+		Map<String, ItemIdType> deleted = new LinkedHashMap<String, ItemIdType>();
+		CalendarItemChanges changes = new CalendarItemChanges();
+		changes.setInitialSync(null == syncState);
+		int pages = 0;
+		SyncFolderItemsResult page;
+		do {
+			final SyncFolderItems request = getRequestFactory().constructSyncFolderItemIds(folderId, syncState, getSyncMaxChangesReturned());
+			page = execute(upn, RetryExecutor.describe("syncCalendarItems", "upn", upn, "page", pages+1), true, new Callable<SyncFolderItemsResult>() {
+				@Override
+				public SyncFolderItemsResult call() {
+					SyncFolderItemsResponse response = getWebServices().syncFolderItems(request);
+					return getResponseUtils().parseSyncFolderItemsResponse(response);
+				}
+			});
+			pages++;
+			for(ItemIdType itemId : page.getCreatedItemIds()) {
+				created.put(itemId.getId(), itemId);
+			}
+			for(ItemIdType itemId : page.getUpdatedItemIds()) {
+				if(created.containsKey(itemId.getId())) {
+					created.put(itemId.getId(), itemId);
+				}else {
+					updated.put(itemId.getId(), itemId);
+				}
+			}
+			for(ItemIdType itemId : page.getDeletedItemIds()) {
+				updated.remove(itemId.getId());
+				if(null == created.remove(itemId.getId())) {
+					deleted.put(itemId.getId(), itemId);
+				}
+			}
+			if(StringUtils.isNotBlank(page.getSyncState())) {
+				syncState = page.getSyncState();
+			}
+		}while(!page.isIncludesLastItemInRange());
+		
+		if(!created.isEmpty()) {
+			changes.getCreated().addAll(getCalendarItems(upn, created.values()));
+		}
+		if(!updated.isEmpty()) {
+			changes.getUpdated().addAll(getCalendarItems(upn, updated.values()));
+		}
+		changes.getDeleted().addAll(deleted.values());
+		changes.setSyncState(syncState);
+		if(log.isDebugEnabled()) {
+			log.debug("syncCalendarItems(upn="+upn+",...) "+changes+" in "+pages+" pages");
+		}
+		return changes;
+	}
+	
+	/**
+	 * @param upn
+	 * @param folderId
+	 * @return the {@link SyncStateStore} key for the {@code upn} and folder
+	 */
+	protected String getSyncStateKey(String upn, FolderIdType folderId) {
+		String folder = null == folderId || StringUtils.isBlank(folderId.getId()) ? DistinguishedFolderIdNameType.CALENDAR.value() : folderId.getId();
+		return upn.trim().toLowerCase() + "|" + folder;
+	}
+	
+	//================================================================================
+    // Subscribe
+    //================================================================================
+	/**
+	 * Create a streaming subscription to the item events of the specified folders, see {@link ExchangeRequestFactory#ITEM_EVENT_TYPES}.
+	 * Events are delivered by {@link #getStreamingEvents(String, Collection, int, MailboxAffinity, StreamingEventsHandler)}; Exchange 
+	 * discards the subscription if no connection is open for it for 30 minutes.
+	 * 
+	 * @see <a href='https://msdn.microsoft.com/en-us/library/office/dn458792(v=exchg.150).aspx'>Streaming notifications</a>
+	 * 
+	 * @param upn
+	 * @param folderIds - if empty the primary calendar folder will be targeted
+	 * @return the SubscriptionId
+	 */
+	public String subscribeToItemEvents(String upn, Collection<? extends BaseFolderIdType> folderIds) {
+		return subscribeToItemEvents(upn, folderIds, null);
+	}
+	
+	/**
+	 * Create a streaming subscription routed to the mailbox server of {@code affinity}.  Subscriptions sharing a streaming connection
+	 * must be created with the same {@link MailboxAffinity}, which the connection is then opened with.
+	 * Affinity requires the {@link #getWebServices()} to implement {@link StreamingEventsOperations}, otherwise it is ignored.
+	 * 
+	 * @param upn
+	 * @param folderIds - if empty the primary calendar folder will be targeted
+	 * @param affinity - may be null
+	 * @return the SubscriptionId
+	 */
+	public String subscribeToItemEvents(String upn, Collection<? extends BaseFolderIdType> folderIds, final MailboxAffinity affinity) {
+		Validate.isTrue(StringUtils.isNotBlank(upn), "upn argument cannot be blank");
+		return execute(upn, RetryExecutor.describe("subscribeToItemEvents", "upn", upn), false, streamingSubscribe(folderIds, affinity));
+	}
+	
+	/**
+	 * Create streaming subscriptions for many mailboxes with the same {@code affinity}, e.g. the members of one streaming connection, 
+	 * see {@link #subscribeToItemEvents(String, Collection, MailboxAffinity)}.  The Subscribe requests are submitted to the 
+	 * {@link #getRetryExecutor()}'s worker pool together and this method returns once all of them have completed.
+	 * 
+	 * @param folderIds - the folders of each mailbox keyed by upn, an empty collection targets the primary calendar folder
+	 * @param affinity - may be null
+	 * @param failures - receives the failure of each mailbox which could not be subscribed keyed by upn, may be null
+	 * @return the never null SubscriptionId of each subscribed mailbox, keyed by upn
+	 */
+	public Map<String, String> subscribeToItemEvents(Map<String, ? extends Collection<? extends BaseFolderIdType>> folderIds, MailboxAffinity affinity, Map<String, RuntimeException> failures) {
+		Validate.notNull(folderIds, "folderIds argument cannot be null");
+		Map<String, Future<String>> futures = new LinkedHashMap<String, Future<String>>();
+		for(Map.Entry<String, ? extends Collection<? extends BaseFolderIdType>> mailbox : folderIds.entrySet()) {
+			String upn = mailbox.getKey();
+			futures.put(upn, submit(upn, RetryExecutor.describe("subscribeToItemEvents", "upn", upn), false, streamingSubscribe(mailbox.getValue(), affinity), null));
+		}
+		Map<String, String> subscriptionIds = new LinkedHashMap<String, String>();
+		try {
+			for(Map.Entry<String, Future<String>> future : futures.entrySet()) {
 				try {
-					Thread.sleep(backoff);
-				} catch (InterruptedException e1) {
-					log.warn("InterruptedException="+e1);
+					subscriptionIds.put(future.getKey(), future.getValue().get());
+				} catch (ExecutionException e) {
+					RuntimeException failure = RetryExecutor.unwrap(e);
+					if(null != failures) {
+						failures.put(future.getKey(), failure);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			for(Future<String> future : futures.values()) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new ExchangeRuntimeException("subscribeToItemEvents(upns="+folderIds.size()+",...) interrupted", e);
+		}
+		return subscriptionIds;
+	}
+	
+	private Callable<String> streamingSubscribe(Collection<? extends BaseFolderIdType> folderIds, final MailboxAffinity affinity) {
+		final Subscribe request = getRequestFactory().constructStreamingSubscribe(folderIds);
+		return new Callable<String>() {
+			@Override
+			public String call() {
+				ExchangeWebServices webServices = getWebServices();
+				SubscribeResponse response;
+				if(null != affinity && webServices instanceof StreamingEventsOperations) {
+					response = ((StreamingEventsOperations) webServices).subscribe(request, affinity);
+				} else {
+					response = webServices.subscribe(request);
+				}
+				return getResponseUtils().parseSubscribeResponse(response).getLeft();
+			}
+		};
+	}
+	
+	/**
+	 * Open a streaming connection for one or more streaming subscriptions and pass each {@link GetStreamingEventsResponse} to 
+	 * {@code handler} as it arrives (see {@link ExchangeResponseUtils#parseGetStreamingEventsResponse(GetStreamingEventsResponse)}), 
+	 * returning when the connection closes.  The connection is made on behalf of {@code anchorUpn} on the calling thread and is not retried.
+	 * If the {@link #getWebServices()} do not implement {@link StreamingEventsOperations} the response is read in full before it is handed over.
+	 * 
+	 * @param anchorUpn - the mailbox the connection is made on behalf of, normally {@link MailboxAffinity#getAnchorMailbox()}
+	 * @param subscriptionIds - no more than {@link ExchangeOnlineThrottlingPolicy#MAX_SUBSCRIPTIONS_PER_STREAMING_CONNECTION}
+	 * @param connectionTimeoutMinutes - between 1 and {@link ExchangeRequestFactory#STREAMING_CONNECTION_TIMEOUT_MAX}
+	 * @param affinity - the {@link MailboxAffinity} the subscriptions were created with, may be null
+	 * @param handler
+	 */
+	public void getStreamingEvents(String anchorUpn, Collection<String> subscriptionIds, int connectionTimeoutMinutes, final MailboxAffinity affinity, final StreamingEventsHandler handler) {
+		Validate.isTrue(StringUtils.isNotBlank(anchorUpn), "anchorUpn argument cannot be blank");
+		Validate.notNull(handler, "handler argument cannot be null");
+		GetStreamingEvents request = getRequestFactory().constructGetStreamingEvents(subscriptionIds, connectionTimeoutMinutes);
+		// not run by the RetryExecutor, whose retries would move the connection onto its worker pool
+		setContextCredentials(anchorUpn);
+		ExchangeWebServices webServices = getWebServices();
+		if(webServices instanceof StreamingEventsOperations) {
+			((StreamingEventsOperations) webServices).getStreamingEvents(request, affinity, handler);
+		} else {
+			handler.onResponse(webServices.getStreamingEvents(request));
+		}
+	}
+	
+	/**
+	 * Retrieve the item events which occurred in the specified folders after {@code watermark}, e.g. to replay the events missed 
+	 * while a streaming subscription was being re-established.  A temporary pull subscription is created from the watermark, 
+	 * drained with GetEvents and removed.
+	 * 
+	 * @param upn
+	 * @param folderIds - if empty the primary calendar folder will be targeted
+	 * @param watermark - the watermark of the last event received
+	 * @return the {@link SubscriptionEventsResult}, including the last watermark of the pull subscription
+	 * @throws ExchangeRuntimeException with response code ErrorInvalidWatermark if Exchange no longer recognizes {@code watermark}
+	 */
+	public SubscriptionEventsResult getItemEventsSince(final String upn, Collection<? extends BaseFolderIdType> folderIds, String watermark) {
+		Validate.isTrue(StringUtils.isNotBlank(upn), "upn argument cannot be blank");
+		Validate.isTrue(StringUtils.isNotBlank(watermark), "watermark argument cannot be blank");
+		final Subscribe request = getRequestFactory().constructPullSubscribe(folderIds, watermark, PULL_SUBSCRIPTION_TIMEOUT_MINUTES);
+		Pair<String, String> subscription = execute(upn, RetryExecutor.describe("getItemEventsSince", "upn", upn), false, new Callable<Pair<String, String>>() {
+			@Override
+			public Pair<String, String> call() {
+				SubscribeResponse response = getWebServices().subscribe(request);
+				return getResponseUtils().parseSubscribeResponse(response);
+			}
+		});
+		String subscriptionId = subscription.getLeft();
+		SubscriptionEventsResult result = new SubscriptionEventsResult();
+		try {
+			String lastWatermark = StringUtils.isBlank(subscription.getRight()) ? watermark : subscription.getRight();
+			SubscriptionEventsResult page;
+			do {
+				final GetEvents getEvents = getRequestFactory().constructGetEvents(subscriptionId, lastWatermark);
+				page = execute(upn, RetryExecutor.describe("getEvents", "upn", upn), true, new Callable<SubscriptionEventsResult>() {
+					@Override
+					public SubscriptionEventsResult call() {
+						GetEventsResponse response = getWebServices().getEvents(getEvents);
+						return getResponseUtils().parseGetEventsResponse(response);
+					}
+				});
+				result.getEvents().addAll(page.getEvents());
+				if(page.getWatermarks().containsKey(subscriptionId)) {
+					lastWatermark = page.getWatermarks().get(subscriptionId);
 				}
-				return getItemsInternal(upn, itemIds, newDepth);
+			}while(page.getMoreEventsSubscriptionIds().contains(subscriptionId));
+			result.getWatermarks().put(subscriptionId, lastWatermark);
+		} finally {
+			try {
+				unsubscribe(upn, subscriptionId);
+			} catch (RuntimeException e) {
+				log.debug("getItemEventsSince(upn="+upn+",...) failed to unsubscribe "+subscriptionId+", it will expire: "+e.getMessage());
 			}
 		}
+		return result;
+	}
+	
+	/**
+	 * End a subscription.
+	 * 
+	 * @param upn - the mailbox the subscription was created on behalf of
+	 * @param subscriptionId
+	 */
+	public void unsubscribe(String upn, String subscriptionId) {
+		Validate.isTrue(StringUtils.isNotBlank(upn), "upn argument cannot be blank");
+		final Unsubscribe request = getRequestFactory().constructUnsubscribe(subscriptionId);
+		execute(upn, RetryExecutor.describe("unsubscribe", "upn", upn), true, new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				UnsubscribeResponse response = getWebServices().unsubscribe(request);
+				return getResponseUtils().confirmSuccess(response);
+			}
+		});
 	}
 	
 	//================================================================================
@@ -752,37 +1918,24 @@ public class BaseExchangeCalendarDataDao {
     //================================================================================	
 	
 	/**
-	 * Create the {@link CalendarItemType} on the exchange server
+	 * Create the {@link CalendarItemType} on the exchange server.
+	 * CreateItem is not idempotent, so it is only retried when Exchange throttled the request.
 	 * @param upn
 	 * @param calendarItem
-	 * @param depth
 	 * @return {@link ItemIdType}
 	 */
-	private ItemIdType createCalendarItemInternal(String upn, CalendarItemType calendarItem, FolderIdType calendarFolderId, int depth){
+	private ItemIdType createCalendarItemInternal(String upn, CalendarItemType calendarItem, FolderIdType calendarFolderId){
 		Validate.notNull(calendarItem, "calendarItem argument cannot be empty");
-		int newDepth = depth +1;
-		if(depth > getMaxRetries()) {
-			throw new ExchangeRuntimeException("createCalendarItemInternal(upn="+upn+",...) failed "+getMaxRetries()+ " consecutive attempts.");
-		}else {
-			setContextCredentials(upn);
-			Set<CalendarItemType> singleton = Collections.singleton(calendarItem);
-			CreateItem request = getRequestFactory().constructCreateCalendarItem(singleton, calendarFolderId);
-			try {
+		Set<CalendarItemType> singleton = Collections.singleton(calendarItem);
+		final CreateItem request = getRequestFactory().constructCreateCalendarItem(singleton, calendarFolderId);
+		return execute(upn, RetryExecutor.describe("createCalendarItemInternal", "upn", upn), false, new Callable<ItemIdType>() {
+			@Override
+			public ItemIdType call() {
 				CreateItemResponse response = getWebServices().createItem(request);
 				Set<ItemIdType> createdCalendarItems = getResponseUtils().parseCreateItemResponse(response);
 				return DataAccessUtils.singleResult(createdCalendarItems);
-			}catch(ExchangeRuntimeException e) {
-				long backoff = getWaitTimeExp(newDepth);
-				log.warn("createCalendarItemInternal - failure #"+newDepth+". Sleeping for "+backoff+" before retry. " +e.getMessage());
-				try {
-					Thread.sleep(backoff);
-				} catch (InterruptedException e1) {
-					log.warn("InterruptedException="+e1);
-				}
-				return createCalendarItemInternal(upn, calendarItem, calendarFolderId, newDepth);
 			}
-		}
-		
+		});
 	}
 
 	/**
@@ -796,7 +1949,7 @@ public class BaseExchangeCalendarDataDao {
 	}
 	
 	public ItemIdType createCalendarItem(String upn, CalendarItemType calendarItem, FolderIdType calendarFolderId){
-		return createCalendarItemInternal(upn, calendarItem, calendarFolderId, 0);
+		return createCalendarItemInternal(upn, calendarItem, calendarFolderId);
 	}
 	
 	/**
@@ -806,11 +1959,16 @@ public class BaseExchangeCalendarDataDao {
 	 * @return {@link FolderIdType}
 	 */
 	public FolderIdType createCalendarFolder(String upn, String displayName) {
-		setContextCredentials(upn);
 		log.debug("createCalendarFolder upn="+upn+", displayName="+displayName);
-		CreateFolder createCalendarFolderRequest = getRequestFactory().constructCreateCalendarFolder(displayName, null);
-		CreateFolderResponse createFolderResponse = getWebServices().createFolder(createCalendarFolderRequest);
-		Set<FolderIdType> folders = getResponseUtils().parseCreateFolderResponse(createFolderResponse);
+		final CreateFolder createCalendarFolderRequest = getRequestFactory().constructCreateCalendarFolder(displayName, null);
+		Set<FolderIdType> folders = execute(upn, RetryExecutor.describe("createCalendarFolder", "upn", upn, "displayName", displayName), false, new Callable<Set<FolderIdType>>() {
+			@Override
+			public Set<FolderIdType> call() {
+				CreateFolderResponse createFolderResponse = getWebServices().createFolder(createCalendarFolderRequest);
+				return getResponseUtils().parseCreateFolderResponse(createFolderResponse);
+			}
+		});
+		invalidateFolderHierarchy(upn);
 		return DataAccessUtils.singleResult(folders);
 	}
 	
@@ -870,42 +2028,31 @@ public class BaseExchangeCalendarDataDao {
 		messages.add(messageType);
 		
 		//in this context we are impersonating an admin with send as rights for admin.sendas
-		setContextCredentials(getAdminUpn());
-		CreateItem request = getRequestFactory().constructCreateMessageItem(messages, folderIdType);
-		CreateItemResponse response = getWebServices().createItem(request);
-		Set<ItemIdType> items = getResponseUtils().parseCreateItemResponse(response);
+		final CreateItem request = getRequestFactory().constructCreateMessageItem(messages, folderIdType);
+		Set<ItemIdType> items = execute(getAdminUpn(), RetryExecutor.describe("createEmailMessage", "subject", subject), false, new Callable<Set<ItemIdType>>() {
+			@Override
+			public Set<ItemIdType> call() {
+				CreateItemResponse response = getWebServices().createItem(request);
+				return getResponseUtils().parseCreateItemResponse(response);
+			}
+		});
 		return DataAccessUtils.singleResult(items);
 	}
 	
 	//================================================================================
     // DeleteItem
     //================================================================================	
-	private boolean deleteCalendarItemsInternal(String upn, Collection<ItemIdType> itemIds, int depth) {
+	private boolean deleteCalendarItemsInternal(String upn, Collection<ItemIdType> itemIds) {
 		Validate.isTrue(StringUtils.isNotBlank(upn), "upn argument cannot be blank");
 		Validate.notEmpty(itemIds, "itemIds argument cannot be empty");
-	
-		int newDepth = depth +1;
-		if(depth > getMaxRetries()) {
-			throw new ExchangeRuntimeException("deleteCalendarItemsInternal(upn="+upn+",...) failed "+getMaxRetries()+ " consecutive attempts.");
-		}else {
-			setContextCredentials(upn);
-			DeleteItem request = getRequestFactory().constructDeleteCalendarItems(itemIds);
-			try {
+		final DeleteItem request = getRequestFactory().constructDeleteCalendarItems(itemIds);
+		return execute(upn, RetryExecutor.describe("deleteCalendarItemsInternal", "upn", upn, "itemIds", itemIds.size()), true, new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
 				DeleteItemResponse response = getWebServices().deleteItem(request);
-				boolean success = getResponseUtils().confirmSuccess(response);
-				return success;
-			
-			}catch(ExchangeRuntimeException e) {
-				long backoff = getWaitTimeExp(newDepth);
-				log.warn("deleteCalendarItemsInternal - failure #"+newDepth+". Sleeping for "+backoff+" before retry. " +e.getMessage());
-				try {
-					Thread.sleep(backoff);
-				} catch (InterruptedException e1) {
-					log.warn("InterruptedException="+e1);
-				}
-				return deleteCalendarItemsInternal(upn, itemIds, newDepth);
+				return getResponseUtils().confirmSuccess(response);
 			}
-		}
+		});
 	}
 	
 	/**
@@ -917,7 +2064,7 @@ public class BaseExchangeCalendarDataDao {
 	 * @return
 	 */
 	public boolean deleteCalendarItems(String upn, Collection<ItemIdType> itemIds) {
-		return deleteCalendarItemsInternal(upn, itemIds,0);
+		return deleteCalendarItemsInternal(upn, itemIds);
 	}
 
 	//================================================================================
@@ -928,53 +2075,100 @@ public class BaseExchangeCalendarDataDao {
 	 * Search the exchange server for any contacts with a name similar to
 	 * {@code alias} and return all corresponding SMTP addresses
 	 * 
+	 * Results are cached by the {@link #getResolveEmailAddressesCache()}, if set.
+	 * 
 	 * @param alias
 	 * @return
 	 */
-	public Set<String> resolveEmailAddresses(String alias) {
-		Set<String> smtpAddresses = Collections.emptySet();
+	public Set<String> resolveEmailAddresses(final String alias) {
 		Validate.isTrue(StringUtils.isNotBlank(alias), "alias argument cannot be blank");
-		setContextCredentials(getAdminUpn());
-		ResolveNames request = getRequestFactory().constructResolveNames(alias);
-		ResolveNamesResponse response = getWebServices().resolveNames(request);
+		ResolutionCache<Set<String>> cache = getResolveEmailAddressesCache();
+		if(null == cache) {
+			return resolveEmailAddressesInternal(alias);
+		}
+		return new HashSet<String>(cache.get(alias, new Callable<Set<String>>() {
+			@Override
+			public Set<String> call() {
+				return Collections.unmodifiableSet(resolveEmailAddressesInternal(alias));
+			}
+		}));
+	}
+	
+	private Set<String> resolveEmailAddressesInternal(String alias) {
 		try{
-			smtpAddresses = getResponseUtils().parseResolveNamesResponse(response);
+			return resolveNames(getRequestFactory().constructResolveNames(alias));
 		}catch(ExchangeMissingEmailAddressRuntimeException e){
-			request = getRequestFactory().constructResolveNamesWithDistinguishedFolderId(alias);
-			response = getWebServices().resolveNames(request);
-			smtpAddresses = getResponseUtils().parseResolveNamesResponse(response);
+			return resolveNames(getRequestFactory().constructResolveNamesWithDistinguishedFolderId(alias));
 		}
-		return smtpAddresses;
+	}
+	
+	/**
+	 * @param request
+	 * @return the SMTP addresses found by the {@link ResolveNames} request, issued as the {@link #getAdminUpn()}
+	 */
+	private Set<String> resolveNames(final ResolveNames request) {
+		return execute(getAdminUpn(), RetryExecutor.describe("resolveNames"), true, new Callable<Set<String>>() {
+			@Override
+			public Set<String> call() {
+				ResolveNamesResponse response = getWebServices().resolveNames(request);
+				return getResponseUtils().parseResolveNamesResponse(response);
+			}
+		});
 	}
 	
 	/**
 	 * Search the exchange server for any contacts with an email address that matches
 	 * {@code emailAddress} and return only the UserPrincipalName
 	 * 
+	 * Results, including addresses which definitely could not be resolved, are cached by the {@link #getResolveUpnCache()}, if set. 
+	 * If no address could be resolved because of a transient failure that failure is thrown instead.
+	 * 
 	 * @param alias
 	 * @return a {@link String} representing the UPN
 	 */
-	public String resolveUpn(String emailAddress) {
+	public String resolveUpn(final String emailAddress) {
 		Validate.isTrue(StringUtils.isNotBlank(emailAddress),"emailAddress argument cannot be blank");
 		Validate.isTrue(EmailValidator.getInstance().isValid(emailAddress),"emailAddress argument must be valid");
-		
+		ResolutionCache<String> cache = getResolveUpnCache();
+		if(null == cache) {
+			return resolveUpnInternal(emailAddress);
+		}
+		return cache.get(emailAddress, new Callable<String>() {
+			@Override
+			public String call() {
+				return resolveUpnInternal(emailAddress);
+			}
+		});
+	}
+	
+	private String resolveUpnInternal(String emailAddress) {
 		emailAddress = ExchangeRequestFactory.SMTP + emailAddress;
 		Map<BaseFolderType, String> resultMap = new HashMap<BaseFolderType, String>();
+		RuntimeException failure = null;
 		Set<String> addresses = resolveEmailAddresses(emailAddress);
 		for(String addr: addresses) {
 			try {
 				BaseFolderType primaryCalendarFolder = getPrimaryCalendarFolder(addr);
 				if(null == primaryCalendarFolder) {
-					throw new ExchangeRuntimeException("CALENDAR NOT FOUND");
+					log.debug("resolveUpn -- "+addr+" NOT VALID. CALENDAR NOT FOUND");
 				}else {
 					resultMap.put(primaryCalendarFolder, addr);
 				}
 			}catch(RuntimeException e) {
+				//only a missing mailbox or folder tells us the address is not valid, anything else may succeed on retry
+				if(!ResolutionCache.isNotFoundFailure(e)) {
+					failure = e;
+				}
 				log.debug("resolveUpn -- "+addr+" NOT VALID. "+e.getMessage());
 			}
 		}
 		if(CollectionUtils.isEmpty(resultMap)) {
-			throw new ExchangeRuntimeException("resolveUpn("+emailAddress+") failed -- no results.");
+			if(null != failure) {
+				throw failure;
+			}
+			ExchangeRuntimeException e = new ExchangeRuntimeException("resolveUpn("+emailAddress+") failed -- no results.");
+			e.setResponseCode(ResponseCodeType.ERROR_NAME_RESOLUTION_NO_RESULTS.value());
+			throw e;
 		}else {
 			if(resultMap.isEmpty()) {
 				throw new ExchangeRuntimeException("resolveUpn("+emailAddress+") failed -- multiple results.");
@@ -995,10 +2189,14 @@ public class BaseExchangeCalendarDataDao {
 	 * @return a never null but possibly empty {@link Set} of {@link TimeZoneDefinitionType}
 	 */
 	public Set<TimeZoneDefinitionType> getServerTimeZones(String tzid, boolean fullTimeZoneData){
-		GetServerTimeZones request = getRequestFactory().constructGetServerTimeZones(tzid, fullTimeZoneData);
-		setContextCredentials(getAdminUpn());
-		GetServerTimeZonesResponse response = getWebServices().getServerTimeZones(request);
-		return getResponseUtils().parseGetServerTimeZonesResponse(response);
+		final GetServerTimeZones request = getRequestFactory().constructGetServerTimeZones(tzid, fullTimeZoneData);
+		return execute(getAdminUpn(), RetryExecutor.describe("getServerTimeZones", "tzid", tzid), true, new Callable<Set<TimeZoneDefinitionType>>() {
+			@Override
+			public Set<TimeZoneDefinitionType> call() {
+				GetServerTimeZonesResponse response = getWebServices().getServerTimeZones(request);
+				return getResponseUtils().parseGetServerTimeZonesResponse(response);
+			}
+		});
 	}
 	
 	/**
@@ -1048,10 +2246,18 @@ public class BaseExchangeCalendarDataDao {
 	 * @return
 	 */
 	public boolean emptyFolder(String upn, boolean deleteSubFolders,  BaseFolderIdType folderId){
-		EmptyFolder request = getRequestFactory().constructEmptyFolder(deleteSubFolders,  Collections.singleton(folderId));
-		setContextCredentials(upn);
-		EmptyFolderResponse response = getWebServices().emptyFolder(request);
-		return getResponseUtils().parseEmptyFolderResponse(response);
+		final EmptyFolder request = getRequestFactory().constructEmptyFolder(deleteSubFolders,  Collections.singleton(folderId));
+		boolean result = execute(upn, RetryExecutor.describe("emptyFolder", "upn", upn), true, new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				EmptyFolderResponse response = getWebServices().emptyFolder(request);
+				return getResponseUtils().parseEmptyFolderResponse(response);
+			}
+		});
+		if(deleteSubFolders) {
+			invalidateFolderHierarchy(upn);
+		}
+		return result;
 	}
 	
 	/**
@@ -1083,23 +2289,27 @@ public class BaseExchangeCalendarDataDao {
 		return true;
 	}
 	
-	public boolean purgeCancelledCalendarItems(String upn, FolderIdType folderId){
+	/**
+	 * Delete all cancelled {@link CalendarItemType}s within the specified folder.
+	 * 
+	 * All pages are collected before deleting, see {@link #findAllItemIdPages(FindItem, FindItemPageSource)}, 
+	 * as deleting items shifts the offsets of the remaining pages.
+	 * 
+	 * @param upn
+	 * @param folderId
+	 * @return true if all cancelled items were deleted
+	 */
+	public boolean purgeCancelledCalendarItems(String upn, final FolderIdType folderId){
 		FindItem request = getRequestFactory().constructIndexedPageViewFindItemCancelledCalendarItemIds(Collections.singleton(folderId));
-		FindItemResponse response = getWebServices().findItem(request);
-		Pair<Set<ItemIdType>, Integer> results = getResponseUtils().parseFindItemIdResponse(response);
-		Set<ItemIdType> itemIds = results.getLeft();
-		Integer nextOffset = results.getRight();
-		while(itemIds.size() > 0){
-			if(deleteCalendarItems(upn, itemIds)){
-				if(nextOffset > 0){
-					request = getRequestFactory().constructIndexedPageViewFindItemCancelledCalendarItemIds(nextOffset, Collections.singleton(folderId));
-					response = getWebServices().findItem(request);
-					results = getResponseUtils().parseFindItemIdResponse(response);
-				
-					itemIds = results.getLeft();
-					nextOffset = results.getRight();
-				}
-			}else{
+		FindItemPageSource source = new FindItemPageSource(upn, "purgeCancelledCalendarItems") {
+			@Override
+			protected FindItem constructRequest(int offset) {
+				return getRequestFactory().constructIndexedPageViewFindItemCancelledCalendarItemIds(offset, Collections.singleton(folderId));
+			}
+		};
+		Set<ItemIdType> itemIds = findAllItemIdPages(request, source);
+		for(List<ItemIdType> batch : partition(itemIds, getRequestFactory().getMaxFindItems())) {
+			if(!deleteCalendarItems(source.getUpn(), batch)){
 				return false;
 			}
 		}
@@ -1141,10 +2351,16 @@ public class BaseExchangeCalendarDataDao {
 	 * @return
 	 */
 	public boolean deleteFolder(String upn, BaseFolderIdType folderId){
-		DeleteFolder request = getRequestFactory().constructDeleteFolder(folderId);
-		setContextCredentials(upn);
-		DeleteFolderResponse response = getWebServices().deleteFolder(request);
-		return getResponseUtils().parseDeleteFolderResponse(response);
+		final DeleteFolder request = getRequestFactory().constructDeleteFolder(folderId);
+		boolean result = execute(upn, RetryExecutor.describe("deleteFolder", "upn", upn), true, new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				DeleteFolderResponse response = getWebServices().deleteFolder(request);
+				return getResponseUtils().parseDeleteFolderResponse(response);
+			}
+		});
+		invalidateFolderHierarchy(upn);
+		return result;
 	}
 	
 	/**
@@ -1157,9 +2373,14 @@ public class BaseExchangeCalendarDataDao {
 		boolean itemUpdated = false;
 		SetItemFieldType setField = getRequestFactory().constructSetCalendarItemLegacyFreeBusy(c);
 		NonEmptyArrayOfItemChangesType changes = getRequestFactory().constructUpdateCalendarItemChanges(c, Collections.singleton(setField));
-		UpdateItem request = getRequestFactory().constructUpdateCalendarItem(c, changes);
-		UpdateItemResponse response = getWebServices().updateItem(request);
-		Set<ItemIdType> itemIds = getResponseUtils().parseUpdateItemResponse(response);
+		final UpdateItem request = getRequestFactory().constructUpdateCalendarItem(c, changes);
+		Set<ItemIdType> itemIds = execute(upn, RetryExecutor.describe("updateCalendarItemSetLegacyFreeBusy", "upn", upn), true, new Callable<Set<ItemIdType>>() {
+			@Override
+			public Set<ItemIdType> call() {
+				UpdateItemResponse response = getWebServices().updateItem(request);
+				return getResponseUtils().parseUpdateItemResponse(response);
+			}
+		});
 		if(!CollectionUtils.isEmpty(itemIds)){
 			ItemIdType itemId = DataAccessUtils.singleResult(itemIds);
 			itemUpdated = c.getItemId().getId().equals(itemId.getId());
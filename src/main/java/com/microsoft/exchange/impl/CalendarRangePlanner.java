@@ -0,0 +1,243 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.joda.time.Interval;
+
+import com.microsoft.exchange.ExchangeDateUtils;
+import com.microsoft.exchange.types.FolderIdType;
+
+/**
+ * Splits CalendarView date ranges into windows expected to stay below {@link ExchangeOnlineThrottlingPolicy#FIND_ITEM_MAX_ENTRIES_RETURNED}.
+ * 
+ * The planner remembers the observed item density (items per hour) for each mailbox and set of folders.  New queries against a
+ * known calendar are split up front so the windows can be requested concurrently, rather than discovering the limit through 
+ * a series of ErrorExceededFindCountLimit responses.  Densities are smoothed and kept for at most {@link #getMaxEntries()} calendars (LRU).
+ */
+public class CalendarRangePlanner {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private static final double MILLIS_PER_HOUR = 60 * 60 * 1000d;
+	
+	private int targetItemsPerWindow = ExchangeOnlineThrottlingPolicy.FIND_ITEM_MAX_ENTRIES_RETURNED / 2;
+	private int maxWindows = 32;
+	private long minWindowMillis = 15 * 60 * 1000L;
+	private double smoothing = 0.5;
+	private int maxEntries = 10000;
+	
+	private final Map<String, Double> densities = new LinkedHashMap<String, Double>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+			return size() > maxEntries;
+		}
+	};
+	
+	/**
+	 * @return the expected number of items per window a plan aims for
+	 */
+	public int getTargetItemsPerWindow() {
+		return targetItemsPerWindow;
+	}
+	/**
+	 * @param targetItemsPerWindow the expected number of items per window a plan aims for, leave headroom below {@link ExchangeOnlineThrottlingPolicy#FIND_ITEM_MAX_ENTRIES_RETURNED}
+	 */
+	public void setTargetItemsPerWindow(int targetItemsPerWindow) {
+		Validate.isTrue(targetItemsPerWindow > 0, "targetItemsPerWindow must be greater than 0");
+		this.targetItemsPerWindow = targetItemsPerWindow;
+	}
+	/**
+	 * @return the maximum number of windows a single range is split into
+	 */
+	public int getMaxWindows() {
+		return maxWindows;
+	}
+	/**
+	 * @param maxWindows the maximum number of windows a single range is split into
+	 */
+	public void setMaxWindows(int maxWindows) {
+		Validate.isTrue(maxWindows > 1, "maxWindows must be greater than 1");
+		this.maxWindows = maxWindows;
+	}
+	/**
+	 * @return windows are never shorter than this
+	 */
+	public long getMinWindowMillis() {
+		return minWindowMillis;
+	}
+	/**
+	 * @param minWindowMillis windows are never shorter than this
+	 */
+	public void setMinWindowMillis(long minWindowMillis) {
+		Validate.isTrue(minWindowMillis > 0, "minWindowMillis must be greater than 0");
+		this.minWindowMillis = minWindowMillis;
+	}
+	/**
+	 * @return the weight (0-1] of a new observation relative to the previous density
+	 */
+	public double getSmoothing() {
+		return smoothing;
+	}
+	/**
+	 * @param smoothing the weight (0-1] of a new observation relative to the previous density
+	 */
+	public void setSmoothing(double smoothing) {
+		Validate.isTrue(smoothing > 0 && smoothing <= 1, "smoothing must be in (0,1]");
+		this.smoothing = smoothing;
+	}
+	/**
+	 * @return the maximum number of calendars densities are remembered for
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	/**
+	 * @param maxEntries the maximum number of calendars densities are remembered for
+	 */
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+	
+	/**
+	 * @param upn
+	 * @param folderIds null or empty for the primary calendar
+	 * @return the key identifying the calendar(s) queried
+	 */
+	public static String getKey(String upn, Collection<FolderIdType> folderIds) {
+		StringBuilder key = new StringBuilder(upn.trim().toLowerCase());
+		if(null == folderIds || folderIds.isEmpty()) {
+			return key.append("|calendar").toString();
+		}
+		TreeSet<String> ids = new TreeSet<String>();
+		for(FolderIdType folderId : folderIds) {
+			ids.add(folderId.getId());
+		}
+		for(String id : ids) {
+			key.append('|').append(id);
+		}
+		return key.toString();
+	}
+	
+	/**
+	 * @param key
+	 * @return the observed density in items per hour, or null if unknown
+	 */
+	public Double getDensity(String key) {
+		synchronized (densities) {
+			return densities.get(key);
+		}
+	}
+	
+	/**
+	 * @param key
+	 * @param start
+	 * @param end
+	 * @return the windows to query, a single window if the density of the calendar is unknown or low enough
+	 */
+	public List<Interval> plan(String key, Date start, Date end) {
+		Interval range = new Interval(start.getTime(), end.getTime());
+		Double density = getDensity(key);
+		if(null == density) {
+			return Collections.singletonList(range);
+		}
+		return split(range, windowCount(density, range));
+	}
+	
+	/**
+	 * Record that {@code window} exceeded the find count limit and plan its replacement.
+	 * 
+	 * @param key
+	 * @param window
+	 * @return at least two windows covering {@code window}, or an empty list if {@code window} cannot be split further
+	 */
+	public List<Interval> replan(String key, Interval window) {
+		long duration = window.toDurationMillis();
+		if(duration < 2 * minWindowMillis) {
+			return Collections.emptyList();
+		}
+		double lowerBound = ExchangeOnlineThrottlingPolicy.FIND_ITEM_MAX_ENTRIES_RETURNED / (duration / MILLIS_PER_HOUR);
+		double density;
+		synchronized (densities) {
+			Double previous = densities.get(key);
+			density = null == previous ? lowerBound : Math.max(previous, lowerBound);
+			densities.put(key, density);
+		}
+		return split(window, Math.max(2, windowCount(density, window)));
+	}
+	
+	/**
+	 * @param key
+	 * @param window a window queried successfully
+	 * @param itemCount the number of items found in {@code window}
+	 */
+	public void recordObservation(String key, Interval window, int itemCount) {
+		double hours = window.toDurationMillis() / MILLIS_PER_HOUR;
+		if(hours <= 0) {
+			return;
+		}
+		double observed = itemCount / hours;
+		synchronized (densities) {
+			Double previous = densities.get(key);
+			densities.put(key, null == previous ? observed : smoothing * observed + (1 - smoothing) * previous);
+		}
+	}
+	
+	private int windowCount(double density, Interval range) {
+		double expected = density * (range.toDurationMillis() / MILLIS_PER_HOUR);
+		long count = (long) Math.ceil(expected / targetItemsPerWindow);
+		count = Math.min(count, range.toDurationMillis() / minWindowMillis);
+		return (int) Math.max(1, Math.min(count, maxWindows));
+	}
+	
+	/**
+	 * @param range
+	 * @param count
+	 * @return {@code range} split into {@code count} abutting windows of equal length
+	 */
+	static List<Interval> split(Interval range, int count) {
+		if(count <= 1) {
+			return Collections.singletonList(range);
+		}
+		if(count == 2) {
+			return ExchangeDateUtils.generateIntervals(range.getStart().toDate(), range.getEnd().toDate());
+		}
+		List<Interval> windows = new ArrayList<Interval>(count);
+		long start = range.getStartMillis();
+		long length = range.toDurationMillis() / count;
+		for(int i = 0; i < count; i++) {
+			long end = i == count - 1 ? range.getEndMillis() : start + length;
+			windows.add(new Interval(start, end));
+			start = end;
+		}
+		return windows;
+	}
+}
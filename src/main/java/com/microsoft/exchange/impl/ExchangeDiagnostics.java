@@ -0,0 +1,323 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.client.WebServiceClientException;
+import org.springframework.ws.client.support.interceptor.ClientInterceptor;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.stream.StreamingWebServiceMessage;
+
+import com.microsoft.exchange.impl.http.HttpTrafficStatistics;
+
+/**
+ * {@link ClientInterceptor} recording raw SOAP envelopes for troubleshooting.
+ * 
+ * Nothing is rendered unless the exchange is sampled (see {@link #setSampleRate(double)}).  Sampled envelopes are kept 
+ * in a bounded ring buffer per operation (see {@link #setBufferSize(int)}) which can be inspected via {@link #dump()},
+ * and are written to the trace log if enabled.
+ * 
+ * Register this interceptor last so the captured request includes the headers added by the other interceptors.
+ * Envelopes of a {@link StreamingWebServiceMessage} (e.g. Axiom without payload caching) are not captured since 
+ * serializing them may consume the payload.
+ */
+public class ExchangeDiagnostics implements ClientInterceptor {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private static final String CAPTURED_EXCHANGE = ExchangeDiagnostics.class.getName() + ".EXCHANGE";
+	
+	private final ConcurrentMap<String, LinkedList<CapturedExchange>> buffers = new ConcurrentHashMap<String, LinkedList<CapturedExchange>>();
+	private final Random random = new Random();
+	private double sampleRate = 0;
+	private int bufferSize = 10;
+	private int maxPayloadLength = 65536;
+	
+	/**
+	 * @return the fraction of exchanges captured, 0 (none) to 1 (all)
+	 */
+	public double getSampleRate() {
+		return sampleRate;
+	}
+	/**
+	 * @param sampleRate the fraction of exchanges captured, 0 (none) to 1 (all)
+	 */
+	public void setSampleRate(double sampleRate) {
+		if(sampleRate < 0 || sampleRate > 1) {
+			throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+		}
+		this.sampleRate = sampleRate;
+	}
+	/**
+	 * @return the number of captured exchanges retained per operation
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+	/**
+	 * @param bufferSize the number of captured exchanges retained per operation
+	 */
+	public void setBufferSize(int bufferSize) {
+		if(bufferSize < 1) {
+			throw new IllegalArgumentException("bufferSize must be greater than 0");
+		}
+		this.bufferSize = bufferSize;
+	}
+	/**
+	 * @return the maximum number of characters retained of each envelope
+	 */
+	public int getMaxPayloadLength() {
+		return maxPayloadLength;
+	}
+	/**
+	 * @param maxPayloadLength the maximum number of characters retained of each envelope
+	 */
+	public void setMaxPayloadLength(int maxPayloadLength) {
+		this.maxPayloadLength = maxPayloadLength;
+	}
+	
+	/**
+	 * @return true if the current exchange should be captured
+	 */
+	protected boolean isSampled() {
+		double rate = sampleRate;
+		if(rate <= 0) {
+			return false;
+		}
+		return rate >= 1 || random.nextDouble() < rate;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.ws.client.support.interceptor.ClientInterceptor#handleRequest(org.springframework.ws.context.MessageContext)
+	 */
+	@Override
+	public boolean handleRequest(MessageContext messageContext) throws WebServiceClientException {
+		if(!isSampled()) {
+			return true;
+		}
+		WebServiceMessage request = messageContext.getRequest();
+		String operation = HttpTrafficStatistics.getCurrentOperation(request instanceof SoapMessage ? ((SoapMessage) request).getSoapAction() : null);
+		CapturedExchange exchange = new CapturedExchange(operation, render(request));
+		messageContext.setProperty(CAPTURED_EXCHANGE, exchange);
+		record(exchange);
+		if(log.isTraceEnabled()) {
+			log.trace(operation + " request: " + exchange.getRequest());
+		}
+		return true;
+	}
+	/* (non-Javadoc)
+	 * @see org.springframework.ws.client.support.interceptor.ClientInterceptor#handleResponse(org.springframework.ws.context.MessageContext)
+	 */
+	@Override
+	public boolean handleResponse(MessageContext messageContext) throws WebServiceClientException {
+		complete(messageContext, false);
+		return true;
+	}
+	/* (non-Javadoc)
+	 * @see org.springframework.ws.client.support.interceptor.ClientInterceptor#handleFault(org.springframework.ws.context.MessageContext)
+	 */
+	@Override
+	public boolean handleFault(MessageContext messageContext) throws WebServiceClientException {
+		complete(messageContext, true);
+		return true;
+	}
+	
+	private void complete(MessageContext messageContext, boolean fault) {
+		CapturedExchange exchange = (CapturedExchange) messageContext.getProperty(CAPTURED_EXCHANGE);
+		if(null == exchange) {
+			return;
+		}
+		String rendered = render(messageContext.getResponse());
+		exchange.complete(rendered, fault);
+		if(log.isTraceEnabled()) {
+			log.trace(exchange.getOperation() + (fault ? " fault" : " response") + " after " + exchange.getElapsedMillis() + "ms: " + rendered);
+		}
+	}
+	
+	private String render(WebServiceMessage message) {
+		if(null == message) {
+			return null;
+		}
+		if(message instanceof StreamingWebServiceMessage) {
+			return "[not captured: streaming message]";
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			message.writeTo(out);
+		} catch (IOException e) {
+			return "[not captured: " + e.getMessage() + "]";
+		}
+		String payload;
+		try {
+			payload = out.toString("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		if(maxPayloadLength > 0 && payload.length() > maxPayloadLength) {
+			return payload.substring(0, maxPayloadLength) + "...[" + (payload.length() - maxPayloadLength) + " characters truncated]";
+		}
+		return payload;
+	}
+	
+	private void record(CapturedExchange exchange) {
+		LinkedList<CapturedExchange> buffer = buffers.get(exchange.getOperation());
+		if(null == buffer) {
+			LinkedList<CapturedExchange> created = new LinkedList<CapturedExchange>();
+			buffer = buffers.putIfAbsent(exchange.getOperation(), created);
+			if(null == buffer) {
+				buffer = created;
+			}
+		}
+		synchronized (buffer) {
+			buffer.addLast(exchange);
+			while(buffer.size() > bufferSize) {
+				buffer.removeFirst();
+			}
+		}
+	}
+	
+	/**
+	 * @param operation e.g. "FindItem"
+	 * @return the captured exchanges for the operation, oldest first
+	 */
+	public List<CapturedExchange> getCapturedExchanges(String operation) {
+		LinkedList<CapturedExchange> buffer = buffers.get(operation);
+		if(null == buffer) {
+			return Collections.emptyList();
+		}
+		synchronized (buffer) {
+			return new ArrayList<CapturedExchange>(buffer);
+		}
+	}
+	
+	/**
+	 * @return the captured exchanges for every operation, sorted by operation name
+	 */
+	public Map<String, List<CapturedExchange>> getCapturedExchanges() {
+		Map<String, List<CapturedExchange>> result = new TreeMap<String, List<CapturedExchange>>();
+		for(String operation : buffers.keySet()) {
+			result.put(operation, getCapturedExchanges(operation));
+		}
+		return result;
+	}
+	
+	/**
+	 * Discard all captured exchanges.
+	 */
+	public void clear() {
+		buffers.clear();
+	}
+	
+	/**
+	 * @return a human readable rendering of every captured exchange
+	 */
+	public String dump() {
+		StringBuilder sb = new StringBuilder();
+		for(Map.Entry<String, List<CapturedExchange>> entry : getCapturedExchanges().entrySet()) {
+			sb.append("==== ").append(entry.getKey()).append(" (").append(entry.getValue().size()).append(") ====\n");
+			for(CapturedExchange exchange : entry.getValue()) {
+				sb.append(exchange).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * A single captured request and, once received, its response.
+	 */
+	public static class CapturedExchange {
+		private final String operation;
+		private final long timestamp = System.currentTimeMillis();
+		private final String request;
+		private volatile String response;
+		private volatile boolean fault;
+		private volatile long elapsedMillis = -1;
+		
+		CapturedExchange(String operation, String request) {
+			this.operation = operation;
+			this.request = request;
+		}
+		void complete(String response, boolean fault) {
+			this.response = response;
+			this.fault = fault;
+			this.elapsedMillis = System.currentTimeMillis() - timestamp;
+		}
+		/**
+		 * @return the operation name, e.g. "FindItem"
+		 */
+		public String getOperation() {
+			return operation;
+		}
+		/**
+		 * @return when the request was sent
+		 */
+		public Date getTimestamp() {
+			return new Date(timestamp);
+		}
+		/**
+		 * @return the request envelope
+		 */
+		public String getRequest() {
+			return request;
+		}
+		/**
+		 * @return the response envelope, null if no response was received (yet)
+		 */
+		public String getResponse() {
+			return response;
+		}
+		/**
+		 * @return true if the response was a SOAP fault
+		 */
+		public boolean isFault() {
+			return fault;
+		}
+		/**
+		 * @return the time between request and response, -1 if no response was received (yet)
+		 */
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "[" + getTimestamp() + "] " + operation + " elapsedMillis=" + elapsedMillis + (fault ? " FAULT" : "") 
+					+ "\nrequest: " + request + "\nresponse: " + response;
+		}
+	}
+}
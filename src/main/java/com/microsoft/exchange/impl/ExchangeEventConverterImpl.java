@@ -138,7 +138,9 @@ public class ExchangeEventConverterImpl implements ExchangeEventConverter {
 							log.warn("Failed to generate VEvent for CalendarItemType="+calendarItem);
 						}
 						if(!CollectionUtils.isEmpty(pair.getRight())){
-							log.debug("Generated "+pair.getRight().size()+" VTimeZone components for CalendarItemType="+calendarItem);
+							if(log.isDebugEnabled()) {
+								log.debug("Generated "+pair.getRight().size()+" VTimeZone components for CalendarItemType="+calendarItem);
+							}
 							for(VTimeZone timeZone : pair.getRight()){
 								result.getComponents().add(timeZone);
 							}
@@ -657,7 +659,7 @@ public class ExchangeEventConverterImpl implements ExchangeEventConverter {
 						}
 						
 						
-						if(attendeeSet.add(attendee)){
+						if(attendeeSet.add(attendee) && log.isDebugEnabled()){
 							log.debug("added Attendee="+attendee);
 						}
 					}					
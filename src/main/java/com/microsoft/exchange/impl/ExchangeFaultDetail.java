@@ -0,0 +1,193 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.ws.soap.SoapFault;
+import org.springframework.ws.soap.SoapFaultDetail;
+import org.springframework.ws.soap.SoapFaultDetailElement;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.microsoft.exchange.messages.ResponseMessageType.MessageXml;
+
+/**
+ * The Exchange specific content of a {@link SoapFault} detail.
+ * 
+ * EWS faults carry the {@code ResponseCode} along with an optional {@code MessageXml} element.  When the fault is the result of throttling
+ * the {@code MessageXml} may contain a {@code <t:Value Name="BackOffMilliseconds">} hint indicating how long the client should wait before retrying.
+ */
+public class ExchangeFaultDetail {
+	
+	/**
+	 * The name attribute of the MessageXml Value element containing the back off hint.
+	 */
+	public static final String BACK_OFF_MILLISECONDS = "BackOffMilliseconds";
+	
+	private static final Log log = LogFactory.getLog(ExchangeFaultDetail.class);
+	
+	private final String responseCode;
+	private final String message;
+	private final long backOffMillis;
+	
+	/**
+	 * @param responseCode
+	 * @param message
+	 * @param backOffMillis
+	 */
+	public ExchangeFaultDetail(String responseCode, String message, long backOffMillis) {
+		this.responseCode = responseCode;
+		this.message = message;
+		this.backOffMillis = backOffMillis;
+	}
+	/**
+	 * @return the EWS response code (e.g. {@link ExchangeOnlineThrottlingPolicy#ERROR_SERVER_BUSY}), may be null
+	 */
+	public String getResponseCode() {
+		return responseCode;
+	}
+	/**
+	 * @return the message, may be null
+	 */
+	public String getMessage() {
+		return message;
+	}
+	/**
+	 * @return the back off hint in milliseconds, 0 if the server did not provide one
+	 */
+	public long getBackOffMillis() {
+		return backOffMillis;
+	}
+	
+	/**
+	 * Parse the detail of the {@link SoapFault}.
+	 * 
+	 * @param soapFault
+	 * @return the {@link ExchangeFaultDetail}, never null
+	 */
+	public static ExchangeFaultDetail fromSoapFault(SoapFault soapFault) {
+		String responseCode = null;
+		String message = null;
+		long backOffMillis = 0;
+		SoapFaultDetail faultDetail = null == soapFault ? null : soapFault.getFaultDetail();
+		if(null != faultDetail) {
+			Iterator<SoapFaultDetailElement> entries = faultDetail.getDetailEntries();
+			while(entries.hasNext()) {
+				Element element = toElement(entries.next());
+				if(null == element) {
+					continue;
+				}
+				String localName = getLocalName(element);
+				if("ResponseCode".equals(localName)) {
+					responseCode = StringUtils.trimToNull(element.getTextContent());
+				} else if("Message".equals(localName)) {
+					message = StringUtils.trimToNull(element.getTextContent());
+				} else if("MessageXml".equals(localName)) {
+					backOffMillis = Math.max(backOffMillis, parseBackOffMillis(element.getChildNodes()));
+				}
+			}
+		}
+		if(null == message && null != soapFault) {
+			message = soapFault.getFaultStringOrReason();
+		}
+		return new ExchangeFaultDetail(responseCode, message, backOffMillis);
+	}
+	
+	/**
+	 * Find the {@link #BACK_OFF_MILLISECONDS} hint within the {@link MessageXml} of a response message.
+	 * 
+	 * @param messageXml
+	 * @return the back off hint in milliseconds, 0 if none was found
+	 */
+	public static long parseBackOffMillis(MessageXml messageXml) {
+		long backOffMillis = 0;
+		if(null != messageXml) {
+			List<Element> anies = messageXml.getAnies();
+			for(Element element : anies) {
+				backOffMillis = Math.max(backOffMillis, parseBackOffMillis(element));
+			}
+		}
+		return backOffMillis;
+	}
+	
+	private static long parseBackOffMillis(NodeList nodes) {
+		long backOffMillis = 0;
+		for(int i = 0; i < nodes.getLength(); i++) {
+			Node node = nodes.item(i);
+			if(node instanceof Element) {
+				backOffMillis = Math.max(backOffMillis, parseBackOffMillis((Element) node));
+			}
+		}
+		return backOffMillis;
+	}
+	
+	private static long parseBackOffMillis(Element element) {
+		if("Value".equals(getLocalName(element)) && BACK_OFF_MILLISECONDS.equals(element.getAttribute("Name"))) {
+			String value = StringUtils.trimToEmpty(element.getTextContent());
+			try {
+				return Long.parseLong(value);
+			} catch (NumberFormatException e) {
+				log.warn("ignoring unparseable "+BACK_OFF_MILLISECONDS+" value: "+value);
+				return 0;
+			}
+		}
+		return parseBackOffMillis(element.getChildNodes());
+	}
+	
+	private static String getLocalName(Node node) {
+		return null == node.getLocalName() ? StringUtils.substringAfterLast(":"+node.getNodeName(), ":") : node.getLocalName();
+	}
+	
+	private static Element toElement(SoapFaultDetailElement detailElement) {
+		try {
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			DOMResult result = new DOMResult();
+			transformer.transform(detailElement.getSource(), result);
+			Node node = result.getNode();
+			if(node instanceof Element) {
+				return (Element) node;
+			}
+			if(null != node && node.getFirstChild() instanceof Element) {
+				return (Element) node.getFirstChild();
+			}
+		} catch (TransformerException e) {
+			log.warn("failed to read fault detail entry "+detailElement.getName(), e);
+		}
+		return null;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ExchangeFaultDetail[responseCode="+responseCode+", backOffMillis="+backOffMillis+", message="+message+"]";
+	}
+}
@@ -18,9 +18,13 @@
  */
 package com.microsoft.exchange.impl;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
+import javax.xml.transform.TransformerException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -54,6 +58,8 @@ ClientInterceptor {
 	protected final Log log = LogFactory.getLog(this.getClass());
 	private ImpersonationConnectingSIDSource connectingSIDSource;
 	private JAXBContext jaxbContext;
+	private int headerCacheSize = 1000;
+	private Map<String, SoapHeaderTemplate> headerCache = createHeaderCache(headerCacheSize);
 	/**
 	 * @return the connectingSIDSource
 	 */
@@ -79,6 +85,20 @@ ClientInterceptor {
 	@Autowired
 	public void setJaxbContext(JAXBContext jaxbContext) {
 		this.jaxbContext = jaxbContext;
+		this.headerCache = createHeaderCache(headerCacheSize);
+	}
+	/**
+	 * @return the maximum number of pre-serialized {@link ExchangeImpersonation} headers retained
+	 */
+	public int getHeaderCacheSize() {
+		return headerCacheSize;
+	}
+	/**
+	 * @param headerCacheSize the maximum number of pre-serialized {@link ExchangeImpersonation} headers retained, least recently used are evicted first
+	 */
+	public void setHeaderCacheSize(int headerCacheSize) {
+		this.headerCacheSize = headerCacheSize;
+		this.headerCache = createHeaderCache(headerCacheSize);
 	}
 
 	
@@ -94,19 +114,15 @@ ClientInterceptor {
 
 			ConnectingSIDType connectingSID = connectingSIDSource.getConnectingSID(soapMessage, messageContext);
 			if(connectingSID != null) {
-				ExchangeImpersonation impersonation = new ExchangeImpersonation();
-				impersonation.setConnectingSID(connectingSID);
-				
 				SoapEnvelope envelope = soapMessage.getEnvelope();
 				SoapHeader header = envelope.getHeader();
 
+				SoapHeaderTemplate template = getHeaderTemplate(connectingSID);
 				try {
-					Marshaller m = jaxbContext.createMarshaller();
-					m.marshal(impersonation, header.getResult());
-					
-				} catch (JAXBException e) {
-					log.error("JAXBException raised while attempting to add ExchangeImpersonation header with SID: " + connectingSID, e);
-					throw new ExchangeImpersonationException("JAXBException raised while attempting to add ExchangeImpersonation header with SID: " + connectingSID, e);
+					template.writeTo(header);
+				} catch (TransformerException e) {
+					log.error("TransformerException raised while attempting to add ExchangeImpersonation header with SID: " + connectingSID, e);
+					throw new ExchangeImpersonationException("TransformerException raised while attempting to add ExchangeImpersonation header with SID: " + connectingSID, e);
 				}
 			} else {
 				if(log.isDebugEnabled()) {
@@ -118,6 +134,57 @@ ClientInterceptor {
 		return true;
 	}
 
+	/**
+	 * Return the pre-serialized {@link ExchangeImpersonation} header for the {@link ConnectingSIDType}, marshalling it on first use.
+	 * 
+	 * @param connectingSID
+	 * @return the {@link SoapHeaderTemplate}
+	 */
+	protected SoapHeaderTemplate getHeaderTemplate(ConnectingSIDType connectingSID) {
+		String key = getCacheKey(connectingSID);
+		Map<String, SoapHeaderTemplate> cache = headerCache;
+		SoapHeaderTemplate template = cache.get(key);
+		if(null == template) {
+			ExchangeImpersonation impersonation = new ExchangeImpersonation();
+			impersonation.setConnectingSID(connectingSID);
+			try {
+				template = SoapHeaderTemplate.marshal(jaxbContext, impersonation);
+			} catch (JAXBException e) {
+				log.error("JAXBException raised while attempting to add ExchangeImpersonation header with SID: " + connectingSID, e);
+				throw new ExchangeImpersonationException("JAXBException raised while attempting to add ExchangeImpersonation header with SID: " + connectingSID, e);
+			}
+			cache.put(key, template);
+		}
+		return template;
+	}
+	
+	/**
+	 * @param connectingSID
+	 * @return a key which is unique for the content of the {@link ConnectingSIDType}
+	 */
+	static String getCacheKey(ConnectingSIDType connectingSID) {
+		StringBuilder key = new StringBuilder();
+		key.append(connectingSID.getPrincipalName()).append('|');
+		key.append(connectingSID.getPrimarySmtpAddress()).append('|');
+		key.append(connectingSID.getSmtpAddress()).append('|');
+		key.append(connectingSID.getSID());
+		return key.toString();
+	}
+	
+	/**
+	 * @param maxSize
+	 * @return a synchronized, access ordered {@link Map} which evicts the least recently used entry beyond maxSize
+	 */
+	private static Map<String, SoapHeaderTemplate> createHeaderCache(final int maxSize) {
+		return Collections.synchronizedMap(new LinkedHashMap<String, SoapHeaderTemplate>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SoapHeaderTemplate> eldest) {
+				return size() > maxSize;
+			}
+		});
+	}
+
 	/* (non-Javadoc)
 	 * @see org.springframework.ws.client.support.interceptor.ClientInterceptor#handleResponse(org.springframework.ws.context.MessageContext)
 	 */
@@ -54,4 +54,12 @@ public class ExchangeOnlineThrottlingPolicy {
 	 * The maximum number of concurrent connections for a service account using impersonation.
 	 */
 	public static final int MAX_CONCURRENT_CONNECTIONS_IMPERSONATION = 10;
+	/**
+	 * The maximum number of subscriptions which should share a single streaming notification connection.
+	 */
+	public static final int MAX_SUBSCRIPTIONS_PER_STREAMING_CONNECTION = 200;
+	/**
+	 * The maximum number of streaming notification connections a service account may hold open at once (HangingConnectionLimit).
+	 */
+	public static final int MAX_STREAMING_CONNECTIONS = 10;
 }
@@ -19,6 +19,7 @@
 package com.microsoft.exchange.impl;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -56,10 +57,14 @@ import com.microsoft.exchange.messages.FindItemResponse;
 import com.microsoft.exchange.messages.FindItemResponseMessageType;
 import com.microsoft.exchange.messages.FolderInfoResponseMessageType;
 import com.microsoft.exchange.messages.FreeBusyResponseType;
+import com.microsoft.exchange.messages.GetEventsResponse;
+import com.microsoft.exchange.messages.GetEventsResponseMessageType;
 import com.microsoft.exchange.messages.GetFolderResponse;
 import com.microsoft.exchange.messages.GetItemResponse;
 import com.microsoft.exchange.messages.GetServerTimeZonesResponse;
 import com.microsoft.exchange.messages.GetServerTimeZonesResponseMessageType;
+import com.microsoft.exchange.messages.GetStreamingEventsResponse;
+import com.microsoft.exchange.messages.GetStreamingEventsResponseMessageType;
 import com.microsoft.exchange.messages.GetUserAvailabilityResponse;
 import com.microsoft.exchange.messages.ItemInfoResponseMessageType;
 import com.microsoft.exchange.messages.ResolveNamesResponse;
@@ -67,16 +72,31 @@ import com.microsoft.exchange.messages.ResolveNamesResponseMessageType;
 import com.microsoft.exchange.messages.ResponseCodeType;
 import com.microsoft.exchange.messages.ResponseMessageType;
 import com.microsoft.exchange.messages.ResponseMessageType.MessageXml;
+import com.microsoft.exchange.messages.SubscribeResponse;
+import com.microsoft.exchange.messages.SubscribeResponseMessageType;
 import com.microsoft.exchange.messages.SuggestionsResponseType;
+import com.microsoft.exchange.messages.SyncFolderHierarchyResponse;
+import com.microsoft.exchange.messages.SyncFolderHierarchyResponseMessageType;
+import com.microsoft.exchange.messages.SyncFolderItemsResponse;
+import com.microsoft.exchange.messages.SyncFolderItemsResponseMessageType;
 import com.microsoft.exchange.messages.UpdateFolderResponse;
 import com.microsoft.exchange.messages.UpdateItemResponse;
+import com.microsoft.exchange.model.FindItemIdsResult;
+import com.microsoft.exchange.model.ItemChangeEvent;
+import com.microsoft.exchange.model.ItemIdKeyedSet;
+import com.microsoft.exchange.model.SubscriptionEventsResult;
+import com.microsoft.exchange.model.SyncFolderHierarchyResult;
+import com.microsoft.exchange.model.SyncFolderItemsResult;
 import com.microsoft.exchange.types.ArrayOfFoldersType;
 import com.microsoft.exchange.types.ArrayOfRealItemsType;
 import com.microsoft.exchange.types.ArrayOfResolutionType;
 import com.microsoft.exchange.types.ArrayOfSuggestionDayResult;
 import com.microsoft.exchange.types.ArrayOfTimeZoneDefinitionType;
 import com.microsoft.exchange.types.BaseFolderType;
+import com.microsoft.exchange.types.BaseNotificationEventType;
+import com.microsoft.exchange.types.BaseObjectChangedEventType;
 import com.microsoft.exchange.types.CalendarItemType;
+import com.microsoft.exchange.types.ConnectionStatusType;
 import com.microsoft.exchange.types.ContactItemType;
 import com.microsoft.exchange.types.EmailAddressDictionaryEntryType;
 import com.microsoft.exchange.types.EmailAddressDictionaryType;
@@ -86,8 +106,15 @@ import com.microsoft.exchange.types.FolderIdType;
 import com.microsoft.exchange.types.FreeBusyView;
 import com.microsoft.exchange.types.ItemIdType;
 import com.microsoft.exchange.types.ItemType;
+import com.microsoft.exchange.types.MovedCopiedEventType;
+import com.microsoft.exchange.types.NotificationEventTypeType;
+import com.microsoft.exchange.types.NotificationType;
 import com.microsoft.exchange.types.ResolutionType;
 import com.microsoft.exchange.types.ResponseClassType;
+import com.microsoft.exchange.types.SyncFolderHierarchyCreateOrUpdateType;
+import com.microsoft.exchange.types.SyncFolderHierarchyDeleteType;
+import com.microsoft.exchange.types.SyncFolderItemsCreateOrUpdateType;
+import com.microsoft.exchange.types.SyncFolderItemsDeleteType;
 import com.microsoft.exchange.types.TimeZoneDefinitionType;
 
 
@@ -152,7 +179,7 @@ public class ExchangeResponseUtilsImpl implements ExchangeResponseUtils  {
 	 * @return {@link Set} of {@link ItemType}
 	 */
 	private Set<ItemType> parseItemResponseMessages(ArrayOfResponseMessagesType responseMessages){
-		Set<ItemType> items = new HashSet<ItemType>();
+		Set<ItemType> items = new ItemIdKeyedSet<ItemType>();
 		List<JAXBElement<? extends ResponseMessageType>> getItemResponseMessages = responseMessages.getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages();
 		for(JAXBElement<? extends ResponseMessageType> responseMessageElement : getItemResponseMessages) {
 			ItemInfoResponseMessageType itemType = (ItemInfoResponseMessageType) responseMessageElement.getValue();
@@ -231,31 +258,40 @@ public class ExchangeResponseUtilsImpl implements ExchangeResponseUtils  {
 					//TODO recover (switch Credentials)
 				}
 				
-				if(ResponseCodeType.ERROR_MISSING_EMAIL_ADDRESS.equals(responseCode)){
-					throw new ExchangeMissingEmailAddressRuntimeException(err);
-				}
-				if(ResponseCodeType.ERROR_TIMEOUT_EXPIRED.equals(responseCode)){
-					throw new ExchangeTimeoutRuntimeException(err);
-				}
-				
-				if(ResponseCodeType.ERROR_CANNOT_DELETE_OBJECT.equals(responseCode)) {
-					throw new ExchangeCannotDeleteRuntimeException(err);
-				}
-				
-				if(ResponseCodeType.ERROR_ITEM_NOT_FOUND.equals(responseCode)) {
-					throw new ExchangeItemNotFoundRuntimeException(err);
-				}
-
-				if(ResponseCodeType.ERROR_EXCEEDED_FIND_COUNT_LIMIT.equals(responseCode)) {
-					throw new ExchangeExceededFindCountLimitRuntimeException(err);
-				}
-				
-				throw new ExchangeRuntimeException(err);
+				throw createResponseCodeException(responseCode, err);
 			}
 		}
 		return success;
 	}
 	
+	/**
+	 * Shared by the JAXB and ID-only parsing paths so both surface the same exception for a given error.
+	 * 
+	 * @param responseCode a response code other than {@link ResponseCodeType#NO_ERROR}
+	 * @param err the message for the exception
+	 * @return the most specific {@link ExchangeRuntimeException} for the response code, carrying that code
+	 */
+	protected ExchangeRuntimeException createResponseCodeException(ResponseCodeType responseCode, String err) {
+		ExchangeRuntimeException exception;
+		if(ResponseCodeType.ERROR_MISSING_EMAIL_ADDRESS.equals(responseCode)){
+			exception = new ExchangeMissingEmailAddressRuntimeException(err);
+		}else if(ResponseCodeType.ERROR_TIMEOUT_EXPIRED.equals(responseCode)){
+			exception = new ExchangeTimeoutRuntimeException(err);
+		}else if(ResponseCodeType.ERROR_CANNOT_DELETE_OBJECT.equals(responseCode)) {
+			exception = new ExchangeCannotDeleteRuntimeException(err);
+		}else if(ResponseCodeType.ERROR_ITEM_NOT_FOUND.equals(responseCode)) {
+			exception = new ExchangeItemNotFoundRuntimeException(err);
+		}else if(ResponseCodeType.ERROR_EXCEEDED_FIND_COUNT_LIMIT.equals(responseCode)) {
+			exception = new ExchangeExceededFindCountLimitRuntimeException(err);
+		}else {
+			exception = new ExchangeRuntimeException(err);
+		}
+		if(null != responseCode) {
+			exception.setResponseCode(responseCode.value());
+		}
+		return exception;
+	}
+	
 	private boolean confirmSuccessInternal(ResponseMessageType responseMessage){
 		boolean success =false;
 		
@@ -457,13 +493,273 @@ public class ExchangeResponseUtilsImpl implements ExchangeResponseUtils  {
 		return pair;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.ExchangeResponseUtils#parseFindItemIdResponse(com.microsoft.exchange.model.FindItemIdsResult)
+	 */
+	@Override
+	public Pair<Set<ItemIdType>, Integer> parseFindItemIdResponse(FindItemIdsResult result) {
+		if(!result.isSuccess()) {
+			StringBuilder err = new StringBuilder("Response[code=").append(result.getResponseCode());
+			if(StringUtils.isNotBlank(result.getMessageText())) {
+				err.append(", txt=").append(result.getMessageText());
+			}
+			throw createResponseCodeException(result.getResponseCode(), err.append("]").toString());
+		}
+		log.info("parseFindItemIdResponse: foundItems="+result.getItemIds().size()+", totalItemsInview="+result.getTotalItemsInView()+" , nextOffset="+result.getNextOffset()+", includesLast="+result.isIncludesLastItemInRange() );
+		return result.toPair();
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.ExchangeResponseUtils#parseFindItemIdsResult(com.microsoft.exchange.messages.FindItemResponse)
+	 */
+	@Override
+	public FindItemIdsResult parseFindItemIdsResult(FindItemResponse response) {
+		confirmSuccess(response);
+		FindItemIdsResult result = new FindItemIdsResult();
+		List<JAXBElement<? extends ResponseMessageType>> itemResponseMessages = response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages();
+		for(JAXBElement<? extends ResponseMessageType> element : itemResponseMessages) {
+			FindItemParentType rootFolder = ((FindItemResponseMessageType) element.getValue()).getRootFolder();
+			if(null == rootFolder) {
+				continue;
+			}
+			if(null != rootFolder.getIndexedPagingOffset()) {
+				result.setIndexedPagingOffset(rootFolder.getIndexedPagingOffset());
+			}
+			result.setTotalItemsInView(rootFolder.getTotalItemsInView());
+			result.setIncludesLastItemInRange(!Boolean.FALSE.equals(rootFolder.isIncludesLastItemInRange()));
+			if(null != rootFolder.getItems()) {
+				for(ItemType it : rootFolder.getItems().getItemsAndMessagesAndCalendarItems()) {
+					result.getItemIds().add(it.getItemId());
+				}
+			}
+		}
+		if(log.isDebugEnabled()) {
+			log.debug("parseFindItemIdsResult: "+result);
+		}
+		return result;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.ExchangeResponseUtils#parseSyncFolderHierarchyResponse(com.microsoft.exchange.messages.SyncFolderHierarchyResponse)
+	 */
+	@Override
+	public SyncFolderHierarchyResult parseSyncFolderHierarchyResponse(SyncFolderHierarchyResponse response) {
+		confirmSuccess(response);
+		SyncFolderHierarchyResult result = new SyncFolderHierarchyResult();
+		List<JAXBElement<? extends ResponseMessageType>> responseMessages = response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages();
+		for(JAXBElement<? extends ResponseMessageType> element : responseMessages) {
+			SyncFolderHierarchyResponseMessageType message = (SyncFolderHierarchyResponseMessageType) element.getValue();
+			result.setSyncState(message.getSyncState());
+			result.setIncludesLastFolderInRange(!Boolean.FALSE.equals(message.isIncludesLastFolderInRange()));
+			if(null == message.getChanges()) {
+				continue;
+			}
+			for(JAXBElement<?> change : message.getChanges().getCreatesAndUpdatesAndDeletes()) {
+				Object value = change.getValue();
+				if(value instanceof SyncFolderHierarchyCreateOrUpdateType) {
+					BaseFolderType folder = getSyncFolder((SyncFolderHierarchyCreateOrUpdateType) value);
+					if(null == folder || null == folder.getFolderId()) {
+						continue;
+					}
+					if("Create".equals(change.getName().getLocalPart())) {
+						result.getCreatedFolders().add(folder);
+					}else {
+						result.getUpdatedFolders().add(folder);
+					}
+				}else if(value instanceof SyncFolderHierarchyDeleteType) {
+					result.getDeletedFolderIds().add(((SyncFolderHierarchyDeleteType) value).getFolderId());
+				}
+			}
+		}
+		if(log.isDebugEnabled()) {
+			log.debug("parseSyncFolderHierarchyResponse: "+result);
+		}
+		return result;
+	}
+	
+	/**
+	 * @param change
+	 * @return the {@link BaseFolderType} of a SyncFolderHierarchy Create or Update element, whichever folder element is present
+	 */
+	private static BaseFolderType getSyncFolder(SyncFolderHierarchyCreateOrUpdateType change) {
+		BaseFolderType[] candidates = {change.getCalendarFolder(), change.getFolder(), change.getTasksFolder(), 
+				change.getContactsFolder(), change.getSearchFolder()};
+		for(BaseFolderType candidate : candidates) {
+			if(null != candidate) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.ExchangeResponseUtils#parseSyncFolderItemsResponse(com.microsoft.exchange.messages.SyncFolderItemsResponse)
+	 */
+	@Override
+	public SyncFolderItemsResult parseSyncFolderItemsResponse(SyncFolderItemsResponse response) {
+		confirmSuccess(response);
+		SyncFolderItemsResult result = new SyncFolderItemsResult();
+		List<JAXBElement<? extends ResponseMessageType>> responseMessages = response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages();
+		for(JAXBElement<? extends ResponseMessageType> element : responseMessages) {
+			SyncFolderItemsResponseMessageType message = (SyncFolderItemsResponseMessageType) element.getValue();
+			result.setSyncState(message.getSyncState());
+			result.setIncludesLastItemInRange(!Boolean.FALSE.equals(message.isIncludesLastItemInRange()));
+			if(null == message.getChanges()) {
+				continue;
+			}
+			for(JAXBElement<?> change : message.getChanges().getCreatesAndUpdatesAndDeletes()) {
+				String name = change.getName().getLocalPart();
+				Object value = change.getValue();
+				if(value instanceof SyncFolderItemsCreateOrUpdateType) {
+					ItemType item = getSyncItem((SyncFolderItemsCreateOrUpdateType) value);
+					if(null == item || null == item.getItemId()) {
+						continue;
+					}
+					if("Create".equals(name)) {
+						result.getCreatedItemIds().add(item.getItemId());
+					}else {
+						result.getUpdatedItemIds().add(item.getItemId());
+					}
+				}else if(value instanceof SyncFolderItemsDeleteType) {
+					result.getDeletedItemIds().add(((SyncFolderItemsDeleteType) value).getItemId());
+				}
+			}
+		}
+		if(log.isDebugEnabled()) {
+			log.debug("parseSyncFolderItemsResponse: "+result);
+		}
+		return result;
+	}
+	
+	/**
+	 * @param change
+	 * @return the {@link ItemType} of a SyncFolderItems Create or Update element, whichever item element is present
+	 */
+	private static ItemType getSyncItem(SyncFolderItemsCreateOrUpdateType change) {
+		ItemType[] candidates = {change.getCalendarItem(), change.getItem(), change.getMessage(), change.getMeetingRequest(), 
+				change.getMeetingResponse(), change.getMeetingCancellation(), change.getMeetingMessage(), change.getTask(), 
+				change.getContact(), change.getDistributionList(), change.getPostItem()};
+		for(ItemType candidate : candidates) {
+			if(null != candidate) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.ExchangeResponseUtils#parseSubscribeResponse(com.microsoft.exchange.messages.SubscribeResponse)
+	 */
+	@Override
+	public Pair<String, String> parseSubscribeResponse(SubscribeResponse response) {
+		confirmSuccess(response);
+		List<JAXBElement<? extends ResponseMessageType>> responseMessages = response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages();
+		for(JAXBElement<? extends ResponseMessageType> element : responseMessages) {
+			SubscribeResponseMessageType message = (SubscribeResponseMessageType) element.getValue();
+			if(StringUtils.isNotBlank(message.getSubscriptionId())) {
+				return Pair.of(message.getSubscriptionId(), message.getWatermark());
+			}
+		}
+		throw new ExchangeRuntimeException("SubscribeResponse did not contain a SubscriptionId");
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.ExchangeResponseUtils#parseGetStreamingEventsResponse(com.microsoft.exchange.messages.GetStreamingEventsResponse)
+	 */
+	@Override
+	public SubscriptionEventsResult parseGetStreamingEventsResponse(GetStreamingEventsResponse response) {
+		SubscriptionEventsResult result = new SubscriptionEventsResult();
+		List<JAXBElement<? extends ResponseMessageType>> responseMessages = response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages();
+		for(JAXBElement<? extends ResponseMessageType> element : responseMessages) {
+			GetStreamingEventsResponseMessageType message = (GetStreamingEventsResponseMessageType) element.getValue();
+			if(!ResponseCodeType.NO_ERROR.equals(message.getResponseCode())) {
+				if(null == message.getErrorSubscriptionIds()) {
+					throw createResponseCodeException(message.getResponseCode(), parseInnerResponse(element));
+				}
+				String responseCode = null == message.getResponseCode() ? null : message.getResponseCode().value();
+				for(String subscriptionId : message.getErrorSubscriptionIds().getSubscriptionIds()) {
+					result.getErrorSubscriptionIds().put(subscriptionId, responseCode);
+				}
+			}
+			if(null != message.getNotifications()) {
+				for(NotificationType notification : message.getNotifications().getNotifications()) {
+					addNotification(result, notification);
+				}
+			}
+			if(ConnectionStatusType.CLOSED.equals(message.getConnectionStatus())) {
+				result.setConnectionClosed(true);
+			}
+		}
+		if(log.isDebugEnabled()) {
+			log.debug("parseGetStreamingEventsResponse: "+result);
+		}
+		return result;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.ExchangeResponseUtils#parseGetEventsResponse(com.microsoft.exchange.messages.GetEventsResponse)
+	 */
+	@Override
+	public SubscriptionEventsResult parseGetEventsResponse(GetEventsResponse response) {
+		confirmSuccess(response);
+		SubscriptionEventsResult result = new SubscriptionEventsResult();
+		List<JAXBElement<? extends ResponseMessageType>> responseMessages = response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages();
+		for(JAXBElement<? extends ResponseMessageType> element : responseMessages) {
+			NotificationType notification = ((GetEventsResponseMessageType) element.getValue()).getNotification();
+			if(null != notification) {
+				addNotification(result, notification);
+				if(Boolean.TRUE.equals(notification.isMoreEvents())) {
+					result.getMoreEventsSubscriptionIds().add(notification.getSubscriptionId());
+				}
+			}
+		}
+		if(log.isDebugEnabled()) {
+			log.debug("parseGetEventsResponse: "+result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Add the item events of {@code notification} to {@code result} and record the last watermark of the subscription.
+	 * Status events and folder events only advance the watermark.
+	 * 
+	 * @param result
+	 * @param notification
+	 */
+	private static void addNotification(SubscriptionEventsResult result, NotificationType notification) {
+		String subscriptionId = notification.getSubscriptionId();
+		for(JAXBElement<? extends BaseNotificationEventType> element : notification.getCopiedEventsAndCreatedEventsAndDeletedEvents()) {
+			BaseNotificationEventType event = element.getValue();
+			if(null != event.getWatermark()) {
+				result.getWatermarks().put(subscriptionId, event.getWatermark());
+			}
+			if(!(event instanceof BaseObjectChangedEventType) || null == ((BaseObjectChangedEventType) event).getItemId()) {
+				continue;
+			}
+			NotificationEventTypeType eventType;
+			try {
+				eventType = NotificationEventTypeType.fromValue(element.getName().getLocalPart());
+			} catch (IllegalArgumentException e) {
+				continue;
+			}
+			BaseObjectChangedEventType changed = (BaseObjectChangedEventType) event;
+			Date timeStamp = null == changed.getTimeStamp() ? null : changed.getTimeStamp().toGregorianCalendar().getTime();
+			ItemChangeEvent itemEvent = new ItemChangeEvent(subscriptionId, eventType, event.getWatermark(), timeStamp, changed.getItemId(), changed.getParentFolderId());
+			if(changed instanceof MovedCopiedEventType) {
+				itemEvent.setOldItemId(((MovedCopiedEventType) changed).getOldItemId());
+				itemEvent.setOldParentFolderId(((MovedCopiedEventType) changed).getOldParentFolderId());
+			}
+			result.getEvents().add(itemEvent);
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see com.microsoft.exchange.ExchangeResponseUtils#parseFindItemResponse(com.microsoft.exchange.messages.FindItemResponse)
 	 */
 	@Override
 	public Set<ItemType> parseFindItemResponse(FindItemResponse response) {
 		confirmSuccess(response);
-		Set<ItemType> calendarItems = new HashSet<ItemType>();
+		Set<ItemType> calendarItems = new ItemIdKeyedSet<ItemType>();
 
 		ArrayOfResponseMessagesType findItemResponseMessages = response
 				.getResponseMessages();
@@ -482,7 +778,7 @@ public class ExchangeResponseUtilsImpl implements ExchangeResponseUtils  {
 	
 	@Override
 	public Set<CalendarItemType> parseFindCalendarItemResponse(FindItemResponse response){
-		Set<CalendarItemType> results = new HashSet<CalendarItemType>();
+		Set<CalendarItemType> results = new ItemIdKeyedSet<CalendarItemType>();
 		Set<ItemType> parsed = parseFindItemResponse(response);
 		for(ItemType i: parsed){
 			if(i instanceof CalendarItemType){
@@ -22,32 +22,67 @@
 
 package com.microsoft.exchange.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.net.URI;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.util.List;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.transform.TransformerException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.springframework.core.io.Resource;
+import org.springframework.oxm.Marshaller;
+import org.springframework.oxm.Unmarshaller;
 import org.springframework.stereotype.Component;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.client.WebServiceIOException;
+import org.springframework.ws.client.WebServiceTransportException;
 import org.springframework.ws.client.core.WebServiceMessageCallback;
+import org.springframework.ws.client.core.WebServiceMessageExtractor;
+import org.springframework.ws.client.core.WebServiceTemplate;
 import org.springframework.ws.client.core.support.WebServiceGatewaySupport;
+import org.springframework.ws.client.support.interceptor.ClientInterceptor;
+import org.springframework.ws.context.DefaultMessageContext;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.soap.SoapMessage;
 import org.springframework.ws.soap.client.SoapFaultClientException;
 import org.springframework.ws.soap.client.core.SoapActionCallback;
+import org.springframework.ws.support.MarshallingUtils;
+import org.springframework.ws.transport.WebServiceConnection;
 import org.springframework.ws.transport.WebServiceMessageSender;
+import org.springframework.ws.transport.context.DefaultTransportContext;
+import org.springframework.ws.transport.context.TransportContext;
+import org.springframework.ws.transport.context.TransportContextHolder;
+import org.springframework.ws.transport.http.HttpComponentsConnection;
 import org.springframework.ws.transport.http.HttpComponentsMessageSender;
 
 import com.microsoft.exchange.ExchangeWebServices;
+import com.microsoft.exchange.FindItemIdsOperations;
+import com.microsoft.exchange.StreamingEventsHandler;
+import com.microsoft.exchange.StreamingEventsOperations;
 import com.microsoft.exchange.exception.ExchangeInvalidUPNRuntimeException;
+import com.microsoft.exchange.exception.ExchangeThrottledRuntimeException;
 import com.microsoft.exchange.exception.ExchangeWebServicesRuntimeException;
+import com.microsoft.exchange.impl.http.HttpTrafficStatistics;
 import com.microsoft.exchange.messages.AddDelegate;
 import com.microsoft.exchange.messages.AddDelegateResponse;
+import com.microsoft.exchange.messages.BaseResponseMessageType;
 import com.microsoft.exchange.messages.ConvertId;
 import com.microsoft.exchange.messages.ConvertIdResponse;
 import com.microsoft.exchange.messages.CopyFolder;
@@ -88,6 +123,8 @@ import com.microsoft.exchange.messages.GetItem;
 import com.microsoft.exchange.messages.GetItemResponse;
 import com.microsoft.exchange.messages.GetServerTimeZones;
 import com.microsoft.exchange.messages.GetServerTimeZonesResponse;
+import com.microsoft.exchange.messages.GetStreamingEvents;
+import com.microsoft.exchange.messages.GetStreamingEventsResponse;
 import com.microsoft.exchange.messages.GetUserAvailabilityRequest;
 import com.microsoft.exchange.messages.GetUserAvailabilityResponse;
 import com.microsoft.exchange.messages.GetUserOofSettingsRequest;
@@ -100,6 +137,7 @@ import com.microsoft.exchange.messages.RemoveDelegate;
 import com.microsoft.exchange.messages.RemoveDelegateResponse;
 import com.microsoft.exchange.messages.ResolveNames;
 import com.microsoft.exchange.messages.ResolveNamesResponse;
+import com.microsoft.exchange.messages.ResponseMessageType;
 import com.microsoft.exchange.messages.SendItem;
 import com.microsoft.exchange.messages.SendItemResponse;
 import com.microsoft.exchange.messages.SetUserOofSettingsRequest;
@@ -118,6 +156,8 @@ import com.microsoft.exchange.messages.UpdateFolder;
 import com.microsoft.exchange.messages.UpdateFolderResponse;
 import com.microsoft.exchange.messages.UpdateItem;
 import com.microsoft.exchange.messages.UpdateItemResponse;
+import com.microsoft.exchange.model.FindItemIdsResult;
+import com.microsoft.exchange.model.MailboxAffinity;
 
 /**
  * Spring {@link WebServiceGatewaySupport} backed implementatoin of {@link ExchangeWebServices}.
@@ -125,17 +165,22 @@ import com.microsoft.exchange.messages.UpdateItemResponse;
  * @author Nicholas Blair
  */
 @Component
-public class ExchangeWebServicesClient extends WebServiceGatewaySupport implements ExchangeWebServices {
+public class ExchangeWebServicesClient extends WebServiceGatewaySupport implements ExchangeWebServices, FindItemIdsOperations, StreamingEventsOperations {
 
 	/**
 	 * This appears as the message of a SoapFault in the event the client encounters throttle po licy limits.
 	 */
 	protected static final String RETRY_ERROR_MESSAGE = "The server cannot service this request right now. Try again later.";
+	protected static final String SOAP_ACTION_PREFIX = "http://schemas.microsoft.com/exchange/services/2006/messages/";
 	protected static final Log log = LogFactory.getLog(ExchangeWebServicesClient.class);
 	
 	private KeyStore keyStore;
 	private char[] keyStorePassword;
 	private KeyStore trustStore;
+	private ImpersonationConnectingSIDSource connectingSIDSource;
+	private MailboxConcurrencyGovernor concurrencyGovernor;
+	private AdaptiveThrottlingController throttlingController;
+	private final FindItemIdsResponseExtractor findItemIdsExtractor = new FindItemIdsResponseExtractor();
 	/**
 	 * @param keyStore the keyStore to set
 	 */
@@ -154,6 +199,46 @@ public class ExchangeWebServicesClient extends WebServiceGatewaySupport implemen
 	public void setKeyStorePassword(char[] keyStorePassword) {
 		this.keyStorePassword = keyStorePassword;
 	}
+	/**
+	 * @return the {@link ImpersonationConnectingSIDSource} used to identify the principal each request is made on behalf of
+	 */
+	public ImpersonationConnectingSIDSource getConnectingSIDSource() {
+		return connectingSIDSource;
+	}
+	/**
+	 * Should be the same source used by the {@link ExchangeImpersonationClientInterceptor}.
+	 * @param connectingSIDSource the connectingSIDSource to set
+	 */
+	public void setConnectingSIDSource(ImpersonationConnectingSIDSource connectingSIDSource) {
+		this.connectingSIDSource = connectingSIDSource;
+	}
+	/**
+	 * @return the {@link MailboxConcurrencyGovernor}, may be null
+	 */
+	public MailboxConcurrencyGovernor getConcurrencyGovernor() {
+		return concurrencyGovernor;
+	}
+	/**
+	 * Optional, when set along with a {@link #setConnectingSIDSource(ImpersonationConnectingSIDSource)} the number of concurrent requests
+	 * per impersonated principal will be limited.
+	 * @param concurrencyGovernor the concurrencyGovernor to set
+	 */
+	public void setConcurrencyGovernor(MailboxConcurrencyGovernor concurrencyGovernor) {
+		this.concurrencyGovernor = concurrencyGovernor;
+	}
+	/**
+	 * @return the {@link AdaptiveThrottlingController}, may be null
+	 */
+	public AdaptiveThrottlingController getThrottlingController() {
+		return throttlingController;
+	}
+	/**
+	 * Optional, when set the number of concurrent requests per endpoint and impersonated principal will adapt to the throttling signals returned by Exchange.
+	 * @param throttlingController the throttlingController to set
+	 */
+	public void setThrottlingController(AdaptiveThrottlingController throttlingController) {
+		this.throttlingController = throttlingController;
+	}
 	/**
 	 * 
 	 * @param resource
@@ -239,6 +324,14 @@ public class ExchangeWebServicesClient extends WebServiceGatewaySupport implemen
 		FindItemResponse response = (FindItemResponse) internalInvoke(request);
 		return response;
 	}
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.FindItemIdsOperations#findItemIds(com.microsoft.exchange.messages.FindItem)
+	 */
+	@Override
+	public FindItemIdsResult findItemIds(FindItem request) {
+		FindItemIdsResult result = (FindItemIdsResult) internalInvoke(request, null, findItemIdsExtractor);
+		return result;
+	}
 
 	/* (non-Javadoc)
 	 * @see com.microsoft.exchange.ExchangeWebServices#getFolder(com.microsoft.exchange.messages.GetFolder)
@@ -330,6 +423,113 @@ public class ExchangeWebServicesClient extends WebServiceGatewaySupport implemen
 		return response;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.ExchangeWebServices#getStreamingEvents(com.microsoft.exchange.messages.GetStreamingEvents)
+	 */
+	@Override
+	public GetStreamingEventsResponse getStreamingEvents(GetStreamingEvents request) {
+		GetStreamingEventsResponse response = (GetStreamingEventsResponse) internalInvoke(request);
+		return response;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.StreamingEventsOperations#subscribe(com.microsoft.exchange.messages.Subscribe, com.microsoft.exchange.model.MailboxAffinity)
+	 */
+	@Override
+	public SubscribeResponse subscribe(Subscribe request, final MailboxAffinity affinity) {
+		final Unmarshaller unmarshaller = getUnmarshaller();
+		SubscribeResponse response = (SubscribeResponse) internalInvoke(request, new AffinityCallback(affinity), new WebServiceMessageExtractor<Object>() {
+			@Override
+			public Object extractData(WebServiceMessage message) throws IOException, TransformerException {
+				readAffinityCookie(TransportContextHolder.getTransportContext().getConnection(), affinity);
+				return MarshallingUtils.unmarshal(unmarshaller, message);
+			}
+		});
+		return response;
+	}
+	
+	/**
+	 * The response is read incrementally from the {@link HttpComponentsConnection} and each envelope is handed to {@code handler} as 
+	 * soon as it has been received.  The connection is open for the request's ConnectionTimeout, so it does not take a 
+	 * {@link MailboxConcurrencyGovernor} or {@link AdaptiveThrottlingController} permit; the {@link ClientInterceptor#handleRequest(MessageContext)}
+	 * methods of the template's interceptors (e.g. impersonation) are applied to the request.
+	 * If the template has no {@link HttpComponentsMessageSender} the response is read in full by {@link #getStreamingEvents(GetStreamingEvents)}.
+	 * 
+	 * @see com.microsoft.exchange.StreamingEventsOperations#getStreamingEvents(com.microsoft.exchange.messages.GetStreamingEvents, com.microsoft.exchange.model.MailboxAffinity, com.microsoft.exchange.StreamingEventsHandler)
+	 */
+	@Override
+	public void getStreamingEvents(GetStreamingEvents request, MailboxAffinity affinity, StreamingEventsHandler handler) {
+		WebServiceTemplate template = getWebServiceTemplate();
+		URI uri = URI.create(getDefaultUri());
+		HttpComponentsMessageSender sender = getStreamingMessageSender(template, uri);
+		if(null == sender) {
+			handler.onResponse((GetStreamingEventsResponse) internalInvoke(request, new AffinityCallback(affinity)));
+			return;
+		}
+		HttpComponentsConnection connection;
+		try {
+			connection = (HttpComponentsConnection) sender.createConnection(uri);
+		} catch (IOException e) {
+			throw new WebServiceIOException("failed to open a streaming connection to "+uri+": "+e.getMessage(), e);
+		}
+		final HttpPost httpPost = connection.getHttpPost();
+		TransportContext previousContext = TransportContextHolder.getTransportContext();
+		TransportContextHolder.setTransportContext(new DefaultTransportContext(connection));
+		String previousOperation = HttpTrafficStatistics.setCurrentOperation(getOperation(request));
+		boolean completed = false;
+		try {
+			MessageContext messageContext = new DefaultMessageContext(template.getMessageFactory());
+			MarshallingUtils.marshal(getMarshaller(), request, messageContext.getRequest());
+			ClientInterceptor[] interceptors = template.getInterceptors();
+			if(null != interceptors) {
+				for(ClientInterceptor interceptor : interceptors) {
+					if(!interceptor.handleRequest(messageContext)) {
+						break;
+					}
+				}
+			}
+			addAffinityHeaders(connection, affinity);
+			connection.send(messageContext.getRequest());
+			readAffinityCookie(connection, affinity);
+			HttpEntity entity = connection.getHttpResponse().getEntity();
+			int status = connection.getHttpResponse().getStatusLine().getStatusCode();
+			if(null == entity || (connection.hasError() && status != HttpStatus.SC_INTERNAL_SERVER_ERROR)) {
+				// a 500 carries a SOAP fault, read below
+				throw new WebServiceTransportException(connection.getErrorMessage() + " [" + status + "]");
+			}
+			handler.onOpen(new Closeable() {
+				@Override
+				public void close() {
+					httpPost.abort();
+				}
+			});
+			StreamingEnvelopeReader reader = new StreamingEnvelopeReader(entity.getContent());
+			byte[] envelope;
+			while(null != (envelope = reader.nextEnvelope())) {
+				WebServiceMessage message = template.getMessageFactory().createWebServiceMessage(new ByteArrayInputStream(envelope));
+				if(message instanceof SoapMessage && ((SoapMessage) message).hasFault()) {
+					throw translateFault(request, null, new SoapFaultClientException((SoapMessage) message));
+				}
+				handler.onResponse((GetStreamingEventsResponse) MarshallingUtils.unmarshal(getUnmarshaller(), message));
+			}
+			completed = true;
+		} catch (IOException e) {
+			throw new WebServiceIOException("streaming connection to "+uri+" failed: "+e.getMessage(), e);
+		} finally {
+			if(!completed) {
+				// release the connection without reading the rest of the stream
+				httpPost.abort();
+			}
+			try {
+				connection.close();
+			} catch (IOException e) {
+				log.debug("failed to close streaming connection: "+e.getMessage());
+			}
+			HttpTrafficStatistics.setCurrentOperation(previousOperation);
+			TransportContextHolder.setTransportContext(previousContext);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see com.microsoft.exchange.ExchangeWebServices#syncFolderHierarchy(com.microsoft.exchange.messages.SyncFolderHierarchy)
 	 */
@@ -491,7 +691,7 @@ public class ExchangeWebServicesClient extends WebServiceGatewaySupport implemen
 	@Override
 	public GetUserAvailabilityResponse getUserAvailability(
 			GetUserAvailabilityRequest request) {
-		GetUserAvailabilityResponse response = (GetUserAvailabilityResponse) internalInvoke(request, new SoapActionCallback("http://schemas.microsoft.com/exchange/services/2006/messages/GetUserAvailability"));
+		GetUserAvailabilityResponse response = (GetUserAvailabilityResponse) internalInvoke(request, new SoapActionCallback(SOAP_ACTION_PREFIX + "GetUserAvailability"));
 		return response;
 	}
 
@@ -547,29 +747,225 @@ public class ExchangeWebServicesClient extends WebServiceGatewaySupport implemen
 	 * @return
 	 */
 	protected Object internalInvoke(Object request, WebServiceMessageCallback callback) {
+		return internalInvoke(request, callback, null);
+	}
+	
+	/**
+	 * 
+	 * @param request
+	 * @param callback optional
+	 * @param extractor optional, reads the response instead of the unmarshaller
+	 * @return
+	 */
+	protected Object internalInvoke(final Object request, WebServiceMessageCallback callback, WebServiceMessageExtractor<?> extractor) {
+		String principal = getPrincipal();
+		boolean governed = null != concurrencyGovernor && null != principal;
+		String throttlingKey = null == throttlingController ? null : AdaptiveThrottlingController.getKey(getDefaultUri(), principal);
+		if(governed) {
+			concurrencyGovernor.acquire(principal);
+		}
 		try {
-			Object result;
-			log.trace("ExchangeRequest="+request);
-			if(null == callback) {
-				result = getWebServiceTemplate().marshalSendAndReceive(request);
-			} else {
-				result = getWebServiceTemplate().marshalSendAndReceive(request, callback);
+			if(null != throttlingKey) {
+				throttlingController.acquire(throttlingKey);
+			}
+			String previousOperation = HttpTrafficStatistics.setCurrentOperation(getOperation(request));
+			try {
+				Object result;
+				if(log.isTraceEnabled()) {
+					log.trace("ExchangeRequest="+request);
+				}
+				if(null == extractor) {
+					if(null == callback) {
+						result = getWebServiceTemplate().marshalSendAndReceive(request);
+					} else {
+						result = getWebServiceTemplate().marshalSendAndReceive(request, callback);
+					}
+				} else {
+					final WebServiceMessageCallback actionCallback = callback;
+					final Marshaller marshaller = getMarshaller();
+					result = getWebServiceTemplate().sendAndReceive(new WebServiceMessageCallback() {
+						@Override
+						public void doWithMessage(WebServiceMessage message) throws IOException, TransformerException {
+							MarshallingUtils.marshal(marshaller, request, message);
+							if(null != actionCallback) {
+								actionCallback.doWithMessage(message);
+							}
+						}
+					}, extractor);
+				}
+				if(null != throttlingKey) {
+					recordResponse(throttlingKey, result);
+				}
+				return result;
+			} catch (SoapFaultClientException e) {
+				throw translateFault(request, throttlingKey, e);
+			} finally {
+				HttpTrafficStatistics.setCurrentOperation(previousOperation);
+				if(null != throttlingKey) {
+					throttlingController.release(throttlingKey);
+				}
 			}
-			return result;
-		} catch (SoapFaultClientException e) {
-			
-			if(e.getMessage().equals("The impersonation principal name is invalid.")) {
-				throw new ExchangeInvalidUPNRuntimeException(e);
+		} finally {
+			if(governed) {
+				concurrencyGovernor.release(principal);
 			}
-			
-			if(log.isTraceEnabled()) {
-				log.error("SoapFaultClientException encountered for " + request+".  "+e.getMessage());
-			}else {
-				log.error("SoapFaultClientException encountered "+e.getMessage());
+		}
+	}
+	
+	/**
+	 * 
+	 * @param request
+	 * @param throttlingKey notified of throttling faults, may be null
+	 * @param e
+	 * @return the {@link RuntimeException} to throw for the fault
+	 */
+	protected RuntimeException translateFault(Object request, String throttlingKey, SoapFaultClientException e) {
+		if(e.getMessage().equals("The impersonation principal name is invalid.")) {
+			return new ExchangeInvalidUPNRuntimeException(e);
+		}
+		
+		if(log.isTraceEnabled()) {
+			log.error("SoapFaultClientException encountered for " + request+".  "+e.getMessage());
+		}else {
+			log.error("SoapFaultClientException encountered "+e.getMessage());
+		}
+		
+		ExchangeFaultDetail faultDetail = ExchangeFaultDetail.fromSoapFault(e.getSoapFault());
+		if(AdaptiveThrottlingController.isThrottlingResponseCode(faultDetail.getResponseCode()) || RETRY_ERROR_MESSAGE.equals(e.getMessage())) {
+			if(null != throttlingKey) {
+				throttlingController.onThrottled(throttlingKey, faultDetail.getBackOffMillis());
 			}
-			
-			throw new ExchangeWebServicesRuntimeException(e);
+			return new ExchangeThrottledRuntimeException(faultDetail.getResponseCode(), faultDetail.getBackOffMillis(), e);
+		}
+		
+		ExchangeWebServicesRuntimeException exception = new ExchangeWebServicesRuntimeException(e);
+		exception.setResponseCode(faultDetail.getResponseCode());
+		return exception;
+	}
+	
+	/**
+	 * @param template
+	 * @param uri
+	 * @return the template's {@link HttpComponentsMessageSender} for {@code uri}, or null if it has none
+	 */
+	protected HttpComponentsMessageSender getStreamingMessageSender(WebServiceTemplate template, URI uri) {
+		WebServiceMessageSender[] senders = template.getMessageSenders();
+		if(null != senders) {
+			for(WebServiceMessageSender sender : senders) {
+				if(sender instanceof HttpComponentsMessageSender && sender.supports(uri)) {
+					return (HttpComponentsMessageSender) sender;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Add the X-AnchorMailbox, X-PreferServerAffinity and (once known) X-BackEndOverrideCookie headers of {@code affinity} to the request.
+	 * Only {@link HttpComponentsConnection}s are supported.
+	 * 
+	 * @param connection
+	 * @param affinity may be null
+	 */
+	protected void addAffinityHeaders(WebServiceConnection connection, MailboxAffinity affinity) {
+		if(null == affinity || !(connection instanceof HttpComponentsConnection)) {
+			return;
+		}
+		HttpPost httpPost = ((HttpComponentsConnection) connection).getHttpPost();
+		httpPost.addHeader(MailboxAffinity.ANCHOR_MAILBOX_HEADER, affinity.getAnchorMailbox());
+		httpPost.addHeader(MailboxAffinity.PREFER_SERVER_AFFINITY_HEADER, "true");
+		String cookie = affinity.getCookieHeader();
+		if(null != cookie) {
+			httpPost.addHeader("Cookie", cookie);
+		}
+	}
+	
+	/**
+	 * Record the X-BackEndOverrideCookie set by the response, if any.
+	 * 
+	 * @param connection
+	 * @param affinity may be null
+	 */
+	protected void readAffinityCookie(WebServiceConnection connection, MailboxAffinity affinity) {
+		if(null == affinity || !(connection instanceof HttpComponentsConnection) || null == ((HttpComponentsConnection) connection).getHttpResponse()) {
+			return;
+		}
+		for(Header header : ((HttpComponentsConnection) connection).getHttpResponse().getHeaders("Set-Cookie")) {
+			affinity.readSetCookie(header.getValue());
+		}
+	}
+	
+	/**
+	 * Adds the {@link MailboxAffinity} headers to the connection of the request being sent.
+	 */
+	private class AffinityCallback implements WebServiceMessageCallback {
+		private final MailboxAffinity affinity;
+		AffinityCallback(MailboxAffinity affinity) {
+			this.affinity = affinity;
+		}
+		/* (non-Javadoc)
+		 * @see org.springframework.ws.client.core.WebServiceMessageCallback#doWithMessage(org.springframework.ws.WebServiceMessage)
+		 */
+		@Override
+		public void doWithMessage(WebServiceMessage message) {
+			TransportContext context = TransportContextHolder.getTransportContext();
+			if(null != context) {
+				addAffinityHeaders(context.getConnection(), affinity);
+			}
+		}
+	}
+	
+	/**
+	 * Feed the response codes of a successful SOAP exchange to the {@link AdaptiveThrottlingController}.
+	 * Individual response messages may report {@link ExchangeOnlineThrottlingPolicy#ERROR_SERVER_BUSY} without a SOAP fault.
+	 * 
+	 * @param throttlingKey
+	 * @param result
+	 */
+	protected void recordResponse(String throttlingKey, Object result) {
+		if(result instanceof FindItemIdsResult) {
+			FindItemIdsResult idsResult = (FindItemIdsResult) result;
+			if(AdaptiveThrottlingController.isThrottlingResponseCode(idsResult.getResponseCode())) {
+				throttlingController.onThrottled(throttlingKey, idsResult.getBackOffMillis());
+				return;
+			}
+		}
+		if(result instanceof BaseResponseMessageType && null != ((BaseResponseMessageType) result).getResponseMessages()) {
+			List<JAXBElement<? extends ResponseMessageType>> messages = ((BaseResponseMessageType) result).getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages();
+			for(JAXBElement<? extends ResponseMessageType> message : messages) {
+				ResponseMessageType responseMessage = message.getValue();
+				if(null != responseMessage && AdaptiveThrottlingController.isThrottlingResponseCode(responseMessage.getResponseCode())) {
+					throttlingController.onThrottled(throttlingKey, ExchangeFaultDetail.parseBackOffMillis(responseMessage.getMessageXml()));
+					return;
+				}
+			}
+		}
+		throttlingController.onSuccess(throttlingKey);
+	}
+	
+	/**
+	 * Identifies the operation to the HTTP layer (e.g. per operation traffic statistics) without parsing the body, 
+	 * see {@link HttpTrafficStatistics#setCurrentOperation(String)}.  The SOAPAction header is not affected.
+	 * 
+	 * @param request
+	 * @return the local name of the request's root element, e.g. FindItem
+	 */
+	protected String getOperation(Object request) {
+		XmlRootElement rootElement = request.getClass().getAnnotation(XmlRootElement.class);
+		if(null == rootElement || "##default".equals(rootElement.name())) {
+			return request.getClass().getSimpleName();
+		}
+		return rootElement.name();
+	}
+	
+	/**
+	 * @return the key identifying the principal the current request will be made on behalf of, or null if unknown.
+	 */
+	protected String getPrincipal() {
+		if(null == connectingSIDSource) {
+			return null;
 		}
+		return MailboxConcurrencyGovernor.getPrincipalKey(connectingSIDSource.getConnectingSID(null, null));
 	}
 	
 }
@@ -0,0 +1,384 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.auth.Credentials;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import com.microsoft.exchange.AsyncExchangeWebServices;
+import com.microsoft.exchange.ExchangeWebServices;
+import com.microsoft.exchange.impl.http.ThreadLocalCredentialsProviderFactory;
+import com.microsoft.exchange.messages.CreateFolder;
+import com.microsoft.exchange.messages.CreateFolderResponse;
+import com.microsoft.exchange.messages.CreateItem;
+import com.microsoft.exchange.messages.CreateItemResponse;
+import com.microsoft.exchange.messages.DeleteFolder;
+import com.microsoft.exchange.messages.DeleteFolderResponse;
+import com.microsoft.exchange.messages.DeleteItem;
+import com.microsoft.exchange.messages.DeleteItemResponse;
+import com.microsoft.exchange.messages.EmptyFolder;
+import com.microsoft.exchange.messages.EmptyFolderResponse;
+import com.microsoft.exchange.messages.FindFolder;
+import com.microsoft.exchange.messages.FindFolderResponse;
+import com.microsoft.exchange.messages.FindItem;
+import com.microsoft.exchange.messages.FindItemResponse;
+import com.microsoft.exchange.messages.GetEvents;
+import com.microsoft.exchange.messages.GetEventsResponse;
+import com.microsoft.exchange.messages.GetFolder;
+import com.microsoft.exchange.messages.GetFolderResponse;
+import com.microsoft.exchange.messages.GetItem;
+import com.microsoft.exchange.messages.GetItemResponse;
+import com.microsoft.exchange.messages.GetUserAvailabilityRequest;
+import com.microsoft.exchange.messages.GetUserAvailabilityResponse;
+import com.microsoft.exchange.messages.ResolveNames;
+import com.microsoft.exchange.messages.ResolveNamesResponse;
+import com.microsoft.exchange.messages.Subscribe;
+import com.microsoft.exchange.messages.SubscribeResponse;
+import com.microsoft.exchange.messages.SyncFolderHierarchy;
+import com.microsoft.exchange.messages.SyncFolderHierarchyResponse;
+import com.microsoft.exchange.messages.SyncFolderItems;
+import com.microsoft.exchange.messages.SyncFolderItemsResponse;
+import com.microsoft.exchange.messages.Unsubscribe;
+import com.microsoft.exchange.messages.UnsubscribeResponse;
+import com.microsoft.exchange.messages.UpdateItem;
+import com.microsoft.exchange.messages.UpdateItemResponse;
+import com.microsoft.exchange.types.ConnectingSIDType;
+
+/**
+ * {@link Future} facade over the synchronous {@link ExchangeWebServices} client: each call is run against the
+ * blocking delegate on a bounded {@link ExecutorService}.
+ * 
+ * This is not a non-blocking client.  The spring-ws/HttpClient 4.2 transport holds a worker thread for the full
+ * round trip, so no more requests are in flight than the executor has threads ({@link #getPoolSize()} by default);
+ * the rest wait in its queue.
+ * What the facade buys is that calling threads are released as soon as a request is queued.
+ * 
+ * The impersonation {@link ConnectingSIDType} and the {@link Credentials} held by the calling thread
+ * ({@link ThreadLocalImpersonationConnectingSIDSourceImpl} and {@link ThreadLocalCredentialsProviderFactory})
+ * are captured at submission time and re-established on the worker thread, so the delegate's
+ * {@link org.springframework.ws.client.support.interceptor.ClientInterceptor} chain adds exactly
+ * the same impersonation, version and time zone headers it would for a synchronous call.
+ */
+public class ExchangeWebServicesFutureFacade implements AsyncExchangeWebServices, InitializingBean, DisposableBean {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private ExchangeWebServices exchangeWebServices;
+	private ExecutorService executorService;
+	private boolean shutdownExecutor = false;
+	private int poolSize = 20;
+	
+	/**
+	 * @return the synchronous {@link ExchangeWebServices} delegate
+	 */
+	public ExchangeWebServices getExchangeWebServices() {
+		return exchangeWebServices;
+	}
+	/**
+	 * @param exchangeWebServices the synchronous {@link ExchangeWebServices} delegate
+	 */
+	public void setExchangeWebServices(ExchangeWebServices exchangeWebServices) {
+		this.exchangeWebServices = exchangeWebServices;
+	}
+	/**
+	 * @return the executorService
+	 */
+	public ExecutorService getExecutorService() {
+		return executorService;
+	}
+	/**
+	 * Optional, if omitted a fixed pool of {@link #getPoolSize()} threads is created (and shut down on {@link #destroy()}).
+	 * @param executorService the executorService to set
+	 */
+	public void setExecutorService(ExecutorService executorService) {
+		this.executorService = executorService;
+	}
+	/**
+	 * @return the number of worker threads used when no {@link ExecutorService} is supplied
+	 */
+	public int getPoolSize() {
+		return poolSize;
+	}
+	/**
+	 * @param poolSize the number of worker threads used when no {@link ExecutorService} is supplied
+	 */
+	public void setPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(exchangeWebServices, "exchangeWebServices is required");
+		if(null == executorService) {
+			Assert.isTrue(poolSize > 0, "poolSize must be greater than 0");
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ews-async-");
+			threadFactory.setDaemon(true);
+			executorService = Executors.newFixedThreadPool(poolSize, threadFactory);
+			shutdownExecutor = true;
+			log.info("created executor with "+poolSize+" threads");
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() throws Exception {
+		if(shutdownExecutor && null != executorService) {
+			executorService.shutdownNow();
+		}
+	}
+	
+	@Override
+	public Future<ResolveNamesResponse> resolveNamesAsync(final ResolveNames request) {
+		return submit(new Callable<ResolveNamesResponse>() {
+			@Override
+			public ResolveNamesResponse call() {
+				return exchangeWebServices.resolveNames(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<FindFolderResponse> findFolderAsync(final FindFolder request) {
+		return submit(new Callable<FindFolderResponse>() {
+			@Override
+			public FindFolderResponse call() {
+				return exchangeWebServices.findFolder(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<FindItemResponse> findItemAsync(final FindItem request) {
+		return submit(new Callable<FindItemResponse>() {
+			@Override
+			public FindItemResponse call() {
+				return exchangeWebServices.findItem(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<EmptyFolderResponse> emptyFolderAsync(final EmptyFolder request) {
+		return submit(new Callable<EmptyFolderResponse>() {
+			@Override
+			public EmptyFolderResponse call() {
+				return exchangeWebServices.emptyFolder(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<GetFolderResponse> getFolderAsync(final GetFolder request) {
+		return submit(new Callable<GetFolderResponse>() {
+			@Override
+			public GetFolderResponse call() {
+				return exchangeWebServices.getFolder(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<CreateFolderResponse> createFolderAsync(final CreateFolder request) {
+		return submit(new Callable<CreateFolderResponse>() {
+			@Override
+			public CreateFolderResponse call() {
+				return exchangeWebServices.createFolder(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<DeleteFolderResponse> deleteFolderAsync(final DeleteFolder request) {
+		return submit(new Callable<DeleteFolderResponse>() {
+			@Override
+			public DeleteFolderResponse call() {
+				return exchangeWebServices.deleteFolder(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<SubscribeResponse> subscribeAsync(final Subscribe request) {
+		return submit(new Callable<SubscribeResponse>() {
+			@Override
+			public SubscribeResponse call() {
+				return exchangeWebServices.subscribe(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<UnsubscribeResponse> unsubscribeAsync(final Unsubscribe request) {
+		return submit(new Callable<UnsubscribeResponse>() {
+			@Override
+			public UnsubscribeResponse call() {
+				return exchangeWebServices.unsubscribe(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<GetEventsResponse> getEventsAsync(final GetEvents request) {
+		return submit(new Callable<GetEventsResponse>() {
+			@Override
+			public GetEventsResponse call() {
+				return exchangeWebServices.getEvents(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<SyncFolderHierarchyResponse> syncFolderHierarchyAsync(final SyncFolderHierarchy request) {
+		return submit(new Callable<SyncFolderHierarchyResponse>() {
+			@Override
+			public SyncFolderHierarchyResponse call() {
+				return exchangeWebServices.syncFolderHierarchy(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<SyncFolderItemsResponse> syncFolderItemsAsync(final SyncFolderItems request) {
+		return submit(new Callable<SyncFolderItemsResponse>() {
+			@Override
+			public SyncFolderItemsResponse call() {
+				return exchangeWebServices.syncFolderItems(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<GetItemResponse> getItemAsync(final GetItem request) {
+		return submit(new Callable<GetItemResponse>() {
+			@Override
+			public GetItemResponse call() {
+				return exchangeWebServices.getItem(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<CreateItemResponse> createItemAsync(final CreateItem request) {
+		return submit(new Callable<CreateItemResponse>() {
+			@Override
+			public CreateItemResponse call() {
+				return exchangeWebServices.createItem(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<DeleteItemResponse> deleteItemAsync(final DeleteItem request) {
+		return submit(new Callable<DeleteItemResponse>() {
+			@Override
+			public DeleteItemResponse call() {
+				return exchangeWebServices.deleteItem(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<UpdateItemResponse> updateItemAsync(final UpdateItem request) {
+		return submit(new Callable<UpdateItemResponse>() {
+			@Override
+			public UpdateItemResponse call() {
+				return exchangeWebServices.updateItem(request);
+			}
+		});
+	}
+	
+	@Override
+	public Future<GetUserAvailabilityResponse> getUserAvailabilityAsync(final GetUserAvailabilityRequest request) {
+		return submit(new Callable<GetUserAvailabilityResponse>() {
+			@Override
+			public GetUserAvailabilityResponse call() {
+				return exchangeWebServices.getUserAvailability(request);
+			}
+		});
+	}
+	
+	/**
+	 * Submit the {@link Callable} to the {@link ExecutorService} wrapped in a {@link ContextPropagatingCallable}
+	 * so the caller's impersonation and credentials context travels with it.
+	 * 
+	 * @param callable
+	 * @return a {@link Future} for the result of the {@link Callable}
+	 */
+	protected <T> Future<T> submit(Callable<T> callable) {
+		Assert.notNull(executorService, "executorService not initialized, was afterPropertiesSet invoked?");
+		return executorService.submit(new ContextPropagatingCallable<T>(callable));
+	}
+	
+	/**
+	 * {@link Callable} which captures the thread local {@link ConnectingSIDType} and {@link Credentials}
+	 * of the constructing thread and restores them around the delegate invocation on the executing thread.
+	 */
+	static class ContextPropagatingCallable<T> implements Callable<T> {
+		private final Callable<T> delegate;
+		private final ConnectingSIDType connectingSID;
+		private final Credentials credentials;
+		
+		ContextPropagatingCallable(Callable<T> delegate) {
+			this.delegate = delegate;
+			this.connectingSID = ThreadLocalImpersonationConnectingSIDSourceImpl.get();
+			this.credentials = ThreadLocalCredentialsProviderFactory.get();
+		}
+		
+		@Override
+		public T call() throws Exception {
+			ConnectingSIDType previousSID = ThreadLocalImpersonationConnectingSIDSourceImpl.get();
+			Credentials previousCredentials = ThreadLocalCredentialsProviderFactory.get();
+			try {
+				ThreadLocalImpersonationConnectingSIDSourceImpl.setConnectingSID(connectingSID);
+				ThreadLocalCredentialsProviderFactory.set(credentials);
+				return delegate.call();
+			} finally {
+				restore(previousSID, previousCredentials);
+			}
+		}
+		
+		private static void restore(ConnectingSIDType connectingSID, Credentials credentials) {
+			if(null == connectingSID) {
+				ThreadLocalImpersonationConnectingSIDSourceImpl.clear();
+			} else {
+				ThreadLocalImpersonationConnectingSIDSourceImpl.setConnectingSID(connectingSID);
+			}
+			if(null == credentials) {
+				ThreadLocalCredentialsProviderFactory.clear();
+			} else {
+				ThreadLocalCredentialsProviderFactory.set(credentials);
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.microsoft.exchange.ExchangeFileUtils;
+import com.microsoft.exchange.SyncStateStore;
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+
+/**
+ * {@link SyncStateStore} keeping one file per key in {@link #getDirectory()}, so sync states survive restarts.
+ * 
+ * File names are the SHA-1 of the key, since keys hold UPNs and folder ids.  Exchange rejects a truncated sync state and the folder 
+ * would have to be synchronized from scratch, so states are replaced with {@link ExchangeFileUtils#replaceFile(File, String, String)}: 
+ * after an interrupted write the state before or after it is read.
+ */
+public class FileSyncStateStore implements SyncStateStore {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private static final String ENCODING = "UTF-8";
+	private static final String SUFFIX = ".syncstate";
+	
+	private File directory;
+	
+	/**
+	 * @return the directory holding the sync state files
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+	/**
+	 * Required.  The states are only worth keeping in a directory that outlives the process, which rules out a default such as java.io.tmpdir.
+	 * @param directory the directory holding the sync state files, created if it does not exist
+	 */
+	public void setDirectory(File directory) {
+		Validate.notNull(directory, "directory cannot be null");
+		this.directory = directory;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.SyncStateStore#getSyncState(java.lang.String)
+	 */
+	@Override
+	public String getSyncState(String key) {
+		File file = ExchangeFileUtils.recoverFile(getFile(key));
+		if(null == file) {
+			return null;
+		}
+		try {
+			return FileUtils.readFileToString(file, ENCODING);
+		} catch (IOException e) {
+			throw new ExchangeRuntimeException("failed to read sync state for "+key+" from "+file, e);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.SyncStateStore#putSyncState(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public void putSyncState(String key, String syncState) {
+		Validate.notNull(syncState, "syncState cannot be null");
+		File file = getFile(key);
+		try {
+			ExchangeFileUtils.replaceFile(file, syncState, ENCODING);
+		} catch (IOException e) {
+			throw new ExchangeRuntimeException("failed to write sync state for "+key+" to "+file, e);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.SyncStateStore#removeSyncState(java.lang.String)
+	 */
+	@Override
+	public void removeSyncState(String key) {
+		File file = getFile(key);
+		if(!ExchangeFileUtils.deleteFile(file)) {
+			log.warn("failed to delete sync state for "+key+": "+file);
+		}
+	}
+	
+	/**
+	 * @param key
+	 * @return the file holding the sync state for {@code key}
+	 */
+	protected File getFile(String key) {
+		Validate.notNull(key, "key cannot be null");
+		Validate.notNull(directory, "directory is required");
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(ENCODING));
+			StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+			for(byte b : digest) {
+				name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return new File(directory, name.append(SUFFIX).toString());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
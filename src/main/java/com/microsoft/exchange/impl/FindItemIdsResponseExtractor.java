@@ -0,0 +1,247 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.io.IOException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.util.xml.StaxUtils;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.client.core.WebServiceMessageExtractor;
+import org.springframework.xml.transform.TransformerHelper;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.microsoft.exchange.messages.ResponseCodeType;
+import com.microsoft.exchange.model.FindItemIdsResult;
+import com.microsoft.exchange.types.ItemIdType;
+
+/**
+ * {@link WebServiceMessageExtractor} reading an ID_ONLY FindItemResponse directly into a {@link FindItemIdsResult}, bypassing JAXB.
+ * 
+ * Only the ResponseCode, MessageText, BackOffMilliseconds, RootFolder paging attributes and ItemId/ChangeKey attributes are read.
+ * Streaming payloads (e.g. the Axiom message factory) are read with StAX; DOM payloads (the SAAJ message factory) are walked in place.
+ */
+public class FindItemIdsResponseExtractor implements WebServiceMessageExtractor<FindItemIdsResult> {
+
+	static final String MESSAGES_NS = "http://schemas.microsoft.com/exchange/services/2006/messages";
+	static final String TYPES_NS = "http://schemas.microsoft.com/exchange/services/2006/types";
+	
+	private static final String RESPONSE_CODE = "ResponseCode";
+	private static final String MESSAGE_TEXT = "MessageText";
+	private static final String ROOT_FOLDER = "RootFolder";
+	private static final String ITEM_ID = "ItemId";
+	private static final String VALUE = "Value";
+	private static final String BACK_OFF_MILLISECONDS = "BackOffMilliseconds";
+	
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+	static {
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+	
+	private final TransformerHelper transformerHelper = new TransformerHelper();
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.ws.client.core.WebServiceMessageExtractor#extractData(org.springframework.ws.WebServiceMessage)
+	 */
+	@Override
+	public FindItemIdsResult extractData(WebServiceMessage message) throws IOException, TransformerException {
+		return extract(message.getPayloadSource());
+	}
+	
+	/**
+	 * @param payload the FindItemResponse element
+	 * @return the {@link FindItemIdsResult}
+	 * @throws TransformerException
+	 */
+	public FindItemIdsResult extract(Source payload) throws TransformerException {
+		FindItemIdsResult result = new FindItemIdsResult();
+		if(null == payload) {
+			return result;
+		}
+		if(payload instanceof DOMSource) {
+			extract(((DOMSource) payload).getNode(), result);
+			return result;
+		}
+		try {
+			if(StaxUtils.isStaxSource(payload)) {
+				XMLStreamReader reader = StaxUtils.getXMLStreamReader(payload);
+				if(null != reader) {
+					extract(reader, result);
+					return result;
+				}
+			} else if(payload instanceof StreamSource) {
+				XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(payload);
+				try {
+					extract(reader, result);
+				} finally {
+					reader.close();
+				}
+				return result;
+			}
+		} catch (XMLStreamException e) {
+			throw new TransformerException(e);
+		}
+		// neither StAX nor DOM, fall back to building a DOM
+		DOMResult domResult = new DOMResult();
+		transformerHelper.transform(payload, domResult);
+		extract(domResult.getNode(), result);
+		return result;
+	}
+	
+	/**
+	 * Read until the end of the current element (or document)
+	 * @param reader
+	 * @param result
+	 * @throws XMLStreamException
+	 */
+	protected void extract(XMLStreamReader reader, FindItemIdsResult result) throws XMLStreamException {
+		int depth = 0;
+		int event = reader.getEventType();
+		while(true) {
+			if(event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				String localName = reader.getLocalName();
+				String ns = reader.getNamespaceURI();
+				if(ITEM_ID.equals(localName) && TYPES_NS.equals(ns)) {
+					addItemId(result, reader.getAttributeValue(null, "Id"), reader.getAttributeValue(null, "ChangeKey"));
+				} else if(ROOT_FOLDER.equals(localName) && MESSAGES_NS.equals(ns)) {
+					rootFolder(result, reader.getAttributeValue(null, "IndexedPagingOffset"), reader.getAttributeValue(null, "TotalItemsInView"), reader.getAttributeValue(null, "IncludesLastItemInRange"));
+				} else if(RESPONSE_CODE.equals(localName) && MESSAGES_NS.equals(ns)) {
+					responseCode(result, reader.getElementText());
+					depth--;
+				} else if(MESSAGE_TEXT.equals(localName) && MESSAGES_NS.equals(ns)) {
+					messageText(result, reader.getElementText());
+					depth--;
+				} else if(VALUE.equals(localName) && BACK_OFF_MILLISECONDS.equals(reader.getAttributeValue(null, "Name"))) {
+					backOff(result, reader.getElementText());
+					depth--;
+				}
+			} else if(event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+				if(depth <= 0) {
+					return;
+				}
+			} else if(event == XMLStreamConstants.END_DOCUMENT) {
+				return;
+			}
+			if(!reader.hasNext()) {
+				return;
+			}
+			event = reader.next();
+		}
+	}
+	
+	/**
+	 * Walk the DOM subtree rooted at {@code node}
+	 * @param node
+	 * @param result
+	 */
+	protected void extract(Node node, FindItemIdsResult result) {
+		Node current = node;
+		while(null != current) {
+			if(current.getNodeType() == Node.ELEMENT_NODE) {
+				Element element = (Element) current;
+				String localName = element.getLocalName();
+				String ns = element.getNamespaceURI();
+				if(ITEM_ID.equals(localName) && TYPES_NS.equals(ns)) {
+					addItemId(result, attribute(element, "Id"), attribute(element, "ChangeKey"));
+				} else if(ROOT_FOLDER.equals(localName) && MESSAGES_NS.equals(ns)) {
+					rootFolder(result, attribute(element, "IndexedPagingOffset"), attribute(element, "TotalItemsInView"), attribute(element, "IncludesLastItemInRange"));
+				} else if(RESPONSE_CODE.equals(localName) && MESSAGES_NS.equals(ns)) {
+					responseCode(result, element.getTextContent());
+				} else if(MESSAGE_TEXT.equals(localName) && MESSAGES_NS.equals(ns)) {
+					messageText(result, element.getTextContent());
+				} else if(VALUE.equals(localName) && BACK_OFF_MILLISECONDS.equals(attribute(element, "Name"))) {
+					backOff(result, element.getTextContent());
+				}
+			}
+			// depth first traversal without recursion, bounded by node
+			if(null != current.getFirstChild()) {
+				current = current.getFirstChild();
+			} else {
+				while(null != current && current != node && null == current.getNextSibling()) {
+					current = current.getParentNode();
+				}
+				current = (null == current || current == node) ? null : current.getNextSibling();
+			}
+		}
+	}
+	
+	private static String attribute(Element element, String name) {
+		return element.hasAttribute(name) ? element.getAttribute(name) : null;
+	}
+	
+	private static void addItemId(FindItemIdsResult result, String id, String changeKey) {
+		ItemIdType itemId = new ItemIdType();
+		itemId.setId(id);
+		itemId.setChangeKey(changeKey);
+		result.getItemIds().add(itemId);
+	}
+	
+	private static void rootFolder(FindItemIdsResult result, String indexedPagingOffset, String totalItemsInView, String includesLastItemInRange) {
+		if(StringUtils.isNotBlank(totalItemsInView)) {
+			result.setTotalItemsInView(Integer.valueOf(totalItemsInView.trim()));
+		}
+		// as ExchangeResponseUtilsImpl#parseFindItemIdResponse: the offset is only meaningful when more items remain
+		if("false".equalsIgnoreCase(StringUtils.trim(includesLastItemInRange))) {
+			result.setIncludesLastItemInRange(false);
+			if(StringUtils.isNotBlank(indexedPagingOffset)) {
+				result.setIndexedPagingOffset(Integer.parseInt(indexedPagingOffset.trim()));
+			}
+		}
+	}
+	
+	private static void responseCode(FindItemIdsResult result, String text) {
+		ResponseCodeType code;
+		try {
+			code = ResponseCodeType.fromValue(StringUtils.trim(text));
+		} catch (IllegalArgumentException e) {
+			code = ResponseCodeType.ERROR_INTERNAL_SERVER_ERROR;
+		}
+		if(result.isSuccess() && !ResponseCodeType.NO_ERROR.equals(code)) {
+			result.setResponseCode(code);
+		}
+	}
+	
+	private static void messageText(FindItemIdsResult result, String text) {
+		if(null == result.getMessageText()) {
+			result.setMessageText(StringUtils.trim(text));
+		}
+	}
+	
+	private static void backOff(FindItemIdsResult result, String text) {
+		try {
+			result.setBackOffMillis(Math.max(result.getBackOffMillis(), Long.parseLong(StringUtils.trim(text))));
+		} catch (NumberFormatException e) {
+			// ignore malformed hint
+		}
+	}
+}
@@ -0,0 +1,337 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang.Validate;
+
+import com.microsoft.exchange.model.SyncFolderHierarchyResult;
+import com.microsoft.exchange.types.BaseFolderType;
+import com.microsoft.exchange.types.DistinguishedFolderIdNameType;
+import com.microsoft.exchange.types.FolderIdType;
+
+/**
+ * Per-mailbox cache of the folder hierarchy, filled by an initial SyncFolderHierarchy and kept current by incremental ones,
+ * see {@link BaseExchangeCalendarDataDao#getMailboxFolders(String)}.
+ * 
+ * At most {@link #getMaxMailboxes()} mailboxes are held, the least recently used is evicted first.
+ * A mailbox is considered stale {@link #getRefreshIntervalMillis()} after it was last synchronized, or once {@link #invalidate(String)} was called.
+ * A mailbox which merely expired keeps answering lookups while it is synchronized again, see {@link #isServable(MailboxFolders)}.
+ * 
+ * The cached {@link BaseFolderType}s are shared and must not be modified.
+ */
+public class FolderHierarchyCache {
+
+	private int maxMailboxes = 1000;
+	private long refreshIntervalMillis = 60 * 1000L;
+	
+	private final Map<String, MailboxFolders> mailboxes = new LinkedHashMap<String, MailboxFolders>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, MailboxFolders> eldest) {
+			return size() > maxMailboxes;
+		}
+	};
+	
+	/**
+	 * @return the maximum number of mailboxes cached
+	 */
+	public int getMaxMailboxes() {
+		return maxMailboxes;
+	}
+	/**
+	 * @param maxMailboxes the maximum number of mailboxes cached
+	 */
+	public void setMaxMailboxes(int maxMailboxes) {
+		Validate.isTrue(maxMailboxes > 0, "maxMailboxes must be greater than 0");
+		this.maxMailboxes = maxMailboxes;
+	}
+	/**
+	 * @return how long a synchronized hierarchy is used before it is synchronized again
+	 */
+	public long getRefreshIntervalMillis() {
+		return refreshIntervalMillis;
+	}
+	/**
+	 * @param refreshIntervalMillis how long a synchronized hierarchy is used before it is synchronized again, 0 to synchronize on every use
+	 */
+	public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+		Validate.isTrue(refreshIntervalMillis >= 0, "refreshIntervalMillis cannot be negative");
+		this.refreshIntervalMillis = refreshIntervalMillis;
+	}
+	
+	/**
+	 * @param upn
+	 * @return the never null {@link MailboxFolders} for {@code upn}, empty and stale if not cached yet
+	 */
+	public MailboxFolders getMailboxFolders(String upn) {
+		String key = upn.trim().toLowerCase();
+		synchronized (mailboxes) {
+			MailboxFolders folders = mailboxes.get(key);
+			if(null == folders) {
+				folders = new MailboxFolders();
+				mailboxes.put(key, folders);
+			}
+			return folders;
+		}
+	}
+	
+	/**
+	 * The hierarchy of {@code upn} is synchronized (incrementally) on next use, call after changing folders.
+	 * @param upn
+	 */
+	public void invalidate(String upn) {
+		MailboxFolders folders;
+		synchronized (mailboxes) {
+			folders = mailboxes.get(upn.trim().toLowerCase());
+		}
+		if(null != folders) {
+			folders.markStale();
+		}
+	}
+	
+	/**
+	 * @return the number of mailboxes cached
+	 */
+	public int size() {
+		synchronized (mailboxes) {
+			return mailboxes.size();
+		}
+	}
+	
+	/**
+	 * Discard all mailboxes.
+	 */
+	public void clear() {
+		synchronized (mailboxes) {
+			mailboxes.clear();
+		}
+	}
+	
+	/**
+	 * @param folders
+	 * @return true if {@code folders} should be synchronized before use
+	 */
+	public boolean isStale(MailboxFolders folders) {
+		return folders.isStale(refreshIntervalMillis);
+	}
+	
+	/**
+	 * @param folders
+	 * @return true if {@code folders} was synchronized and not invalidated since, i.e. may be used while it is synchronized again
+	 */
+	public boolean isServable(MailboxFolders folders) {
+		return !folders.stale;
+	}
+	
+	/**
+	 * The folders of a single mailbox, indexed by id, display name and parent.
+	 * Callers hold the {@link #getSyncLock()} while refreshing it so that only one refresh per mailbox is in flight,
+	 * lookups only wait for an individual {@link #apply(SyncFolderHierarchyResult, boolean)}.
+	 */
+	public static class MailboxFolders {
+		private final Map<String, BaseFolderType> foldersById = new LinkedHashMap<String, BaseFolderType>();
+		private final Map<String, Set<String>> folderIdsByName = new HashMap<String, Set<String>>();
+		private final Map<DistinguishedFolderIdNameType, String> distinguishedFolderIds = new EnumMap<DistinguishedFolderIdNameType, String>(DistinguishedFolderIdNameType.class);
+		private String syncState;
+		private volatile long lastSynced;
+		private volatile boolean stale = true;
+		private final ReentrantLock syncLock = new ReentrantLock();
+		
+		/**
+		 * @return the lock held while this mailbox is synchronized
+		 */
+		public ReentrantLock getSyncLock() {
+			return syncLock;
+		}
+		
+		/**
+		 * @return the SyncState of the last synchronization, null if never synchronized
+		 */
+		public synchronized String getSyncState() {
+			return syncState;
+		}
+		
+		/**
+		 * Apply a SyncFolderHierarchy result, a result without a previous SyncState replaces all folders.
+		 * @param result
+		 * @param initial true if {@code result} was requested without a SyncState
+		 */
+		public synchronized void apply(SyncFolderHierarchyResult result, boolean initial) {
+			if(initial) {
+				foldersById.clear();
+				folderIdsByName.clear();
+				distinguishedFolderIds.clear();
+			}
+			for(BaseFolderType folder : result.getCreatedFolders()) {
+				put(folder);
+			}
+			for(BaseFolderType folder : result.getUpdatedFolders()) {
+				put(folder);
+			}
+			for(FolderIdType folderId : result.getDeletedFolderIds()) {
+				remove(folderId.getId());
+				distinguishedFolderIds.values().remove(folderId.getId());
+			}
+			syncState = result.getSyncState();
+		}
+		
+		/**
+		 * Record a successful synchronization.
+		 */
+		public void synced() {
+			lastSynced = System.currentTimeMillis();
+			stale = false;
+		}
+		
+		/**
+		 * Discard the SyncState, the next synchronization starts from the beginning.
+		 */
+		public synchronized void reset() {
+			syncState = null;
+			stale = true;
+		}
+		
+		private void put(BaseFolderType folder) {
+			String id = folder.getFolderId().getId();
+			remove(id);
+			foldersById.put(id, folder);
+			if(null != folder.getDisplayName()) {
+				Set<String> ids = folderIdsByName.get(folder.getDisplayName());
+				if(null == ids) {
+					ids = new LinkedHashSet<String>();
+					folderIdsByName.put(folder.getDisplayName(), ids);
+				}
+				ids.add(id);
+			}
+		}
+		
+		private void remove(String id) {
+			BaseFolderType previous = foldersById.remove(id);
+			if(null != previous && null != previous.getDisplayName()) {
+				Set<String> ids = folderIdsByName.get(previous.getDisplayName());
+				if(null != ids) {
+					ids.remove(id);
+					if(ids.isEmpty()) {
+						folderIdsByName.remove(previous.getDisplayName());
+					}
+				}
+			}
+		}
+		
+		void markStale() {
+			stale = true;
+		}
+		
+		boolean isStale(long refreshIntervalMillis) {
+			return stale || System.currentTimeMillis() - lastSynced >= refreshIntervalMillis;
+		}
+		
+		/**
+		 * @param folderId
+		 * @return the folder, or null
+		 */
+		public synchronized BaseFolderType getFolder(String folderId) {
+			return foldersById.get(folderId);
+		}
+		
+		/**
+		 * @param displayName
+		 * @return the never null but possibly empty {@link List} of folders named {@code displayName}
+		 */
+		public synchronized List<BaseFolderType> getFoldersByDisplayName(String displayName) {
+			Set<String> ids = folderIdsByName.get(displayName);
+			if(null == ids) {
+				return Collections.emptyList();
+			}
+			List<BaseFolderType> folders = new ArrayList<BaseFolderType>(ids.size());
+			for(String id : ids) {
+				folders.add(foldersById.get(id));
+			}
+			return folders;
+		}
+		
+		/**
+		 * @param folderId
+		 * @return the never null but possibly empty {@link List} of all folders below {@code folderId}, at any depth
+		 */
+		public synchronized List<BaseFolderType> getDescendants(String folderId) {
+			Map<String, List<BaseFolderType>> children = new HashMap<String, List<BaseFolderType>>();
+			for(BaseFolderType folder : foldersById.values()) {
+				if(null == folder.getParentFolderId()) {
+					continue;
+				}
+				List<BaseFolderType> siblings = children.get(folder.getParentFolderId().getId());
+				if(null == siblings) {
+					siblings = new ArrayList<BaseFolderType>();
+					children.put(folder.getParentFolderId().getId(), siblings);
+				}
+				siblings.add(folder);
+			}
+			List<BaseFolderType> descendants = new ArrayList<BaseFolderType>();
+			Set<String> visited = new LinkedHashSet<String>();
+			List<String> pending = new ArrayList<String>();
+			pending.add(folderId);
+			while(!pending.isEmpty()) {
+				String id = pending.remove(pending.size() - 1);
+				if(!visited.add(id) || !children.containsKey(id)) {
+					continue;
+				}
+				for(BaseFolderType child : children.get(id)) {
+					descendants.add(child);
+					pending.add(child.getFolderId().getId());
+				}
+			}
+			return descendants;
+		}
+		
+		/**
+		 * @param name
+		 * @return the id of the primary folder for {@code name}, if resolved previously
+		 */
+		public synchronized String getDistinguishedFolderId(DistinguishedFolderIdNameType name) {
+			return distinguishedFolderIds.get(name);
+		}
+		
+		/**
+		 * @param name
+		 * @param folderId the id of the primary folder for {@code name}
+		 */
+		public synchronized void putDistinguishedFolderId(DistinguishedFolderIdNameType name, String folderId) {
+			distinguishedFolderIds.put(name, folderId);
+		}
+		
+		/**
+		 * @return the number of folders cached
+		 */
+		public synchronized int size() {
+			return foldersById.size();
+		}
+	}
+}
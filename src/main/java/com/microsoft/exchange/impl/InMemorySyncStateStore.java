@@ -0,0 +1,56 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.microsoft.exchange.SyncStateStore;
+
+/**
+ * {@link SyncStateStore} backed by a {@link ConcurrentMap}, sync states are lost when the JVM exits.
+ */
+public class InMemorySyncStateStore implements SyncStateStore {
+
+	private final ConcurrentMap<String, String> syncStates = new ConcurrentHashMap<String, String>();
+	
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.SyncStateStore#getSyncState(java.lang.String)
+	 */
+	@Override
+	public String getSyncState(String key) {
+		return syncStates.get(key);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.SyncStateStore#putSyncState(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public void putSyncState(String key, String syncState) {
+		syncStates.put(key, syncState);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.microsoft.exchange.SyncStateStore#removeSyncState(java.lang.String)
+	 */
+	@Override
+	public void removeSyncState(String key) {
+		syncStates.remove(key);
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+import com.microsoft.exchange.types.ItemIdType;
+
+/**
+ * Streams the {@link ItemIdType}s of an indexed paged FindItem one page at a time.
+ * 
+ * While the caller consumes a page the next page is already being fetched, so at most two pages are held in memory
+ * and downstream processing overlaps with network I/O.  Callers abandoning the cursor before it is exhausted 
+ * should {@link #close()} it to cancel the outstanding request.  Not thread safe.
+ * 
+ * @see BaseExchangeCalendarDataDao#openItemIdCursor(String, java.util.Collection)
+ */
+public class ItemIdCursor implements Iterator<ItemIdType>, Closeable {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	/**
+	 * Asynchronously fetches the page starting at a given offset.
+	 */
+	public interface PageSource {
+		/**
+		 * @param offset
+		 * @return a {@link Future} {@link Pair} of the {@link ItemIdType}s found and the next offset (-1 if none)
+		 */
+		Future<Pair<Set<ItemIdType>, Integer>> fetch(int offset);
+	}
+	
+	private final PageSource source;
+	private Iterator<ItemIdType> current;
+	private Future<Pair<Set<ItemIdType>, Integer>> pending;
+	private int lastOffset;
+	private int pages = 1;
+	
+	/**
+	 * @param firstPage the already fetched first page
+	 * @param source fetches the remaining pages
+	 */
+	public ItemIdCursor(Pair<Set<ItemIdType>, Integer> firstPage, PageSource source) {
+		this.source = source;
+		this.current = firstPage.getLeft().iterator();
+		prefetch(0, firstPage.getRight());
+	}
+	
+	private void prefetch(int offset, Integer nextOffset) {
+		pending = null;
+		if(null == nextOffset || nextOffset <= 0) {
+			return;
+		}
+		if(nextOffset <= offset) {
+			log.warn("next offset "+nextOffset+" does not advance past "+offset+", stopping after "+pages+" pages");
+			return;
+		}
+		lastOffset = nextOffset;
+		pending = source.fetch(nextOffset);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.Iterator#hasNext()
+	 */
+	@Override
+	public boolean hasNext() {
+		while(!current.hasNext()) {
+			if(null == pending) {
+				return false;
+			}
+			Pair<Set<ItemIdType>, Integer> page = await(pending);
+			pages++;
+			Set<ItemIdType> itemIds = page.getLeft();
+			current = null == itemIds ? Collections.<ItemIdType>emptySet().iterator() : itemIds.iterator();
+			prefetch(lastOffset, page.getRight());
+		}
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.Iterator#next()
+	 */
+	@Override
+	public ItemIdType next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return current.next();
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.Iterator#remove()
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("remove");
+	}
+	
+	/**
+	 * Cancel the prefetch in progress, if any.  Subsequent calls to {@link #hasNext()} only return the items of the current page.
+	 */
+	@Override
+	public void close() {
+		Future<Pair<Set<ItemIdType>, Integer>> p = pending;
+		pending = null;
+		if(null != p) {
+			p.cancel(true);
+		}
+	}
+	
+	/**
+	 * @return the number of pages retrieved so far
+	 */
+	public int getPagesFetched() {
+		return pages;
+	}
+	
+	private Pair<Set<ItemIdType>, Integer> await(Future<Pair<Set<ItemIdType>, Integer>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			close();
+			Thread.currentThread().interrupt();
+			throw new ExchangeRuntimeException("interrupted while waiting for the next page at offset "+lastOffset, e);
+		} catch (ExecutionException e) {
+			pending = null;
+			throw RetryExecutor.unwrap(e);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Thread safe pool of JAXB {@link Marshaller}s and {@link Unmarshaller}s.
+ * 
+ * A {@link JAXBContext} is thread safe but the {@link Marshaller}s and {@link Unmarshaller}s it creates are not, and creating them
+ * (with their listeners, namespace prefix mappers and properties) is relatively expensive.  This pool retains up to {@link #getMaxIdle()} 
+ * idle instances of each; borrowing when none are idle creates a new instance (a miss) rather than blocking.
+ * 
+ * Callers must return every borrowed instance, and must restore any property they change, in a finally block.
+ */
+public class JaxbMarshallerPool {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private final JAXBContext jaxbContext;
+	private final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<Marshaller>();
+	private final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<Unmarshaller>();
+	private final AtomicInteger idleMarshallers = new AtomicInteger();
+	private final AtomicInteger idleUnmarshallers = new AtomicInteger();
+	
+	private final AtomicLong marshallerHits = new AtomicLong();
+	private final AtomicLong marshallerMisses = new AtomicLong();
+	private final AtomicLong unmarshallerHits = new AtomicLong();
+	private final AtomicLong unmarshallerMisses = new AtomicLong();
+	
+	private int maxIdle = 32;
+	
+	/**
+	 * @param jaxbContext the {@link JAXBContext} used to create new instances
+	 */
+	public JaxbMarshallerPool(JAXBContext jaxbContext) {
+		this.jaxbContext = jaxbContext;
+	}
+	
+	/**
+	 * @return the {@link JAXBContext}
+	 */
+	public JAXBContext getJaxbContext() {
+		return jaxbContext;
+	}
+	/**
+	 * @return the maximum number of idle instances (of each kind) retained
+	 */
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+	/**
+	 * @param maxIdle the maximum number of idle instances (of each kind) retained
+	 */
+	public void setMaxIdle(int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+	
+	/**
+	 * @return an idle {@link Marshaller} or a new one if none are idle
+	 * @throws JAXBException
+	 */
+	public Marshaller borrowMarshaller() throws JAXBException {
+		Marshaller marshaller = marshallers.poll();
+		if(null != marshaller) {
+			idleMarshallers.decrementAndGet();
+			marshallerHits.incrementAndGet();
+			return marshaller;
+		}
+		marshallerMisses.incrementAndGet();
+		return newMarshaller();
+	}
+	
+	/**
+	 * @param marshaller a {@link Marshaller} obtained from {@link #borrowMarshaller()}, may be null
+	 */
+	public void returnMarshaller(Marshaller marshaller) {
+		if(null != marshaller && idleMarshallers.incrementAndGet() <= maxIdle) {
+			marshallers.offer(marshaller);
+		} else if(null != marshaller) {
+			idleMarshallers.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * @return an idle {@link Unmarshaller} or a new one if none are idle
+	 * @throws JAXBException
+	 */
+	public Unmarshaller borrowUnmarshaller() throws JAXBException {
+		Unmarshaller unmarshaller = unmarshallers.poll();
+		if(null != unmarshaller) {
+			idleUnmarshallers.decrementAndGet();
+			unmarshallerHits.incrementAndGet();
+			return unmarshaller;
+		}
+		unmarshallerMisses.incrementAndGet();
+		return newUnmarshaller();
+	}
+	
+	/**
+	 * @param unmarshaller an {@link Unmarshaller} obtained from {@link #borrowUnmarshaller()}, may be null
+	 */
+	public void returnUnmarshaller(Unmarshaller unmarshaller) {
+		if(null != unmarshaller && idleUnmarshallers.incrementAndGet() <= maxIdle) {
+			unmarshallers.offer(unmarshaller);
+		} else if(null != unmarshaller) {
+			idleUnmarshallers.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Create a new {@link Marshaller}, subclasses may override to apply additional configuration.
+	 * @return a new {@link Marshaller}
+	 * @throws JAXBException
+	 */
+	protected Marshaller newMarshaller() throws JAXBException {
+		return jaxbContext.createMarshaller();
+	}
+	
+	/**
+	 * Create a new {@link Unmarshaller}, subclasses may override to apply additional configuration.
+	 * @return a new {@link Unmarshaller}
+	 * @throws JAXBException
+	 */
+	protected Unmarshaller newUnmarshaller() throws JAXBException {
+		return jaxbContext.createUnmarshaller();
+	}
+	
+	/**
+	 * @return the number of {@link #borrowMarshaller()} calls satisfied by an idle instance
+	 */
+	public long getMarshallerHits() {
+		return marshallerHits.get();
+	}
+	/**
+	 * @return the number of {@link #borrowMarshaller()} calls which created a new instance
+	 */
+	public long getMarshallerMisses() {
+		return marshallerMisses.get();
+	}
+	/**
+	 * @return the number of {@link #borrowUnmarshaller()} calls satisfied by an idle instance
+	 */
+	public long getUnmarshallerHits() {
+		return unmarshallerHits.get();
+	}
+	/**
+	 * @return the number of {@link #borrowUnmarshaller()} calls which created a new instance
+	 */
+	public long getUnmarshallerMisses() {
+		return unmarshallerMisses.get();
+	}
+	/**
+	 * @return the number of idle {@link Marshaller}s
+	 */
+	public int getIdleMarshallers() {
+		return marshallers.size();
+	}
+	/**
+	 * @return the number of idle {@link Unmarshaller}s
+	 */
+	public int getIdleUnmarshallers() {
+		return unmarshallers.size();
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "JaxbMarshallerPool[marshallerHits="+getMarshallerHits()+", marshallerMisses="+getMarshallerMisses()
+				+", unmarshallerHits="+getUnmarshallerHits()+", unmarshallerMisses="+getUnmarshallerMisses()
+				+", idleMarshallers="+getIdleMarshallers()+", idleUnmarshallers="+getIdleUnmarshallers()+"]";
+	}
+}
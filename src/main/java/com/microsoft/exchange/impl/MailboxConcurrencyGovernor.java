@@ -0,0 +1,228 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+import com.microsoft.exchange.exception.ExchangeTimeoutRuntimeException;
+import com.microsoft.exchange.types.ConnectingSIDType;
+
+/**
+ * Limits the number of concurrent requests issued on behalf of a single impersonated principal.
+ * 
+ * Exchange Online rejects requests with {@link ExchangeOnlineThrottlingPolicy#ERROR_EXCEEDED_CONNECTION_COUNT} once more than 
+ * {@link ExchangeOnlineThrottlingPolicy#MAX_CONCURRENT_CONNECTIONS_IMPERSONATION} requests are in flight for the same impersonated account.
+ * This governor keeps a fair {@link Semaphore} per principal so excess callers queue (first come, first served) instead of
+ * drawing a throttling fault.  Permits for a principal are discarded once no thread holds or awaits them.
+ */
+public class MailboxConcurrencyGovernor {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private final ConcurrentMap<String, PrincipalPermits> permits = new ConcurrentHashMap<String, PrincipalPermits>();
+	
+	private int maxConcurrentRequestsPerPrincipal = ExchangeOnlineThrottlingPolicy.MAX_CONCURRENT_CONNECTIONS_IMPERSONATION;
+	/**
+	 * The maximum time to wait for a permit, a value <= 0 will wait indefinitely.
+	 */
+	private long acquireTimeoutMillis = 0;
+	
+	/**
+	 * @return the maximum number of concurrent requests allowed for a single principal
+	 */
+	public int getMaxConcurrentRequestsPerPrincipal() {
+		return maxConcurrentRequestsPerPrincipal;
+	}
+	/**
+	 * Only affects principals which do not currently have requests in flight.
+	 * @param maxConcurrentRequestsPerPrincipal the maximum number of concurrent requests allowed for a single principal
+	 */
+	public void setMaxConcurrentRequestsPerPrincipal(int maxConcurrentRequestsPerPrincipal) {
+		if(maxConcurrentRequestsPerPrincipal < 1) {
+			throw new IllegalArgumentException("maxConcurrentRequestsPerPrincipal must be greater than 0");
+		}
+		if(maxConcurrentRequestsPerPrincipal > ExchangeOnlineThrottlingPolicy.MAX_CONCURRENT_CONNECTIONS_IMPERSONATION) {
+			log.warn("maxConcurrentRequestsPerPrincipal is being set to "+maxConcurrentRequestsPerPrincipal+" which is in excess of ExchangeOnline's default throttling policy ("+ExchangeOnlineThrottlingPolicy.MAX_CONCURRENT_CONNECTIONS_IMPERSONATION+" for impersonation)");
+		}
+		this.maxConcurrentRequestsPerPrincipal = maxConcurrentRequestsPerPrincipal;
+	}
+	/**
+	 * @return the acquireTimeoutMillis
+	 */
+	public long getAcquireTimeoutMillis() {
+		return acquireTimeoutMillis;
+	}
+	/**
+	 * @param acquireTimeoutMillis the maximum time to wait for a permit, a value <= 0 will wait indefinitely.
+	 */
+	public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+	}
+	
+	/**
+	 * Derive the key used to govern requests made with the specified {@link ConnectingSIDType}.
+	 * 
+	 * @param connectingSID
+	 * @return the lower cased principal name, smtp address or SID; or null if none is set.
+	 */
+	public static String getPrincipalKey(ConnectingSIDType connectingSID) {
+		if(null == connectingSID) {
+			return null;
+		}
+		String key = connectingSID.getPrincipalName();
+		if(StringUtils.isBlank(key)) {
+			key = connectingSID.getPrimarySmtpAddress();
+		}
+		if(StringUtils.isBlank(key)) {
+			key = connectingSID.getSmtpAddress();
+		}
+		if(StringUtils.isBlank(key)) {
+			key = connectingSID.getSID();
+		}
+		return StringUtils.isBlank(key) ? null : key.trim().toLowerCase();
+	}
+	
+	/**
+	 * Block until a permit for the principal is available.
+	 * Every successful call must be paired with a call to {@link #release(String)}.
+	 * 
+	 * @param principal
+	 * @throws ExchangeTimeoutRuntimeException if {@link #getAcquireTimeoutMillis()} elapses before a permit becomes available
+	 * @throws ExchangeRuntimeException if the thread is interrupted while waiting
+	 */
+	public void acquire(String principal) {
+		PrincipalPermits p = reference(principal);
+		boolean acquired = false;
+		try {
+			if(acquireTimeoutMillis > 0) {
+				acquired = p.semaphore.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+				if(!acquired) {
+					throw new ExchangeTimeoutRuntimeException("timed out after "+acquireTimeoutMillis+"ms waiting for one of "+maxConcurrentRequestsPerPrincipal+" concurrent request permits for "+principal);
+				}
+			} else {
+				p.semaphore.acquire();
+				acquired = true;
+			}
+			if(log.isDebugEnabled()) {
+				log.debug("acquired permit for "+principal+", queueLength="+p.semaphore.getQueueLength());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExchangeRuntimeException("interrupted while waiting for a request permit for "+principal, e);
+		} finally {
+			if(!acquired) {
+				dereference(principal, p);
+			}
+		}
+	}
+	
+	/**
+	 * Return a permit previously obtained via {@link #acquire(String)}.
+	 * @param principal
+	 */
+	public void release(String principal) {
+		PrincipalPermits p = permits.get(principal);
+		if(null == p) {
+			log.warn("release called for "+principal+" without a matching acquire");
+			return;
+		}
+		p.semaphore.release();
+		dereference(principal, p);
+	}
+	
+	/**
+	 * @param principal
+	 * @return the number of requests currently in flight for the principal
+	 */
+	public int getInFlight(String principal) {
+		PrincipalPermits p = permits.get(principal);
+		return null == p ? 0 : p.limit - p.semaphore.availablePermits();
+	}
+	
+	/**
+	 * @param principal
+	 * @return an estimate of the number of threads waiting for a permit for the principal
+	 */
+	public int getQueueLength(String principal) {
+		PrincipalPermits p = permits.get(principal);
+		return null == p ? 0 : p.semaphore.getQueueLength();
+	}
+	
+	/**
+	 * @return the number of principals currently holding or awaiting permits
+	 */
+	public int getActivePrincipalCount() {
+		return permits.size();
+	}
+	
+	/**
+	 * Obtain the {@link PrincipalPermits} for the principal, incrementing its reference count.
+	 * An entry whose count has already reached zero is being removed and cannot be revived, so a new one is created.
+	 */
+	private PrincipalPermits reference(String principal) {
+		while(true) {
+			PrincipalPermits p = permits.get(principal);
+			if(null == p) {
+				PrincipalPermits created = new PrincipalPermits(maxConcurrentRequestsPerPrincipal);
+				p = permits.putIfAbsent(principal, created);
+				if(null == p) {
+					return created;
+				}
+			}
+			int refs = p.references.get();
+			while(refs > 0) {
+				if(p.references.compareAndSet(refs, refs + 1)) {
+					return p;
+				}
+				refs = p.references.get();
+			}
+			//stale entry, make sure it's gone and try again
+			permits.remove(principal, p);
+		}
+	}
+	
+	private void dereference(String principal, PrincipalPermits p) {
+		if(p.references.decrementAndGet() == 0) {
+			permits.remove(principal, p);
+		}
+	}
+	
+	/**
+	 * A fair {@link Semaphore} and the number of threads holding or waiting on it.
+	 */
+	private static class PrincipalPermits {
+		private final int limit;
+		private final Semaphore semaphore;
+		private final AtomicInteger references = new AtomicInteger(1);
+		
+		PrincipalPermits(int limit) {
+			this.limit = limit;
+			this.semaphore = new Semaphore(limit, true);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+
+import org.springframework.oxm.XmlMappingException;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import org.springframework.oxm.mime.MimeContainer;
+import org.springframework.util.xml.StaxUtils;
+
+/**
+ * {@link Jaxb2Marshaller} which reuses its JAXB {@link Marshaller}s and {@link Unmarshaller}s via a {@link JaxbMarshallerPool}
+ * instead of creating new instances for every call.
+ * 
+ * Instances are created with {@link #createMarshaller()} and {@link #createUnmarshaller()} so all of the configured properties, listeners,
+ * adapters and schema still apply.  When MTOM is enabled and a {@link MimeContainer} is provided the call falls back to the 
+ * non-pooled {@link Jaxb2Marshaller} behavior, since attachment (un)marshallers are bound to a single message.
+ */
+public class PooledJaxb2Marshaller extends Jaxb2Marshaller {
+
+	private volatile JaxbMarshallerPool pool;
+	private boolean mtomEnabled = false;
+	private Class<?> mappedClass;
+	private int maxIdle = 32;
+	
+	/**
+	 * @param maxIdle the maximum number of idle {@link Marshaller}s and {@link Unmarshaller}s retained
+	 */
+	public void setMaxIdle(int maxIdle) {
+		this.maxIdle = maxIdle;
+		JaxbMarshallerPool p = pool;
+		if(null != p) {
+			p.setMaxIdle(maxIdle);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.oxm.jaxb.Jaxb2Marshaller#setMtomEnabled(boolean)
+	 */
+	@Override
+	public void setMtomEnabled(boolean mtomEnabled) {
+		super.setMtomEnabled(mtomEnabled);
+		this.mtomEnabled = mtomEnabled;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.oxm.jaxb.Jaxb2Marshaller#setMappedClass(java.lang.Class)
+	 */
+	@Override
+	public void setMappedClass(Class<?> mappedClass) {
+		super.setMappedClass(mappedClass);
+		this.mappedClass = mappedClass;
+	}
+	
+	/**
+	 * @return the {@link JaxbMarshallerPool} backing this marshaller, exposes hit and miss statistics
+	 */
+	public JaxbMarshallerPool getPool() {
+		JaxbMarshallerPool p = pool;
+		if(null == p) {
+			synchronized (this) {
+				p = pool;
+				if(null == p) {
+					p = new JaxbMarshallerPool(getJaxbContext()) {
+						@Override
+						protected Marshaller newMarshaller() {
+							return createMarshaller();
+						}
+						@Override
+						protected Unmarshaller newUnmarshaller() {
+							return createUnmarshaller();
+						}
+					};
+					p.setMaxIdle(maxIdle);
+					pool = p;
+				}
+			}
+		}
+		return p;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.oxm.jaxb.Jaxb2Marshaller#marshal(java.lang.Object, javax.xml.transform.Result, org.springframework.oxm.mime.MimeContainer)
+	 */
+	@Override
+	public void marshal(Object graph, Result result, MimeContainer mimeContainer) throws XmlMappingException {
+		if(mtomEnabled && null != mimeContainer) {
+			super.marshal(graph, result, mimeContainer);
+			return;
+		}
+		JaxbMarshallerPool p = getPool();
+		Marshaller marshaller = null;
+		try {
+			marshaller = p.borrowMarshaller();
+			if(StaxUtils.isStaxResult(result)) {
+				XMLStreamWriter streamWriter = StaxUtils.getXMLStreamWriter(result);
+				if(null != streamWriter) {
+					marshaller.marshal(graph, streamWriter);
+				} else {
+					XMLEventWriter eventWriter = StaxUtils.getXMLEventWriter(result);
+					if(null == eventWriter) {
+						throw new IllegalArgumentException("StAX Result contains neither XMLStreamWriter nor XMLEventConsumer");
+					}
+					marshaller.marshal(graph, eventWriter);
+				}
+			} else {
+				marshaller.marshal(graph, result);
+			}
+		} catch (JAXBException e) {
+			throw convertJaxbException(e);
+		} finally {
+			p.returnMarshaller(marshaller);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.oxm.jaxb.Jaxb2Marshaller#unmarshal(javax.xml.transform.Source, org.springframework.oxm.mime.MimeContainer)
+	 */
+	@Override
+	public Object unmarshal(Source source, MimeContainer mimeContainer) throws XmlMappingException {
+		if(mtomEnabled && null != mimeContainer) {
+			return super.unmarshal(source, mimeContainer);
+		}
+		JaxbMarshallerPool p = getPool();
+		Unmarshaller unmarshaller = null;
+		try {
+			unmarshaller = p.borrowUnmarshaller();
+			if(StaxUtils.isStaxSource(source)) {
+				return unmarshalStaxSource(unmarshaller, source);
+			} else if(null != mappedClass) {
+				return unmarshaller.unmarshal(source, mappedClass).getValue();
+			} else {
+				return unmarshaller.unmarshal(source);
+			}
+		} catch (JAXBException e) {
+			throw convertJaxbException(e);
+		} finally {
+			p.returnUnmarshaller(unmarshaller);
+		}
+	}
+}
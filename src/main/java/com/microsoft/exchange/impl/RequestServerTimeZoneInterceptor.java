@@ -20,7 +20,7 @@ package com.microsoft.exchange.impl;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
+import javax.xml.transform.TransformerException;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -78,10 +78,14 @@ public class RequestServerTimeZoneInterceptor implements ClientInterceptor, Init
 	@Autowired
 	public void setJaxbContext(JAXBContext jaxbContext) {
 		this.jaxbContext = jaxbContext;
+		this.headerTemplate = null;
 	}
 
 	//try to set this with a valid windows time zone id which matches the jvm timezone
 	private String windowsTimeZoneID;
+	private volatile SoapHeaderTemplate headerTemplate;
+	//the last jvm time zone id found to map to windowsTimeZoneID, saves the TimeZone.getWindowsID lookup on every request
+	private volatile String validatedTimeZoneID;
 	
 	public String getWindowsTimeZoneID(){
 		return this.windowsTimeZoneID;
@@ -104,14 +108,35 @@ public class RequestServerTimeZoneInterceptor implements ClientInterceptor, Init
 			SoapEnvelope envelope = soapMessage.getEnvelope();
 			SoapHeader header = envelope.getHeader();
 
+			SoapHeaderTemplate template = getHeaderTemplate();
+			try {
+				template.writeTo(header);
+			} catch (TransformerException e) {
+				log.error(
+						"TransformerException raised while attempting to add TimeZoneContext to soap header "
+								+ template, e);
+				throw new ExchangeWebServicesRuntimeException(
+						"TransformerException raised while attempting to add TimeZoneContext to soap header "
+								+ template, e);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The {@link TimeZoneContext} only depends on {@link #getWindowsTimeZoneID()}, marshal it once.
+	 * 
+	 * @return the {@link SoapHeaderTemplate} for the {@link TimeZoneContext} header
+	 */
+	protected SoapHeaderTemplate getHeaderTemplate() {
+		SoapHeaderTemplate template = headerTemplate;
+		if(null == template) {
 			TimeZoneContext tzc = new TimeZoneContext();
 			TimeZoneDefinitionType timeZoneDef = new TimeZoneDefinitionType();
 			timeZoneDef.setId(windowsTimeZoneID);
 			tzc.setTimeZoneDefinition(timeZoneDef);
-
 			try {
-				Marshaller m = jaxbContext.createMarshaller();
-				m.marshal(tzc, header.getResult());
+				template = SoapHeaderTemplate.marshal(jaxbContext, tzc);
 			} catch (JAXBException e) {
 				log.error(
 						"JAXBException raised while attempting to add TimeZoneContext to soap header "
@@ -120,8 +145,9 @@ public class RequestServerTimeZoneInterceptor implements ClientInterceptor, Init
 						"JAXBException raised while attempting to add TimeZoneContext to soap header "
 								+ tzc, e);
 			}
+			headerTemplate = template;
 		}
-		return true;
+		return template;
 	}
 
 	@Override
@@ -145,6 +171,8 @@ public class RequestServerTimeZoneInterceptor implements ClientInterceptor, Init
 			if(StringUtils.isNotBlank(windowsID)){
 				log.info("windows time zone context has been set to '"+windowsID+"'.  All dates and times sent to (or recieved from) EWS must use this timezone information.");
 				this.windowsTimeZoneID = windowsID;
+				this.headerTemplate = null;
+				this.validatedTimeZoneID = null;
 				timeZoneSet=true;
 			}else{
 				log.warn("No windows time zone mapping for "+jvmTimeZone.getID());
@@ -158,6 +186,8 @@ public class RequestServerTimeZoneInterceptor implements ClientInterceptor, Init
 			TimeZone fallbackTimeZone = TimeZone.getTimeZone(FALLBACK_TIMEZONE_ID);
 			TimeZone.setDefault(fallbackTimeZone);
 			this.windowsTimeZoneID = FALLBACK_TIMEZONE_ID;
+			this.headerTemplate = null;
+			this.validatedTimeZoneID = null;
 		}
 	}
 	
@@ -165,8 +195,15 @@ public class RequestServerTimeZoneInterceptor implements ClientInterceptor, Init
 		boolean tzValid = false;
 		TimeZone tzDefault = TimeZone.getDefault();
 		if(null != tzDefault && StringUtils.isNotBlank(tzDefault.getID())){
-			String windowsID = TimeZone.getWindowsID(tzDefault.getID());
+			String timeZoneID = tzDefault.getID();
+			if(timeZoneID.equals(validatedTimeZoneID)) {
+				return true;
+			}
+			String windowsID = TimeZone.getWindowsID(timeZoneID);
 			tzValid = this.windowsTimeZoneID.equals(windowsID);	
+			if(tzValid) {
+				validatedTimeZoneID = timeZoneID;
+			}
 		}
 		return tzValid;
 	}
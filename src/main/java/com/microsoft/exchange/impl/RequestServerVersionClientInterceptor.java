@@ -24,7 +24,7 @@ package com.microsoft.exchange.impl;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
+import javax.xml.transform.TransformerException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -56,6 +56,7 @@ public class RequestServerVersionClientInterceptor implements ClientInterceptor
 
 	protected final Log log = LogFactory.getLog(this.getClass()); 
 	private JAXBContext jaxbContext;
+	private volatile SoapHeaderTemplate headerTemplate;
 	/**
 	 * @return the jaxbContext
 	 */
@@ -68,6 +69,7 @@ public class RequestServerVersionClientInterceptor implements ClientInterceptor
 	@Autowired
 	public void setJaxbContext(JAXBContext jaxbContext) {
 		this.jaxbContext = jaxbContext;
+		this.headerTemplate = null;
 	}
 	
 	
@@ -82,17 +84,35 @@ public class RequestServerVersionClientInterceptor implements ClientInterceptor
 			SoapMessage soapMessage = (SoapMessage) request;
 			SoapEnvelope envelope = soapMessage.getEnvelope();
 			SoapHeader header = envelope.getHeader();
-			RequestServerVersion rsv = new RequestServerVersion();
+			SoapHeaderTemplate template = getHeaderTemplate();
+			try {
+				template.writeTo(header);
+			} catch (TransformerException e) {
+				log.error("TransformerException raised while attempting to add RequestServerVersion to soap header " + template, e);
+				throw new ExchangeWebServicesRuntimeException("TransformerException raised while attempting to add RequestServerVersion to soap header " + template, e);
+			}
+		}
+		return true;
+	}
 
+	/**
+	 * The {@link RequestServerVersion} never changes, marshal it once.
+	 * 
+	 * @return the {@link SoapHeaderTemplate} for the {@link RequestServerVersion} header
+	 */
+	protected SoapHeaderTemplate getHeaderTemplate() {
+		SoapHeaderTemplate template = headerTemplate;
+		if(null == template) {
+			RequestServerVersion rsv = new RequestServerVersion();
 			try {
-				Marshaller m = jaxbContext.createMarshaller();
-				m.marshal(rsv, header.getResult());
+				template = SoapHeaderTemplate.marshal(jaxbContext, rsv);
 			} catch (JAXBException e) {
 				log.error("JAXBException raised while attempting to add RequestServerVersion to soap header " + rsv, e);
 				throw new ExchangeWebServicesRuntimeException("JAXBException raised while attempting to add RequestServerVersion to soap header " + rsv, e);
 			}
+			headerTemplate = template;
 		}
-		return true;
+		return template;
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,318 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.microsoft.exchange.exception.ExchangeInvalidUPNRuntimeException;
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+import com.microsoft.exchange.messages.ResponseCodeType;
+
+/**
+ * Bounded, TTL based cache for name resolution results such as {@link BaseExchangeCalendarDataDao#resolveUpn(String)}.
+ * 
+ * Successful results are kept for {@link #getPositiveTtlMillis()}.  Failures reporting that the name does not exist, see {@link #isNotFound(RuntimeException)}, 
+ * are kept for {@link #getNegativeTtlMillis()} and a new exception of the same class, message and response code is thrown on each hit; 
+ * all other failures (throttling, transport errors, ...) are never cached.
+ * Concurrent lookups for the same key are merged into a single load.  At most {@link #getMaxEntries()} keys are held (LRU).
+ * Keys are compared ignoring case and surrounding whitespace.
+ */
+public class ResolutionCache<V> {
+
+	/**
+	 * Response codes for names, mailboxes or folders which do not exist.
+	 */
+	public static final Set<String> NOT_FOUND_RESPONSE_CODES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+			ResponseCodeType.ERROR_NAME_RESOLUTION_NO_RESULTS.value(),
+			ResponseCodeType.ERROR_NON_EXISTENT_MAILBOX.value(),
+			ResponseCodeType.ERROR_MAIL_RECIPIENT_NOT_FOUND.value(),
+			ResponseCodeType.ERROR_INVALID_SMTP_ADDRESS.value(),
+			ResponseCodeType.ERROR_FOLDER_NOT_FOUND.value())));
+	
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private long positiveTtlMillis = 60 * 60 * 1000L;
+	private long negativeTtlMillis = 5 * 60 * 1000L;
+	private int maxEntries = 10000;
+	
+	private final Map<String, Entry<V>> entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+			return size() > maxEntries;
+		}
+	};
+	private final ConcurrentMap<String, FutureTask<V>> loading = new ConcurrentHashMap<String, FutureTask<V>>();
+	
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong negativeHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong merged = new AtomicLong();
+	
+	/**
+	 * @return how long a successful result is kept
+	 */
+	public long getPositiveTtlMillis() {
+		return positiveTtlMillis;
+	}
+	/**
+	 * @param positiveTtlMillis how long a successful result is kept
+	 */
+	public void setPositiveTtlMillis(long positiveTtlMillis) {
+		Validate.isTrue(positiveTtlMillis >= 0, "positiveTtlMillis cannot be negative");
+		this.positiveTtlMillis = positiveTtlMillis;
+	}
+	/**
+	 * @return how long a definite failure is kept
+	 */
+	public long getNegativeTtlMillis() {
+		return negativeTtlMillis;
+	}
+	/**
+	 * @param negativeTtlMillis how long a definite failure is kept, 0 disables negative caching
+	 */
+	public void setNegativeTtlMillis(long negativeTtlMillis) {
+		Validate.isTrue(negativeTtlMillis >= 0, "negativeTtlMillis cannot be negative");
+		this.negativeTtlMillis = negativeTtlMillis;
+	}
+	/**
+	 * @return the maximum number of keys held
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	/**
+	 * @param maxEntries the maximum number of keys held
+	 */
+	public void setMaxEntries(int maxEntries) {
+		Validate.isTrue(maxEntries > 0, "maxEntries must be greater than 0");
+		this.maxEntries = maxEntries;
+	}
+	
+	/**
+	 * @param key
+	 * @param loader invoked if {@code key} is not cached and not being loaded by another thread
+	 * @return the cached or loaded value
+	 * @throws RuntimeException the current failure of {@code loader}, or a copy of the cached one
+	 */
+	public V get(String key, Callable<V> loader) {
+		Validate.notNull(key, "key cannot be null");
+		String k = key.trim().toLowerCase();
+		Entry<V> entry;
+		synchronized (entries) {
+			entry = entries.get(k);
+		}
+		if(null != entry) {
+			if(entry.expires > System.currentTimeMillis()) {
+				if(null != entry.failureType) {
+					negativeHits.incrementAndGet();
+					throw newFailure(entry);
+				}
+				hits.incrementAndGet();
+				return entry.value;
+			}
+			synchronized (entries) {
+				// another thread may have stored a fresh entry since
+				if(entries.get(k) == entry) {
+					entries.remove(k);
+				}
+			}
+		}
+		
+		FutureTask<V> task = new FutureTask<V>(loader);
+		FutureTask<V> existing = loading.putIfAbsent(k, task);
+		if(null != existing) {
+			merged.incrementAndGet();
+			return await(existing, key);
+		}
+		misses.incrementAndGet();
+		try {
+			task.run();
+			V value = await(task, key);
+			put(k, new Entry<V>(value, null, null, null, System.currentTimeMillis() + positiveTtlMillis));
+			return value;
+		} catch (RuntimeException e) {
+			if(negativeTtlMillis > 0 && isNotFound(e) && !Thread.currentThread().isInterrupted()) {
+				String message = null == e.getMessage() ? "not found: "+key : e.getMessage();
+				put(k, new Entry<V>(null, e.getClass(), message, getResponseCode(e), System.currentTimeMillis() + negativeTtlMillis));
+			}
+			throw e;
+		} finally {
+			loading.remove(k, task);
+		}
+	}
+	
+	private V await(FutureTask<V> task, String key) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExchangeRuntimeException("interrupted while resolving "+key, e);
+		} catch (ExecutionException e) {
+			throw RetryExecutor.unwrap(e);
+		}
+	}
+	
+	/**
+	 * @param entry a negative entry
+	 * @return a new instance of the cached failure's class, or an {@link ExchangeRuntimeException} if that class has no public (String) constructor
+	 */
+	private RuntimeException newFailure(Entry<V> entry) {
+		RuntimeException failure;
+		try {
+			failure = entry.failureType.getConstructor(String.class).newInstance(entry.failureMessage);
+		} catch (Exception e) {
+			failure = new ExchangeRuntimeException(entry.failureMessage);
+		}
+		if(failure instanceof ExchangeRuntimeException) {
+			((ExchangeRuntimeException) failure).setResponseCode(entry.failureResponseCode);
+		}
+		return failure;
+	}
+	
+	private void put(String k, Entry<V> entry) {
+		synchronized (entries) {
+			entries.put(k, entry);
+		}
+	}
+	
+	/**
+	 * @param failure
+	 * @return true if {@code failure} reports that the name does not exist and may be cached, see {@link #isNotFoundFailure(Throwable)}
+	 */
+	protected boolean isNotFound(RuntimeException failure) {
+		return isNotFoundFailure(failure);
+	}
+	
+	/**
+	 * @param failure
+	 * @return true if {@code failure} is an {@link ExchangeInvalidUPNRuntimeException} or carries one of the {@link #NOT_FOUND_RESPONSE_CODES}
+	 */
+	public static boolean isNotFoundFailure(Throwable failure) {
+		if(failure instanceof ExchangeInvalidUPNRuntimeException) {
+			return true;
+		}
+		String responseCode = getResponseCode(failure);
+		return null != responseCode && NOT_FOUND_RESPONSE_CODES.contains(responseCode);
+	}
+	
+	private static String getResponseCode(Throwable failure) {
+		return failure instanceof ExchangeRuntimeException ? ((ExchangeRuntimeException) failure).getResponseCode() : null;
+	}
+	
+	/**
+	 * Discard the entry for {@code key}.
+	 * @param key
+	 */
+	public void invalidate(String key) {
+		synchronized (entries) {
+			entries.remove(key.trim().toLowerCase());
+		}
+	}
+	
+	/**
+	 * Discard all entries, the counters are retained.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+	
+	/**
+	 * @return the number of keys held, including expired entries not yet removed
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	/**
+	 * @return the number of lookups answered with a cached value
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+	/**
+	 * @return the number of lookups answered with a cached failure
+	 */
+	public long getNegativeHitCount() {
+		return negativeHits.get();
+	}
+	/**
+	 * @return the number of lookups which invoked the loader
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+	/**
+	 * @return the number of lookups which waited for a concurrent load of the same key
+	 */
+	public long getMergedCount() {
+		return merged.get();
+	}
+	/**
+	 * @return the fraction of lookups which did not invoke the loader
+	 */
+	public double getHitRate() {
+		long served = hits.get() + negativeHits.get() + merged.get();
+		long total = served + misses.get();
+		return 0 == total ? 0 : (double) served / total;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ResolutionCache[size=" + size() + ", hits=" + hits.get() + ", negativeHits=" + negativeHits.get() 
+				+ ", misses=" + misses.get() + ", merged=" + merged.get() + "]";
+	}
+	
+	private static class Entry<V> {
+		private final V value;
+		private final Class<? extends RuntimeException> failureType;
+		private final String failureMessage;
+		private final String failureResponseCode;
+		private final long expires;
+		
+		Entry(V value, Class<? extends RuntimeException> failureType, String failureMessage, String failureResponseCode, long expires) {
+			this.value = value;
+			this.failureType = failureType;
+			this.failureMessage = failureMessage;
+			this.failureResponseCode = failureResponseCode;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,456 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+
+/**
+ * Runs EWS calls under a {@link RetryPolicy}.
+ * 
+ * {@link #submit(Object, boolean, Callable)} is the primary API: it returns immediately and no thread waits for a backoff. 
+ * A failed attempt is rescheduled on a single threaded {@link ScheduledExecutorService} which only acts as a timer, 
+ * attempts themselves run on the {@link #getWorkerExecutor()}, at most {@link #getPoolSize()} at a time.
+ * {@link #execute(Object, boolean, Callable)} is a convenience for synchronous callers: it runs the first attempt on the calling 
+ * thread and then holds that thread until the outcome is known, backoffs included.  Code that can proceed without the 
+ * result, e.g. fanning requests out, should submit.
+ * 
+ * An operation running on the worker pool must never call {@link #execute(Object, boolean, Callable)} or {@link #submit(Object, boolean, Callable)}: 
+ * waiting on attempts queued behind itself could exhaust the pool and deadlock.  Both throw an {@link IllegalStateException} if called from a worker.
+ * 
+ * The impersonation {@link com.microsoft.exchange.types.ConnectingSIDType} and credentials of the submitting thread are restored around every attempt.
+ */
+public class RetryExecutor implements DisposableBean {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private RetryPolicy retryPolicy = new RetryPolicy();
+	private volatile ScheduledExecutorService scheduler;
+	private volatile ExecutorService workerExecutor;
+	private boolean ownsWorkerExecutor = false;
+	private int poolSize = ExchangeOnlineThrottlingPolicy.MAX_CONCURRENT_CONNECTIONS_IMPERSONATION;
+	
+	/**
+	 * Set while a worker thread runs an attempt.
+	 */
+	private static final ThreadLocal<Boolean> inWorker = new ThreadLocal<Boolean>();
+	
+	/**
+	 * @return the {@link RetryPolicy}
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+	/**
+	 * @param retryPolicy the {@link RetryPolicy}
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+	/**
+	 * @return the maximum number of attempts running concurrently on the {@link #getWorkerExecutor()}
+	 */
+	public int getPoolSize() {
+		return poolSize;
+	}
+	/**
+	 * The pool is shared by every mailbox submitting to this executor, so it caps their combined fan-out: size it to the mailboxes 
+	 * in progress at once times the per mailbox limit (see {@link MailboxConcurrencyGovernor}), and the HTTP connection pool 
+	 * (http.maxTotalConnections) alongside it, since attempts beyond that only wait for a connection.
+	 * Resizes the pool if it was already created by this executor.
+	 * @param poolSize the maximum number of attempts running concurrently on the {@link #getWorkerExecutor()}
+	 */
+	public void setPoolSize(int poolSize) {
+		if(poolSize < 1) {
+			throw new IllegalArgumentException("poolSize must be greater than 0");
+		}
+		synchronized (this) {
+			this.poolSize = poolSize;
+			if(workerExecutor instanceof ThreadPoolExecutor && ownsWorkerExecutor) {
+				ThreadPoolExecutor pool = (ThreadPoolExecutor) workerExecutor;
+				if(poolSize > pool.getMaximumPoolSize()) {
+					pool.setMaximumPoolSize(poolSize);
+					pool.setCorePoolSize(poolSize);
+				} else {
+					pool.setCorePoolSize(poolSize);
+					pool.setMaximumPoolSize(poolSize);
+				}
+			}
+		}
+	}
+	/**
+	 * @param scheduler the {@link ScheduledExecutorService} timing retries, one is created if not set
+	 */
+	public void setScheduler(ScheduledExecutorService scheduler) {
+		this.scheduler = scheduler;
+	}
+	/**
+	 * @return the {@link ScheduledExecutorService} timing retries, its tasks only hand attempts to the {@link #getWorkerExecutor()}
+	 */
+	public ScheduledExecutorService getScheduler() {
+		ScheduledExecutorService s = scheduler;
+		if(null == s) {
+			synchronized (this) {
+				s = scheduler;
+				if(null == s) {
+					CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ews-retry-timer-");
+					threadFactory.setDaemon(true);
+					s = new ScheduledThreadPoolExecutor(1, threadFactory);
+					scheduler = s;
+				}
+			}
+		}
+		return s;
+	}
+	/**
+	 * @param workerExecutor the {@link ExecutorService} running submitted and rescheduled attempts, one with {@link #getPoolSize()} threads is created if not set
+	 */
+	public synchronized void setWorkerExecutor(ExecutorService workerExecutor) {
+		this.workerExecutor = workerExecutor;
+		this.ownsWorkerExecutor = false;
+	}
+	/**
+	 * @return the {@link ExecutorService} running submitted and rescheduled attempts
+	 */
+	public ExecutorService getWorkerExecutor() {
+		ExecutorService w = workerExecutor;
+		if(null == w) {
+			synchronized (this) {
+				w = workerExecutor;
+				if(null == w) {
+					CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ews-retry-");
+					threadFactory.setDaemon(true);
+					ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+					pool.allowCoreThreadTimeOut(true);
+					w = pool;
+					workerExecutor = w;
+					ownsWorkerExecutor = true;
+				}
+			}
+		}
+		return w;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		ScheduledExecutorService s = scheduler;
+		if(null != s) {
+			s.shutdownNow();
+		}
+		ExecutorService w = workerExecutor;
+		if(null != w) {
+			w.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Run {@code operation} until it succeeds, fails with a non-retryable exception, or the policy's attempts or deadline are exhausted.
+	 * All attempts run on the {@link #getWorkerExecutor()}.
+	 * 
+	 * @param description used in log and exception messages, only rendered (via {@link Object#toString()}) on failure, see {@link #describe(String, Object...)}
+	 * @param idempotent false if the operation may only be retried when Exchange throttled it
+	 * @param operation
+	 * @return a {@link Future} completed with the result of the first successful attempt, or failed with the non-retryable failure 
+	 * or an {@link ExchangeRuntimeException} caused by the last failure
+	 * @throws IllegalStateException if called from an operation running on the {@link #getWorkerExecutor()}
+	 */
+	public <T> Future<T> submit(Object description, boolean idempotent, Callable<T> operation) {
+		return submit(description, idempotent, operation, null);
+	}
+	
+	/**
+	 * Same as {@link #submit(Object, boolean, Callable)}, additionally the returned {@link Future} is 
+	 * offered to {@code completionQueue} once it is done (successfully, exhausted or cancelled). 
+	 * This allows callers to consume results in completion order, see {@link java.util.concurrent.CompletionService}.
+	 * 
+	 * @param description
+	 * @param idempotent
+	 * @param operation
+	 * @param completionQueue may be null
+	 * @return a {@link Future} completed with the result of the first successful attempt or the final failure
+	 * @throws IllegalStateException if called from an operation running on the {@link #getWorkerExecutor()}
+	 */
+	public <T> Future<T> submit(Object description, boolean idempotent, Callable<T> operation, BlockingQueue<Future<T>> completionQueue) {
+		checkNotInWorker(description);
+		RetryTask<T> task = new RetryTask<T>(description, idempotent, operation, completionQueue);
+		task.schedule(0);
+		return task;
+	}
+	
+	/**
+	 * Blocking variant of {@link #submit(Object, boolean, Callable)} for synchronous callers.  The first attempt runs on the calling thread, 
+	 * which then waits for the outcome of any retries.
+	 * 
+	 * @param description used in log and exception messages, only rendered (via {@link Object#toString()}) on failure, see {@link #describe(String, Object...)}
+	 * @param idempotent false if the operation may only be retried when Exchange throttled it
+	 * @param operation
+	 * @return the result of the first successful attempt
+	 * @throws RuntimeException the non-retryable failure, or an {@link ExchangeRuntimeException} caused by the last failure
+	 * @throws IllegalStateException if called from an operation running on the {@link #getWorkerExecutor()}
+	 */
+	public <T> T execute(Object description, boolean idempotent, Callable<T> operation) {
+		checkNotInWorker(description);
+		RetryTask<T> task = new RetryTask<T>(description, idempotent, operation, null);
+		task.run();
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			task.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ExchangeRuntimeException(description + " interrupted while waiting to retry", e);
+		} catch (ExecutionException e) {
+			throw unwrap(e);
+		}
+	}
+	
+	private static void checkNotInWorker(Object description) {
+		if(null != inWorker.get()) {
+			throw new IllegalStateException(description + " was called from an operation running on the retry worker pool, which could deadlock the pool");
+		}
+	}
+	
+	/**
+	 * Build a description that is rendered only when used, e.g. {@code describe("getFolder", "upn", upn)} renders as "getFolder(upn=...)".
+	 * 
+	 * @param method
+	 * @param namesAndValues alternating argument names and values
+	 * @return an {@link Object} whose {@link Object#toString()} renders the description
+	 */
+	public static Object describe(final String method, final Object... namesAndValues) {
+		return new Object() {
+			@Override
+			public String toString() {
+				StringBuilder sb = new StringBuilder(method).append('(');
+				for(int i = 0; i + 1 < namesAndValues.length; i += 2) {
+					if(i > 0) {
+						sb.append(',');
+					}
+					sb.append(namesAndValues[i]).append('=').append(namesAndValues[i + 1]);
+				}
+				return sb.append(')').toString();
+			}
+		};
+	}
+	
+	/**
+	 * @param e
+	 * @return the {@link RuntimeException} to rethrow for a failed {@link Future}
+	 */
+	static RuntimeException unwrap(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if(cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		}
+		if(cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new ExchangeRuntimeException(cause);
+	}
+	
+	/**
+	 * A single call under the {@link RetryPolicy}, also serving as its own {@link Future}.
+	 */
+	class RetryTask<T> implements Runnable, Future<T> {
+		private final Object description;
+		private final boolean idempotent;
+		private final Callable<T> operation;
+		private final long deadline;
+		private final BlockingQueue<Future<T>> completionQueue;
+		private final CountDownLatch done = new CountDownLatch(1);
+		private int attempts = 0;
+		private volatile boolean cancelled = false;
+		private volatile Future<?> pending;
+		private volatile T result;
+		private volatile Throwable failure;
+		
+		RetryTask(Object description, boolean idempotent, Callable<T> operation, BlockingQueue<Future<T>> completionQueue) {
+			this.description = description;
+			this.idempotent = idempotent;
+			this.operation = new ExchangeWebServicesFutureFacade.ContextPropagatingCallable<T>(operation);
+			this.deadline = System.currentTimeMillis() + retryPolicy.getDeadlineMillis();
+			this.completionQueue = completionQueue;
+		}
+		
+		@Override
+		public void run() {
+			if(isDone()) {
+				return;
+			}
+			attempts++;
+			try {
+				complete(operation.call(), null);
+			} catch (Throwable t) {
+				onFailure(t);
+			}
+		}
+		
+		private void onFailure(Throwable t) {
+			if(!retryPolicy.isRetryable(t, idempotent)) {
+				complete(null, t);
+				return;
+			}
+			if(attempts >= retryPolicy.getMaxAttempts()) {
+				complete(null, exhausted(t));
+				return;
+			}
+			long delay = retryPolicy.getDelayMillis(attempts, t);
+			if(System.currentTimeMillis() + delay > deadline) {
+				complete(null, exhausted(t));
+				return;
+			}
+			log.warn(description + " - failure #" + attempts + ". Retrying in " + delay + "ms. " + t.getMessage());
+			schedule(delay);
+		}
+		
+		void schedule(long delay) {
+			if(delay <= 0) {
+				dispatch();
+				return;
+			}
+			try {
+				pending = getScheduler().schedule(new Runnable() {
+					@Override
+					public void run() {
+						dispatch();
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				complete(null, new ExchangeRuntimeException(description + " could not be scheduled", e));
+			}
+		}
+		
+		/*
+		 * hand the next attempt to the worker executor, the timer thread never runs an attempt itself
+		 */
+		private void dispatch() {
+			if(isDone()) {
+				return;
+			}
+			try {
+				pending = getWorkerExecutor().submit(new Runnable() {
+					@Override
+					public void run() {
+						inWorker.set(Boolean.TRUE);
+						try {
+							RetryTask.this.run();
+						} finally {
+							inWorker.remove();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				complete(null, new ExchangeRuntimeException(description + " could not be scheduled", e));
+			}
+		}
+		
+		private ExchangeRuntimeException exhausted(Throwable last) {
+			ExchangeRuntimeException e = new ExchangeRuntimeException(description + " failed " + attempts + " consecutive attempts.", last);
+			if(last instanceof ExchangeRuntimeException) {
+				e.setResponseCode(((ExchangeRuntimeException) last).getResponseCode());
+			}
+			return e;
+		}
+		
+		private void complete(T value, Throwable t) {
+			synchronized (this) {
+				if(isDone()) {
+					return;
+				}
+				this.result = value;
+				this.failure = t;
+				done.countDown();
+			}
+			notifyCompletion();
+		}
+		
+		private void notifyCompletion() {
+			if(null != completionQueue) {
+				completionQueue.offer(this);
+			}
+		}
+		
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			synchronized (this) {
+				if(isDone()) {
+					return false;
+				}
+				cancelled = true;
+				done.countDown();
+			}
+			Future<?> p = pending;
+			if(null != p) {
+				p.cancel(mayInterruptIfRunning);
+			}
+			notifyCompletion();
+			return true;
+		}
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+		@Override
+		public boolean isDone() {
+			return done.getCount() == 0;
+		}
+		@Override
+		public T get() throws InterruptedException, ExecutionException {
+			done.await();
+			return report();
+		}
+		@Override
+		public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			if(!done.await(timeout, unit)) {
+				throw new TimeoutException();
+			}
+			return report();
+		}
+		private T report() throws ExecutionException {
+			if(cancelled) {
+				throw new CancellationException(description + " cancelled");
+			}
+			if(null != failure) {
+				throw new ExecutionException(failure);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.springframework.ws.client.WebServiceIOException;
+import org.springframework.ws.client.WebServiceTransportException;
+
+import com.microsoft.exchange.exception.ExchangeCannotDeleteRuntimeException;
+import com.microsoft.exchange.exception.ExchangeExceededFindCountLimitRuntimeException;
+import com.microsoft.exchange.exception.ExchangeInvalidUPNRuntimeException;
+import com.microsoft.exchange.exception.ExchangeItemNotFoundRuntimeException;
+import com.microsoft.exchange.exception.ExchangeMissingEmailAddressRuntimeException;
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+import com.microsoft.exchange.exception.ExchangeThrottledRuntimeException;
+
+/**
+ * Decides whether a failed EWS call may be retried and how long to wait before doing so.
+ * 
+ * <ul>
+ * <li>Throttling failures ({@link ExchangeThrottledRuntimeException}, ErrorServerBusy, ErrorExceededConnectionCount) are always retryable,
+ * Exchange rejected the request before processing it.</li>
+ * <li>Other failures are only retryable for idempotent operations, and only if the EWS response code (taken from the SOAP fault or ResponseMessage) 
+ * is one of {@link #getRetryableResponseCodes()}, or if the failure was caused by the transport.  Failures without a response code 
+ * (e.g. the DAO's own validation and "no results" errors) are not retried.</li>
+ * <li>The delay is "full jitter": a random value between 0 and min({@link #getMaxDelayMillis()}, {@link #getBaseDelayMillis()} * 2^(attempt-1)),
+ * but never less than the BackOffMilliseconds hint provided by the server.</li>
+ * </ul>
+ */
+public class RetryPolicy {
+
+	/**
+	 * Response codes indicating a transient server side condition.
+	 */
+	public static final Set<String> DEFAULT_RETRYABLE_RESPONSE_CODES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+			ExchangeOnlineThrottlingPolicy.ERROR_SERVER_BUSY,
+			ExchangeOnlineThrottlingPolicy.ERROR_EXCEEDED_CONNECTION_COUNT,
+			"ErrorInternalServerTransientError",
+			"ErrorInternalServerError",
+			"ErrorTimeoutExpired",
+			"ErrorMailboxStoreUnavailable",
+			"ErrorMailboxMoveInProgress",
+			"ErrorConnectionFailed",
+			"ErrorBatchProcessingStopped",
+			"ErrorInsufficientResources",
+			"ErrorADUnavailable")));
+	
+	private final Random random = new Random();
+	private int maxAttempts = 11;
+	private long baseDelayMillis = 1000;
+	private long maxDelayMillis = 60000;
+	private long deadlineMillis = 300000;
+	private Set<String> retryableResponseCodes = DEFAULT_RETRYABLE_RESPONSE_CODES;
+	
+	/**
+	 * @return the maximum number of attempts, including the first
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+	/**
+	 * @param maxAttempts the maximum number of attempts, including the first
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+	/**
+	 * @return the upper bound of the delay before the first retry
+	 */
+	public long getBaseDelayMillis() {
+		return baseDelayMillis;
+	}
+	/**
+	 * @param baseDelayMillis the upper bound of the delay before the first retry
+	 */
+	public void setBaseDelayMillis(long baseDelayMillis) {
+		this.baseDelayMillis = baseDelayMillis;
+	}
+	/**
+	 * @return the upper bound of any computed delay (server back off hints may exceed it)
+	 */
+	public long getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+	/**
+	 * @param maxDelayMillis the upper bound of any computed delay
+	 */
+	public void setMaxDelayMillis(long maxDelayMillis) {
+		this.maxDelayMillis = maxDelayMillis;
+	}
+	/**
+	 * @return the time allowed for all attempts of a single call, no retry is scheduled past it
+	 */
+	public long getDeadlineMillis() {
+		return deadlineMillis;
+	}
+	/**
+	 * @param deadlineMillis the time allowed for all attempts of a single call
+	 */
+	public void setDeadlineMillis(long deadlineMillis) {
+		this.deadlineMillis = deadlineMillis;
+	}
+	/**
+	 * @return the EWS response codes considered transient
+	 */
+	public Set<String> getRetryableResponseCodes() {
+		return retryableResponseCodes;
+	}
+	/**
+	 * @param retryableResponseCodes the EWS response codes considered transient
+	 */
+	public void setRetryableResponseCodes(Set<String> retryableResponseCodes) {
+		this.retryableResponseCodes = retryableResponseCodes;
+	}
+	
+	/**
+	 * 
+	 * @param failure
+	 * @param idempotent false if repeating a request which may have been processed is unsafe (e.g. CreateItem)
+	 * @return true if the call which failed with {@code failure} may be retried
+	 */
+	public boolean isRetryable(Throwable failure, boolean idempotent) {
+		if(failure instanceof ExchangeThrottledRuntimeException) {
+			return true;
+		}
+		String responseCode = failure instanceof ExchangeRuntimeException ? ((ExchangeRuntimeException) failure).getResponseCode() : null;
+		if(AdaptiveThrottlingController.isThrottlingResponseCode(responseCode)) {
+			return true;
+		}
+		if(!idempotent) {
+			return false;
+		}
+		if(failure instanceof ExchangeInvalidUPNRuntimeException
+				|| failure instanceof ExchangeExceededFindCountLimitRuntimeException
+				|| failure instanceof ExchangeItemNotFoundRuntimeException
+				|| failure instanceof ExchangeCannotDeleteRuntimeException
+				|| failure instanceof ExchangeMissingEmailAddressRuntimeException) {
+			return false;
+		}
+		if(null != responseCode) {
+			return retryableResponseCodes.contains(responseCode);
+		}
+		for(Throwable t = failure; null != t; t = t.getCause()) {
+			if(t instanceof WebServiceIOException || t instanceof WebServiceTransportException) {
+				return true;
+			}
+			if(t == t.getCause()) {
+				break;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * 
+	 * @param failedAttempts the number of attempts made so far, at least 1
+	 * @param failure the most recent failure
+	 * @return the number of milliseconds to wait before the next attempt
+	 */
+	public long getDelayMillis(int failedAttempts, Throwable failure) {
+		int exponent = Math.max(0, Math.min(failedAttempts - 1, 30));
+		long ceiling = Math.min(maxDelayMillis, baseDelayMillis << exponent);
+		if(ceiling < 0) {
+			ceiling = maxDelayMillis;
+		}
+		long delay;
+		synchronized (random) {
+			delay = ceiling > 0 ? (long) (random.nextDouble() * (ceiling + 1)) : 0;
+		}
+		if(failure instanceof ExchangeThrottledRuntimeException) {
+			delay = Math.max(delay, ((ExchangeThrottledRuntimeException) failure).getBackOffMillis());
+		}
+		return delay;
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.io.StringWriter;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Result;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.springframework.ws.soap.SoapHeader;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An immutable, pre-built SOAP header element.
+ * 
+ * The JAXB object is marshalled once, straight into a DOM {@link Element}, when the template is created. 
+ * Nothing is parsed or marshalled when the template is applied to a request:
+ * <ul>
+ * <li>a DOM based header, e.g. SAAJ's, gets a deep copy of the element through {@link Document#importNode(Node, boolean)};</li>
+ * <li>any other header, e.g. Axiom's SAX based one, is fed by walking the element with an identity {@link Transformer}.</li>
+ * </ul>
+ * The DOM specification does not promise that even reads are thread safe, so copies of the same template are serialized.
+ * They only walk a handful of nodes.
+ * Instances are thread safe.
+ */
+public final class SoapHeaderTemplate {
+
+	private static final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+	private static final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+	
+	static {
+		documentBuilderFactory.setNamespaceAware(true);
+	}
+	
+	private static final ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>() {
+		@Override
+		protected Transformer initialValue() {
+			try {
+				synchronized (transformerFactory) {
+					return transformerFactory.newTransformer();
+				}
+			} catch (TransformerConfigurationException e) {
+				throw new IllegalStateException("failed to create identity transformer", e);
+			}
+		}
+	};
+	
+	private final Element element;
+	
+	private SoapHeaderTemplate(Element element) {
+		this.element = element;
+	}
+	
+	/**
+	 * Marshal the JAXB object into a new {@link SoapHeaderTemplate}.
+	 * 
+	 * @param jaxbContext
+	 * @param headerElement a JAXB root element, e.g. {@link com.microsoft.exchange.types.RequestServerVersion}
+	 * @return a new {@link SoapHeaderTemplate}
+	 * @throws JAXBException
+	 */
+	public static SoapHeaderTemplate marshal(JAXBContext jaxbContext, Object headerElement) throws JAXBException {
+		Document document;
+		try {
+			synchronized (documentBuilderFactory) {
+				document = documentBuilderFactory.newDocumentBuilder().newDocument();
+			}
+		} catch (ParserConfigurationException e) {
+			throw new IllegalStateException("failed to create document builder", e);
+		}
+		Marshaller m = jaxbContext.createMarshaller();
+		m.marshal(headerElement, document);
+		return new SoapHeaderTemplate(document.getDocumentElement());
+	}
+	
+	/**
+	 * Append the header element to the {@link SoapHeader}.
+	 * 
+	 * @param header
+	 * @throws TransformerException
+	 */
+	public void writeTo(SoapHeader header) throws TransformerException {
+		Result result = header.getResult();
+		synchronized (element) {
+			if(result instanceof DOMResult && null != ((DOMResult) result).getNode()) {
+				Node parent = ((DOMResult) result).getNode();
+				Document owner = parent.getNodeType() == Node.DOCUMENT_NODE ? (Document) parent : parent.getOwnerDocument();
+				parent.appendChild(owner.importNode(element, true));
+			} else {
+				transformers.get().transform(new DOMSource(element), result);
+			}
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringWriter writer = new StringWriter();
+		try {
+			Transformer transformer;
+			synchronized (transformerFactory) {
+				transformer = transformerFactory.newTransformer();
+			}
+			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+			synchronized (element) {
+				transformer.transform(new DOMSource(element), new StreamResult(writer));
+			}
+		} catch (TransformerException e) {
+			throw new IllegalStateException(e);
+		}
+		return writer.toString();
+	}
+}
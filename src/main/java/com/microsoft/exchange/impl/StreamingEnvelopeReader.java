@@ -0,0 +1,210 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Splits the body of a streaming response, which carries a sequence of complete XML documents (one SOAP envelope per notification, 
+ * each optionally preceded by an XML declaration), into the individual documents as soon as each has been received.
+ * 
+ * The closing tag of the root element is located by scanning the raw bytes, which is safe for UTF-8 and other ASCII compatible encodings
+ * since markup never appears unescaped in character data.
+ */
+public class StreamingEnvelopeReader {
+
+	private static final int READ_SIZE = 8192;
+	
+	private final InputStream in;
+	private byte[] buffer = new byte[READ_SIZE];
+	private int length;
+	/** the closing tag of the current document's root element, once its start tag has been read */
+	private byte[] closingTag;
+	/** the offset the search for {@link #closingTag} resumes from */
+	private int searchFrom;
+	
+	/**
+	 * @param in the response body
+	 */
+	public StreamingEnvelopeReader(InputStream in) {
+		Validate.notNull(in, "in argument cannot be null");
+		this.in = in;
+	}
+	
+	/**
+	 * Blocks until the next document has been received in full.
+	 * 
+	 * @return the bytes of the next document, or null once the stream has ended
+	 * @throws IOException if the stream fails or ends within a document
+	 */
+	public byte[] nextEnvelope() throws IOException {
+		while(true) {
+			int end = findEnd();
+			if(end > 0) {
+				byte[] envelope = new byte[end];
+				System.arraycopy(buffer, 0, envelope, 0, end);
+				System.arraycopy(buffer, end, buffer, 0, length - end);
+				length -= end;
+				closingTag = null;
+				searchFrom = 0;
+				return envelope;
+			}
+			if(!fill()) {
+				if(skipWhitespace(0) < length) {
+					throw new IOException("stream ended within a document ("+length+" bytes pending)");
+				}
+				length = 0;
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * @return false at the end of the stream
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException {
+		if(buffer.length - length < READ_SIZE) {
+			byte[] larger = new byte[Math.max(buffer.length * 2, length + READ_SIZE)];
+			System.arraycopy(buffer, 0, larger, 0, length);
+			buffer = larger;
+		}
+		int read = in.read(buffer, length, buffer.length - length);
+		if(read < 0) {
+			return false;
+		}
+		length += read;
+		return true;
+	}
+	
+	/**
+	 * Leading whitespace is dropped from the buffer so that each document starts with its declaration or root element.
+	 * 
+	 * @return the length of the first complete document in the buffer, or -1 if more input is needed
+	 */
+	private int findEnd() {
+		if(null == closingTag) {
+			int start = skipWhitespace(0);
+			if(start > 0) {
+				System.arraycopy(buffer, start, buffer, 0, length - start);
+				length -= start;
+			}
+			int root = skipProlog(0);
+			if(root < 0) {
+				return -1;
+			}
+			int nameEnd = root + 1;
+			while(nameEnd < length && !isNameEnd(buffer[nameEnd])) {
+				nameEnd++;
+			}
+			if(nameEnd >= length) {
+				return -1;
+			}
+			closingTag = new byte[nameEnd - root + 1];
+			closingTag[0] = '<';
+			closingTag[1] = '/';
+			System.arraycopy(buffer, root + 1, closingTag, 2, nameEnd - root - 1);
+			searchFrom = nameEnd;
+		}
+		for(int i = searchFrom; i + closingTag.length <= length; i++) {
+			if(!matches(i, closingTag)) {
+				continue;
+			}
+			int j = skipWhitespace(i + closingTag.length);
+			if(j >= length) {
+				searchFrom = i;
+				return -1;
+			}
+			if(buffer[j] == '>') {
+				return j + 1;
+			}
+		}
+		searchFrom = Math.max(searchFrom, length - closingTag.length);
+		return -1;
+	}
+	
+	/**
+	 * Skip the byte order mark, XML declaration, processing instructions, comments and doctype preceding the root element.
+	 * 
+	 * @param offset
+	 * @return the offset of the root element's '<', or -1 if more input is needed
+	 */
+	private int skipProlog(int offset) {
+		int i = offset;
+		if(length - i >= 3 && (buffer[i] & 0xFF) == 0xEF && (buffer[i + 1] & 0xFF) == 0xBB && (buffer[i + 2] & 0xFF) == 0xBF) {
+			i += 3;
+		}
+		while(true) {
+			i = skipWhitespace(i);
+			if(i + 1 >= length) {
+				return -1;
+			}
+			if(buffer[i] != '<') {
+				// not markup, let the message factory report it
+				return i;
+			}
+			byte next = buffer[i + 1];
+			if(next != '?' && next != '!') {
+				return i;
+			}
+			int close = indexOf((byte) '>', i + 2);
+			if(close < 0) {
+				return -1;
+			}
+			i = close + 1;
+		}
+	}
+	
+	private int skipWhitespace(int offset) {
+		int i = offset;
+		while(i < length && isWhitespace(buffer[i])) {
+			i++;
+		}
+		return i;
+	}
+	
+	private int indexOf(byte b, int offset) {
+		for(int i = offset; i < length; i++) {
+			if(buffer[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	private boolean matches(int offset, byte[] bytes) {
+		for(int i = 0; i < bytes.length; i++) {
+			if(buffer[offset + i] != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+	
+	private static boolean isNameEnd(byte b) {
+		return isWhitespace(b) || b == '>' || b == '/';
+	}
+}
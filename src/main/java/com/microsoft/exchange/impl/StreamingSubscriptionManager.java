@@ -0,0 +1,748 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.microsoft.exchange.ExchangeRequestFactory;
+import com.microsoft.exchange.ItemChangeListener;
+import com.microsoft.exchange.StreamingEventsHandler;
+import com.microsoft.exchange.exception.ExchangeInvalidUPNRuntimeException;
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+import com.microsoft.exchange.messages.GetStreamingEventsResponse;
+import com.microsoft.exchange.model.ItemChangeEvent;
+import com.microsoft.exchange.model.MailboxAffinity;
+import com.microsoft.exchange.model.SubscriptionEventsResult;
+import com.microsoft.exchange.types.BaseFolderIdType;
+
+/**
+ * Maintains streaming subscriptions to the item events of many mailboxes and delivers the events to an {@link ItemChangeListener}.
+ * 
+ * Mailboxes are grouped onto shared connections of at most {@link #getMaxSubscriptionsPerConnection()} subscriptions.  Each group is 
+ * anchored on one of its mailboxes: the subscriptions and the group's GetStreamingEvents connection carry the anchor's {@link MailboxAffinity} 
+ * so that they are served by the same mailbox server.  If the anchor is removed the group is re-anchored and its members are subscribed again.
+ * Events are handed to the listener as each notification arrives on the connection.
+ * 
+ * Every group holds its own connection open, reopening it as soon as it reaches its timeout, so at most {@link #getMaxConnections()}
+ * groups can exist; a mailbox which would need another group is rejected.  The members of a group are subscribed in parallel
+ * before its connection is opened.
+ * When Exchange reports a subscription as failed (e.g. expired) the mailbox is subscribed again and the events since its last 
+ * watermark are replayed through a temporary pull subscription, see {@link BaseExchangeCalendarDataDao#getItemEventsSince(String, Collection, String)}.
+ * If no watermark is known or it is no longer valid the listener is told via {@link ItemChangeListener#onSubscriptionLost(String, RuntimeException)}.
+ */
+public class StreamingSubscriptionManager implements DisposableBean {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private BaseExchangeCalendarDataDao calendarDataDao;
+	private ItemChangeListener listener;
+	private int maxSubscriptionsPerConnection = ExchangeOnlineThrottlingPolicy.MAX_SUBSCRIPTIONS_PER_STREAMING_CONNECTION;
+	private int connectionTimeoutMinutes = 1;
+	private int maxConnections = ExchangeOnlineThrottlingPolicy.MAX_STREAMING_CONNECTIONS;
+	private RetryPolicy retryPolicy = new RetryPolicy();
+	
+	private final Map<String, Mailbox> mailboxes = new LinkedHashMap<String, Mailbox>();
+	private final List<ConnectionGroup> groups = new ArrayList<ConnectionGroup>();
+	private ScheduledThreadPoolExecutor executor;
+	
+	/**
+	 * @return the {@link BaseExchangeCalendarDataDao} used to subscribe and open connections
+	 */
+	public BaseExchangeCalendarDataDao getCalendarDataDao() {
+		return calendarDataDao;
+	}
+	/**
+	 * @param calendarDataDao the {@link BaseExchangeCalendarDataDao} used to subscribe and open connections
+	 */
+	public void setCalendarDataDao(BaseExchangeCalendarDataDao calendarDataDao) {
+		this.calendarDataDao = calendarDataDao;
+	}
+	/**
+	 * @return the {@link ItemChangeListener}
+	 */
+	public ItemChangeListener getListener() {
+		return listener;
+	}
+	/**
+	 * @param listener the {@link ItemChangeListener}
+	 */
+	public void setListener(ItemChangeListener listener) {
+		this.listener = listener;
+	}
+	/**
+	 * @return the maximum number of subscriptions sharing a connection
+	 */
+	public int getMaxSubscriptionsPerConnection() {
+		return maxSubscriptionsPerConnection;
+	}
+	/**
+	 * Applies to mailboxes added afterwards.
+	 * @param maxSubscriptionsPerConnection the maximum number of subscriptions sharing a connection
+	 */
+	public void setMaxSubscriptionsPerConnection(int maxSubscriptionsPerConnection) {
+		Validate.isTrue(maxSubscriptionsPerConnection > 0, "maxSubscriptionsPerConnection must be greater than 0");
+		this.maxSubscriptionsPerConnection = maxSubscriptionsPerConnection;
+	}
+	/**
+	 * @return the ConnectionTimeout of each GetStreamingEvents request, in minutes
+	 */
+	public int getConnectionTimeoutMinutes() {
+		return connectionTimeoutMinutes;
+	}
+	/**
+	 * Events are delivered as they arrive regardless of the timeout; it bounds how long mailboxes added to a group wait for the next connection.
+	 * @param connectionTimeoutMinutes the ConnectionTimeout of each GetStreamingEvents request, between 1 and {@link ExchangeRequestFactory#STREAMING_CONNECTION_TIMEOUT_MAX}
+	 */
+	public void setConnectionTimeoutMinutes(int connectionTimeoutMinutes) {
+		Validate.isTrue(connectionTimeoutMinutes >= 1 && connectionTimeoutMinutes <= ExchangeRequestFactory.STREAMING_CONNECTION_TIMEOUT_MAX, 
+				"connectionTimeoutMinutes must be between 1 and "+ExchangeRequestFactory.STREAMING_CONNECTION_TIMEOUT_MAX);
+		this.connectionTimeoutMinutes = connectionTimeoutMinutes;
+	}
+	/**
+	 * @return the maximum number of connections open at once, and so of groups
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+	/**
+	 * Exchange limits the streaming connections of an account, which all managers using the same service account share.
+	 * Each open connection also holds one of the message sender's HTTP connections (e.g. http.maxTotalConnections) for as long as it is open.
+	 * @param maxConnections the maximum number of connections open at once, between the current number of groups and
+	 * {@link ExchangeOnlineThrottlingPolicy#MAX_STREAMING_CONNECTIONS}
+	 */
+	public synchronized void setMaxConnections(int maxConnections) {
+		Validate.isTrue(maxConnections > 0 && maxConnections <= ExchangeOnlineThrottlingPolicy.MAX_STREAMING_CONNECTIONS,
+				"maxConnections must be between 1 and "+ExchangeOnlineThrottlingPolicy.MAX_STREAMING_CONNECTIONS);
+		Validate.isTrue(maxConnections >= groups.size(), "maxConnections cannot be less than the "+groups.size()+" connection groups");
+		this.maxConnections = maxConnections;
+		if(null != executor) {
+			executor.setCorePoolSize(maxConnections);
+		}
+	}
+	/**
+	 * @return the {@link RetryPolicy} providing the delay before a failed connection is reopened
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+	/**
+	 * @param retryPolicy the {@link RetryPolicy} providing the delay before a failed connection is reopened
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+	
+	/**
+	 * Subscribe to the item events of a mailbox, the subscription is created by the connection thread of its group.
+	 * 
+	 * @param upn
+	 * @param folderIds - if empty the primary calendar folder will be targeted
+	 * @return false if {@code upn} was already subscribed
+	 * @throws IllegalStateException if every group is full and {@link #getMaxConnections()} groups exist
+	 */
+	public synchronized boolean addMailbox(String upn, Collection<? extends BaseFolderIdType> folderIds) {
+		Validate.isTrue(StringUtils.isNotBlank(upn), "upn argument cannot be blank");
+		String key = getKey(upn);
+		if(mailboxes.containsKey(key)) {
+			return false;
+		}
+		ConnectionGroup group = null;
+		for(ConnectionGroup candidate : groups) {
+			if(candidate.members.size() < maxSubscriptionsPerConnection) {
+				group = candidate;
+				break;
+			}
+		}
+		if(null == group) {
+			if(groups.size() >= maxConnections) {
+				throw new IllegalStateException("cannot subscribe "+upn+", all "+maxConnections+" connections hold "+mailboxes.size()+" mailboxes");
+			}
+			group = new ConnectionGroup(new MailboxAffinity(upn));
+			groups.add(group);
+			if(null != executor) {
+				launch(group);
+			}
+		}
+		Mailbox mailbox = new Mailbox(upn, folderIds);
+		mailbox.group = group;
+		group.members.add(mailbox);
+		mailboxes.put(key, mailbox);
+		return true;
+	}
+	
+	/**
+	 * Stop delivering events for a mailbox and remove its subscription.
+	 * 
+	 * @param upn
+	 * @return false if {@code upn} was not subscribed
+	 */
+	public boolean removeMailbox(String upn) {
+		Mailbox mailbox;
+		synchronized (this) {
+			mailbox = remove(upn);
+		}
+		if(null == mailbox) {
+			return false;
+		}
+		unsubscribe(mailbox.upn, mailbox.detach(false));
+		return true;
+	}
+	
+	/**
+	 * @return the never null {@link Set} of subscribed mailboxes
+	 */
+	public synchronized Set<String> getMailboxes() {
+		Set<String> upns = new LinkedHashSet<String>();
+		for(Mailbox mailbox : mailboxes.values()) {
+			upns.add(mailbox.upn);
+		}
+		return upns;
+	}
+	
+	/**
+	 * @return the number of connection groups
+	 */
+	public synchronized int getConnectionCount() {
+		return groups.size();
+	}
+	
+	/**
+	 * @return true if the connection threads are running
+	 */
+	public synchronized boolean isRunning() {
+		return null != executor;
+	}
+	
+	/**
+	 * Start serving a connection for each group of mailboxes.
+	 */
+	public synchronized void start() {
+		Validate.notNull(calendarDataDao, "calendarDataDao is required");
+		Validate.notNull(listener, "listener is required");
+		if(null != executor) {
+			return;
+		}
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ews-streaming-");
+		threadFactory.setDaemon(true);
+		executor = new ScheduledThreadPoolExecutor(maxConnections, threadFactory);
+		for(ConnectionGroup group : groups) {
+			launch(group);
+		}
+	}
+	
+	/**
+	 * Stop the connection threads and remove the subscriptions.  The mailboxes are retained, if started again the events 
+	 * which occurred in the meantime are replayed from each mailbox's last watermark.
+	 */
+	public void stop() {
+		List<Mailbox> subscribed = new ArrayList<Mailbox>();
+		synchronized (this) {
+			if(null == executor) {
+				return;
+			}
+			for(ConnectionGroup group : groups) {
+				group.owner = null;
+				group.closeConnection();
+			}
+			executor.shutdownNow();
+			executor = null;
+			subscribed.addAll(mailboxes.values());
+		}
+		for(Mailbox mailbox : subscribed) {
+			unsubscribe(mailbox.upn, mailbox.detach(true));
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		stop();
+	}
+	
+	/**
+	 * Schedule the connections of {@code group}, any previous schedule for the group stops after its current connection.
+	 * Must hold the lock on this.
+	 * @param group
+	 */
+	private void launch(ConnectionGroup group) {
+		Object token = new Object();
+		group.owner = token;
+		schedule(group, token, 0);
+	}
+	
+	/**
+	 * Must hold the lock on this.
+	 * @param group
+	 * @param token
+	 * @param delayMillis
+	 */
+	private void schedule(final ConnectionGroup group, final Object token, long delayMillis) {
+		if(null == executor || token != group.owner) {
+			return;
+		}
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				long delay = connect(group, token);
+				synchronized (StreamingSubscriptionManager.this) {
+					schedule(group, token, delay);
+				}
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Must hold the lock on this.
+	 * @param upn
+	 * @return the removed {@link Mailbox}, or null
+	 */
+	private Mailbox remove(String upn) {
+		Mailbox mailbox = mailboxes.remove(getKey(upn));
+		if(null != mailbox) {
+			mailbox.markRemoved();
+			ConnectionGroup group = mailbox.group;
+			group.members.remove(mailbox);
+			if(group.members.isEmpty()) {
+				group.owner = null;
+				groups.remove(group);
+				group.closeConnection();
+			} else if(getKey(group.affinity.getAnchorMailbox()).equals(getKey(upn))) {
+				// the members are subscribed again under the new anchor by the next connection
+				group.affinity = new MailboxAffinity(group.members.get(0).upn);
+				group.closeConnection();
+			}
+		}
+		return mailbox;
+	}
+	
+	/**
+	 * Open one connection for {@code group} and deliver its events until it closes.
+	 * @param group
+	 * @param token
+	 * @return the delay before the group's next connection, in milliseconds
+	 */
+	private long connect(ConnectionGroup group, Object token) {
+		List<Mailbox> members;
+		MailboxAffinity affinity;
+		synchronized (this) {
+			members = new ArrayList<Mailbox>(group.members);
+			affinity = group.affinity;
+		}
+		subscribe(group, token, members, affinity);
+		if(token != group.owner) {
+			return 0;
+		}
+		Map<String, Mailbox> subscriptions = new LinkedHashMap<String, Mailbox>();
+		for(Mailbox mailbox : members) {
+			String subscriptionId = mailbox.getSubscriptionId(affinity);
+			if(null != subscriptionId) {
+				subscriptions.put(subscriptionId, mailbox);
+			}
+		}
+		Connection connection = new Connection(group, subscriptions);
+		group.connection = connection;
+		try {
+			if(subscriptions.isEmpty()) {
+				throw new ExchangeRuntimeException("no mailbox of the connection could be subscribed");
+			}
+			if(token != group.owner || affinity != group.affinity) {
+				return 0;
+			}
+			calendarDataDao.getStreamingEvents(affinity.getAnchorMailbox(), subscriptions.keySet(), connectionTimeoutMinutes, affinity, connection);
+			group.failures = 0;
+			return 0;
+		} catch (ExchangeInvalidUPNRuntimeException e) {
+			Mailbox anchor;
+			synchronized (this) {
+				anchor = mailboxes.get(getKey(affinity.getAnchorMailbox()));
+			}
+			if(null != anchor) {
+				lose(anchor, e);
+			}
+			return 0;
+		} catch (RuntimeException e) {
+			if(connection.closed) {
+				// closed by stop, removal or a failed subscription
+				return 0;
+			}
+			group.failures++;
+			long delay = retryPolicy.getDelayMillis(group.failures, e);
+			log.warn("GetStreamingEvents failed for "+subscriptions.size()+" subscriptions, reconnecting in "+delay+"ms: "+e.getMessage());
+			return delay;
+		} finally {
+			if(group.connection == connection) {
+				group.connection = null;
+			}
+		}
+	}
+	
+	/**
+	 * Subscribe the {@code members} which have no subscription with {@code affinity}, all in parallel, then replay the events
+	 * missed by those which had a subscription before.
+	 * @param group
+	 * @param token
+	 * @param members
+	 * @param affinity
+	 */
+	private void subscribe(ConnectionGroup group, Object token, List<Mailbox> members, MailboxAffinity affinity) {
+		Map<String, Mailbox> pending = new LinkedHashMap<String, Mailbox>();
+		Map<String, List<BaseFolderIdType>> folderIds = new LinkedHashMap<String, List<BaseFolderIdType>>();
+		for(Mailbox mailbox : members) {
+			if(mailbox.isRemoved() || mailbox.isSubscribed(affinity)) {
+				continue;
+			}
+			// a subscription with another affinity predates a re-anchoring, move it to the new anchor's server
+			unsubscribe(mailbox.upn, mailbox.detach(true));
+			pending.put(mailbox.upn, mailbox);
+			folderIds.put(mailbox.upn, mailbox.folderIds);
+		}
+		if(pending.isEmpty()) {
+			return;
+		}
+		Map<String, RuntimeException> failures = new HashMap<String, RuntimeException>();
+		Map<String, String> subscriptionIds;
+		try {
+			subscriptionIds = calendarDataDao.subscribeToItemEvents(folderIds, affinity, failures);
+		} catch (RuntimeException e) {
+			log.warn("failed to subscribe "+pending.size()+" mailboxes, will retry with the next connection: "+e.getMessage());
+			return;
+		}
+		List<Mailbox> resumed = new ArrayList<Mailbox>();
+		for(Mailbox mailbox : pending.values()) {
+			String subscriptionId = subscriptionIds.get(mailbox.upn);
+			if(null == subscriptionId) {
+				RuntimeException failure = failures.get(mailbox.upn);
+				if(failure instanceof ExchangeInvalidUPNRuntimeException) {
+					lose(mailbox, failure);
+				} else {
+					log.warn("failed to subscribe "+mailbox.upn+", will retry with the next connection: "+(null == failure ? null : failure.getMessage()));
+				}
+				continue;
+			}
+			boolean attached;
+			synchronized (this) {
+				// stop and remove release the subscription of an attached mailbox
+				attached = token == group.owner && mailbox.attach(subscriptionId, affinity);
+			}
+			if(!attached) {
+				unsubscribe(mailbox.upn, subscriptionId);
+			} else if(mailbox.takeResume()) {
+				resumed.add(mailbox);
+			}
+		}
+		for(Mailbox mailbox : resumed) {
+			replay(mailbox);
+		}
+	}
+	
+	/**
+	 * Deliver the events {@code mailbox} missed since its watermark.
+	 * @param mailbox
+	 */
+	private void replay(Mailbox mailbox) {
+		String watermark = mailbox.getWatermark();
+		if(null == watermark) {
+			notifyLost(mailbox.upn, new ExchangeRuntimeException("subscription for "+mailbox.upn+" was lost before any event was received"));
+			return;
+		}
+		try {
+			SubscriptionEventsResult missed = calendarDataDao.getItemEventsSince(mailbox.upn, mailbox.folderIds, watermark);
+			deliver(mailbox.upn, missed.getEvents());
+			for(String last : missed.getWatermarks().values()) {
+				mailbox.setWatermark(last);
+			}
+			if(log.isDebugEnabled()) {
+				log.debug("resumed "+mailbox.upn+" replaying "+missed.getEvents().size()+" events");
+			}
+		} catch (RuntimeException e) {
+			mailbox.setWatermark(null);
+			notifyLost(mailbox.upn, e);
+		}
+	}
+	
+	/**
+	 * Deliver the events of {@code result}, record watermarks and mark failed subscriptions for resumption.
+	 * @param result
+	 * @param subscriptions
+	 * @return true if a subscription was marked for resumption
+	 */
+	private boolean dispatch(SubscriptionEventsResult result, Map<String, Mailbox> subscriptions) {
+		Map<Mailbox, List<ItemChangeEvent>> events = new LinkedHashMap<Mailbox, List<ItemChangeEvent>>();
+		for(ItemChangeEvent event : result.getEvents()) {
+			Mailbox mailbox = subscriptions.get(event.getSubscriptionId());
+			if(null == mailbox || mailbox.isRemoved()) {
+				continue;
+			}
+			List<ItemChangeEvent> list = events.get(mailbox);
+			if(null == list) {
+				list = new ArrayList<ItemChangeEvent>();
+				events.put(mailbox, list);
+			}
+			list.add(event);
+		}
+		for(Map.Entry<Mailbox, List<ItemChangeEvent>> entry : events.entrySet()) {
+			deliver(entry.getKey().upn, entry.getValue());
+		}
+		for(Map.Entry<String, String> watermark : result.getWatermarks().entrySet()) {
+			Mailbox mailbox = subscriptions.get(watermark.getKey());
+			if(null != mailbox) {
+				mailbox.setWatermark(watermark.getValue());
+			}
+		}
+		boolean failed = false;
+		for(Map.Entry<String, String> error : result.getErrorSubscriptionIds().entrySet()) {
+			Mailbox mailbox = subscriptions.get(error.getKey());
+			if(null != mailbox && mailbox.fail(error.getKey())) {
+				log.info("subscription for "+mailbox.upn+" failed ("+error.getValue()+"), resubscribing");
+				failed = true;
+			}
+		}
+		return failed;
+	}
+	
+	private void deliver(String upn, List<ItemChangeEvent> events) {
+		if(events.isEmpty()) {
+			return;
+		}
+		try {
+			listener.onItemEvents(upn, events);
+		} catch (RuntimeException e) {
+			log.error("ItemChangeListener failed for "+upn, e);
+		}
+	}
+	
+	private void notifyLost(String upn, RuntimeException cause) {
+		try {
+			listener.onSubscriptionLost(upn, cause);
+		} catch (RuntimeException e) {
+			log.error("ItemChangeListener failed for "+upn, e);
+		}
+	}
+	
+	/**
+	 * Remove a mailbox which Exchange no longer recognizes.
+	 * @param mailbox
+	 * @param cause
+	 */
+	private void lose(Mailbox mailbox, RuntimeException cause) {
+		log.warn("removing invalid mailbox "+mailbox.upn+": "+cause.getMessage());
+		synchronized (this) {
+			if(mailboxes.get(getKey(mailbox.upn)) == mailbox) {
+				remove(mailbox.upn);
+			}
+		}
+		notifyLost(mailbox.upn, cause);
+	}
+	
+	private void unsubscribe(String upn, String subscriptionId) {
+		if(null == subscriptionId) {
+			return;
+		}
+		try {
+			calendarDataDao.unsubscribe(upn, subscriptionId);
+		} catch (RuntimeException e) {
+			log.debug("failed to unsubscribe "+upn+", the subscription will expire: "+e.getMessage());
+		}
+	}
+	
+	private static String getKey(String upn) {
+		return upn.trim().toLowerCase();
+	}
+	
+	/**
+	 * The subscription state of a mailbox.  It is changed by the thread serving its group as well as by {@link StreamingSubscriptionManager#removeMailbox(String)}
+	 * and {@link StreamingSubscriptionManager#stop()}, so every transition holds the lock on the mailbox; {@link #group} is guarded by the manager.
+	 */
+	private static class Mailbox {
+		private final String upn;
+		private final List<BaseFolderIdType> folderIds;
+		private ConnectionGroup group;
+		private String subscriptionId;
+		/** the affinity {@link #subscriptionId} was created with */
+		private MailboxAffinity affinity;
+		private String watermark;
+		private boolean resume;
+		private boolean removed;
+		
+		Mailbox(String upn, Collection<? extends BaseFolderIdType> folderIds) {
+			this.upn = upn;
+			this.folderIds = null == folderIds ? new ArrayList<BaseFolderIdType>() : new ArrayList<BaseFolderIdType>(folderIds);
+		}
+		
+		synchronized boolean isSubscribed(MailboxAffinity affinity) {
+			return null != subscriptionId && this.affinity == affinity;
+		}
+		/**
+		 * @param affinity
+		 * @return the subscription created with {@code affinity}, or null
+		 */
+		synchronized String getSubscriptionId(MailboxAffinity affinity) {
+			return isSubscribed(affinity) ? subscriptionId : null;
+		}
+		/**
+		 * @param subscriptionId
+		 * @param affinity
+		 * @return false if the mailbox was removed meanwhile, the caller must then end {@code subscriptionId}
+		 */
+		synchronized boolean attach(String subscriptionId, MailboxAffinity affinity) {
+			if(removed) {
+				return false;
+			}
+			this.subscriptionId = subscriptionId;
+			this.affinity = affinity;
+			return true;
+		}
+		/**
+		 * @param resume true to replay the missed events once subscribed again
+		 * @return the subscription the caller must end, or null
+		 */
+		synchronized String detach(boolean resume) {
+			String current = subscriptionId;
+			subscriptionId = null;
+			if(null != current && resume) {
+				this.resume = true;
+			}
+			return current;
+		}
+		/**
+		 * @param failedSubscriptionId
+		 * @return true if {@code failedSubscriptionId} was current and the mailbox is now marked for resumption
+		 */
+		synchronized boolean fail(String failedSubscriptionId) {
+			if(!failedSubscriptionId.equals(subscriptionId)) {
+				return false;
+			}
+			subscriptionId = null;
+			resume = true;
+			return true;
+		}
+		/**
+		 * @return true if the missed events should be replayed, clearing the mark
+		 */
+		synchronized boolean takeResume() {
+			boolean current = resume;
+			resume = false;
+			return current;
+		}
+		synchronized String getWatermark() {
+			return watermark;
+		}
+		synchronized void setWatermark(String watermark) {
+			this.watermark = watermark;
+		}
+		synchronized boolean isRemoved() {
+			return removed;
+		}
+		synchronized void markRemoved() {
+			removed = true;
+		}
+	}
+	
+	/**
+	 * Mailboxes sharing a connection, members and affinity are guarded by the manager.
+	 */
+	private static class ConnectionGroup {
+		private final List<Mailbox> members = new ArrayList<Mailbox>();
+		private volatile MailboxAffinity affinity;
+		private volatile Object owner;
+		private volatile Connection connection;
+		private int failures;
+		
+		ConnectionGroup(MailboxAffinity affinity) {
+			this.affinity = affinity;
+		}
+		
+		void closeConnection() {
+			Connection current = connection;
+			if(null != current) {
+				current.close();
+			}
+		}
+	}
+	
+	/**
+	 * One GetStreamingEvents connection of a group, dispatches each response as it arrives.
+	 */
+	private class Connection implements StreamingEventsHandler {
+		private final ConnectionGroup group;
+		private final Map<String, Mailbox> subscriptions;
+		private volatile Closeable stream;
+		private volatile boolean closed;
+		
+		Connection(ConnectionGroup group, Map<String, Mailbox> subscriptions) {
+			this.group = group;
+			this.subscriptions = subscriptions;
+		}
+		/* (non-Javadoc)
+		 * @see com.microsoft.exchange.StreamingEventsHandler#onOpen(java.io.Closeable)
+		 */
+		@Override
+		public void onOpen(Closeable connection) {
+			this.stream = connection;
+			if(closed) {
+				abort();
+			}
+		}
+		/* (non-Javadoc)
+		 * @see com.microsoft.exchange.StreamingEventsHandler#onResponse(com.microsoft.exchange.messages.GetStreamingEventsResponse)
+		 */
+		@Override
+		public void onResponse(GetStreamingEventsResponse response) {
+			SubscriptionEventsResult result = calendarDataDao.getResponseUtils().parseGetStreamingEventsResponse(response);
+			if(dispatch(result, subscriptions)) {
+				// reconnect promptly with the failed subscriptions renewed
+				close();
+			}
+		}
+		void close() {
+			closed = true;
+			abort();
+		}
+		private void abort() {
+			Closeable current = stream;
+			if(null != current) {
+				try {
+					current.close();
+				} catch (IOException e) {
+					log.debug("failed to abort streaming connection: "+e.getMessage());
+				}
+			}
+		}
+	}
+}
@@ -44,6 +44,14 @@ public class ThreadLocalImpersonationConnectingSIDSourceImpl implements Imperson
 		return threadLocal.get();
 	}
 
+	/**
+	 * 
+	 * @return the current {@link ConnectingSIDType} stored in the {@link ThreadLocal}.
+	 */
+	public static ConnectingSIDType get() {
+		return threadLocal.get();
+	}
+
 	/**
 	 * Set the specified {@link ConnectingSIDType} in the {@link ThreadLocal}.
 	 * 
@@ -0,0 +1,288 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * {@link HttpRequestInterceptor} and {@link HttpResponseInterceptor} adding gzip/deflate support to EWS traffic.
+ * 
+ * <ul>
+ * <li>When {@link #isResponseCompressionEnabled()} an "Accept-Encoding: gzip,deflate" header is sent and compressed responses are
+ * transparently decompressed.  The Content-Encoding header is removed from decompressed responses so spring-ws does not decode them twice.</li>
+ * <li>When {@link #isRequestCompressionEnabled()} request bodies of at least {@link #getRequestCompressionThreshold()} bytes are gzipped.
+ * Exchange (IIS) must have dynamic request decompression enabled, so this is off by default.</li>
+ * </ul>
+ * 
+ * Both directions are recorded per operation in {@link #getStatistics()}.
+ * The request side must run before {@link org.apache.http.protocol.RequestContent} so the Content-Length reflects the compressed body.
+ */
+public class CompressionInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+
+	protected static final String OPERATION_ATTRIBUTE = "com.microsoft.exchange.impl.http.operation";
+	protected static final String RECORDED_ATTRIBUTE = "com.microsoft.exchange.impl.http.traffic-recorded";
+	protected static final String SOAP_ACTION_HEADER = "SOAPAction";
+	protected static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+	protected static final String ACCEPT_ENCODING = "gzip,deflate";
+	protected static final String GZIP = "gzip";
+	
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private boolean responseCompressionEnabled = true;
+	private boolean requestCompressionEnabled = false;
+	private int requestCompressionThreshold = 16384;
+	private HttpTrafficStatistics statistics = new HttpTrafficStatistics();
+	
+	/**
+	 * @return true if compressed responses are requested and decoded
+	 */
+	public boolean isResponseCompressionEnabled() {
+		return responseCompressionEnabled;
+	}
+	/**
+	 * @param responseCompressionEnabled
+	 */
+	public void setResponseCompressionEnabled(boolean responseCompressionEnabled) {
+		this.responseCompressionEnabled = responseCompressionEnabled;
+	}
+	/**
+	 * @return true if large request bodies are gzipped
+	 */
+	public boolean isRequestCompressionEnabled() {
+		return requestCompressionEnabled;
+	}
+	/**
+	 * @param requestCompressionEnabled
+	 */
+	public void setRequestCompressionEnabled(boolean requestCompressionEnabled) {
+		this.requestCompressionEnabled = requestCompressionEnabled;
+	}
+	/**
+	 * @return the minimum request body size, in bytes, that will be compressed
+	 */
+	public int getRequestCompressionThreshold() {
+		return requestCompressionThreshold;
+	}
+	/**
+	 * @param requestCompressionThreshold the minimum request body size, in bytes, that will be compressed
+	 */
+	public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+		this.requestCompressionThreshold = requestCompressionThreshold;
+	}
+	/**
+	 * @return the per operation byte counters
+	 */
+	public HttpTrafficStatistics getStatistics() {
+		return statistics;
+	}
+	/**
+	 * @param statistics
+	 */
+	public void setStatistics(HttpTrafficStatistics statistics) {
+		this.statistics = statistics;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.apache.http.HttpRequestInterceptor#process(org.apache.http.HttpRequest, org.apache.http.protocol.HttpContext)
+	 */
+	@Override
+	public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+		Header soapAction = request.getFirstHeader(SOAP_ACTION_HEADER);
+		String operation = HttpTrafficStatistics.getCurrentOperation(null == soapAction ? null : soapAction.getValue());
+		context.setAttribute(OPERATION_ATTRIBUTE, operation);
+		
+		if(isResponseCompressionEnabled()) {
+			request.setHeader(ACCEPT_ENCODING_HEADER, ACCEPT_ENCODING);
+		}
+		if(!(request instanceof HttpEntityEnclosingRequest)) {
+			return;
+		}
+		HttpEntityEnclosingRequest entityRequest = (HttpEntityEnclosingRequest) request;
+		HttpEntity entity = entityRequest.getEntity();
+		if(null == entity) {
+			return;
+		}
+		// the request may be re-sent (e.g. authentication challenges) with an entity this interceptor already compressed
+		boolean alreadyCompressed = null != entity.getContentEncoding();
+		boolean firstAttempt = null == context.getAttribute(RECORDED_ATTRIBUTE);
+		context.setAttribute(RECORDED_ATTRIBUTE, Boolean.TRUE);
+		
+		long length = entity.getContentLength();
+		if(!alreadyCompressed && isRequestCompressionEnabled() && length >= requestCompressionThreshold && entity.isRepeatable()) {
+			byte[] compressed = gzip(entity);
+			ByteArrayEntity compressedEntity = new ByteArrayEntity(compressed);
+			compressedEntity.setContentType(entity.getContentType());
+			compressedEntity.setContentEncoding(GZIP);
+			entityRequest.setEntity(compressedEntity);
+			if(firstAttempt) {
+				OperationTrafficCounters counters = statistics.getCounters(operation);
+				counters.requests.incrementAndGet();
+				counters.compressedRequests.incrementAndGet();
+				counters.requestBytes.addAndGet(length);
+				counters.requestWireBytes.addAndGet(compressed.length);
+			}
+			if(log.isTraceEnabled()) {
+				log.trace("compressed " + operation + " request body from " + length + " to " + compressed.length + " bytes");
+			}
+		} else if(firstAttempt && length >= 0) {
+			OperationTrafficCounters counters = statistics.getCounters(operation);
+			counters.requests.incrementAndGet();
+			counters.requestBytes.addAndGet(length);
+			counters.requestWireBytes.addAndGet(length);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.apache.http.HttpResponseInterceptor#process(org.apache.http.HttpResponse, org.apache.http.protocol.HttpContext)
+	 */
+	@Override
+	public void process(HttpResponse response, HttpContext context) throws HttpException, IOException {
+		HttpEntity entity = response.getEntity();
+		if(null == entity) {
+			return;
+		}
+		OperationTrafficCounters counters = statistics.getCounters((String) context.getAttribute(OPERATION_ATTRIBUTE));
+		counters.responses.incrementAndGet();
+		
+		String encoding = null;
+		Header contentEncoding = entity.getContentEncoding();
+		if(null != contentEncoding) {
+			encoding = contentEncoding.getValue().trim().toLowerCase(Locale.US);
+		}
+		HttpEntity wire = new CountingEntity(entity, counters.responseWireBytes);
+		HttpEntity decoded;
+		if(isResponseCompressionEnabled() && (GZIP.equals(encoding) || "x-gzip".equals(encoding))) {
+			decoded = new GzipDecompressingEntity(wire);
+		} else if(isResponseCompressionEnabled() && "deflate".equals(encoding)) {
+			decoded = new DeflateDecompressingEntity(wire);
+		} else {
+			response.setEntity(new CountingEntity(wire, counters.responseBytes));
+			return;
+		}
+		counters.compressedResponses.incrementAndGet();
+		response.setEntity(new CountingEntity(decoded, counters.responseBytes));
+		response.removeHeaders(HTTP.CONTENT_ENCODING);
+		response.removeHeaders(HTTP.CONTENT_LEN);
+		response.removeHeaders("Content-MD5");
+	}
+	
+	/**
+	 * 
+	 * @param entity
+	 * @return the gzipped content of the entity
+	 * @throws IOException
+	 */
+	protected static byte[] gzip(HttpEntity entity) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) Math.max(32, entity.getContentLength() / 4));
+		GZIPOutputStream gzip = new GZIPOutputStream(buffer);
+		try {
+			entity.writeTo(gzip);
+		} finally {
+			gzip.close();
+		}
+		return buffer.toByteArray();
+	}
+	
+	/**
+	 * {@link HttpEntityWrapper} adding the number of bytes read from its content to an {@link AtomicLong}.
+	 */
+	static class CountingEntity extends HttpEntityWrapper {
+		private final AtomicLong counter;
+		CountingEntity(HttpEntity wrapped, AtomicLong counter) {
+			super(wrapped);
+			this.counter = counter;
+		}
+		@Override
+		public InputStream getContent() throws IOException {
+			return new CountingInputStream(super.getContent(), counter);
+		}
+		@Override
+		public void writeTo(OutputStream outstream) throws IOException {
+			InputStream in = getContent();
+			try {
+				byte[] buffer = new byte[4096];
+				int n;
+				while((n = in.read(buffer)) != -1) {
+					outstream.write(buffer, 0, n);
+				}
+			} finally {
+				in.close();
+			}
+		}
+	}
+	
+	/**
+	 * {@link FilterInputStream} adding the number of bytes read to an {@link AtomicLong}.
+	 */
+	static class CountingInputStream extends FilterInputStream {
+		private final AtomicLong counter;
+		CountingInputStream(InputStream in, AtomicLong counter) {
+			super(in);
+			this.counter = counter;
+		}
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if(b != -1) {
+				counter.incrementAndGet();
+			}
+			return b;
+		}
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if(n > 0) {
+				counter.addAndGet(n);
+			}
+			return n;
+		}
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			if(skipped > 0) {
+				counter.addAndGet(skipped);
+			}
+			return skipped;
+		}
+	}
+}
@@ -57,6 +57,7 @@ public class CustomHttpComponentsMessageSender extends
 	// preemptiveAuthScheme set by #afterPropertiesSet if enabled
 	private AuthScheme preemptiveAuthScheme;
 	private Integer defaultMaxPerRouteOverride;
+	private CompressionInterceptor compressionInterceptor = new CompressionInterceptor();
 	/**
 	 * @return the defaultMaxPerRouteOverride
 	 */
@@ -69,6 +70,56 @@ public class CustomHttpComponentsMessageSender extends
 	public void setDefaultMaxPerRouteOverride(Integer defaultMaxPerRouteOverride) {
 		this.defaultMaxPerRouteOverride = defaultMaxPerRouteOverride;
 	}
+	/**
+	 * @return true if responses may be gzip or deflate encoded
+	 */
+	public boolean isResponseCompressionEnabled() {
+		return compressionInterceptor.isResponseCompressionEnabled();
+	}
+	/**
+	 * @param responseCompressionEnabled true to send "Accept-Encoding: gzip,deflate" and decode compressed responses
+	 */
+	public void setResponseCompressionEnabled(boolean responseCompressionEnabled) {
+		compressionInterceptor.setResponseCompressionEnabled(responseCompressionEnabled);
+	}
+	/**
+	 * @return true if large request bodies are gzipped
+	 */
+	public boolean isRequestCompressionEnabled() {
+		return compressionInterceptor.isRequestCompressionEnabled();
+	}
+	/**
+	 * Exchange only accepts compressed requests if dynamic request decompression is enabled in IIS.
+	 * 
+	 * @param requestCompressionEnabled true to gzip request bodies of at least {@link #getRequestCompressionThreshold()} bytes
+	 */
+	public void setRequestCompressionEnabled(boolean requestCompressionEnabled) {
+		compressionInterceptor.setRequestCompressionEnabled(requestCompressionEnabled);
+	}
+	/**
+	 * @return the minimum request body size, in bytes, that will be compressed
+	 */
+	public int getRequestCompressionThreshold() {
+		return compressionInterceptor.getRequestCompressionThreshold();
+	}
+	/**
+	 * @param requestCompressionThreshold the minimum request body size, in bytes, that will be compressed
+	 */
+	public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+		compressionInterceptor.setRequestCompressionThreshold(requestCompressionThreshold);
+	}
+	/**
+	 * @return the per operation request and response byte counters
+	 */
+	public HttpTrafficStatistics getTrafficStatistics() {
+		return compressionInterceptor.getStatistics();
+	}
+	/**
+	 * @param trafficStatistics
+	 */
+	public void setTrafficStatistics(HttpTrafficStatistics trafficStatistics) {
+		compressionInterceptor.setStatistics(trafficStatistics);
+	}
 	/**
 	 * @return the preemptiveAuthEnabled
 	 */
@@ -121,6 +172,13 @@ public class CustomHttpComponentsMessageSender extends
 			}
 			httpClient.addRequestInterceptor(new PreemptiveAuthInterceptor());
 		}
+		// the CompressionInterceptor negotiates and decodes content encodings, and strips Content-Encoding from decoded responses 
+		setAcceptGzipEncoding(false);
+		// must run before RequestContent computes the Content-Length; the httpClient may be shared between senders
+		httpClient.removeRequestInterceptorByClass(CompressionInterceptor.class);
+		httpClient.removeResponseInterceptorByClass(CompressionInterceptor.class);
+		httpClient.addRequestInterceptor(compressionInterceptor, 0);
+		httpClient.addResponseInterceptor(compressionInterceptor);
 		if(isNtlmAuthEnabled()){
 			//avoids: "WARN [main] org.apache.http.client.protocol.RequestTargetAuthentication - NEGOTIATE authentication error: Invalid name provided (Mechanism level: Cannot locate default realm)"
 			httpClient.getParams().setParameter(HTTP_AUTH_TARGET_SCHEME_PREF, Collections.singletonList("NTLM"));
@@ -0,0 +1,130 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl.http;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Thread safe registry of {@link OperationTrafficCounters}, keyed by EWS operation name.
+ * 
+ * The operation name is the one announced by the sending thread with {@link #setCurrentOperation(String)}, typically the local name
+ * of the request's root element.  Otherwise it is the last path segment of the SOAPAction header, 
+ * e.g. "http://schemas.microsoft.com/exchange/services/2006/messages/FindItem" is recorded as "FindItem".
+ */
+public class HttpTrafficStatistics {
+
+	/**
+	 * Operation name used for requests without a SOAPAction.
+	 */
+	public static final String UNKNOWN_OPERATION = "unknown";
+	
+	private static final ThreadLocal<String> currentOperation = new ThreadLocal<String>();
+	
+	private final ConcurrentMap<String, OperationTrafficCounters> counters = new ConcurrentHashMap<String, OperationTrafficCounters>();
+	
+	/**
+	 * @param operation
+	 * @return the (possibly new) counters for the operation, never null
+	 */
+	public OperationTrafficCounters getCounters(String operation) {
+		String key = StringUtils.isBlank(operation) ? UNKNOWN_OPERATION : operation;
+		OperationTrafficCounters c = counters.get(key);
+		if(null == c) {
+			OperationTrafficCounters created = new OperationTrafficCounters(key);
+			c = counters.putIfAbsent(key, created);
+			if(null == c) {
+				c = created;
+			}
+		}
+		return c;
+	}
+	
+	/**
+	 * @return a sorted, unmodifiable snapshot of the counters for every operation seen so far
+	 */
+	public Map<String, OperationTrafficCounters> getAllCounters() {
+		return Collections.unmodifiableMap(new TreeMap<String, OperationTrafficCounters>(counters));
+	}
+	
+	/**
+	 * Discard all counters.
+	 */
+	public void reset() {
+		counters.clear();
+	}
+	
+	/**
+	 * Announce the operation of the requests the current thread is about to send, the HTTP layer runs on the sending thread.
+	 * 
+	 * @param operation the operation name, null to clear
+	 * @return the previously announced operation, to be restored once the request completed
+	 */
+	public static String setCurrentOperation(String operation) {
+		String previous = currentOperation.get();
+		if(null == operation) {
+			currentOperation.remove();
+		} else {
+			currentOperation.set(operation);
+		}
+		return previous;
+	}
+	
+	/**
+	 * @return the operation announced by the current thread, or null
+	 */
+	public static String getCurrentOperation() {
+		return currentOperation.get();
+	}
+	
+	/**
+	 * @param soapAction the value of a SOAPAction header, may be quoted
+	 * @return the operation announced by the current thread, or else the operation named by {@code soapAction}
+	 */
+	public static String getCurrentOperation(String soapAction) {
+		String operation = currentOperation.get();
+		return null == operation ? getOperation(soapAction) : operation;
+	}
+	
+	/**
+	 * @param soapAction the value of a SOAPAction header, may be quoted
+	 * @return the operation name
+	 */
+	public static String getOperation(String soapAction) {
+		String action = StringUtils.strip(soapAction, "\" ");
+		if(StringUtils.isBlank(action)) {
+			return UNKNOWN_OPERATION;
+		}
+		String operation = StringUtils.substringAfterLast(action, "/");
+		return StringUtils.isBlank(operation) ? action : operation;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "HttpTrafficStatistics" + getAllCounters().values();
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.impl.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte counters for a single EWS operation.
+ * 
+ * "Wire" counts are the bytes actually sent or received (after request compression / before response decompression),
+ * the plain counts are the uncompressed XML sizes.  The difference is the bandwidth saved by {@link CompressionInterceptor}.
+ */
+public class OperationTrafficCounters {
+
+	private final String operation;
+	final AtomicLong requests = new AtomicLong();
+	final AtomicLong compressedRequests = new AtomicLong();
+	final AtomicLong requestBytes = new AtomicLong();
+	final AtomicLong requestWireBytes = new AtomicLong();
+	final AtomicLong responses = new AtomicLong();
+	final AtomicLong compressedResponses = new AtomicLong();
+	final AtomicLong responseBytes = new AtomicLong();
+	final AtomicLong responseWireBytes = new AtomicLong();
+	
+	/**
+	 * @param operation
+	 */
+	public OperationTrafficCounters(String operation) {
+		this.operation = operation;
+	}
+	/**
+	 * @return the operation name (e.g. FindItem)
+	 */
+	public String getOperation() {
+		return operation;
+	}
+	/**
+	 * @return the number of requests sent
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+	/**
+	 * @return the number of requests sent with a compressed body
+	 */
+	public long getCompressedRequests() {
+		return compressedRequests.get();
+	}
+	/**
+	 * @return the uncompressed size of all request bodies
+	 */
+	public long getRequestBytes() {
+		return requestBytes.get();
+	}
+	/**
+	 * @return the size of all request bodies as sent
+	 */
+	public long getRequestWireBytes() {
+		return requestWireBytes.get();
+	}
+	/**
+	 * @return the number of responses received
+	 */
+	public long getResponses() {
+		return responses.get();
+	}
+	/**
+	 * @return the number of responses received with a compressed body
+	 */
+	public long getCompressedResponses() {
+		return compressedResponses.get();
+	}
+	/**
+	 * @return the decompressed size of all response bodies read so far
+	 */
+	public long getResponseBytes() {
+		return responseBytes.get();
+	}
+	/**
+	 * @return the size of all response bodies as received
+	 */
+	public long getResponseWireBytes() {
+		return responseWireBytes.get();
+	}
+	/**
+	 * @return the number of bytes not transferred thanks to compression, in both directions
+	 */
+	public long getSavedBytes() {
+		return (getRequestBytes() - getRequestWireBytes()) + (getResponseBytes() - getResponseWireBytes());
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "OperationTrafficCounters[operation=" + operation 
+				+ ", requests=" + getRequests() + ", compressedRequests=" + getCompressedRequests()
+				+ ", requestBytes=" + getRequestBytes() + ", requestWireBytes=" + getRequestWireBytes()
+				+ ", responses=" + getResponses() + ", compressedResponses=" + getCompressedResponses()
+				+ ", responseBytes=" + getResponseBytes() + ", responseWireBytes=" + getResponseWireBytes() + "]";
+	}
+}
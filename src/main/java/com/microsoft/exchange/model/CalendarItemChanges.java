@@ -0,0 +1,99 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.model;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.microsoft.exchange.types.CalendarItemType;
+import com.microsoft.exchange.types.ItemIdType;
+
+/**
+ * The net changes to a calendar folder since the previous synchronization, 
+ * see {@link com.microsoft.exchange.impl.BaseExchangeCalendarDataDao#syncCalendarItems(String, com.microsoft.exchange.types.FolderIdType)}.
+ * 
+ * Items created and then deleted between two synchronizations are not reported, items created and then updated are reported as created.
+ */
+public class CalendarItemChanges {
+
+	private final Collection<CalendarItemType> created = new ItemIdKeyedSet<CalendarItemType>();
+	private final Collection<CalendarItemType> updated = new ItemIdKeyedSet<CalendarItemType>();
+	private final Set<ItemIdType> deleted = new LinkedHashSet<ItemIdType>();
+	private String syncState;
+	private boolean initialSync;
+	
+	/**
+	 * @return the never null {@link Collection} of created {@link CalendarItemType}s
+	 */
+	public Collection<CalendarItemType> getCreated() {
+		return created;
+	}
+	/**
+	 * @return the never null {@link Collection} of updated {@link CalendarItemType}s
+	 */
+	public Collection<CalendarItemType> getUpdated() {
+		return updated;
+	}
+	/**
+	 * @return the never null {@link Set} of deleted {@link ItemIdType}s
+	 */
+	public Set<ItemIdType> getDeleted() {
+		return deleted;
+	}
+	/**
+	 * @return the SyncState to resume from
+	 */
+	public String getSyncState() {
+		return syncState;
+	}
+	/**
+	 * @param syncState
+	 */
+	public void setSyncState(String syncState) {
+		this.syncState = syncState;
+	}
+	/**
+	 * @return true if no previous SyncState was used: {@link #getCreated()} contains every item in the folder and replaces any local copy
+	 */
+	public boolean isInitialSync() {
+		return initialSync;
+	}
+	/**
+	 * @param initialSync
+	 */
+	public void setInitialSync(boolean initialSync) {
+		this.initialSync = initialSync;
+	}
+	/**
+	 * @return true if nothing changed
+	 */
+	public boolean isEmpty() {
+		return created.isEmpty() && updated.isEmpty() && deleted.isEmpty();
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "CalendarItemChanges[created=" + created.size() + ", updated=" + updated.size() 
+				+ ", deleted=" + deleted.size() + ", initialSync=" + initialSync + "]";
+	}
+}
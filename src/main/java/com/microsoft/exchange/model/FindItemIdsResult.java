@@ -0,0 +1,151 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.model;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.microsoft.exchange.messages.FindItemResponse;
+import com.microsoft.exchange.messages.ResponseCodeType;
+import com.microsoft.exchange.types.ItemIdType;
+
+/**
+ * Compact result of an ID_ONLY {@link FindItemResponse}: the {@link ItemIdType}s found plus the paging attributes of the root folder.
+ * 
+ * Produced without unmarshalling the response through JAXB, see {@link com.microsoft.exchange.impl.FindItemIdsResponseExtractor}.
+ */
+public class FindItemIdsResult {
+
+	private final Set<ItemIdType> itemIds = new LinkedHashSet<ItemIdType>();
+	private ResponseCodeType responseCode = ResponseCodeType.NO_ERROR;
+	private String messageText;
+	private long backOffMillis;
+	private int indexedPagingOffset = -1;
+	private Integer totalItemsInView;
+	private boolean includesLastItemInRange = true;
+	
+	/**
+	 * @return the never null {@link Set} of {@link ItemIdType}s found, in response order
+	 */
+	public Set<ItemIdType> getItemIds() {
+		return itemIds;
+	}
+	/**
+	 * @return the first response code other than {@link ResponseCodeType#NO_ERROR}, or {@link ResponseCodeType#NO_ERROR}
+	 */
+	public ResponseCodeType getResponseCode() {
+		return responseCode;
+	}
+	/**
+	 * @param responseCode
+	 */
+	public void setResponseCode(ResponseCodeType responseCode) {
+		this.responseCode = responseCode;
+	}
+	/**
+	 * @return the MessageText accompanying {@link #getResponseCode()}, may be null
+	 */
+	public String getMessageText() {
+		return messageText;
+	}
+	/**
+	 * @param messageText
+	 */
+	public void setMessageText(String messageText) {
+		this.messageText = messageText;
+	}
+	/**
+	 * @return the BackOffMilliseconds hint accompanying a throttled {@link #getResponseCode()}, 0 if none was provided
+	 */
+	public long getBackOffMillis() {
+		return backOffMillis;
+	}
+	/**
+	 * @param backOffMillis
+	 */
+	public void setBackOffMillis(long backOffMillis) {
+		this.backOffMillis = backOffMillis;
+	}
+	/**
+	 * @return the IndexedPagingOffset of the root folder, -1 if not present
+	 */
+	public int getIndexedPagingOffset() {
+		return indexedPagingOffset;
+	}
+	/**
+	 * @param indexedPagingOffset
+	 */
+	public void setIndexedPagingOffset(int indexedPagingOffset) {
+		this.indexedPagingOffset = indexedPagingOffset;
+	}
+	/**
+	 * @return the TotalItemsInView of the root folder, may be null
+	 */
+	public Integer getTotalItemsInView() {
+		return totalItemsInView;
+	}
+	/**
+	 * @param totalItemsInView
+	 */
+	public void setTotalItemsInView(Integer totalItemsInView) {
+		this.totalItemsInView = totalItemsInView;
+	}
+	/**
+	 * @return the IncludesLastItemInRange attribute of the root folder
+	 */
+	public boolean isIncludesLastItemInRange() {
+		return includesLastItemInRange;
+	}
+	/**
+	 * @param includesLastItemInRange
+	 */
+	public void setIncludesLastItemInRange(boolean includesLastItemInRange) {
+		this.includesLastItemInRange = includesLastItemInRange;
+	}
+	/**
+	 * @return true if the response contained no errors
+	 */
+	public boolean isSuccess() {
+		return ResponseCodeType.NO_ERROR.equals(responseCode);
+	}
+	/**
+	 * @return the offset of the next page, or -1 if {@link #isIncludesLastItemInRange()}
+	 */
+	public int getNextOffset() {
+		return includesLastItemInRange ? -1 : indexedPagingOffset;
+	}
+	/**
+	 * @return a {@link Pair} of {@link #getItemIds()} and {@link #getNextOffset()}, as returned by {@link com.microsoft.exchange.ExchangeResponseUtils#parseFindItemIdResponse(FindItemResponse)}
+	 */
+	public Pair<Set<ItemIdType>, Integer> toPair() {
+		return Pair.of(itemIds, getNextOffset());
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "FindItemIdsResult[itemIds=" + itemIds.size() + ", responseCode=" + responseCode 
+				+ ", indexedPagingOffset=" + indexedPagingOffset + ", totalItemsInView=" + totalItemsInView 
+				+ ", includesLastItemInRange=" + includesLastItemInRange + "]";
+	}
+}
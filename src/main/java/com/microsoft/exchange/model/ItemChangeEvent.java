@@ -0,0 +1,127 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.model;
+
+import java.util.Date;
+
+import com.microsoft.exchange.types.FolderIdType;
+import com.microsoft.exchange.types.ItemIdType;
+import com.microsoft.exchange.types.NotificationEventTypeType;
+
+/**
+ * A single item event delivered by a streaming or pull subscription.
+ * 
+ * For {@link NotificationEventTypeType#MOVED_EVENT} and {@link NotificationEventTypeType#COPIED_EVENT} the
+ * {@link #getOldItemId()} and {@link #getOldParentFolderId()} identify the source item.
+ */
+public class ItemChangeEvent {
+
+	private final String subscriptionId;
+	private final NotificationEventTypeType eventType;
+	private final String watermark;
+	private final Date timeStamp;
+	private final ItemIdType itemId;
+	private final FolderIdType parentFolderId;
+	private ItemIdType oldItemId;
+	private FolderIdType oldParentFolderId;
+	
+	/**
+	 * @param subscriptionId
+	 * @param eventType
+	 * @param watermark
+	 * @param timeStamp
+	 * @param itemId
+	 * @param parentFolderId
+	 */
+	public ItemChangeEvent(String subscriptionId, NotificationEventTypeType eventType, String watermark, Date timeStamp, ItemIdType itemId, FolderIdType parentFolderId) {
+		this.subscriptionId = subscriptionId;
+		this.eventType = eventType;
+		this.watermark = watermark;
+		this.timeStamp = timeStamp;
+		this.itemId = itemId;
+		this.parentFolderId = parentFolderId;
+	}
+	/**
+	 * @return the id of the subscription which delivered this event
+	 */
+	public String getSubscriptionId() {
+		return subscriptionId;
+	}
+	/**
+	 * @return the {@link NotificationEventTypeType}
+	 */
+	public NotificationEventTypeType getEventType() {
+		return eventType;
+	}
+	/**
+	 * @return the watermark of this event, events after it can be requested by a pull subscription
+	 */
+	public String getWatermark() {
+		return watermark;
+	}
+	/**
+	 * @return when the event occurred, may be null
+	 */
+	public Date getTimeStamp() {
+		return timeStamp;
+	}
+	/**
+	 * @return the {@link ItemIdType} of the created, modified, deleted or moved/copied item
+	 */
+	public ItemIdType getItemId() {
+		return itemId;
+	}
+	/**
+	 * @return the {@link FolderIdType} of the folder containing the item
+	 */
+	public FolderIdType getParentFolderId() {
+		return parentFolderId;
+	}
+	/**
+	 * @return the {@link ItemIdType} of the item before it was moved or copied, otherwise null
+	 */
+	public ItemIdType getOldItemId() {
+		return oldItemId;
+	}
+	/**
+	 * @param oldItemId
+	 */
+	public void setOldItemId(ItemIdType oldItemId) {
+		this.oldItemId = oldItemId;
+	}
+	/**
+	 * @return the {@link FolderIdType} of the folder the item was moved or copied from, otherwise null
+	 */
+	public FolderIdType getOldParentFolderId() {
+		return oldParentFolderId;
+	}
+	/**
+	 * @param oldParentFolderId
+	 */
+	public void setOldParentFolderId(FolderIdType oldParentFolderId) {
+		this.oldParentFolderId = oldParentFolderId;
+	}
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ItemChangeEvent [eventType=" + eventType + ", subscriptionId=" + subscriptionId + ", watermark=" + watermark + ", timeStamp=" + timeStamp + "]";
+	}
+}
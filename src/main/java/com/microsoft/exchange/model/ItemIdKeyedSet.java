@@ -0,0 +1,184 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.model;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.microsoft.exchange.types.ItemIdType;
+import com.microsoft.exchange.types.ItemType;
+
+/**
+ * An insertion ordered {@link java.util.Set} of {@link ItemType}s keyed on {@link ItemIdType#getId()} and, optionally, {@link ItemIdType#getChangeKey()}.
+ * 
+ * The generated (jaxb2-basics) {@link Object#hashCode()} and {@link Object#equals(Object)} of {@link ItemType} traverse the entire item graph 
+ * (attendees, body, extended properties, ...), which makes {@link java.util.HashSet} needlessly expensive for large responses.
+ * Only the identifying strings are hashed here.  Items without an {@link ItemIdType} are compared by identity.
+ */
+public class ItemIdKeyedSet<T extends ItemType> extends AbstractSet<T> {
+
+	private final Map<Key, T> items = new LinkedHashMap<Key, T>();
+	private final boolean includeChangeKey;
+	
+	/**
+	 * Create a set keyed on both {@link ItemIdType#getId()} and {@link ItemIdType#getChangeKey()}.
+	 */
+	public ItemIdKeyedSet() {
+		this(true);
+	}
+	/**
+	 * @param includeChangeKey if false, items with equal {@link ItemIdType#getId()} but different {@link ItemIdType#getChangeKey()} are considered duplicates
+	 */
+	public ItemIdKeyedSet(boolean includeChangeKey) {
+		this.includeChangeKey = includeChangeKey;
+	}
+	/**
+	 * Create a set keyed on both {@link ItemIdType#getId()} and {@link ItemIdType#getChangeKey()} containing {@code c}.
+	 * @param c
+	 */
+	public ItemIdKeyedSet(Collection<? extends T> c) {
+		this(true);
+		addAll(c);
+	}
+	
+	/**
+	 * @return true if {@link ItemIdType#getChangeKey()} is part of the key
+	 */
+	public boolean isIncludeChangeKey() {
+		return includeChangeKey;
+	}
+	
+	/**
+	 * @param itemId
+	 * @return the element with the specified {@link ItemIdType}, or null
+	 */
+	public T get(ItemIdType itemId) {
+		if(null == itemId || null == itemId.getId()) {
+			return null;
+		}
+		return items.get(new Key(itemId.getId(), includeChangeKey ? itemId.getChangeKey() : null, null));
+	}
+	
+	private Key key(Object o) {
+		ItemIdType itemId = ((ItemType) o).getItemId();
+		if(null == itemId || null == itemId.getId()) {
+			return new Key(null, null, o);
+		}
+		return new Key(itemId.getId(), includeChangeKey ? itemId.getChangeKey() : null, null);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#add(java.lang.Object)
+	 */
+	@Override
+	public boolean add(T e) {
+		if(null == e) {
+			throw new NullPointerException();
+		}
+		Key k = key(e);
+		if(items.containsKey(k)) {
+			return false;
+		}
+		items.put(k, e);
+		return true;
+	}
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#contains(java.lang.Object)
+	 */
+	@Override
+	public boolean contains(Object o) {
+		if(!(o instanceof ItemType)) {
+			return false;
+		}
+		return items.containsKey(key(o));
+	}
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if(!(o instanceof ItemType)) {
+			return false;
+		}
+		return null != items.remove(key(o));
+	}
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#iterator()
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return items.values().iterator();
+	}
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		return items.size();
+	}
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#clear()
+	 */
+	@Override
+	public void clear() {
+		items.clear();
+	}
+	
+	/**
+	 * Either an (id, changeKey) pair or, for items without an {@link ItemIdType}, the item itself compared by identity.
+	 */
+	private static final class Key {
+		private final String id;
+		private final String changeKey;
+		private final Object identity;
+		private final int hash;
+		
+		Key(String id, String changeKey, Object identity) {
+			this.id = id;
+			this.changeKey = changeKey;
+			this.identity = identity;
+			if(null != identity) {
+				this.hash = System.identityHashCode(identity);
+			} else {
+				this.hash = 31 * id.hashCode() + (null == changeKey ? 0 : changeKey.hashCode());
+			}
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			if(null != identity || null != other.identity) {
+				return identity == other.identity;
+			}
+			return id.equals(other.id) && (null == changeKey ? null == other.changeKey : changeKey.equals(other.changeKey));
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.model;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+/**
+ * Routes related requests (e.g. the subscriptions sharing a streaming connection and the connection itself) to the mailbox server 
+ * of one anchor mailbox.  Requests carry the X-AnchorMailbox and X-PreferServerAffinity headers, and the X-BackEndOverrideCookie
+ * returned by the first of them is sent with the rest.
+ * 
+ * @see <a href='https://msdn.microsoft.com/en-us/library/office/dn458789(v=exchg.150).aspx'>Maintaining affinity</a>
+ */
+public class MailboxAffinity {
+
+	public static final String ANCHOR_MAILBOX_HEADER = "X-AnchorMailbox";
+	public static final String PREFER_SERVER_AFFINITY_HEADER = "X-PreferServerAffinity";
+	public static final String BACKEND_OVERRIDE_COOKIE = "X-BackEndOverrideCookie";
+	
+	private final String anchorMailbox;
+	private volatile String backEndOverrideCookie;
+	
+	/**
+	 * @param anchorMailbox the SMTP address of the mailbox whose server the requests are routed to
+	 */
+	public MailboxAffinity(String anchorMailbox) {
+		Validate.isTrue(StringUtils.isNotBlank(anchorMailbox), "anchorMailbox argument cannot be blank");
+		this.anchorMailbox = anchorMailbox;
+	}
+	/**
+	 * @return the SMTP address of the mailbox whose server the requests are routed to
+	 */
+	public String getAnchorMailbox() {
+		return anchorMailbox;
+	}
+	/**
+	 * @return the value of the X-BackEndOverrideCookie, or null until a response has set it
+	 */
+	public String getBackEndOverrideCookie() {
+		return backEndOverrideCookie;
+	}
+	/**
+	 * @param backEndOverrideCookie the value of the X-BackEndOverrideCookie
+	 */
+	public void setBackEndOverrideCookie(String backEndOverrideCookie) {
+		this.backEndOverrideCookie = backEndOverrideCookie;
+	}
+	/**
+	 * @return the Cookie request header value carrying the X-BackEndOverrideCookie, or null if none has been received
+	 */
+	public String getCookieHeader() {
+		String cookie = backEndOverrideCookie;
+		return StringUtils.isBlank(cookie) ? null : BACKEND_OVERRIDE_COOKIE + "=" + cookie;
+	}
+	/**
+	 * Record the X-BackEndOverrideCookie from a Set-Cookie response header, other cookies are ignored.
+	 * 
+	 * @param setCookieHeader
+	 * @return true if {@code setCookieHeader} carried the X-BackEndOverrideCookie
+	 */
+	public boolean readSetCookie(String setCookieHeader) {
+		if(StringUtils.isBlank(setCookieHeader)) {
+			return false;
+		}
+		String pair = StringUtils.substringBefore(setCookieHeader, ";").trim();
+		if(!BACKEND_OVERRIDE_COOKIE.equalsIgnoreCase(StringUtils.substringBefore(pair, "=").trim())) {
+			return false;
+		}
+		String value = StringUtils.substringAfter(pair, "=").trim();
+		if(StringUtils.isBlank(value)) {
+			return false;
+		}
+		this.backEndOverrideCookie = value;
+		return true;
+	}
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "MailboxAffinity [anchorMailbox=" + anchorMailbox + ", backEndOverrideCookie=" + (null != backEndOverrideCookie) + "]";
+	}
+}
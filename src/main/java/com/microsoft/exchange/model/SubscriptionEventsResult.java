@@ -0,0 +1,87 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.microsoft.exchange.messages.GetEventsResponse;
+import com.microsoft.exchange.messages.GetStreamingEventsResponse;
+
+/**
+ * The item events, watermarks and failed subscriptions reported by a {@link GetStreamingEventsResponse} or {@link GetEventsResponse}.
+ */
+public class SubscriptionEventsResult {
+
+	private final List<ItemChangeEvent> events = new ArrayList<ItemChangeEvent>();
+	private final Map<String, String> watermarks = new HashMap<String, String>();
+	private final Set<String> moreEventsSubscriptionIds = new HashSet<String>();
+	private final Map<String, String> errorSubscriptionIds = new HashMap<String, String>();
+	private boolean connectionClosed;
+	
+	/**
+	 * @return the never null {@link List} of {@link ItemChangeEvent}s, in response order
+	 */
+	public List<ItemChangeEvent> getEvents() {
+		return events;
+	}
+	/**
+	 * Includes the watermarks of status (heartbeat) and folder events, which are not returned by {@link #getEvents()}.
+	 * @return the never null {@link Map} of subscription id to the last watermark received
+	 */
+	public Map<String, String> getWatermarks() {
+		return watermarks;
+	}
+	/**
+	 * @return the never null {@link Set} of pull subscription ids with more events to retrieve
+	 */
+	public Set<String> getMoreEventsSubscriptionIds() {
+		return moreEventsSubscriptionIds;
+	}
+	/**
+	 * @return the never null {@link Map} of subscription ids which are no longer valid to the response code reported for them
+	 */
+	public Map<String, String> getErrorSubscriptionIds() {
+		return errorSubscriptionIds;
+	}
+	/**
+	 * @return true if the server reported the streaming connection closed
+	 */
+	public boolean isConnectionClosed() {
+		return connectionClosed;
+	}
+	/**
+	 * @param connectionClosed
+	 */
+	public void setConnectionClosed(boolean connectionClosed) {
+		this.connectionClosed = connectionClosed;
+	}
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "SubscriptionEventsResult [events=" + events.size() + ", watermarks=" + watermarks.size() 
+				+ ", errorSubscriptionIds=" + errorSubscriptionIds.keySet() + ", connectionClosed=" + connectionClosed + "]";
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.microsoft.exchange.messages.SyncFolderHierarchyResponse;
+import com.microsoft.exchange.types.BaseFolderType;
+import com.microsoft.exchange.types.FolderIdType;
+
+/**
+ * The folders created, updated and deleted according to a {@link SyncFolderHierarchyResponse}, in response order, 
+ * plus the SyncState to use for the next request.
+ */
+public class SyncFolderHierarchyResult {
+
+	private final List<BaseFolderType> createdFolders = new ArrayList<BaseFolderType>();
+	private final List<BaseFolderType> updatedFolders = new ArrayList<BaseFolderType>();
+	private final List<FolderIdType> deletedFolderIds = new ArrayList<FolderIdType>();
+	private String syncState;
+	private boolean includesLastFolderInRange = true;
+	
+	/**
+	 * @return the never null {@link List} of created {@link BaseFolderType}s
+	 */
+	public List<BaseFolderType> getCreatedFolders() {
+		return createdFolders;
+	}
+	/**
+	 * @return the never null {@link List} of updated {@link BaseFolderType}s
+	 */
+	public List<BaseFolderType> getUpdatedFolders() {
+		return updatedFolders;
+	}
+	/**
+	 * @return the never null {@link List} of deleted {@link FolderIdType}s
+	 */
+	public List<FolderIdType> getDeletedFolderIds() {
+		return deletedFolderIds;
+	}
+	/**
+	 * @return the SyncState identifying the synchronization state after this response
+	 */
+	public String getSyncState() {
+		return syncState;
+	}
+	/**
+	 * @param syncState
+	 */
+	public void setSyncState(String syncState) {
+		this.syncState = syncState;
+	}
+	/**
+	 * @return false if more changes are available, request them using {@link #getSyncState()}
+	 */
+	public boolean isIncludesLastFolderInRange() {
+		return includesLastFolderInRange;
+	}
+	/**
+	 * @param includesLastFolderInRange
+	 */
+	public void setIncludesLastFolderInRange(boolean includesLastFolderInRange) {
+		this.includesLastFolderInRange = includesLastFolderInRange;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "SyncFolderHierarchyResult[created=" + createdFolders.size() + ", updated=" + updatedFolders.size() 
+				+ ", deleted=" + deletedFolderIds.size() + ", includesLastFolderInRange=" + includesLastFolderInRange + "]";
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.microsoft.exchange.messages.SyncFolderItemsResponse;
+import com.microsoft.exchange.types.ItemIdType;
+
+/**
+ * A single page of a {@link SyncFolderItemsResponse}: the {@link ItemIdType}s created, updated and deleted, in response order, 
+ * plus the SyncState to use for the next request.
+ * 
+ * ReadFlagChange entries are not reported.
+ */
+public class SyncFolderItemsResult {
+
+	private final List<ItemIdType> createdItemIds = new ArrayList<ItemIdType>();
+	private final List<ItemIdType> updatedItemIds = new ArrayList<ItemIdType>();
+	private final List<ItemIdType> deletedItemIds = new ArrayList<ItemIdType>();
+	private String syncState;
+	private boolean includesLastItemInRange = true;
+	
+	/**
+	 * @return the never null {@link List} of created {@link ItemIdType}s
+	 */
+	public List<ItemIdType> getCreatedItemIds() {
+		return createdItemIds;
+	}
+	/**
+	 * @return the never null {@link List} of updated {@link ItemIdType}s
+	 */
+	public List<ItemIdType> getUpdatedItemIds() {
+		return updatedItemIds;
+	}
+	/**
+	 * @return the never null {@link List} of deleted {@link ItemIdType}s
+	 */
+	public List<ItemIdType> getDeletedItemIds() {
+		return deletedItemIds;
+	}
+	/**
+	 * @return the SyncState identifying the synchronization state after this page
+	 */
+	public String getSyncState() {
+		return syncState;
+	}
+	/**
+	 * @param syncState
+	 */
+	public void setSyncState(String syncState) {
+		this.syncState = syncState;
+	}
+	/**
+	 * @return false if more changes are available, request them using {@link #getSyncState()}
+	 */
+	public boolean isIncludesLastItemInRange() {
+		return includesLastItemInRange;
+	}
+	/**
+	 * @param includesLastItemInRange
+	 */
+	public void setIncludesLastItemInRange(boolean includesLastItemInRange) {
+		this.includesLastItemInRange = includesLastItemInRange;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "SyncFolderItemsResult[created=" + createdItemIds.size() + ", updated=" + updatedItemIds.size() 
+				+ ", deleted=" + deletedItemIds.size() + ", includesLastItemInRange=" + includesLastItemInRange + "]";
+	}
+}
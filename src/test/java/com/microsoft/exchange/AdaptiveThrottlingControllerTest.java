@@ -0,0 +1,98 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.microsoft.exchange.impl.AdaptiveThrottlingController;
+
+/**
+ * Tests for {@link AdaptiveThrottlingController}.
+ */
+public class AdaptiveThrottlingControllerTest {
+
+	private static final String KEY = AdaptiveThrottlingController.getKey("https://outlook.office365.com/EWS/Exchange.asmx", "someone@example.edu");
+	
+	@Test
+	public void onThrottled_decreasesMultiplicatively_onSuccess_increasesAdditively() {
+		AdaptiveThrottlingController controller = new AdaptiveThrottlingController();
+		controller.setMaxLimit(8);
+		controller.setDefaultBackOffMillis(1);
+		controller.setDecreaseCooldownMillis(0);
+		
+		controller.acquire(KEY);
+		controller.onThrottled(KEY, 0);
+		assertEquals(4d, controller.getLimit(KEY), 0.001);
+		controller.onThrottled(KEY, 0);
+		assertEquals(2d, controller.getLimit(KEY), 0.001);
+		controller.release(KEY);
+		
+		//one full window of successes grows the limit by roughly additiveIncrease
+		for(int i = 0; i < 2; i++) {
+			controller.acquire(KEY);
+			controller.onSuccess(KEY);
+			controller.release(KEY);
+		}
+		double limit = controller.getLimit(KEY);
+		//2 + 1/2 + 1/2.5
+		assertEquals(2.9d, limit, 0.001);
+	}
+	
+	@Test
+	public void onThrottled_cooldownPreventsCollapse() {
+		AdaptiveThrottlingController controller = new AdaptiveThrottlingController();
+		controller.setMaxLimit(8);
+		controller.setDefaultBackOffMillis(1);
+		controller.setDecreaseCooldownMillis(60000);
+		
+		controller.acquire(KEY);
+		controller.onThrottled(KEY, 0);
+		controller.onThrottled(KEY, 0);
+		controller.onThrottled(KEY, 0);
+		assertEquals(4d, controller.getLimit(KEY), 0.001);
+		controller.release(KEY);
+	}
+	
+	@Test
+	public void acquire_honorsBackOffHint() {
+		AdaptiveThrottlingController controller = new AdaptiveThrottlingController();
+		controller.acquire(KEY);
+		controller.onThrottled(KEY, 200);
+		controller.release(KEY);
+		long start = System.currentTimeMillis();
+		controller.acquire(KEY);
+		long waited = System.currentTimeMillis() - start;
+		controller.release(KEY);
+		assertTrue("waited "+waited, waited >= 150);
+	}
+	
+	@Test
+	public void release_discardsRecoveredState() {
+		AdaptiveThrottlingController controller = new AdaptiveThrottlingController();
+		controller.acquire(KEY);
+		assertEquals(1, controller.getInFlight(KEY));
+		controller.onSuccess(KEY);
+		controller.release(KEY);
+		assertEquals(0, controller.getInFlight(KEY));
+		assertEquals(controller.getMaxLimit(), controller.getLimit(KEY), 0.001);
+	}
+}
@@ -3,16 +3,63 @@
  */
 package com.microsoft.exchange;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.xml.bind.JAXBContext;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.joda.time.DateTime;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import com.microsoft.exchange.exception.ExchangeExceededFindCountLimitRuntimeException;
+import com.microsoft.exchange.exception.ExchangeInvalidUPNRuntimeException;
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
 import com.microsoft.exchange.impl.BaseExchangeCalendarDataDao;
+import com.microsoft.exchange.impl.ExchangeOnlineThrottlingPolicy;
+import com.microsoft.exchange.impl.ExchangeResponseUtilsImpl;
+import com.microsoft.exchange.impl.RetryExecutor;
+import com.microsoft.exchange.messages.ArrayOfResponseMessagesType;
+import com.microsoft.exchange.messages.FindItem;
+import com.microsoft.exchange.messages.GetItem;
+import com.microsoft.exchange.messages.GetItemResponse;
+import com.microsoft.exchange.messages.ItemInfoResponseMessageType;
+import com.microsoft.exchange.messages.ObjectFactory;
+import com.microsoft.exchange.messages.ResponseCodeType;
+import com.microsoft.exchange.messages.SyncFolderItems;
+import com.microsoft.exchange.messages.SyncFolderItemsResponse;
+import com.microsoft.exchange.messages.SyncFolderItemsResponseMessageType;
+import com.microsoft.exchange.model.CalendarItemChanges;
+import com.microsoft.exchange.model.FindItemIdsResult;
+import com.microsoft.exchange.types.ArrayOfRealItemsType;
+import com.microsoft.exchange.types.BaseItemIdType;
+import com.microsoft.exchange.types.CalendarItemType;
+import com.microsoft.exchange.types.FolderIdType;
+import com.microsoft.exchange.types.ItemIdType;
+import com.microsoft.exchange.types.ItemType;
+import com.microsoft.exchange.types.ResponseClassType;
+import com.microsoft.exchange.types.SyncFolderItemsChangesType;
+import com.microsoft.exchange.types.SyncFolderItemsCreateOrUpdateType;
+import com.microsoft.exchange.types.SyncFolderItemsDeleteType;
 
 /**
  * Tests for {@link BaseExchangeCalendarDataDao}.
@@ -41,4 +88,498 @@ public class BaseExchangeCalendarDataDaoTest {
 			log.info("retryCount="+i+" waitTime="+String.format("%.2f",waitTimeSeconds)+"(s)");
 		}
 	}
+	
+	/**
+	 * 250 ids in batches of 100 must result in 3 GetItem requests, with only the failed batch retried.
+	 */
+	@Test
+	public void getCalendarItems_batched() {
+		BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao();
+		dao.setRequestFactory(new ExchangeRequestFactory());
+		dao.setGetItemsBatchSize(100);
+		dao.setGetItemsParallelism(2);
+		RetryExecutor retryExecutor = new RetryExecutor();
+		retryExecutor.getRetryPolicy().setBaseDelayMillis(1);
+		dao.setRetryExecutor(retryExecutor);
+		
+		final ThreadLocal<GetItem> lastRequest = new ThreadLocal<GetItem>();
+		final AtomicInteger requests = new AtomicInteger();
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final AtomicInteger failures = new AtomicInteger();
+		ExchangeWebServices webServices = mock(ExchangeWebServices.class);
+		when(webServices.getItem(any(GetItem.class))).thenAnswer(new Answer<GetItemResponse>() {
+			@Override
+			public GetItemResponse answer(InvocationOnMock invocation) throws Throwable {
+				GetItem request = (GetItem) invocation.getArguments()[0];
+				requests.incrementAndGet();
+				int current = inFlight.incrementAndGet();
+				try {
+					synchronized (maxInFlight) {
+						maxInFlight.set(Math.max(maxInFlight.get(), current));
+					}
+					Thread.sleep(20);
+					List<BaseItemIdType> ids = request.getItemIds().getItemIdsAndOccurrenceItemIdsAndRecurringMasterItemIds();
+					if("id-100".equals(((ItemIdType) ids.get(0)).getId()) && failures.getAndIncrement() == 0) {
+						ExchangeRuntimeException e = new ExchangeRuntimeException("transient");
+						e.setResponseCode("ErrorInternalServerTransientError");
+						throw e;
+					}
+					lastRequest.set(request);
+					return new GetItemResponse();
+				} finally {
+					inFlight.decrementAndGet();
+				}
+			}
+		});
+		ExchangeResponseUtils responseUtils = mock(ExchangeResponseUtils.class);
+		doAnswer(new Answer<Set<ItemType>>() {
+			@Override
+			public Set<ItemType> answer(InvocationOnMock invocation) throws Throwable {
+				Set<ItemType> items = new HashSet<ItemType>();
+				for(BaseItemIdType id : lastRequest.get().getItemIds().getItemIdsAndOccurrenceItemIdsAndRecurringMasterItemIds()) {
+					CalendarItemType item = new CalendarItemType();
+					item.setItemId((ItemIdType) id);
+					items.add(item);
+				}
+				return items;
+			}
+		}).when(responseUtils).parseGetItemResponse(any(GetItemResponse.class));
+		dao.setWebServices(webServices);
+		dao.setResponseUtils(responseUtils);
+		
+		List<ItemIdType> itemIds = new ArrayList<ItemIdType>();
+		for(int i = 0; i < 250; i++) {
+			ItemIdType id = new ItemIdType();
+			id.setId("id-"+i);
+			itemIds.add(id);
+		}
+		try {
+			Collection<CalendarItemType> items = dao.getCalendarItems("someone@example.org", itemIds);
+			Assert.assertEquals(250, items.size());
+			Assert.assertEquals(4, requests.get());
+			Assert.assertTrue(maxInFlight.get() <= 2);
+		} finally {
+			retryExecutor.destroy();
+		}
+	}
+	
+	/**
+	 * Once the first page reports TotalItemsInView the remaining pages are requested concurrently.
+	 */
+	@Test
+	public void findAllItemIds_parallelPages() {
+		final int total = 2500;
+		BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao();
+		ExchangeRequestFactory requestFactory = new ExchangeRequestFactory();
+		final int pageSize = requestFactory.getMaxFindItems();
+		dao.setRequestFactory(requestFactory);
+		dao.setResponseUtils(new ExchangeResponseUtilsImpl());
+		dao.setFindItemParallelism(3);
+		RetryExecutor retryExecutor = new RetryExecutor();
+		dao.setRetryExecutor(retryExecutor);
+		
+		final List<Integer> offsets = Collections.synchronizedList(new ArrayList<Integer>());
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		ExchangeWebServices webServices = mock(ExchangeWebServices.class, withSettings().extraInterfaces(FindItemIdsOperations.class));
+		when(((FindItemIdsOperations) webServices).findItemIds(any(FindItem.class))).thenAnswer(new Answer<FindItemIdsResult>() {
+			@Override
+			public FindItemIdsResult answer(InvocationOnMock invocation) throws Throwable {
+				FindItem request = (FindItem) invocation.getArguments()[0];
+				int offset = request.getIndexedPageItemView().getOffset();
+				offsets.add(offset);
+				int current = inFlight.incrementAndGet();
+				try {
+					synchronized (maxInFlight) {
+						maxInFlight.set(Math.max(maxInFlight.get(), current));
+					}
+					Thread.sleep(20);
+				} finally {
+					inFlight.decrementAndGet();
+				}
+				FindItemIdsResult result = new FindItemIdsResult();
+				int end = Math.min(offset + pageSize, total);
+				for(int i = offset; i < end; i++) {
+					ItemIdType id = new ItemIdType();
+					id.setId("id-"+i);
+					result.getItemIds().add(id);
+				}
+				result.setIndexedPagingOffset(end);
+				result.setTotalItemsInView(total);
+				result.setIncludesLastItemInRange(end >= total);
+				return result;
+			}
+		});
+		dao.setWebServices(webServices);
+		try {
+			Set<ItemIdType> itemIds = dao.findAllItemIds("someone@example.org", new ArrayList<FolderIdType>());
+			Assert.assertEquals(total, itemIds.size());
+			Assert.assertEquals("id-0", itemIds.iterator().next().getId());
+			Assert.assertEquals((total + pageSize - 1) / pageSize, offsets.size());
+			Assert.assertTrue(maxInFlight.get() <= 3);
+			if(total > 2 * pageSize) {
+				Assert.assertTrue(maxInFlight.get() > 1);
+			}
+		} finally {
+			retryExecutor.destroy();
+		}
+	}
+	
+	/**
+	 * Pages after the first are requested for the upn resolved while fetching the first page.
+	 */
+	@Test
+	public void findAllItemIds_laterPagesUseResolvedUpn() {
+		final int total = 2500;
+		final ThreadLocal<String> impersonated = new ThreadLocal<String>();
+		BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao() {
+			@Override
+			protected void setContextCredentials(String upn) {
+				impersonated.set(upn);
+			}
+			@Override
+			public String resolveUpn(String emailAddress) {
+				return "resolved@example.org";
+			}
+		};
+		ExchangeRequestFactory requestFactory = new ExchangeRequestFactory();
+		final int pageSize = requestFactory.getMaxFindItems();
+		dao.setRequestFactory(requestFactory);
+		dao.setResponseUtils(new ExchangeResponseUtilsImpl());
+		RetryExecutor retryExecutor = new RetryExecutor();
+		dao.setRetryExecutor(retryExecutor);
+		
+		final List<String> upns = Collections.synchronizedList(new ArrayList<String>());
+		ExchangeWebServices webServices = mock(ExchangeWebServices.class, withSettings().extraInterfaces(FindItemIdsOperations.class));
+		when(((FindItemIdsOperations) webServices).findItemIds(any(FindItem.class))).thenAnswer(new Answer<FindItemIdsResult>() {
+			@Override
+			public FindItemIdsResult answer(InvocationOnMock invocation) throws Throwable {
+				String upn = impersonated.get();
+				upns.add(upn);
+				if(!"resolved@example.org".equals(upn)) {
+					throw new ExchangeInvalidUPNRuntimeException("invalid upn "+upn);
+				}
+				int offset = ((FindItem) invocation.getArguments()[0]).getIndexedPageItemView().getOffset();
+				FindItemIdsResult result = new FindItemIdsResult();
+				int end = Math.min(offset + pageSize, total);
+				for(int i = offset; i < end; i++) {
+					result.getItemIds().add(itemId("id-"+i));
+				}
+				result.setIndexedPagingOffset(end);
+				result.setTotalItemsInView(total);
+				result.setIncludesLastItemInRange(end >= total);
+				return result;
+			}
+		});
+		dao.setWebServices(webServices);
+		try {
+			Set<ItemIdType> itemIds = dao.findAllItemIds("alias@example.org", new ArrayList<FolderIdType>());
+			Assert.assertEquals(total, itemIds.size());
+			//one rejected attempt for the alias, then every page for the resolved upn
+			Assert.assertEquals("alias@example.org", upns.get(0));
+			Assert.assertEquals(1 + (total + pageSize - 1) / pageSize, upns.size());
+			Assert.assertFalse(upns.subList(1, upns.size()).contains("alias@example.org"));
+		} finally {
+			retryExecutor.destroy();
+		}
+	}
+	
+	@Test
+	public void findCalendarItemIds_splitsAndRemembersDensity() {
+		final int total = 2400;
+		final long start = new DateTime(2014, 1, 1, 0, 0).getMillis();
+		final long end = new DateTime(2014, 1, 31, 0, 0).getMillis();
+		final long spacing = (end - start) / total;
+		BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao();
+		dao.setRequestFactory(new ExchangeRequestFactory());
+		dao.setResponseUtils(new ExchangeResponseUtilsImpl());
+		RetryExecutor retryExecutor = new RetryExecutor();
+		dao.setRetryExecutor(retryExecutor);
+		
+		final AtomicInteger requests = new AtomicInteger();
+		final AtomicInteger exceeded = new AtomicInteger();
+		ExchangeWebServices webServices = mock(ExchangeWebServices.class, withSettings().extraInterfaces(FindItemIdsOperations.class));
+		when(((FindItemIdsOperations) webServices).findItemIds(any(FindItem.class))).thenAnswer(new Answer<FindItemIdsResult>() {
+			@Override
+			public FindItemIdsResult answer(InvocationOnMock invocation) throws Throwable {
+				FindItem request = (FindItem) invocation.getArguments()[0];
+				requests.incrementAndGet();
+				long windowStart = request.getCalendarView().getStartDate().toGregorianCalendar().getTimeInMillis();
+				long windowEnd = request.getCalendarView().getEndDate().toGregorianCalendar().getTimeInMillis();
+				FindItemIdsResult result = new FindItemIdsResult();
+				for(int i = 0; i < total; i++) {
+					long t = start + i * spacing;
+					if(t >= windowStart && t < windowEnd) {
+						ItemIdType id = new ItemIdType();
+						id.setId("id-"+i);
+						result.getItemIds().add(id);
+					}
+				}
+				if(result.getItemIds().size() > ExchangeOnlineThrottlingPolicy.FIND_ITEM_MAX_ENTRIES_RETURNED) {
+					exceeded.incrementAndGet();
+					throw new ExchangeExceededFindCountLimitRuntimeException("ErrorExceededFindCountLimit");
+				}
+				result.setIncludesLastItemInRange(true);
+				return result;
+			}
+		});
+		dao.setWebServices(webServices);
+		try {
+			Set<ItemIdType> itemIds = dao.findCalendarItemIds("someone@example.org", new Date(start), new Date(end));
+			Assert.assertEquals(total, itemIds.size());
+			Assert.assertTrue(exceeded.get() > 0);
+			
+			//the second query is planned from the observed density and never exceeds the limit
+			requests.set(0);
+			exceeded.set(0);
+			itemIds = dao.findCalendarItemIds("someone@example.org", new Date(start), new Date(end));
+			Assert.assertEquals(total, itemIds.size());
+			Assert.assertEquals(0, exceeded.get());
+			Assert.assertTrue(requests.get() > 1);
+		} finally {
+			retryExecutor.destroy();
+		}
+	}
+	
+	@Test
+	public void getCalendarItems_bulk() {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao() {
+			@Override
+			public Collection<CalendarItemType> getCalendarItems(String upn, Date startDate, Date endDate, Collection<FolderIdType> calendarFolderId) {
+				int current = inFlight.incrementAndGet();
+				try {
+					synchronized (maxInFlight) {
+						maxInFlight.set(Math.max(maxInFlight.get(), current));
+					}
+					Thread.sleep(upn.startsWith("slow") ? 500 : 10);
+				} catch (InterruptedException e) {
+					throw new ExchangeRuntimeException(e);
+				} finally {
+					inFlight.decrementAndGet();
+				}
+				if(upn.startsWith("bad")) {
+					throw new ExchangeRuntimeException("mailbox not found");
+				}
+				CalendarItemType item = new CalendarItemType();
+				item.setSubject(upn);
+				return Collections.singletonList(item);
+			}
+		};
+		dao.setBulkMailboxParallelism(3);
+		
+		List<String> upns = new ArrayList<String>();
+		upns.add("slow@example.org");
+		upns.add("bad@example.org");
+		for(int i = 0; i < 20; i++) {
+			upns.add("user"+i+"@example.org");
+		}
+		upns.add("user0@example.org");
+		final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+		final List<String> failed = Collections.synchronizedList(new ArrayList<String>());
+		int failures = dao.getCalendarItems(upns, new Date(), new Date(), null, new BulkCalendarItemsListener() {
+			@Override
+			public void onCompleted(String upn, Collection<CalendarItemType> calendarItems) {
+				Assert.assertEquals(upn, calendarItems.iterator().next().getSubject());
+				completed.add(upn);
+			}
+			@Override
+			public void onFailed(String upn, RuntimeException failure) {
+				failed.add(upn);
+			}
+		});
+		Assert.assertEquals(1, failures);
+		Assert.assertEquals(Collections.singletonList("bad@example.org"), failed);
+		Assert.assertEquals(21, completed.size());
+		//the slow mailbox did not hold up the others
+		Assert.assertEquals("slow@example.org", completed.get(completed.size() - 1));
+		Assert.assertTrue(maxInFlight.get() <= 3);
+		dao.destroy();
+	}
+	
+	@Test
+	public void getCalendarItems_bulkConcurrentCallsShareLimit() throws InterruptedException {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao() {
+			@Override
+			public Collection<CalendarItemType> getCalendarItems(String upn, Date startDate, Date endDate, Collection<FolderIdType> calendarFolderId) {
+				int current = inFlight.incrementAndGet();
+				try {
+					synchronized (maxInFlight) {
+						maxInFlight.set(Math.max(maxInFlight.get(), current));
+					}
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					throw new ExchangeRuntimeException(e);
+				} finally {
+					inFlight.decrementAndGet();
+				}
+				return Collections.emptyList();
+			}
+		};
+		dao.setBulkMailboxParallelism(2);
+		final List<String> upns = new ArrayList<String>();
+		for(int i = 0; i < 10; i++) {
+			upns.add("user"+i+"@example.org");
+		}
+		final AtomicInteger completed = new AtomicInteger();
+		final BulkCalendarItemsListener listener = new BulkCalendarItemsListener() {
+			@Override
+			public void onCompleted(String upn, Collection<CalendarItemType> calendarItems) {
+				completed.incrementAndGet();
+			}
+			@Override
+			public void onFailed(String upn, RuntimeException failure) {
+			}
+		};
+		List<Thread> callers = new ArrayList<Thread>();
+		for(int i = 0; i < 3; i++) {
+			Thread caller = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					dao.getCalendarItems(upns, new Date(), new Date(), null, listener);
+				}
+			});
+			caller.start();
+			callers.add(caller);
+		}
+		for(Thread caller : callers) {
+			caller.join(10000);
+		}
+		Assert.assertEquals(30, completed.get());
+		Assert.assertTrue(maxInFlight.get() <= 2);
+		dao.destroy();
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void setBulkMailboxParallelism_aboveImpersonationLimit() {
+		new BaseExchangeCalendarDataDao().setBulkMailboxParallelism(ExchangeOnlineThrottlingPolicy.MAX_CONCURRENT_CONNECTIONS_IMPERSONATION + 1);
+	}
+	
+	private static ItemIdType itemId(String id) {
+		ItemIdType itemId = new ItemIdType();
+		itemId.setId(id);
+		return itemId;
+	}
+	
+	private static SyncFolderItemsResponse syncResponse(String syncState, boolean last, String[] creates, String[] updates, String[] deletes) {
+		com.microsoft.exchange.types.ObjectFactory types = new com.microsoft.exchange.types.ObjectFactory();
+		SyncFolderItemsChangesType changes = new SyncFolderItemsChangesType();
+		for(String id : creates) {
+			SyncFolderItemsCreateOrUpdateType create = new SyncFolderItemsCreateOrUpdateType();
+			create.setCalendarItem(new CalendarItemType());
+			create.getCalendarItem().setItemId(itemId(id));
+			changes.getCreatesAndUpdatesAndDeletes().add(types.createSyncFolderItemsChangesTypeCreate(create));
+		}
+		for(String id : updates) {
+			SyncFolderItemsCreateOrUpdateType update = new SyncFolderItemsCreateOrUpdateType();
+			update.setCalendarItem(new CalendarItemType());
+			update.getCalendarItem().setItemId(itemId(id));
+			changes.getCreatesAndUpdatesAndDeletes().add(types.createSyncFolderItemsChangesTypeUpdate(update));
+		}
+		for(String id : deletes) {
+			SyncFolderItemsDeleteType delete = new SyncFolderItemsDeleteType();
+			delete.setItemId(itemId(id));
+			changes.getCreatesAndUpdatesAndDeletes().add(types.createSyncFolderItemsChangesTypeDelete(delete));
+		}
+		SyncFolderItemsResponseMessageType message = new SyncFolderItemsResponseMessageType();
+		message.setResponseClass(ResponseClassType.SUCCESS);
+		message.setResponseCode(ResponseCodeType.NO_ERROR);
+		message.setSyncState(syncState);
+		message.setIncludesLastItemInRange(last);
+		message.setChanges(changes);
+		SyncFolderItemsResponse response = new SyncFolderItemsResponse();
+		response.setResponseMessages(new ArrayOfResponseMessagesType());
+		response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().add(
+				new ObjectFactory().createArrayOfResponseMessagesTypeSyncFolderItemsResponseMessage(message));
+		return response;
+	}
+	
+	/**
+	 * Changes are merged across pages, the SyncState is stored and reused, and a rejected SyncState restarts the synchronization.
+	 */
+	@Test
+	public void syncCalendarItems() {
+		BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao();
+		dao.setRequestFactory(new ExchangeRequestFactory());
+		dao.setResponseUtils(new ExchangeResponseUtilsImpl());
+		RetryExecutor retryExecutor = new RetryExecutor();
+		dao.setRetryExecutor(retryExecutor);
+		SyncStateStore store = new com.microsoft.exchange.impl.InMemorySyncStateStore();
+		dao.setSyncStateStore(store);
+		
+		final List<String> syncStates = Collections.synchronizedList(new ArrayList<String>());
+		ExchangeWebServices webServices = mock(ExchangeWebServices.class);
+		when(webServices.syncFolderItems(any(SyncFolderItems.class))).thenAnswer(new Answer<SyncFolderItemsResponse>() {
+			@Override
+			public SyncFolderItemsResponse answer(InvocationOnMock invocation) throws Throwable {
+				String syncState = ((SyncFolderItems) invocation.getArguments()[0]).getSyncState();
+				syncStates.add(syncState);
+				if(null == syncState) {
+					return syncResponse("s1", false, new String[] {"a", "b", "c"}, new String[0], new String[0]);
+				}else if("s1".equals(syncState)) {
+					return syncResponse("s2", true, new String[] {"d"}, new String[] {"b", "x"}, new String[] {"c", "y"});
+				}else if("s2".equals(syncState)) {
+					return syncResponse("s3", true, new String[0], new String[] {"a"}, new String[0]);
+				}
+				ExchangeRuntimeException e = new ExchangeRuntimeException("invalid sync state");
+				e.setResponseCode(ResponseCodeType.ERROR_INVALID_SYNC_STATE_DATA.value());
+				throw e;
+			}
+		});
+		when(webServices.getItem(any(GetItem.class))).thenAnswer(new Answer<GetItemResponse>() {
+			@Override
+			public GetItemResponse answer(InvocationOnMock invocation) throws Throwable {
+				GetItem request = (GetItem) invocation.getArguments()[0];
+				ItemInfoResponseMessageType message = new ItemInfoResponseMessageType();
+				message.setResponseClass(ResponseClassType.SUCCESS);
+				message.setResponseCode(ResponseCodeType.NO_ERROR);
+				message.setItems(new ArrayOfRealItemsType());
+				for(BaseItemIdType id : request.getItemIds().getItemIdsAndOccurrenceItemIdsAndRecurringMasterItemIds()) {
+					CalendarItemType item = new CalendarItemType();
+					item.setItemId((ItemIdType) id);
+					message.getItems().getItemsAndMessagesAndCalendarItems().add(item);
+				}
+				GetItemResponse response = new GetItemResponse();
+				response.setResponseMessages(new ArrayOfResponseMessagesType());
+				response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().add(
+						new ObjectFactory().createArrayOfResponseMessagesTypeGetItemResponseMessage(message));
+				return response;
+			}
+		});
+		dao.setWebServices(webServices);
+		try {
+			String upn = "someone@example.org";
+			CalendarItemChanges changes = dao.syncCalendarItems(upn, null);
+			Assert.assertTrue(changes.isInitialSync());
+			Assert.assertEquals("s2", changes.getSyncState());
+			Assert.assertEquals(Arrays.asList(null, "s1"), syncStates);
+			//c was created and deleted, b created and updated
+			Set<String> created = new HashSet<String>();
+			for(CalendarItemType item : changes.getCreated()) {
+				created.add(item.getItemId().getId());
+			}
+			Assert.assertEquals(new HashSet<String>(Arrays.asList("a", "b", "d")), created);
+			Assert.assertEquals(1, changes.getUpdated().size());
+			Assert.assertEquals("x", changes.getUpdated().iterator().next().getItemId().getId());
+			Assert.assertEquals(1, changes.getDeleted().size());
+			Assert.assertEquals("y", changes.getDeleted().iterator().next().getId());
+			
+			changes = dao.syncCalendarItems(upn, null);
+			Assert.assertFalse(changes.isInitialSync());
+			Assert.assertEquals(1, changes.getUpdated().size());
+			Assert.assertTrue(changes.getCreated().isEmpty());
+			Assert.assertEquals("s3", store.getSyncState("someone@example.org|calendar"));
+			
+			store.putSyncState("someone@example.org|calendar", "expired");
+			changes = dao.syncCalendarItems(upn, null);
+			Assert.assertTrue(changes.isInitialSync());
+			Assert.assertEquals("s2", changes.getSyncState());
+		} finally {
+			retryExecutor.destroy();
+		}
+	}
 }
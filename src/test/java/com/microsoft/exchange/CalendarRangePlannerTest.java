@@ -0,0 +1,132 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.junit.Test;
+
+import com.microsoft.exchange.impl.CalendarRangePlanner;
+import com.microsoft.exchange.impl.ExchangeOnlineThrottlingPolicy;
+import com.microsoft.exchange.types.FolderIdType;
+
+/**
+ * Tests for {@link CalendarRangePlanner}.
+ */
+public class CalendarRangePlannerTest {
+
+	private final DateTime start = new DateTime(2014, 1, 1, 0, 0);
+	private final DateTime end = start.plusDays(30);
+	
+	private static void assertContiguous(Interval range, List<Interval> windows) {
+		assertEquals(range.getStartMillis(), windows.get(0).getStartMillis());
+		assertEquals(range.getEndMillis(), windows.get(windows.size() - 1).getEndMillis());
+		for(int i = 1; i < windows.size(); i++) {
+			assertTrue(windows.get(i - 1).abuts(windows.get(i)));
+		}
+	}
+	
+	@Test
+	public void getKey_ignoresCaseAndFolderOrder() {
+		FolderIdType a = new FolderIdType();
+		a.setId("a");
+		FolderIdType b = new FolderIdType();
+		b.setId("b");
+		assertEquals(CalendarRangePlanner.getKey("Some.User@Example.edu", Arrays.asList(a, b)),
+				CalendarRangePlanner.getKey("some.user@example.edu", Arrays.asList(b, a)));
+		assertTrue(!CalendarRangePlanner.getKey("some.user@example.edu", null).equals(
+				CalendarRangePlanner.getKey("some.user@example.edu", Arrays.asList(a))));
+	}
+	
+	@Test
+	public void plan_unknownDensity_singleWindow() {
+		CalendarRangePlanner planner = new CalendarRangePlanner();
+		List<Interval> windows = planner.plan("key", start.toDate(), end.toDate());
+		assertEquals(1, windows.size());
+		assertNull(planner.getDensity("key"));
+	}
+	
+	@Test
+	public void plan_knownDensity_splitsBelowTarget() {
+		CalendarRangePlanner planner = new CalendarRangePlanner();
+		//2900 items over 30 days
+		planner.recordObservation("key", new Interval(start, end), 2900);
+		Interval range = new Interval(start, end);
+		List<Interval> windows = planner.plan("key", start.toDate(), end.toDate());
+		assertEquals(6, windows.size());
+		assertContiguous(range, windows);
+		
+		//a quiet calendar is still fetched in a single request
+		planner.recordObservation("quiet", range, 10);
+		assertEquals(1, planner.plan("quiet", start.toDate(), end.toDate()).size());
+	}
+	
+	@Test
+	public void plan_boundedByMaxWindowsAndMinWindow() {
+		CalendarRangePlanner planner = new CalendarRangePlanner();
+		planner.recordObservation("key", new Interval(start, start.plusHours(1)), 100000);
+		assertEquals(planner.getMaxWindows(), planner.plan("key", start.toDate(), end.toDate()).size());
+		
+		Date hourEnd = start.plusHours(1).toDate();
+		List<Interval> windows = planner.plan("key", start.toDate(), hourEnd);
+		assertEquals(4, windows.size());
+		assertContiguous(new Interval(start, start.plusHours(1)), windows);
+	}
+	
+	@Test
+	public void replan_raisesDensityAndSplits() {
+		CalendarRangePlanner planner = new CalendarRangePlanner();
+		Interval range = new Interval(start, end);
+		List<Interval> windows = planner.replan("key", range);
+		assertTrue(windows.size() >= 2);
+		assertContiguous(range, windows);
+		double lowerBound = ExchangeOnlineThrottlingPolicy.FIND_ITEM_MAX_ENTRIES_RETURNED / (range.toDurationMillis() / 3600000d);
+		assertEquals(lowerBound, planner.getDensity("key"), 0.0001);
+		
+		//the next query over the same calendar is split up front
+		assertEquals(windows.size(), planner.plan("key", start.toDate(), end.toDate()).size());
+	}
+	
+	@Test
+	public void replan_belowMinWindow_empty() {
+		CalendarRangePlanner planner = new CalendarRangePlanner();
+		assertTrue(planner.replan("key", new Interval(start, start.plusMinutes(20))).isEmpty());
+	}
+	
+	@Test
+	public void maxEntries_evictsLeastRecentlyUsed() {
+		CalendarRangePlanner planner = new CalendarRangePlanner();
+		planner.setMaxEntries(2);
+		Interval range = new Interval(start, end);
+		planner.recordObservation("a", range, 1);
+		planner.recordObservation("b", range, 1);
+		planner.getDensity("a");
+		planner.recordObservation("c", range, 1);
+		assertNull(planner.getDensity("b"));
+		assertTrue(null != planner.getDensity("a"));
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.microsoft.exchange.impl.http.CompressionInterceptor;
+import com.microsoft.exchange.impl.http.HttpTrafficStatistics;
+import com.microsoft.exchange.impl.http.OperationTrafficCounters;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for {@link CompressionInterceptor} against a local HTTP server which gzips its responses.
+ */
+public class CompressionInterceptorTest {
+
+	private static final String FIND_ITEM_ACTION = "\"http://schemas.microsoft.com/exchange/services/2006/messages/FindItem\"";
+	private static final String RESPONSE_BODY = "<FindItemResponse>" + StringUtils.repeat("<Item>subject</Item>", 2000) + "</FindItemResponse>";
+	
+	private HttpServer server;
+	private volatile String receivedBody;
+	private volatile String receivedContentEncoding;
+	
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				receivedContentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+				byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+				receivedBody = "gzip".equals(receivedContentEncoding) ? IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(body)), "UTF-8") : new String(body, "UTF-8");
+				
+				String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				byte[] response = RESPONSE_BODY.getBytes("UTF-8");
+				if(null != acceptEncoding && acceptEncoding.contains("gzip")) {
+					ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+					GZIPOutputStream gzip = new GZIPOutputStream(buffer);
+					gzip.write(response);
+					gzip.close();
+					response = buffer.toByteArray();
+					exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+				}
+				exchange.sendResponseHeaders(200, response.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(response);
+				out.close();
+			}
+		});
+		server.start();
+	}
+	
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+	
+	private HttpResponse post(CompressionInterceptor interceptor, DefaultHttpClient client, String body) throws IOException {
+		client.addRequestInterceptor(interceptor, 0);
+		client.addResponseInterceptor(interceptor);
+		HttpPost post = new HttpPost("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+		post.addHeader("SOAPAction", FIND_ITEM_ACTION);
+		post.setEntity(new ByteArrayEntity(body.getBytes("UTF-8")));
+		return client.execute(post);
+	}
+	
+	@Test
+	public void compressesRequestsAndDecodesResponses() throws IOException {
+		CompressionInterceptor interceptor = new CompressionInterceptor();
+		interceptor.setRequestCompressionEnabled(true);
+		interceptor.setRequestCompressionThreshold(1024);
+		DefaultHttpClient client = new DefaultHttpClient();
+		String requestBody = "<FindItem>" + StringUtils.repeat("<FieldURI/>", 500) + "</FindItem>";
+		try {
+			HttpResponse response = post(interceptor, client, requestBody);
+			assertNull(response.getFirstHeader("Content-Encoding"));
+			assertEquals(RESPONSE_BODY, EntityUtils.toString(response.getEntity(), "UTF-8"));
+		} finally {
+			client.getConnectionManager().shutdown();
+		}
+		assertEquals("gzip", receivedContentEncoding);
+		assertEquals(requestBody, receivedBody);
+		
+		OperationTrafficCounters counters = interceptor.getStatistics().getCounters("FindItem");
+		assertEquals(1, counters.getRequests());
+		assertEquals(1, counters.getCompressedRequests());
+		assertEquals(requestBody.length(), counters.getRequestBytes());
+		assertTrue(counters.getRequestWireBytes() < counters.getRequestBytes());
+		assertEquals(1, counters.getResponses());
+		assertEquals(1, counters.getCompressedResponses());
+		assertEquals(RESPONSE_BODY.length(), counters.getResponseBytes());
+		assertTrue(counters.getResponseWireBytes() < counters.getResponseBytes());
+		assertTrue(counters.getSavedBytes() > 0);
+	}
+	
+	@Test
+	public void smallRequestsAndDisabledResponseCompression() throws IOException {
+		CompressionInterceptor interceptor = new CompressionInterceptor();
+		interceptor.setRequestCompressionEnabled(true);
+		interceptor.setResponseCompressionEnabled(false);
+		DefaultHttpClient client = new DefaultHttpClient();
+		try {
+			HttpResponse response = post(interceptor, client, "<FindItem/>");
+			assertEquals(RESPONSE_BODY, EntityUtils.toString(response.getEntity(), "UTF-8"));
+		} finally {
+			client.getConnectionManager().shutdown();
+		}
+		assertNull(receivedContentEncoding);
+		OperationTrafficCounters counters = interceptor.getStatistics().getCounters("FindItem");
+		assertEquals(0, counters.getCompressedRequests());
+		assertEquals(0, counters.getCompressedResponses());
+		assertEquals(counters.getResponseBytes(), counters.getResponseWireBytes());
+		assertEquals(0, counters.getSavedBytes());
+	}
+	
+	@Test
+	public void operationFromSoapAction() {
+		assertEquals("FindItem", HttpTrafficStatistics.getOperation(FIND_ITEM_ACTION));
+		assertEquals("GetUserSettings", HttpTrafficStatistics.getOperation("http://schemas.microsoft.com/exchange/2010/Autodiscover/Autodiscover/GetUserSettings"));
+		assertEquals(HttpTrafficStatistics.UNKNOWN_OPERATION, HttpTrafficStatistics.getOperation(null));
+		assertEquals(HttpTrafficStatistics.UNKNOWN_OPERATION, HttpTrafficStatistics.getOperation("\"\""));
+	}
+	
+	@Test
+	public void operationAnnouncedBySendingThread() throws IOException {
+		CompressionInterceptor interceptor = new CompressionInterceptor();
+		DefaultHttpClient client = new DefaultHttpClient();
+		String previous = HttpTrafficStatistics.setCurrentOperation("GetUserOofSettingsRequest");
+		try {
+			HttpResponse response = post(interceptor, client, "<GetUserOofSettingsRequest/>");
+			EntityUtils.consume(response.getEntity());
+		} finally {
+			HttpTrafficStatistics.setCurrentOperation(previous);
+			client.getConnectionManager().shutdown();
+		}
+		assertNull(HttpTrafficStatistics.getCurrentOperation());
+		assertEquals(1, interceptor.getStatistics().getCounters("GetUserOofSettingsRequest").getRequests());
+		assertEquals(0, interceptor.getStatistics().getCounters("FindItem").getRequests());
+	}
+}
@@ -21,21 +21,57 @@
  */
 package com.microsoft.exchange;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.DefaultHttpClient;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.ws.client.core.WebServiceMessageCallback;
+import org.springframework.ws.client.core.WebServiceOperations;
 
+import com.microsoft.exchange.autodiscover.AbstractExchangeAutodiscoverService;
+import com.microsoft.exchange.autodiscover.ArrayOfUserResponse;
+import com.microsoft.exchange.autodiscover.AutodiscoverCacheRefresher;
 import com.microsoft.exchange.autodiscover.CompositeAutodiscoverServiceImpl;
+import com.microsoft.exchange.autodiscover.ErrorCode;
 import com.microsoft.exchange.autodiscover.ExchangeAutodiscoverService;
+import com.microsoft.exchange.autodiscover.GetUserSettingsRequestMessage;
+import com.microsoft.exchange.autodiscover.GetUserSettingsResponse;
+import com.microsoft.exchange.autodiscover.GetUserSettingsResponseMessage;
+import com.microsoft.exchange.autodiscover.ObjectFactory;
 import com.microsoft.exchange.autodiscover.PoxAutodiscoverServiceImpl;
 import com.microsoft.exchange.autodiscover.SoapAutodiscoverServiceImpl;
+import com.microsoft.exchange.autodiscover.StringSetting;
+import com.microsoft.exchange.autodiscover.User;
+import com.microsoft.exchange.autodiscover.UserResponse;
+import com.microsoft.exchange.autodiscover.UserSettings;
 
 /**
  * @author ctcudd
@@ -99,4 +135,290 @@ public class ExchangeAutodiscoverServiceTest {
 			log.info(p);
 		}
 	}
+	
+	/**
+	 * In parallel mode the first https endpoint to answer wins, the http endpoints are not probed during the head start, 
+	 * and the slower probes are cancelled.
+	 */
+	@Test
+	public void parallelProbesPreferHttps() throws Exception {
+		final List<String> probed = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		AbstractExchangeAutodiscoverService service = new AbstractExchangeAutodiscoverService() {
+			@Override
+			protected String getServiceSuffix() {
+				return "xml";
+			}
+			@Override
+			public String getAutodiscoverEndpoint(String email) {
+				return findAutodiscoverEndpoint(email);
+			}
+			@Override
+			protected String probe(String email, String uri) throws Exception {
+				probed.add(uri);
+				if(uri.startsWith("https://autodiscover.")) {
+					Thread.sleep(50);
+					return "https://ews.example.edu/ews/exchange.asmx";
+				}
+				try {
+					Thread.sleep(5000);
+				} catch (InterruptedException e) {
+					cancelled.countDown();
+					throw e;
+				}
+				return null;
+			}
+		};
+		service.setParallel(true);
+		service.setHttpsHeadStartMillis(2000);
+		try {
+			assertEquals("https://ews.example.edu/ews/exchange.asmx", service.getAutodiscoverEndpoint(TEST_ADDRESS));
+			assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+			for(String uri : probed) {
+				assertTrue(uri.startsWith("https://"));
+			}
+		} finally {
+			service.destroy();
+		}
+	}
+	
+	/**
+	 * The blocking HTTP request of a losing probe is aborted rather than left to run until its socket times out.
+	 */
+	@Test
+	public void parallelProbesAbortLosingRequests() throws Exception {
+		final ServerSocket silent = new ServerSocket(0);
+		final List<Socket> accepted = Collections.synchronizedList(new ArrayList<Socket>());
+		Thread acceptor = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while(true) {
+						accepted.add(silent.accept());
+					}
+				} catch (IOException e) {
+					// closed
+				}
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+		final DefaultHttpClient httpClient = new DefaultHttpClient();
+		final CountDownLatch aborted = new CountDownLatch(1);
+		AbstractExchangeAutodiscoverService service = new AbstractExchangeAutodiscoverService() {
+			@Override
+			protected String getServiceSuffix() {
+				return "xml";
+			}
+			@Override
+			public String getAutodiscoverEndpoint(String email) {
+				return findAutodiscoverEndpoint(email);
+			}
+			@Override
+			protected String probe(String email, String uri) throws Exception {
+				if(uri.startsWith("https://autodiscover.")) {
+					Thread.sleep(100);
+					return "https://ews.example.edu/ews/exchange.asmx";
+				}
+				if(!uri.startsWith("https://")) {
+					return null;
+				}
+				HttpGet request = new HttpGet("http://127.0.0.1:" + silent.getLocalPort() + "/autodiscover");
+				registerRequest(request);
+				try {
+					httpClient.execute(request);
+				} catch (IOException e) {
+					if(request.isAborted()) {
+						aborted.countDown();
+					}
+					throw e;
+				}
+				return null;
+			}
+		};
+		service.setParallel(true);
+		try {
+			assertEquals("https://ews.example.edu/ews/exchange.asmx", service.getAutodiscoverEndpoint(TEST_ADDRESS));
+			assertTrue(aborted.await(5, TimeUnit.SECONDS));
+		} finally {
+			service.destroy();
+			silent.close();
+			for(Socket socket : accepted) {
+				socket.close();
+			}
+			httpClient.getConnectionManager().shutdown();
+		}
+	}
+	
+	/**
+	 * The http endpoints are probed as soon as every https endpoint has failed, without waiting for the head start.
+	 */
+	@Test
+	public void parallelProbesFallBackToHttp() throws Exception {
+		AbstractExchangeAutodiscoverService service = new AbstractExchangeAutodiscoverService() {
+			@Override
+			protected String getServiceSuffix() {
+				return "xml";
+			}
+			@Override
+			public String getAutodiscoverEndpoint(String email) {
+				return findAutodiscoverEndpoint(email);
+			}
+			@Override
+			protected String probe(String email, String uri) throws Exception {
+				if(uri.startsWith("https://")) {
+					throw new IOException("connection refused");
+				}
+				return uri.startsWith("http://autodiscover.") ? null : "http://ews.example.edu/ews/exchange.asmx";
+			}
+		};
+		service.setParallel(true);
+		service.setHttpsHeadStartMillis(60000);
+		try {
+			long start = System.currentTimeMillis();
+			assertEquals("http://ews.example.edu/ews/exchange.asmx", service.getAutodiscoverEndpoint(TEST_ADDRESS));
+			assertTrue(System.currentTimeMillis() - start < 30000);
+		} finally {
+			service.destroy();
+		}
+	}
+	
+	@Test
+	public void knownDomainProbesRememberedEndpoint() throws Exception {
+		final List<String> probed = new ArrayList<String>();
+		final String redirected = "https://mail.example.edu/autodiscover/autodiscover.xml";
+		final boolean[] redirectedFails = new boolean[1];
+		AbstractExchangeAutodiscoverService service = new AbstractExchangeAutodiscoverService() {
+			@Override
+			protected String getServiceSuffix() {
+				return "xml";
+			}
+			@Override
+			public String getAutodiscoverEndpoint(String email) {
+				return findAutodiscoverEndpoint(email);
+			}
+			@Override
+			protected String probe(String email, String uri) throws Exception {
+				probed.add(uri);
+				if(uri.equals(redirected)) {
+					if(redirectedFails[0]) {
+						throw new IOException("connection refused");
+					}
+					return "https://ews.example.edu/ews/exchange.asmx";
+				}
+				if(uri.startsWith("https://autodiscover.")) {
+					setAnsweringEndpoint(redirected);
+					return "https://ews.example.edu/ews/exchange.asmx";
+				}
+				throw new IOException("connection refused");
+			}
+		};
+		assertEquals("https://ews.example.edu/ews/exchange.asmx", service.getAutodiscoverEndpoint("first@example.edu"));
+		assertEquals(2, probed.size());
+		assertEquals(redirected, service.getEndpointCache().get("xml", "EXAMPLE.edu"));
+		
+		probed.clear();
+		assertEquals("https://ews.example.edu/ews/exchange.asmx", service.getAutodiscoverEndpoint("second@example.edu"));
+		assertEquals(Collections.singletonList(redirected), probed);
+		
+		probed.clear();
+		redirectedFails[0] = true;
+		assertEquals("https://ews.example.edu/ews/exchange.asmx", service.getAutodiscoverEndpoint("third@example.edu"));
+		assertEquals(3, probed.size());
+		assertEquals(redirected, probed.get(0));
+	}
+	
+	@Test
+	public void soapBatchesUsersOfKnownDomain() {
+		final ObjectFactory objectFactory = new ObjectFactory();
+		WebServiceOperations operations = mock(WebServiceOperations.class);
+		when(operations.marshalSendAndReceive(anyString(), any(), any(WebServiceMessageCallback.class))).thenAnswer(new Answer<GetUserSettingsResponseMessage>() {
+			@Override
+			public GetUserSettingsResponseMessage answer(InvocationOnMock invocation) {
+				GetUserSettingsRequestMessage request = (GetUserSettingsRequestMessage) invocation.getArguments()[1];
+				ArrayOfUserResponse userResponses = objectFactory.createArrayOfUserResponse();
+				for(User user : request.getRequest().getValue().getUsers().getUsers()) {
+					UserResponse userResponse = objectFactory.createUserResponse();
+					if(user.getMailbox().startsWith("gone")) {
+						userResponse.setErrorCode(ErrorCode.INVALID_USER);
+						userResponse.setErrorMessage(objectFactory.createAutodiscoverResponseErrorMessage("Invalid user: "+user.getMailbox()));
+					} else {
+						userResponse.setErrorCode(ErrorCode.NO_ERROR);
+						StringSetting setting = objectFactory.createStringSetting();
+						setting.setName("ExternalEwsUrl");
+						setting.setValue(objectFactory.createStringSettingValue("https://ews.example.edu/ews/exchange.asmx"));
+						UserSettings settings = objectFactory.createUserSettings();
+						settings.getUserSettings().add(setting);
+						userResponse.setUserSettings(objectFactory.createUserResponseUserSettings(settings));
+					}
+					userResponses.getUserResponses().add(userResponse);
+				}
+				GetUserSettingsResponse response = objectFactory.createGetUserSettingsResponse();
+				response.setErrorCode(ErrorCode.NO_ERROR);
+				response.setUserResponses(objectFactory.createGetUserSettingsResponseUserResponses(userResponses));
+				GetUserSettingsResponseMessage message = objectFactory.createGetUserSettingsResponseMessage();
+				message.setResponse(objectFactory.createGetUserSettingsResponseMessageResponse(response));
+				return message;
+			}
+		});
+		SoapAutodiscoverServiceImpl service = new SoapAutodiscoverServiceImpl();
+		service.setWebServiceOperations(operations);
+		String endpoint = "https://autodiscover.example.edu/autodiscover/autodiscover.svc";
+		service.getEndpointCache().put("svc", "example.edu", endpoint);
+		
+		List<String> emails = new ArrayList<String>();
+		for(int i = 0; i < 150; i++) {
+			emails.add("user"+i+"@example.edu");
+		}
+		emails.add("gone@example.edu");
+		emails.add("not an address");
+		Map<String, String> ewsUrls = service.getAutodiscoverEndpoints(emails);
+		assertEquals(150, ewsUrls.size());
+		assertEquals("https://ews.example.edu/ews/exchange.asmx", ewsUrls.get("user149@example.edu"));
+		verify(operations, times(2)).marshalSendAndReceive(anyString(), any(), any(WebServiceMessageCallback.class));
+	}
+	
+	@Test
+	public void refreshAheadIsRateLimited() throws Exception {
+		Ehcache cache = mock(Ehcache.class);
+		//every entry expires in a minute
+		when(cache.getQuiet(any(Serializable.class))).thenReturn(new Element("key", "https://old.example.edu/ews/exchange.asmx", Boolean.FALSE, 0, 60));
+		AbstractExchangeAutodiscoverService service = new AbstractExchangeAutodiscoverService() {
+			@Override
+			protected String getServiceSuffix() {
+				return "xml";
+			}
+			@Override
+			public String getAutodiscoverEndpoint(String email) {
+				return "https://ews.example.edu/ews/exchange.asmx";
+			}
+			@Override
+			protected String probe(String email, String uri) {
+				return null;
+			}
+		};
+		AutodiscoverCacheRefresher refresher = new AutodiscoverCacheRefresher();
+		refresher.setAutodiscoverCache(cache);
+		refresher.setAutodiscoverServices(Collections.<ExchangeAutodiscoverService>singletonList(service));
+		refresher.setRefreshAheadMillis(2 * 60 * 1000L);
+		refresher.setMaxRefreshesPerSecond(20);
+		refresher.setMaxRefreshBurst(1);
+		try {
+			long start = System.currentTimeMillis();
+			for(int i = 0; i < 5; i++) {
+				refresher.accessed("user"+i+"@example.edu");
+				refresher.accessed("user"+i+"@example.edu");
+			}
+			long deadline = start + 10000;
+			while(refresher.getRefreshCount() < 5 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(5, refresher.getRefreshCount());
+			//one token up front, then one every 50ms
+			assertTrue(System.currentTimeMillis() - start >= 150);
+			verify(cache, times(5)).put(any(Element.class));
+		} finally {
+			refresher.destroy();
+		}
+	}
 }
@@ -0,0 +1,107 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import javax.xml.soap.MessageFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.ws.context.DefaultMessageContext;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
+
+import com.microsoft.exchange.impl.ExchangeDiagnostics;
+import com.microsoft.exchange.impl.ExchangeDiagnostics.CapturedExchange;
+
+/**
+ * Tests for {@link ExchangeDiagnostics}.
+ */
+public class ExchangeDiagnosticsTest {
+
+	private SaajSoapMessageFactory messageFactory;
+	
+	@Before
+	public void setUp() throws Exception {
+		messageFactory = new SaajSoapMessageFactory(MessageFactory.newInstance());
+	}
+	
+	private void exchange(ExchangeDiagnostics diagnostics, String operation) {
+		SoapMessage request = messageFactory.createWebServiceMessage();
+		request.setSoapAction("http://schemas.microsoft.com/exchange/services/2006/messages/" + operation);
+		MessageContext context = new DefaultMessageContext(request, messageFactory);
+		diagnostics.handleRequest(context);
+		context.getResponse();
+		diagnostics.handleResponse(context);
+	}
+	
+	@Test
+	public void disabledByDefault() {
+		ExchangeDiagnostics diagnostics = new ExchangeDiagnostics();
+		exchange(diagnostics, "FindItem");
+		assertTrue(diagnostics.getCapturedExchanges().isEmpty());
+		assertEquals("", diagnostics.dump());
+	}
+	
+	@Test
+	public void boundedBufferPerOperation() {
+		ExchangeDiagnostics diagnostics = new ExchangeDiagnostics();
+		diagnostics.setSampleRate(1);
+		diagnostics.setBufferSize(3);
+		for(int i = 0; i < 5; i++) {
+			exchange(diagnostics, "FindItem");
+		}
+		exchange(diagnostics, "GetItem");
+		
+		List<CapturedExchange> findItems = diagnostics.getCapturedExchanges("FindItem");
+		assertEquals(3, findItems.size());
+		assertEquals(1, diagnostics.getCapturedExchanges("GetItem").size());
+		CapturedExchange captured = findItems.get(0);
+		assertEquals("FindItem", captured.getOperation());
+		assertTrue(captured.getRequest().contains("Envelope"));
+		assertTrue(captured.getResponse().contains("Envelope"));
+		assertFalse(captured.isFault());
+		assertTrue(captured.getElapsedMillis() >= 0);
+		assertTrue(diagnostics.dump().contains("==== FindItem (3) ===="));
+		
+		diagnostics.clear();
+		assertTrue(diagnostics.getCapturedExchanges().isEmpty());
+	}
+	
+	@Test
+	public void truncatesPayload() {
+		ExchangeDiagnostics diagnostics = new ExchangeDiagnostics();
+		diagnostics.setSampleRate(1);
+		diagnostics.setMaxPayloadLength(10);
+		SoapMessage request = messageFactory.createWebServiceMessage();
+		MessageContext context = new DefaultMessageContext(request, messageFactory);
+		diagnostics.handleRequest(context);
+		CapturedExchange captured = diagnostics.getCapturedExchanges("unknown").get(0);
+		assertTrue(captured.getRequest().contains("characters truncated"));
+		assertNull(captured.getResponse());
+		assertEquals(-1, captured.getElapsedMillis());
+	}
+}
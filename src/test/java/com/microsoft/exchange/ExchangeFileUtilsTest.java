@@ -0,0 +1,84 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ExchangeFileUtils}.
+ */
+public class ExchangeFileUtilsTest {
+
+	private File directory;
+	
+	@Before
+	public void setUp() {
+		directory = new File(System.getProperty("java.io.tmpdir"), "ExchangeFileUtilsTest-" + System.nanoTime());
+	}
+	
+	@After
+	public void tearDown() {
+		FileUtils.deleteQuietly(directory);
+	}
+	
+	@Test
+	public void replaceFile() throws Exception {
+		File file = new File(directory, "nested/content");
+		ExchangeFileUtils.replaceFile(file, "first", "UTF-8");
+		ExchangeFileUtils.replaceFile(file, "second", "UTF-8");
+		assertEquals("second", FileUtils.readFileToString(file, "UTF-8"));
+		//neither the temporary file nor the backup is left behind
+		assertEquals(1, file.getParentFile().list().length);
+	}
+	
+	/**
+	 * A crash between moving the previous content aside and renaming the new content in leaves only the backup.
+	 */
+	@Test
+	public void recoverFile() throws Exception {
+		File file = new File(directory, "content");
+		assertNull(ExchangeFileUtils.recoverFile(file));
+		ExchangeFileUtils.replaceFile(file, "previous", "UTF-8");
+		assertTrue(file.renameTo(ExchangeFileUtils.getBackupFile(file)));
+		
+		assertEquals(file, ExchangeFileUtils.recoverFile(file));
+		assertEquals("previous", FileUtils.readFileToString(file, "UTF-8"));
+		assertFalse(ExchangeFileUtils.getBackupFile(file).exists());
+	}
+	
+	@Test
+	public void deleteFile() throws Exception {
+		File file = new File(directory, "content");
+		assertTrue(ExchangeFileUtils.deleteFile(file));
+		ExchangeFileUtils.replaceFile(file, "content", "UTF-8");
+		FileUtils.writeStringToFile(ExchangeFileUtils.getBackupFile(file), "stale", "UTF-8");
+		assertTrue(ExchangeFileUtils.deleteFile(file));
+		assertEquals(0, directory.list().length);
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.microsoft.exchange.exception.ExchangeWebServicesRuntimeException;
+import com.microsoft.exchange.impl.ExchangeWebServicesFutureFacade;
+import com.microsoft.exchange.impl.ThreadLocalImpersonationConnectingSIDSourceImpl;
+import com.microsoft.exchange.messages.FindItem;
+import com.microsoft.exchange.messages.FindItemResponse;
+import com.microsoft.exchange.messages.GetItem;
+import com.microsoft.exchange.types.ConnectingSIDType;
+
+/**
+ * Tests for {@link ExchangeWebServicesFutureFacade}.
+ */
+public class ExchangeWebServicesFutureFacadeTest {
+
+	private ExchangeWebServices ews;
+	private ExchangeWebServicesFutureFacade facade;
+	
+	@Before
+	public void setUp() throws Exception {
+		ews = mock(ExchangeWebServices.class);
+		facade = new ExchangeWebServicesFutureFacade();
+		facade.setExchangeWebServices(ews);
+		facade.setPoolSize(1);
+		facade.afterPropertiesSet();
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		facade.destroy();
+		ThreadLocalImpersonationConnectingSIDSourceImpl.clear();
+	}
+	
+	/**
+	 * The worker thread must see the callers {@link ConnectingSIDType} so the impersonation header is applied.
+	 */
+	@Test
+	public void findItemAsync_propagatesConnectingSID() throws Exception {
+		final FindItemResponse response = new FindItemResponse();
+		final ConnectingSIDType[] seen = new ConnectingSIDType[1];
+		when(ews.findItem(any(FindItem.class))).thenAnswer(new Answer<FindItemResponse>() {
+			@Override
+			public FindItemResponse answer(InvocationOnMock invocation) {
+				seen[0] = ThreadLocalImpersonationConnectingSIDSourceImpl.get();
+				return response;
+			}
+		});
+		ConnectingSIDType sid = new ConnectingSIDType();
+		sid.setPrincipalName("someone@example.edu");
+		ThreadLocalImpersonationConnectingSIDSourceImpl.setConnectingSID(sid);
+		
+		Future<FindItemResponse> future = facade.findItemAsync(new FindItem());
+		assertSame(response, future.get());
+		assertEquals("someone@example.edu", seen[0].getPrincipalName());
+		
+		//the worker thread should not retain the context once the call completes
+		ThreadLocalImpersonationConnectingSIDSourceImpl.clear();
+		doAnswer(new Answer<FindItemResponse>() {
+			@Override
+			public FindItemResponse answer(InvocationOnMock invocation) {
+				assertNull(ThreadLocalImpersonationConnectingSIDSourceImpl.get());
+				return response;
+			}
+		}).when(ews).findItem(any(FindItem.class));
+		assertSame(response, facade.findItemAsync(new FindItem()).get());
+	}
+	
+	@Test(expected=ExchangeWebServicesRuntimeException.class)
+	public void getItemAsync_failureSurfacesThroughFuture() throws Throwable {
+		when(ews.getItem(any(GetItem.class))).thenThrow(new ExchangeWebServicesRuntimeException("boom"));
+		try {
+			facade.getItemAsync(new GetItem()).get();
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.microsoft.exchange.autodiscover.AutodiscoverEndpointCache;
+import com.microsoft.exchange.autodiscover.FileAutodiscoverEndpointStore;
+
+/**
+ * Tests for {@link FileAutodiscoverEndpointStore}.
+ */
+public class FileAutodiscoverEndpointStoreTest {
+
+	private File directory;
+	
+	@Before
+	public void setUp() {
+		directory = new File(System.getProperty("java.io.tmpdir"), "FileAutodiscoverEndpointStoreTest-" + System.nanoTime());
+	}
+	
+	@After
+	public void tearDown() {
+		FileUtils.deleteQuietly(directory);
+	}
+	
+	@Test
+	public void corruptAndStaleEntriesAreSkipped() throws IOException {
+		FileAutodiscoverEndpointStore store = new FileAutodiscoverEndpointStore();
+		store.setFile(new File(directory, "endpoints"));
+		store.setMaxStalenessMillis(60 * 60 * 1000L);
+		long now = System.currentTimeMillis();
+		Map<String, Pair<String, Long>> entries = new HashMap<String, Pair<String, Long>>();
+		entries.put("xml:example.edu", Pair.of("https://mail.example.edu/autodiscover/autodiscover.xml", now));
+		entries.put("svc:example.edu", Pair.of("https://autodiscover.example.edu/autodiscover/autodiscover.svc", now));
+		entries.put("xml:stale.edu", Pair.of("https://stale.edu/autodiscover/autodiscover.xml", now - 2 * 60 * 60 * 1000L));
+		store.save(entries);
+		
+		//flip one character of an endpoint, its checksum no longer matches
+		List<String> lines = new ArrayList<String>(Arrays.asList(StringUtils.split(FileUtils.readFileToString(store.getFile(), "UTF-8"), "\r\n")));
+		for(int i = 0; i < lines.size(); i++) {
+			if(lines.get(i).startsWith("svc:")) {
+				lines.set(i, lines.get(i).replace("autodiscover.svc", "autodiscover.svx"));
+			}
+		}
+		FileUtils.writeLines(store.getFile(), "UTF-8", lines);
+		
+		Map<String, Pair<String, Long>> loaded = store.load();
+		assertEquals(1, loaded.size());
+		assertEquals(Pair.of("https://mail.example.edu/autodiscover/autodiscover.xml", now), loaded.get("xml:example.edu"));
+		
+		//another version is ignored entirely
+		lines.set(0, "ews-autodiscover-endpoints/0");
+		FileUtils.writeLines(store.getFile(), "UTF-8", lines);
+		assertTrue(store.load().isEmpty());
+	}
+	
+	/**
+	 * A save interrupted between moving the previous file aside and renaming the new one in leaves only the backup, it is loaded instead.
+	 */
+	@Test
+	public void interruptedSaveIsRecovered() {
+		FileAutodiscoverEndpointStore store = new FileAutodiscoverEndpointStore();
+		store.setFile(new File(directory, "endpoints"));
+		Map<String, Pair<String, Long>> entries = new HashMap<String, Pair<String, Long>>();
+		entries.put("xml:example.edu", Pair.of("https://mail.example.edu/autodiscover/autodiscover.xml", System.currentTimeMillis()));
+		store.save(entries);
+		assertTrue(store.getFile().renameTo(ExchangeFileUtils.getBackupFile(store.getFile())));
+		
+		assertEquals(entries, store.load());
+		assertTrue(store.getFile().isFile());
+	}
+	
+	/**
+	 * Changes are written in the background, those made within the save delay share one write.
+	 */
+	@Test
+	public void changesAreCoalesced() throws InterruptedException {
+		final AtomicInteger saves = new AtomicInteger();
+		FileAutodiscoverEndpointStore store = new FileAutodiscoverEndpointStore() {
+			@Override
+			public synchronized void save(Map<String, Pair<String, Long>> entries) {
+				super.save(entries);
+				saves.incrementAndGet();
+			}
+		};
+		store.setFile(new File(directory, "endpoints"));
+		AutodiscoverEndpointCache cache = new AutodiscoverEndpointCache();
+		cache.setStore(store);
+		cache.setSaveDelayMillis(200);
+		cache.afterPropertiesSet();
+		assertTrue(cache.awaitLoaded(10, TimeUnit.SECONDS));
+		for(int i = 0; i < 20; i++) {
+			cache.put("xml", "domain" + i + ".edu", "https://domain" + i + ".edu/autodiscover/autodiscover.xml");
+		}
+		assertEquals(0, saves.get());
+		long deadline = System.currentTimeMillis() + 10000;
+		while(saves.get() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, saves.get());
+		assertEquals(20, store.load().size());
+		cache.destroy();
+		assertEquals(1, saves.get());
+	}
+	
+	/**
+	 * A store without a file, e.g. wired with an unset autodiscover.endpointStore.file, keeps the entries in memory only.
+	 */
+	@Test
+	public void storeWithoutFileIsNotPersisted() throws InterruptedException {
+		AutodiscoverEndpointCache cache = new AutodiscoverEndpointCache();
+		cache.setStore(new FileAutodiscoverEndpointStore());
+		cache.setSaveDelayMillis(0);
+		cache.afterPropertiesSet();
+		assertTrue(cache.awaitLoaded(10, TimeUnit.SECONDS));
+		cache.put("xml", "example.edu", "https://mail.example.edu/autodiscover/autodiscover.xml");
+		assertEquals("https://mail.example.edu/autodiscover/autodiscover.xml", cache.get("xml", "example.edu"));
+		cache.destroy();
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void unresolvedPlaceholderIsRejected() {
+		FileAutodiscoverEndpointStore store = new FileAutodiscoverEndpointStore();
+		store.setFile(new File(directory, "${autodiscover.endpointStore.file}"));
+		AutodiscoverEndpointCache cache = new AutodiscoverEndpointCache();
+		cache.setStore(store);
+		cache.afterPropertiesSet();
+	}
+	
+	@Test
+	public void cacheSurvivesRestart() throws InterruptedException {
+		FileAutodiscoverEndpointStore store = new FileAutodiscoverEndpointStore();
+		store.setFile(new File(directory, "endpoints"));
+		AutodiscoverEndpointCache cache = new AutodiscoverEndpointCache();
+		cache.setStore(store);
+		cache.afterPropertiesSet();
+		assertTrue(cache.awaitLoaded(10, TimeUnit.SECONDS));
+		cache.put("xml", "example.edu", "https://mail.example.edu/autodiscover/autodiscover.xml");
+		cache.put("xml", "other.edu", "https://other.edu/autodiscover/autodiscover.xml");
+		cache.invalidate("xml", "other.edu");
+		cache.destroy();
+		
+		AutodiscoverEndpointCache restarted = new AutodiscoverEndpointCache();
+		restarted.setStore(store);
+		restarted.afterPropertiesSet();
+		assertTrue(restarted.awaitLoaded(10, TimeUnit.SECONDS));
+		assertEquals("https://mail.example.edu/autodiscover/autodiscover.xml", restarted.get("xml", "example.edu"));
+		assertNull(restarted.get("xml", "other.edu"));
+		assertNull(restarted.get("svc", "example.edu"));
+	}
+}
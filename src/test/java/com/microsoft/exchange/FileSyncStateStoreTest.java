@@ -0,0 +1,96 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.microsoft.exchange.impl.FileSyncStateStore;
+
+/**
+ * Tests for {@link FileSyncStateStore}.
+ */
+public class FileSyncStateStoreTest {
+
+	private File directory;
+	
+	@Before
+	public void setUp() {
+		directory = new File(System.getProperty("java.io.tmpdir"), "FileSyncStateStoreTest-" + System.nanoTime());
+	}
+	
+	@After
+	public void tearDown() {
+		FileUtils.deleteQuietly(directory);
+	}
+	
+	@Test
+	public void putGetRemove() {
+		FileSyncStateStore store = new FileSyncStateStore();
+		store.setDirectory(directory);
+		String key = "someone@example.org|AAMkAGI2TG93AAA=/+";
+		assertNull(store.getSyncState(key));
+		
+		store.putSyncState(key, "H4sIAAAAAAAEAO29B2AcSZYlJi9tynt/SvVK1+B0");
+		store.putSyncState(key, "H4sIAAAAAAAEAO29B2AcSZYlJi9tynt/SvVK1+B1");
+		
+		//a new instance reads the state written by the previous one
+		FileSyncStateStore reopened = new FileSyncStateStore();
+		reopened.setDirectory(directory);
+		assertEquals("H4sIAAAAAAAEAO29B2AcSZYlJi9tynt/SvVK1+B1", reopened.getSyncState(key));
+		assertNull(reopened.getSyncState("other@example.org|calendar"));
+		assertEquals(1, directory.list().length);
+		
+		reopened.removeSyncState(key);
+		assertNull(store.getSyncState(key));
+		assertEquals(0, directory.list().length);
+	}
+	
+	/**
+	 * A crash after the previous state was moved aside, but before the new one was renamed in, leaves only the backup: it is read instead.
+	 */
+	@Test
+	public void recoversFromBackup() {
+		FileSyncStateStore store = new FileSyncStateStore();
+		store.setDirectory(directory);
+		String key = "someone@example.org|calendar";
+		store.putSyncState(key, "state-1");
+		File file = directory.listFiles()[0];
+		assertTrue(file.renameTo(new File(directory, file.getName() + ".bak")));
+		
+		assertEquals("state-1", store.getSyncState(key));
+		assertTrue(file.isFile());
+		store.putSyncState(key, "state-2");
+		assertEquals("state-2", store.getSyncState(key));
+		assertEquals(1, directory.list().length);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void directoryIsRequired() {
+		new FileSyncStateStore().getSyncState("someone@example.org|calendar");
+	}
+}
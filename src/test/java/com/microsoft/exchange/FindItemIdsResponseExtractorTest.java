@@ -0,0 +1,140 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+import org.springframework.util.xml.StaxUtils;
+import org.xml.sax.InputSource;
+
+import com.microsoft.exchange.exception.ExchangeExceededFindCountLimitRuntimeException;
+import com.microsoft.exchange.impl.ExchangeResponseUtilsImpl;
+import com.microsoft.exchange.impl.FindItemIdsResponseExtractor;
+import com.microsoft.exchange.messages.FindItemResponse;
+import com.microsoft.exchange.messages.ResponseCodeType;
+import com.microsoft.exchange.model.FindItemIdsResult;
+import com.microsoft.exchange.types.ItemIdType;
+
+/**
+ * Tests for {@link FindItemIdsResponseExtractor}.
+ */
+public class FindItemIdsResponseExtractorTest {
+
+	private static final String PAGED_RESPONSE = "<m:FindItemResponse xmlns:m=\"http://schemas.microsoft.com/exchange/services/2006/messages\" xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\">"
+			+ "<m:ResponseMessages><m:FindItemResponseMessage ResponseClass=\"Success\"><m:ResponseCode>NoError</m:ResponseCode>"
+			+ "<m:RootFolder IndexedPagingOffset=\"3\" TotalItemsInView=\"7\" IncludesLastItemInRange=\"false\"><t:Items>"
+			+ "<t:CalendarItem><t:ItemId Id=\"id1\" ChangeKey=\"ck1\"/></t:CalendarItem>"
+			+ "<t:Message><t:ItemId Id=\"id2\" ChangeKey=\"ck2\"/></t:Message>"
+			+ "<t:CalendarItem><t:ItemId Id=\"id3\" ChangeKey=\"ck3\"/></t:CalendarItem>"
+			+ "</t:Items></m:RootFolder></m:FindItemResponseMessage></m:ResponseMessages></m:FindItemResponse>";
+	
+	private static final String BUSY_RESPONSE = "<m:FindItemResponse xmlns:m=\"http://schemas.microsoft.com/exchange/services/2006/messages\" xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\">"
+			+ "<m:ResponseMessages><m:FindItemResponseMessage ResponseClass=\"Error\"><m:MessageText>The server cannot service this request right now.</m:MessageText>"
+			+ "<m:ResponseCode>ErrorServerBusy</m:ResponseCode><m:DescriptiveLinkKey>0</m:DescriptiveLinkKey>"
+			+ "<m:MessageXml><t:Value Name=\"BackOffMilliseconds\">2500</t:Value></m:MessageXml>"
+			+ "</m:FindItemResponseMessage></m:ResponseMessages></m:FindItemResponse>";
+	
+	private final FindItemIdsResponseExtractor extractor = new FindItemIdsResponseExtractor();
+	
+	private List<Source> sources(String xml) throws Exception {
+		List<Source> sources = new ArrayList<Source>();
+		sources.add(new StreamSource(new StringReader(xml)));
+		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+		dbf.setNamespaceAware(true);
+		sources.add(new DOMSource(dbf.newDocumentBuilder().parse(new InputSource(new StringReader(xml))).getDocumentElement()));
+		sources.add(StaxUtils.createStaxSource(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml))));
+		return sources;
+	}
+	
+	@Test
+	public void pagedResponse() throws Exception {
+		for(Source source : sources(PAGED_RESPONSE)) {
+			FindItemIdsResult result = extractor.extract(source);
+			assertTrue(result.isSuccess());
+			assertFalse(result.isIncludesLastItemInRange());
+			assertEquals(3, result.getIndexedPagingOffset());
+			assertEquals(3, result.getNextOffset());
+			assertEquals(Integer.valueOf(7), result.getTotalItemsInView());
+			List<ItemIdType> ids = new ArrayList<ItemIdType>(result.getItemIds());
+			assertEquals(3, ids.size());
+			assertEquals("id1", ids.get(0).getId());
+			assertEquals("ck1", ids.get(0).getChangeKey());
+			assertEquals("id3", ids.get(2).getId());
+		}
+	}
+	
+	@Test
+	public void throttledResponse() throws Exception {
+		for(Source source : sources(BUSY_RESPONSE)) {
+			FindItemIdsResult result = extractor.extract(source);
+			assertFalse(result.isSuccess());
+			assertEquals(ResponseCodeType.ERROR_SERVER_BUSY, result.getResponseCode());
+			assertEquals(2500, result.getBackOffMillis());
+			assertEquals("The server cannot service this request right now.", result.getMessageText());
+			assertTrue(result.getItemIds().isEmpty());
+		}
+	}
+	
+	@Test
+	public void matchesJaxbParsing() throws Exception {
+		byte[] example = IOUtils.toByteArray(getClass().getResourceAsStream("/examples/findItemResponse-allProperties.xml"));
+		JAXBContext jaxbContext = JAXBContext.newInstance("com.microsoft.exchange.messages:com.microsoft.exchange.types");
+		FindItemResponse response = (FindItemResponse) jaxbContext.createUnmarshaller().unmarshal(new ByteArrayInputStream(example));
+		Pair<Set<ItemIdType>, Integer> expected = new ExchangeResponseUtilsImpl().parseFindItemIdResponse(response);
+		
+		InputStream in = new ByteArrayInputStream(example);
+		FindItemIdsResult result = extractor.extract(new StreamSource(in));
+		Pair<Set<ItemIdType>, Integer> actual = new ExchangeResponseUtilsImpl().parseFindItemIdResponse(result);
+		assertFalse(expected.getLeft().isEmpty());
+		assertEquals(expected.getLeft(), actual.getLeft());
+		assertEquals(expected.getRight(), actual.getRight());
+	}
+	
+	@Test
+	public void errorResponseCodeThrows() {
+		FindItemIdsResult result = new FindItemIdsResult();
+		result.setResponseCode(ResponseCodeType.ERROR_EXCEEDED_FIND_COUNT_LIMIT);
+		try {
+			new ExchangeResponseUtilsImpl().parseFindItemIdResponse(result);
+			fail("expected ExchangeExceededFindCountLimitRuntimeException");
+		} catch (ExchangeExceededFindCountLimitRuntimeException e) {
+			assertEquals(ResponseCodeType.ERROR_EXCEEDED_FIND_COUNT_LIMIT.value(), e.getResponseCode());
+		}
+	}
+}
@@ -0,0 +1,297 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+import com.microsoft.exchange.impl.BaseExchangeCalendarDataDao;
+import com.microsoft.exchange.impl.ExchangeResponseUtilsImpl;
+import com.microsoft.exchange.impl.FolderHierarchyCache;
+import com.microsoft.exchange.impl.RetryExecutor;
+import com.microsoft.exchange.messages.ArrayOfResponseMessagesType;
+import com.microsoft.exchange.messages.FolderInfoResponseMessageType;
+import com.microsoft.exchange.messages.GetFolder;
+import com.microsoft.exchange.messages.GetFolderResponse;
+import com.microsoft.exchange.messages.ObjectFactory;
+import com.microsoft.exchange.messages.ResponseCodeType;
+import com.microsoft.exchange.messages.SyncFolderHierarchy;
+import com.microsoft.exchange.messages.SyncFolderHierarchyResponse;
+import com.microsoft.exchange.messages.SyncFolderHierarchyResponseMessageType;
+import com.microsoft.exchange.model.SyncFolderHierarchyResult;
+import com.microsoft.exchange.types.ArrayOfFoldersType;
+import com.microsoft.exchange.types.BaseFolderType;
+import com.microsoft.exchange.types.CalendarFolderType;
+import com.microsoft.exchange.types.FolderIdType;
+import com.microsoft.exchange.types.FolderType;
+import com.microsoft.exchange.types.ResponseClassType;
+import com.microsoft.exchange.types.SyncFolderHierarchyChangesType;
+import com.microsoft.exchange.types.SyncFolderHierarchyCreateOrUpdateType;
+import com.microsoft.exchange.types.SyncFolderHierarchyDeleteType;
+
+/**
+ * Tests for {@link FolderHierarchyCache} and its use by {@link BaseExchangeCalendarDataDao}.
+ */
+public class FolderHierarchyCacheTest {
+
+	private static FolderIdType folderId(String id) {
+		FolderIdType folderId = new FolderIdType();
+		folderId.setId(id);
+		return folderId;
+	}
+	
+	private static BaseFolderType folder(BaseFolderType folder, String id, String parentId, String displayName) {
+		folder.setFolderId(folderId(id));
+		folder.setParentFolderId(folderId(parentId));
+		folder.setDisplayName(displayName);
+		return folder;
+	}
+	
+	@Test
+	public void mailboxFolders_indexes() {
+		FolderHierarchyCache.MailboxFolders folders = new FolderHierarchyCache.MailboxFolders();
+		SyncFolderHierarchyResult initial = new SyncFolderHierarchyResult();
+		initial.setSyncState("s1");
+		initial.getCreatedFolders().add(folder(new CalendarFolderType(), "cal", "root", "Calendar"));
+		initial.getCreatedFolders().add(folder(new CalendarFolderType(), "a", "cal", "Team"));
+		initial.getCreatedFolders().add(folder(new CalendarFolderType(), "b", "a", "Rooms"));
+		initial.getCreatedFolders().add(folder(new FolderType(), "inbox", "root", "Inbox"));
+		folders.apply(initial, true);
+		
+		assertEquals("s1", folders.getSyncState());
+		assertEquals(2, folders.getDescendants("cal").size());
+		assertEquals("a", folders.getFoldersByDisplayName("Team").get(0).getFolderId().getId());
+		
+		SyncFolderHierarchyResult changes = new SyncFolderHierarchyResult();
+		changes.setSyncState("s2");
+		changes.getUpdatedFolders().add(folder(new CalendarFolderType(), "a", "cal", "Project"));
+		changes.getDeletedFolderIds().add(folderId("b"));
+		folders.apply(changes, false);
+		
+		assertTrue(folders.getFoldersByDisplayName("Team").isEmpty());
+		assertEquals("Project", folders.getFolder("a").getDisplayName());
+		assertNull(folders.getFolder("b"));
+		assertEquals(1, folders.getDescendants("cal").size());
+		assertEquals(3, folders.size());
+	}
+	
+	@Test
+	public void maxMailboxes_evictsLeastRecentlyUsed() {
+		FolderHierarchyCache cache = new FolderHierarchyCache();
+		cache.setMaxMailboxes(2);
+		FolderHierarchyCache.MailboxFolders a = cache.getMailboxFolders("a@example.org");
+		cache.getMailboxFolders("b@example.org");
+		assertTrue(a == cache.getMailboxFolders("A@example.org"));
+		cache.getMailboxFolders("c@example.org");
+		assertEquals(2, cache.size());
+		assertTrue(a == cache.getMailboxFolders("a@example.org"));
+	}
+	
+	private static SyncFolderHierarchyResponse syncResponse(String syncState, List<BaseFolderType> creates, List<String> deletes) {
+		com.microsoft.exchange.types.ObjectFactory types = new com.microsoft.exchange.types.ObjectFactory();
+		SyncFolderHierarchyChangesType changes = new SyncFolderHierarchyChangesType();
+		for(BaseFolderType folder : creates) {
+			SyncFolderHierarchyCreateOrUpdateType create = new SyncFolderHierarchyCreateOrUpdateType();
+			if(folder instanceof CalendarFolderType) {
+				create.setCalendarFolder((CalendarFolderType) folder);
+			}else {
+				create.setFolder((FolderType) folder);
+			}
+			changes.getCreatesAndUpdatesAndDeletes().add(types.createSyncFolderHierarchyChangesTypeCreate(create));
+		}
+		for(String id : deletes) {
+			SyncFolderHierarchyDeleteType delete = new SyncFolderHierarchyDeleteType();
+			delete.setFolderId(folderId(id));
+			changes.getCreatesAndUpdatesAndDeletes().add(types.createSyncFolderHierarchyChangesTypeDelete(delete));
+		}
+		SyncFolderHierarchyResponseMessageType message = new SyncFolderHierarchyResponseMessageType();
+		message.setResponseClass(ResponseClassType.SUCCESS);
+		message.setResponseCode(ResponseCodeType.NO_ERROR);
+		message.setSyncState(syncState);
+		message.setIncludesLastFolderInRange(true);
+		message.setChanges(changes);
+		SyncFolderHierarchyResponse response = new SyncFolderHierarchyResponse();
+		response.setResponseMessages(new ArrayOfResponseMessagesType());
+		response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().add(
+				new ObjectFactory().createArrayOfResponseMessagesTypeSyncFolderHierarchyResponseMessage(message));
+		return response;
+	}
+	
+	private static GetFolderResponse calendarFolderResponse() {
+		FolderInfoResponseMessageType message = new FolderInfoResponseMessageType();
+		message.setResponseClass(ResponseClassType.SUCCESS);
+		message.setResponseCode(ResponseCodeType.NO_ERROR);
+		message.setFolders(new ArrayOfFoldersType());
+		message.getFolders().getFoldersAndCalendarFoldersAndContactsFolders().add(folder(new CalendarFolderType(), "cal", "root", "Calendar"));
+		GetFolderResponse response = new GetFolderResponse();
+		response.setResponseMessages(new ArrayOfResponseMessagesType());
+		response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().add(
+				new ObjectFactory().createArrayOfResponseMessagesTypeGetFolderResponseMessage(message));
+		return response;
+	}
+	
+	/**
+	 * Folder lookups are answered from the cache, the hierarchy is synchronized once and then incrementally after a folder is deleted.
+	 */
+	@Test
+	public void dao_usesCache() {
+		BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao();
+		assertNull(dao.getFolderHierarchyCache());
+		dao.setFolderHierarchyCache(new FolderHierarchyCache());
+		dao.setRequestFactory(new ExchangeRequestFactory());
+		dao.setResponseUtils(new ExchangeResponseUtilsImpl());
+		RetryExecutor retryExecutor = new RetryExecutor();
+		dao.setRetryExecutor(retryExecutor);
+		
+		final List<String> syncStates = Collections.synchronizedList(new ArrayList<String>());
+		final List<GetFolder> getFolders = Collections.synchronizedList(new ArrayList<GetFolder>());
+		ExchangeWebServices webServices = mock(ExchangeWebServices.class);
+		when(webServices.syncFolderHierarchy(any(SyncFolderHierarchy.class))).thenAnswer(new Answer<SyncFolderHierarchyResponse>() {
+			@Override
+			public SyncFolderHierarchyResponse answer(InvocationOnMock invocation) throws Throwable {
+				String syncState = ((SyncFolderHierarchy) invocation.getArguments()[0]).getSyncState();
+				syncStates.add(syncState);
+				if(null == syncState) {
+					return syncResponse("s1", Arrays.asList(
+							folder(new CalendarFolderType(), "cal", "root", "Calendar"),
+							folder(new CalendarFolderType(), "team", "cal", "Team"),
+							folder(new FolderType(), "notes", "cal", "Notes"),
+							folder(new CalendarFolderType(), "other", "root", "Team")), Collections.<String>emptyList());
+				}
+				return syncResponse("s2", Collections.<BaseFolderType>emptyList(), Collections.singletonList("team"));
+			}
+		});
+		when(webServices.getFolder(any(GetFolder.class))).thenAnswer(new Answer<GetFolderResponse>() {
+			@Override
+			public GetFolderResponse answer(InvocationOnMock invocation) throws Throwable {
+				getFolders.add((GetFolder) invocation.getArguments()[0]);
+				return calendarFolderResponse();
+			}
+		});
+		dao.setWebServices(webServices);
+		try {
+			String upn = "someone@example.org";
+			Map<String, String> calendars = dao.getCalendarFolderMap(upn);
+			assertEquals(new HashSet<String>(Arrays.asList("cal", "team")), calendars.keySet());
+			assertEquals("team", dao.getCalendarFolderId(upn, "Team").getId());
+			dao.getAllCalendarFolders(upn);
+			assertEquals(Collections.singletonList((String) null), syncStates);
+			assertEquals(1, getFolders.size());
+			
+			dao.getFolderHierarchyCache().invalidate(upn);
+			Set<BaseFolderType> folders = dao.getAllCalendarFolders(upn);
+			assertEquals(1, folders.size());
+			assertEquals(Arrays.asList(null, "s1"), syncStates);
+			assertEquals(1, getFolders.size());
+			assertFalse(dao.getCalendarFolderMap(upn).containsKey("team"));
+			try {
+				dao.getCalendarFolderId(upn, "Team");
+				fail("'other' is not below the calendar folder");
+			} catch (ExchangeRuntimeException e) {
+				// expected
+			}
+			assertEquals(Arrays.asList(null, "s1"), syncStates);
+			assertEquals(1, getFolders.size());
+		} finally {
+			retryExecutor.destroy();
+		}
+	}
+	
+	/**
+	 * While an expired mailbox is synchronized again other lookups are answered from the previous snapshot.
+	 */
+	@Test
+	public void dao_servesSnapshotWhileSyncing() throws Exception {
+		final BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao();
+		FolderHierarchyCache cache = new FolderHierarchyCache();
+		cache.setRefreshIntervalMillis(0);
+		dao.setFolderHierarchyCache(cache);
+		dao.setRequestFactory(new ExchangeRequestFactory());
+		dao.setResponseUtils(new ExchangeResponseUtilsImpl());
+		RetryExecutor retryExecutor = new RetryExecutor();
+		dao.setRetryExecutor(retryExecutor);
+		
+		final AtomicInteger syncs = new AtomicInteger();
+		final CountDownLatch syncing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		ExchangeWebServices webServices = mock(ExchangeWebServices.class);
+		when(webServices.syncFolderHierarchy(any(SyncFolderHierarchy.class))).thenAnswer(new Answer<SyncFolderHierarchyResponse>() {
+			@Override
+			public SyncFolderHierarchyResponse answer(InvocationOnMock invocation) throws Throwable {
+				if(syncs.incrementAndGet() > 1) {
+					syncing.countDown();
+					release.await(5, TimeUnit.SECONDS);
+					return syncResponse("s2", Collections.<BaseFolderType>emptyList(), Collections.<String>emptyList());
+				}
+				return syncResponse("s1", Arrays.asList(
+						folder(new CalendarFolderType(), "cal", "root", "Calendar"),
+						folder(new CalendarFolderType(), "team", "cal", "Team")), Collections.<String>emptyList());
+			}
+		});
+		when(webServices.getFolder(any(GetFolder.class))).thenReturn(calendarFolderResponse());
+		dao.setWebServices(webServices);
+		final String upn = "someone@example.org";
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertEquals(new HashSet<String>(Arrays.asList("cal", "team")), dao.getCalendarFolderMap(upn).keySet());
+			
+			Future<Map<String, String>> refreshing = executor.submit(new Callable<Map<String, String>>() {
+				@Override
+				public Map<String, String> call() {
+					return dao.getCalendarFolderMap(upn);
+				}
+			});
+			assertTrue(syncing.await(5, TimeUnit.SECONDS));
+			assertEquals(new HashSet<String>(Arrays.asList("cal", "team")), dao.getCalendarFolderMap(upn).keySet());
+			release.countDown();
+			assertEquals(2, refreshing.get(5, TimeUnit.SECONDS).size());
+			assertEquals(2, syncs.get());
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+			retryExecutor.destroy();
+		}
+	}
+}
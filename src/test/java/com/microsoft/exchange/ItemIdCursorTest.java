@@ -0,0 +1,154 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
+import org.junit.Test;
+
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+import com.microsoft.exchange.impl.ItemIdCursor;
+import com.microsoft.exchange.types.ItemIdType;
+
+/**
+ * Tests for {@link ItemIdCursor}.
+ */
+public class ItemIdCursorTest {
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+	
+	private static Pair<Set<ItemIdType>, Integer> page(int offset, int size, int total) {
+		Set<ItemIdType> ids = new LinkedHashSet<ItemIdType>();
+		for(int i = offset; i < Math.min(offset + size, total); i++) {
+			ItemIdType id = new ItemIdType();
+			id.setId("id-"+i);
+			ids.add(id);
+		}
+		int next = offset + size < total ? offset + size : -1;
+		return Pair.of(ids, next);
+	}
+	
+	/**
+	 * Serves pages of {@code size} from {@code total} items, recording the requested offsets.
+	 */
+	private class FakePageSource implements ItemIdCursor.PageSource {
+		final List<Integer> offsets = new ArrayList<Integer>();
+		final int size;
+		final int total;
+		final int failAt;
+		FakePageSource(int size, int total, int failAt) {
+			this.size = size;
+			this.total = total;
+			this.failAt = failAt;
+		}
+		@Override
+		public Future<Pair<Set<ItemIdType>, Integer>> fetch(final int offset) {
+			offsets.add(offset);
+			return executor.submit(new Callable<Pair<Set<ItemIdType>, Integer>>() {
+				@Override
+				public Pair<Set<ItemIdType>, Integer> call() {
+					if(offset == failAt) {
+						throw new ExchangeRuntimeException("failed at "+offset);
+					}
+					return page(offset, size, total);
+				}
+			});
+		}
+	}
+	
+	@Test
+	public void iteratesAllPagesInOrder() {
+		FakePageSource source = new FakePageSource(10, 35, -1);
+		ItemIdCursor cursor = new ItemIdCursor(page(0, 10, 35), source);
+		//the second page is requested as soon as the cursor is opened
+		assertEquals(1, source.offsets.size());
+		int i = 0;
+		while(cursor.hasNext()) {
+			assertEquals("id-"+i, cursor.next().getId());
+			i++;
+		}
+		assertEquals(35, i);
+		assertEquals(4, cursor.getPagesFetched());
+		assertEquals("[10, 20, 30]", source.offsets.toString());
+	}
+	
+	@Test
+	public void singlePage() {
+		FakePageSource source = new FakePageSource(10, 5, -1);
+		ItemIdCursor cursor = new ItemIdCursor(page(0, 10, 5), source);
+		int count = 0;
+		while(cursor.hasNext()) {
+			cursor.next();
+			count++;
+		}
+		assertEquals(5, count);
+		assertTrue(source.offsets.isEmpty());
+	}
+	
+	@Test
+	public void pageFailurePropagates() {
+		FakePageSource source = new FakePageSource(10, 35, 20);
+		ItemIdCursor cursor = new ItemIdCursor(page(0, 10, 35), source);
+		int count = 0;
+		try {
+			while(cursor.hasNext()) {
+				cursor.next();
+				count++;
+			}
+			fail("expected ExchangeRuntimeException");
+		} catch (ExchangeRuntimeException e) {
+			assertEquals(20, count);
+		}
+		assertFalse(cursor.hasNext());
+	}
+	
+	@Test
+	public void closeStopsPaging() {
+		FakePageSource source = new FakePageSource(10, 35, -1);
+		ItemIdCursor cursor = new ItemIdCursor(page(0, 10, 35), source);
+		cursor.next();
+		cursor.close();
+		int count = 1;
+		while(cursor.hasNext()) {
+			cursor.next();
+			count++;
+		}
+		assertEquals(10, count);
+		assertEquals(1, source.offsets.size());
+	}
+}
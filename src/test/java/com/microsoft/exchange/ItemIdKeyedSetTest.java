@@ -0,0 +1,182 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+
+import com.microsoft.exchange.model.ItemIdKeyedSet;
+import com.microsoft.exchange.types.AttendeeType;
+import com.microsoft.exchange.types.BodyType;
+import com.microsoft.exchange.types.BodyTypeType;
+import com.microsoft.exchange.types.CalendarItemType;
+import com.microsoft.exchange.types.EmailAddressType;
+import com.microsoft.exchange.types.ExtendedPropertyType;
+import com.microsoft.exchange.types.ItemIdType;
+import com.microsoft.exchange.types.NonEmptyArrayOfAttendeesType;
+import com.microsoft.exchange.types.PathToExtendedFieldType;
+
+/**
+ * Tests for {@link ItemIdKeyedSet}, including a rough comparison against a {@link HashSet} of fully populated {@link CalendarItemType}s.
+ */
+public class ItemIdKeyedSetTest {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	
+	private static final AtomicInteger deepHashCodes = new AtomicInteger();
+	
+	/**
+	 * Counts invocations of the generated deep {@link CalendarItemType#hashCode()}.
+	 */
+	static class CountingCalendarItemType extends CalendarItemType {
+		@Override
+		public int hashCode() {
+			deepHashCodes.incrementAndGet();
+			return super.hashCode();
+		}
+	}
+	
+	private static ItemIdType itemId(String id, String changeKey) {
+		ItemIdType itemId = new ItemIdType();
+		itemId.setId(id);
+		itemId.setChangeKey(changeKey);
+		return itemId;
+	}
+	
+	private static CalendarItemType calendarItem(int i) {
+		CalendarItemType item = new CountingCalendarItemType();
+		item.setItemId(itemId("AAMkAGI2TG93AAA="+i, "DwAAABYAAAA"+i));
+		item.setSubject("subject "+i);
+		BodyType body = new BodyType();
+		body.setBodyType(BodyTypeType.HTML);
+		StringBuilder html = new StringBuilder("<html><body>");
+		for(int j = 0; j < 50; j++) {
+			html.append("<p>paragraph ").append(j).append(" of item ").append(i).append("</p>");
+		}
+		body.setValue(html.append("</body></html>").toString());
+		item.setBody(body);
+		NonEmptyArrayOfAttendeesType attendees = new NonEmptyArrayOfAttendeesType();
+		for(int j = 0; j < 20; j++) {
+			EmailAddressType mailbox = new EmailAddressType();
+			mailbox.setName("Attendee "+j);
+			mailbox.setEmailAddress("attendee"+j+"@example.org");
+			AttendeeType attendee = new AttendeeType();
+			attendee.setMailbox(mailbox);
+			attendees.getAttendees().add(attendee);
+		}
+		item.setRequiredAttendees(attendees);
+		for(int j = 0; j < 5; j++) {
+			PathToExtendedFieldType path = new PathToExtendedFieldType();
+			path.setPropertyName("property"+j);
+			ExtendedPropertyType property = new ExtendedPropertyType();
+			property.setExtendedFieldURI(path);
+			property.setValue("value "+j);
+			item.getExtendedProperties().add(property);
+		}
+		return item;
+	}
+	
+	@Test
+	public void keyedOnItemId() {
+		Set<CalendarItemType> set = new ItemIdKeyedSet<CalendarItemType>();
+		CalendarItemType a = new CalendarItemType();
+		a.setItemId(itemId("a", "1"));
+		CalendarItemType a2 = new CalendarItemType();
+		a2.setItemId(itemId("a", "1"));
+		a2.setSubject("different subject, same id");
+		CalendarItemType a3 = new CalendarItemType();
+		a3.setItemId(itemId("a", "2"));
+		CalendarItemType noId = new CalendarItemType();
+		
+		assertTrue(set.add(a));
+		assertFalse(set.add(a2));
+		assertTrue(set.contains(a2));
+		assertTrue(set.add(a3));
+		assertTrue(set.add(noId));
+		assertFalse(set.add(noId));
+		assertFalse(set.contains(new CalendarItemType()));
+		assertEquals(3, set.size());
+		
+		Iterator<CalendarItemType> it = set.iterator();
+		assertSame(a, it.next());
+		assertSame(a3, it.next());
+		assertSame(noId, it.next());
+		
+		assertTrue(set.remove(a3));
+		assertEquals(2, set.size());
+		
+		ItemIdKeyedSet<CalendarItemType> idOnly = new ItemIdKeyedSet<CalendarItemType>(false);
+		assertTrue(idOnly.add(a));
+		assertFalse(idOnly.add(a3));
+		assertSame(a, idOnly.get(itemId("a", null)));
+	}
+	
+	/**
+	 * Inserting 1,000 fully populated items must not invoke the deep {@link CalendarItemType#hashCode()} at all.
+	 */
+	@Test
+	public void benchmarkAgainstHashSet() {
+		List<CalendarItemType> items = new ArrayList<CalendarItemType>();
+		for(int i = 0; i < 1000; i++) {
+			items.add(calendarItem(i));
+		}
+		int rounds = 20;
+		//warm up
+		fill(new HashSet<CalendarItemType>(), items);
+		fill(new ItemIdKeyedSet<CalendarItemType>(), items);
+		
+		deepHashCodes.set(0);
+		long start = System.nanoTime();
+		for(int r = 0; r < rounds; r++) {
+			assertEquals(1000, fill(new HashSet<CalendarItemType>(), items).size());
+		}
+		long hashSetNanos = System.nanoTime() - start;
+		assertEquals(1000 * rounds, deepHashCodes.get());
+		
+		deepHashCodes.set(0);
+		start = System.nanoTime();
+		for(int r = 0; r < rounds; r++) {
+			assertEquals(1000, fill(new ItemIdKeyedSet<CalendarItemType>(), items).size());
+		}
+		long keyedNanos = System.nanoTime() - start;
+		assertEquals(0, deepHashCodes.get());
+		
+		log.info("1000 items x "+rounds+" rounds: HashSet="+(hashSetNanos / 1000000)+"ms, ItemIdKeyedSet="+(keyedNanos / 1000000)+"ms");
+	}
+	
+	private static Set<CalendarItemType> fill(Set<CalendarItemType> set, List<CalendarItemType> items) {
+		for(CalendarItemType item : items) {
+			set.add(item);
+		}
+		return set;
+	}
+}
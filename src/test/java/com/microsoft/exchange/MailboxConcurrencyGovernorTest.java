@@ -0,0 +1,101 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.microsoft.exchange.exception.ExchangeTimeoutRuntimeException;
+import com.microsoft.exchange.impl.MailboxConcurrencyGovernor;
+import com.microsoft.exchange.types.ConnectingSIDType;
+
+/**
+ * Tests for {@link MailboxConcurrencyGovernor}.
+ */
+public class MailboxConcurrencyGovernorTest {
+
+	@Test
+	public void getPrincipalKey_control() {
+		assertNull(MailboxConcurrencyGovernor.getPrincipalKey(null));
+		assertNull(MailboxConcurrencyGovernor.getPrincipalKey(new ConnectingSIDType()));
+		ConnectingSIDType sid = new ConnectingSIDType();
+		sid.setPrimarySmtpAddress("Someone@Example.edu");
+		assertEquals("someone@example.edu", MailboxConcurrencyGovernor.getPrincipalKey(sid));
+	}
+	
+	/**
+	 * Run many more tasks than permits for a single principal and verify the limit is never exceeded
+	 * and the per principal state is discarded afterwards.
+	 */
+	@Test
+	public void acquire_limitsConcurrencyPerPrincipal() throws Exception {
+		final MailboxConcurrencyGovernor governor = new MailboxConcurrencyGovernor();
+		governor.setMaxConcurrentRequestsPerPrincipal(3);
+		final String principal = "someone@example.edu";
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxObserved = new AtomicInteger();
+		int tasks = 30;
+		final CountDownLatch done = new CountDownLatch(tasks);
+		ExecutorService executor = Executors.newFixedThreadPool(10);
+		for(int i = 0; i < tasks; i++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					governor.acquire(principal);
+					try {
+						int current = inFlight.incrementAndGet();
+						synchronized (maxObserved) {
+							maxObserved.set(Math.max(maxObserved.get(), current));
+						}
+						Thread.sleep(5);
+						inFlight.decrementAndGet();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						governor.release(principal);
+						done.countDown();
+					}
+				}
+			});
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertTrue(maxObserved.get() <= 3);
+		assertEquals(0, governor.getInFlight(principal));
+		assertEquals(0, governor.getActivePrincipalCount());
+	}
+	
+	@Test(expected=ExchangeTimeoutRuntimeException.class)
+	public void acquire_timeout() {
+		MailboxConcurrencyGovernor governor = new MailboxConcurrencyGovernor();
+		governor.setMaxConcurrentRequestsPerPrincipal(1);
+		governor.setAcquireTimeoutMillis(10);
+		governor.acquire("someone@example.edu");
+		governor.acquire("someone@example.edu");
+	}
+}
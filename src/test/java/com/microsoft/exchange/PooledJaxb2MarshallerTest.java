@@ -0,0 +1,113 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import com.microsoft.exchange.impl.JaxbMarshallerPool;
+import com.microsoft.exchange.impl.PooledJaxb2Marshaller;
+import com.microsoft.exchange.messages.GetFolder;
+import com.microsoft.exchange.types.DefaultShapeNamesType;
+import com.microsoft.exchange.types.FolderResponseShapeType;
+
+/**
+ * Tests for {@link PooledJaxb2Marshaller} and {@link JaxbMarshallerPool}.
+ */
+public class PooledJaxb2MarshallerTest {
+
+	private PooledJaxb2Marshaller createMarshaller() throws Exception {
+		PooledJaxb2Marshaller marshaller = new PooledJaxb2Marshaller();
+		marshaller.setContextPaths("com.microsoft.exchange.messages", "com.microsoft.exchange.types");
+		marshaller.afterPropertiesSet();
+		return marshaller;
+	}
+	
+	private GetFolder createRequest() {
+		GetFolder request = new GetFolder();
+		FolderResponseShapeType shape = new FolderResponseShapeType();
+		shape.setBaseShape(DefaultShapeNamesType.ALL_PROPERTIES);
+		request.setFolderShape(shape);
+		return request;
+	}
+	
+	@Test
+	public void roundTripReusesInstances() throws Exception {
+		PooledJaxb2Marshaller marshaller = createMarshaller();
+		GetFolder request = createRequest();
+		for(int i = 0; i < 5; i++) {
+			StringWriter writer = new StringWriter();
+			marshaller.marshal(request, new StreamResult(writer));
+			Object result = marshaller.unmarshal(new StreamSource(new StringReader(writer.toString())));
+			assertEquals(request, result);
+		}
+		JaxbMarshallerPool pool = marshaller.getPool();
+		assertEquals(1, pool.getMarshallerMisses());
+		assertEquals(4, pool.getMarshallerHits());
+		assertEquals(1, pool.getUnmarshallerMisses());
+		assertEquals(4, pool.getUnmarshallerHits());
+		assertEquals(1, pool.getIdleMarshallers());
+		assertEquals(1, pool.getIdleUnmarshallers());
+	}
+	
+	@Test
+	public void concurrentUseIsBoundedByMaxIdle() throws Exception {
+		final PooledJaxb2Marshaller marshaller = createMarshaller();
+		marshaller.setMaxIdle(2);
+		final GetFolder request = createRequest();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>();
+			for(int i = 0; i < 200; i++) {
+				futures.add(executor.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						StringWriter writer = new StringWriter();
+						marshaller.marshal(request, new StreamResult(writer));
+						return marshaller.unmarshal(new StreamSource(new StringReader(writer.toString())));
+					}
+				}));
+			}
+			for(Future<Object> future : futures) {
+				assertEquals(request, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		JaxbMarshallerPool pool = marshaller.getPool();
+		assertEquals(200, pool.getMarshallerHits() + pool.getMarshallerMisses());
+		assertTrue(pool.getMarshallerHits() > 0);
+		assertTrue(pool.getIdleMarshallers() <= 2);
+		assertTrue(pool.getIdleUnmarshallers() <= 2);
+	}
+}
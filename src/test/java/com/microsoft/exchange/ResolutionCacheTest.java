@@ -0,0 +1,208 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.microsoft.exchange.exception.ExchangeInvalidUPNRuntimeException;
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+import com.microsoft.exchange.exception.ExchangeThrottledRuntimeException;
+import com.microsoft.exchange.impl.ResolutionCache;
+import com.microsoft.exchange.messages.ResponseCodeType;
+
+/**
+ * Tests for {@link ResolutionCache}.
+ */
+public class ResolutionCacheTest {
+
+	@Test
+	public void positiveEntriesAreCachedUntilExpired() throws InterruptedException {
+		ResolutionCache<String> cache = new ResolutionCache<String>();
+		final AtomicInteger calls = new AtomicInteger();
+		Callable<String> loader = new Callable<String>() {
+			@Override
+			public String call() {
+				return "upn" + calls.incrementAndGet();
+			}
+		};
+		assertEquals("upn1", cache.get("Someone@example.edu", loader));
+		assertEquals("upn1", cache.get(" someone@EXAMPLE.edu", loader));
+		assertEquals(1, calls.get());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0.5, cache.getHitRate(), 0.001);
+		
+		cache.setPositiveTtlMillis(0);
+		cache.invalidate("someone@example.edu");
+		assertEquals("upn2", cache.get("someone@example.edu", loader));
+		Thread.sleep(2);
+		assertEquals("upn3", cache.get("someone@example.edu", loader));
+	}
+	
+	@Test
+	public void notFoundFailuresAreCachedOtherFailuresAreNot() {
+		ResolutionCache<String> cache = new ResolutionCache<String>();
+		final AtomicInteger calls = new AtomicInteger();
+		final ExchangeRuntimeException notFound = new ExchangeRuntimeException("resolveUpn failed -- no results.");
+		notFound.setResponseCode(ResponseCodeType.ERROR_NAME_RESOLUTION_NO_RESULTS.value());
+		Callable<String> missing = new Callable<String>() {
+			@Override
+			public String call() {
+				calls.incrementAndGet();
+				throw notFound;
+			}
+		};
+		ExchangeRuntimeException previous = null;
+		for(int i = 0; i < 3; i++) {
+			try {
+				cache.get("nobody@example.edu", missing);
+				fail("expected ExchangeRuntimeException");
+			} catch (ExchangeRuntimeException e) {
+				//every hit throws its own exception
+				assertNotSame(previous, e);
+				assertEquals(notFound.getMessage(), e.getMessage());
+				assertEquals(notFound.getResponseCode(), e.getResponseCode());
+				previous = e;
+			}
+		}
+		assertEquals(1, calls.get());
+		assertEquals(2, cache.getNegativeHitCount());
+		
+		Callable<String> throttled = new Callable<String>() {
+			@Override
+			public String call() {
+				calls.incrementAndGet();
+				throw new ExchangeThrottledRuntimeException(ResponseCodeType.ERROR_SERVER_BUSY.value(), 1000, null);
+			}
+		};
+		Callable<String> unknown = new Callable<String>() {
+			@Override
+			public String call() {
+				calls.incrementAndGet();
+				throw new ExchangeRuntimeException("connection reset");
+			}
+		};
+		for(int i = 0; i < 2; i++) {
+			try {
+				cache.get("busy@example.edu", throttled);
+				fail("expected ExchangeThrottledRuntimeException");
+			} catch (ExchangeThrottledRuntimeException e) {
+				// expected
+			}
+			try {
+				cache.get("flaky@example.edu", unknown);
+				fail("expected ExchangeRuntimeException");
+			} catch (ExchangeRuntimeException e) {
+				// expected
+			}
+		}
+		assertEquals(5, calls.get());
+		assertEquals(1, cache.size());
+	}
+	
+	@Test
+	public void cachedFailuresKeepTheirType() {
+		ResolutionCache<String> cache = new ResolutionCache<String>();
+		final AtomicInteger calls = new AtomicInteger();
+		Callable<String> invalid = new Callable<String>() {
+			@Override
+			public String call() {
+				calls.incrementAndGet();
+				throw new ExchangeInvalidUPNRuntimeException("not a upn");
+			}
+		};
+		for(int i = 0; i < 2; i++) {
+			try {
+				cache.get("nobody@example.edu", invalid);
+				fail("expected ExchangeInvalidUPNRuntimeException");
+			} catch (ExchangeInvalidUPNRuntimeException e) {
+				assertEquals("not a upn", e.getMessage());
+			}
+		}
+		assertEquals(1, calls.get());
+		assertEquals(1, cache.getNegativeHitCount());
+	}
+	
+	@Test
+	public void concurrentLookupsAreMerged() throws Exception {
+		final ResolutionCache<String> cache = new ResolutionCache<String>();
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		final Callable<String> loader = new Callable<String>() {
+			@Override
+			public String call() throws InterruptedException {
+				calls.incrementAndGet();
+				release.await(5, TimeUnit.SECONDS);
+				return "upn";
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<?>[] futures = new Future<?>[4];
+			for(int i = 0; i < futures.length; i++) {
+				futures[i] = executor.submit(new Callable<String>() {
+					@Override
+					public String call() {
+						return cache.get("someone@example.edu", loader);
+					}
+				});
+			}
+			long deadline = System.currentTimeMillis() + 5000;
+			while(cache.getMergedCount() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+			for(Future<?> f : futures) {
+				assertEquals("upn", f.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, calls.get());
+		assertEquals(3, cache.getMergedCount());
+		assertEquals(1, cache.getMissCount());
+	}
+	
+	@Test
+	public void leastRecentlyUsedEntriesAreEvicted() {
+		ResolutionCache<String> cache = new ResolutionCache<String>();
+		cache.setMaxEntries(2);
+		for(final String key : new String[] {"a", "b", "c"}) {
+			cache.get(key, new Callable<String>() {
+				@Override
+				public String call() {
+					return key;
+				}
+			});
+		}
+		assertEquals(2, cache.size());
+	}
+}
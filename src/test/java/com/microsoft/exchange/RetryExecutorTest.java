@@ -0,0 +1,277 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.ws.client.WebServiceIOException;
+
+import com.microsoft.exchange.exception.ExchangeInvalidUPNRuntimeException;
+import com.microsoft.exchange.exception.ExchangeRuntimeException;
+import com.microsoft.exchange.exception.ExchangeThrottledRuntimeException;
+import com.microsoft.exchange.impl.RetryExecutor;
+import com.microsoft.exchange.impl.RetryPolicy;
+
+/**
+ * Tests for {@link RetryExecutor} and {@link RetryPolicy}.
+ */
+public class RetryExecutorTest {
+
+	private RetryExecutor executor;
+	
+	@Before
+	public void setUp() {
+		executor = new RetryExecutor();
+		RetryPolicy policy = executor.getRetryPolicy();
+		policy.setBaseDelayMillis(1);
+		policy.setMaxDelayMillis(5);
+		policy.setMaxAttempts(4);
+	}
+	
+	@After
+	public void tearDown() {
+		executor.destroy();
+	}
+	
+	/**
+	 * @param failures number of times to throw {@code failure} before returning "ok"
+	 */
+	private Callable<String> failing(final int failures, final RuntimeException failure, final AtomicInteger attempts) {
+		return new Callable<String>() {
+			@Override
+			public String call() {
+				if(attempts.incrementAndGet() <= failures) {
+					throw failure;
+				}
+				return "ok";
+			}
+		};
+	}
+	
+	private ExchangeRuntimeException withResponseCode(String responseCode) {
+		ExchangeRuntimeException e = new ExchangeRuntimeException(responseCode);
+		e.setResponseCode(responseCode);
+		return e;
+	}
+	
+	@Test
+	public void retryableFailureThenSuccess() {
+		AtomicInteger attempts = new AtomicInteger();
+		String result = executor.execute("test", true, failing(2, withResponseCode("ErrorInternalServerTransientError"), attempts));
+		assertEquals("ok", result);
+		assertEquals(3, attempts.get());
+	}
+	
+	@Test
+	public void nonRetryableFailsFast() {
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			executor.execute("test", true, failing(5, new ExchangeInvalidUPNRuntimeException("bad upn"), attempts));
+			fail("expected ExchangeInvalidUPNRuntimeException");
+		} catch (ExchangeInvalidUPNRuntimeException e) {
+			//expected, the original exception is rethrown untouched
+		}
+		assertEquals(1, attempts.get());
+	}
+	
+	@Test
+	public void unknownResponseCodeNotRetried() {
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			executor.execute("test", true, failing(5, withResponseCode("ErrorAccessDenied"), attempts));
+			fail("expected ExchangeRuntimeException");
+		} catch (ExchangeRuntimeException e) {
+			assertEquals("ErrorAccessDenied", e.getResponseCode());
+		}
+		assertEquals(1, attempts.get());
+	}
+	
+	@Test
+	public void missingResponseCodeNotRetried() {
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			executor.execute("test", true, failing(5, new ExchangeRuntimeException("CALENDAR NOT FOUND"), attempts));
+			fail("expected ExchangeRuntimeException");
+		} catch (ExchangeRuntimeException e) {
+			assertEquals("CALENDAR NOT FOUND", e.getMessage());
+		}
+		assertEquals(1, attempts.get());
+		
+		attempts.set(0);
+		String result = executor.execute("test", true, failing(2, new ExchangeRuntimeException(new WebServiceIOException("connection reset")), attempts));
+		assertEquals("ok", result);
+		assertEquals(3, attempts.get());
+	}
+	
+	@Test
+	public void nonIdempotentOnlyRetriesThrottling() {
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			executor.execute("create", false, failing(5, withResponseCode("ErrorInternalServerTransientError"), attempts));
+			fail("expected ExchangeRuntimeException");
+		} catch (ExchangeRuntimeException e) {
+			//expected
+		}
+		assertEquals(1, attempts.get());
+		
+		attempts.set(0);
+		String result = executor.execute("create", false, failing(2, new ExchangeThrottledRuntimeException("ErrorServerBusy", 1, null), attempts));
+		assertEquals("ok", result);
+		assertEquals(3, attempts.get());
+	}
+	
+	@Test
+	public void exhaustedAttempts() {
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			executor.execute("test", true, failing(10, withResponseCode("ErrorServerBusy"), attempts));
+			fail("expected ExchangeRuntimeException");
+		} catch (ExchangeRuntimeException e) {
+			assertEquals("ErrorServerBusy", e.getResponseCode());
+			assertTrue(e.getMessage().contains("4 consecutive attempts"));
+		}
+		assertEquals(4, attempts.get());
+	}
+	
+	@Test
+	public void deadlineStopsRetries() {
+		RetryPolicy policy = executor.getRetryPolicy();
+		policy.setMaxAttempts(1000);
+		policy.setBaseDelayMillis(20);
+		policy.setMaxDelayMillis(20);
+		policy.setDeadlineMillis(100);
+		AtomicInteger attempts = new AtomicInteger();
+		long start = System.currentTimeMillis();
+		try {
+			executor.execute("test", true, failing(1000, withResponseCode("ErrorServerBusy"), attempts));
+			fail("expected ExchangeRuntimeException");
+		} catch (ExchangeRuntimeException e) {
+			//expected
+		}
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertTrue(attempts.get() < 1000);
+	}
+	
+	@Test
+	public void throttledBackOffHintHonoured() {
+		RetryPolicy policy = executor.getRetryPolicy();
+		ExchangeThrottledRuntimeException throttled = new ExchangeThrottledRuntimeException("ErrorServerBusy", 500, null);
+		for(int i = 1; i < 5; i++) {
+			assertTrue(policy.getDelayMillis(i, throttled) >= 500);
+			assertTrue(policy.getDelayMillis(i, null) <= policy.getMaxDelayMillis());
+		}
+	}
+	
+	@Test
+	public void submitDoesNotBlock() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		Future<String> future = executor.submit("test", true, new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				release.await();
+				return "ok";
+			}
+		});
+		assertFalse(future.isDone());
+		release.countDown();
+		assertEquals("ok", future.get(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void submittedAttemptsRunUpToPoolSizeConcurrently() throws Exception {
+		executor.setPoolSize(8);
+		final CountDownLatch running = new CountDownLatch(8);
+		final CountDownLatch release = new CountDownLatch(1);
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		for(int i = 0; i < 8; i++) {
+			futures.add(executor.submit("test", true, new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					running.countDown();
+					release.await();
+					return "ok";
+				}
+			}));
+		}
+		assertTrue(running.await(5, TimeUnit.SECONDS));
+		
+		//a retry is not held up by the busy workers' timer
+		AtomicInteger attempts = new AtomicInteger();
+		Future<String> retried = executor.submit("test", true, failing(1, withResponseCode("ErrorServerBusy"), attempts));
+		release.countDown();
+		for(Future<String> future : futures) {
+			assertEquals("ok", future.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals("ok", retried.get(5, TimeUnit.SECONDS));
+		assertEquals(2, attempts.get());
+	}
+	
+	@Test
+	public void nestedCallFromWorkerIsRejected() throws Exception {
+		Future<String> future = executor.submit("outer", true, new Callable<String>() {
+			@Override
+			public String call() {
+				return executor.execute("inner", true, failing(0, null, new AtomicInteger()));
+			}
+		});
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("expected IllegalStateException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		
+		//the first attempt of execute runs on the calling thread, which may nest
+		assertEquals("ok", executor.execute("outer", true, new Callable<String>() {
+			@Override
+			public String call() {
+				return executor.execute("inner", true, failing(0, null, new AtomicInteger()));
+			}
+		}));
+	}
+	
+	@Test
+	public void setPoolSizeResizesCreatedPool() throws Exception {
+		executor.setPoolSize(2);
+		ThreadPoolExecutor pool = (ThreadPoolExecutor) executor.getWorkerExecutor();
+		assertEquals(2, pool.getMaximumPoolSize());
+		executor.setPoolSize(6);
+		assertEquals(6, pool.getCorePoolSize());
+		assertEquals(6, pool.getMaximumPoolSize());
+		executor.setPoolSize(3);
+		assertEquals(3, pool.getCorePoolSize());
+		assertEquals(3, pool.getMaximumPoolSize());
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Iterator;
+
+import javax.xml.bind.JAXBContext;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.WebServiceMessageFactory;
+import org.springframework.ws.context.DefaultMessageContext;
+import org.springframework.ws.context.MessageContext;
+import org.springframework.ws.soap.SoapMessage;
+import org.springframework.ws.soap.axiom.AxiomSoapMessageFactory;
+import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
+import org.springframework.ws.transport.TransportConstants;
+import org.springframework.ws.transport.TransportInputStream;
+
+import com.microsoft.exchange.impl.ExchangeImpersonationClientInterceptor;
+import com.microsoft.exchange.impl.ImpersonationConnectingSIDSource;
+import com.microsoft.exchange.impl.RequestServerTimeZoneInterceptor;
+import com.microsoft.exchange.impl.RequestServerVersionClientInterceptor;
+import com.microsoft.exchange.messages.FindItemResponse;
+import com.microsoft.exchange.messages.FindItemResponseMessageType;
+import com.microsoft.exchange.types.ConnectingSIDType;
+
+/**
+ * Verifies the header interceptors and JAXB payload handling work with both the SAAJ and the streaming Axiom message factories.
+ */
+public class SoapMessageFactoryTest {
+
+	private static final String SOAP_ENVELOPE_START = "<s:Envelope xmlns:s=\"http://schemas.xmlsoap.org/soap/envelope/\"><s:Header/><s:Body>";
+	private static final String SOAP_ENVELOPE_END = "</s:Body></s:Envelope>";
+	
+	@Test
+	public void saaj_headersAndPayload() throws Exception {
+		SaajSoapMessageFactory messageFactory = new SaajSoapMessageFactory();
+		messageFactory.afterPropertiesSet();
+		assertHeadersAndPayload(messageFactory);
+	}
+	
+	@Test
+	public void axiomStreaming_headersAndPayload() throws Exception {
+		AxiomSoapMessageFactory messageFactory = new AxiomSoapMessageFactory();
+		messageFactory.setPayloadCaching(false);
+		messageFactory.setAttachmentCaching(false);
+		assertHeadersAndPayload(messageFactory);
+	}
+	
+	private void assertHeadersAndPayload(WebServiceMessageFactory messageFactory) throws Exception {
+		JAXBContext jaxbContext = JAXBContext.newInstance("com.microsoft.exchange.messages:com.microsoft.exchange.types");
+		
+		ExchangeImpersonationClientInterceptor impersonationInterceptor = new ExchangeImpersonationClientInterceptor();
+		impersonationInterceptor.setJaxbContext(jaxbContext);
+		impersonationInterceptor.setConnectingSIDSource(new ImpersonationConnectingSIDSource() {
+			@Override
+			public ConnectingSIDType getConnectingSID(SoapMessage soapMessage, MessageContext messageContext) {
+				ConnectingSIDType sid = new ConnectingSIDType();
+				sid.setPrincipalName("someone@example.edu");
+				return sid;
+			}
+		});
+		RequestServerVersionClientInterceptor versionInterceptor = new RequestServerVersionClientInterceptor();
+		versionInterceptor.setJaxbContext(jaxbContext);
+		RequestServerTimeZoneInterceptor timeZoneInterceptor = new RequestServerTimeZoneInterceptor();
+		timeZoneInterceptor.setJaxbContext(jaxbContext);
+		timeZoneInterceptor.afterPropertiesSet();
+		
+		//the second pass exercises the cached header templates
+		for(int i = 0; i < 2; i++) {
+			MessageContext messageContext = new DefaultMessageContext(messageFactory);
+			impersonationInterceptor.handleRequest(messageContext);
+			versionInterceptor.handleRequest(messageContext);
+			timeZoneInterceptor.handleRequest(messageContext);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			messageContext.getRequest().writeTo(out);
+			String request = out.toString("UTF-8");
+			assertTrue(request, request.contains("ExchangeImpersonation"));
+			assertTrue(request, request.contains("someone@example.edu"));
+			assertTrue(request, request.contains("RequestServerVersion"));
+			assertTrue(request, request.contains("TimeZoneContext"));
+		}
+		
+		InputStream example = getClass().getResourceAsStream("/examples/findItemResponse-defaultShape.xml");
+		String body = IOUtils.toString(example, "UTF-8");
+		body = body.substring(body.indexOf("<ns2:FindItemResponse"));
+		String envelope = SOAP_ENVELOPE_START + body + SOAP_ENVELOPE_END;
+		WebServiceMessage response = messageFactory.createWebServiceMessage(new ByteArrayTransportInputStream(envelope.getBytes("UTF-8")));
+		
+		Jaxb2Marshaller marshaller = new Jaxb2Marshaller();
+		marshaller.setContextPaths(new String[] {"com.microsoft.exchange.messages", "com.microsoft.exchange.types"});
+		marshaller.afterPropertiesSet();
+		FindItemResponse findItemResponse = (FindItemResponse) marshaller.unmarshal(response.getPayloadSource());
+		FindItemResponseMessageType message = (FindItemResponseMessageType) findItemResponse.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().get(0).getValue();
+		assertEquals(1, message.getRootFolder().getItems().getItemsAndMessagesAndCalendarItems().size());
+		assertTrue(StringUtils.isNotBlank(message.getRootFolder().getItems().getItemsAndMessagesAndCalendarItems().get(0).getItemId().getId()));
+	}
+	
+	/**
+	 * {@link TransportInputStream} over a byte array with a text/xml content type, as an HTTP connection would provide.
+	 */
+	private static class ByteArrayTransportInputStream extends TransportInputStream {
+		private final byte[] content;
+		
+		ByteArrayTransportInputStream(byte[] content) {
+			this.content = content;
+		}
+		@Override
+		protected InputStream createInputStream() throws IOException {
+			return new ByteArrayInputStream(content);
+		}
+		@Override
+		public Iterator<String> getHeaderNames() throws IOException {
+			return Collections.singletonList(TransportConstants.HEADER_CONTENT_TYPE).iterator();
+		}
+		@Override
+		public Iterator<String> getHeaders(String name) throws IOException {
+			if(TransportConstants.HEADER_CONTENT_TYPE.equalsIgnoreCase(name)) {
+				return Collections.singletonList("text/xml; charset=utf-8").iterator();
+			}
+			return Collections.<String>emptyList().iterator();
+		}
+	}
+}
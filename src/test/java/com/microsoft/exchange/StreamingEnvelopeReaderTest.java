@@ -0,0 +1,92 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.junit.Test;
+
+import com.microsoft.exchange.impl.StreamingEnvelopeReader;
+
+/**
+ * Tests for {@link StreamingEnvelopeReader}.
+ */
+public class StreamingEnvelopeReaderTest {
+
+	private static final String FIRST = "<?xml version=\"1.0\" encoding=\"utf-8\"?><s:Envelope xmlns:s=\"http://schemas.xmlsoap.org/soap/envelope/\"><s:Body><m:GetStreamingEventsResponse xmlns:m=\"urn:m\">1</m:GetStreamingEventsResponse></s:Body></s:Envelope>";
+	private static final String SECOND = "<Envelope xmlns=\"http://schemas.xmlsoap.org/soap/envelope/\"><Body>2 &lt;/Envelope&gt;</Body></Envelope >";
+	
+	/**
+	 * Each envelope is returned as soon as it is complete, before the stream ends.
+	 */
+	@Test
+	public void returnsEachEnvelopeAsItArrives() throws IOException {
+		PipedOutputStream out = new PipedOutputStream();
+		PipedInputStream in = new PipedInputStream(out, 65536);
+		StreamingEnvelopeReader reader = new StreamingEnvelopeReader(in);
+		
+		byte[] second = bytes("\r\n" + SECOND);
+		out.write(bytes(FIRST));
+		out.write(second, 0, 40);
+		assertEquals(FIRST, string(reader.nextEnvelope()));
+		
+		out.write(second, 40, second.length - 40);
+		out.write(bytes("\r\n"));
+		out.close();
+		assertEquals(SECOND, string(reader.nextEnvelope()));
+		assertNull(reader.nextEnvelope());
+	}
+	
+	/**
+	 * Envelopes larger than the read buffer are reassembled.
+	 */
+	@Test
+	public void largeEnvelope() throws IOException {
+		StringBuilder body = new StringBuilder();
+		for(int i = 0; i < 5000; i++) {
+			body.append("<t:Item>").append(i).append("</t:Item>");
+		}
+		String large = "<s:Envelope><s:Body>" + body + "</s:Body></s:Envelope>";
+		StreamingEnvelopeReader reader = new StreamingEnvelopeReader(new ByteArrayInputStream(bytes(large + FIRST)));
+		assertEquals(large, string(reader.nextEnvelope()));
+		assertEquals(FIRST, string(reader.nextEnvelope()));
+		assertNull(reader.nextEnvelope());
+	}
+	
+	@Test(expected=IOException.class)
+	public void truncatedEnvelope() throws IOException {
+		StreamingEnvelopeReader reader = new StreamingEnvelopeReader(new ByteArrayInputStream(bytes(FIRST.substring(0, FIRST.length() - 5))));
+		reader.nextEnvelope();
+	}
+	
+	private static byte[] bytes(String value) throws UnsupportedEncodingException {
+		return value.getBytes("UTF-8");
+	}
+	
+	private static String string(byte[] value) throws UnsupportedEncodingException {
+		return new String(value, "UTF-8");
+	}
+}
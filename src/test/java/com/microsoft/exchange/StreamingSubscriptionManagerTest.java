@@ -0,0 +1,483 @@
+/**
+ * See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Board of Regents of the University of Wisconsin System
+ * licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.microsoft.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.microsoft.exchange.impl.BaseExchangeCalendarDataDao;
+import com.microsoft.exchange.impl.ExchangeResponseUtilsImpl;
+import com.microsoft.exchange.impl.RetryExecutor;
+import com.microsoft.exchange.impl.StreamingSubscriptionManager;
+import com.microsoft.exchange.messages.ArrayOfResponseMessagesType;
+import com.microsoft.exchange.messages.GetEvents;
+import com.microsoft.exchange.messages.GetEventsResponse;
+import com.microsoft.exchange.messages.GetEventsResponseMessageType;
+import com.microsoft.exchange.messages.GetStreamingEvents;
+import com.microsoft.exchange.messages.GetStreamingEventsResponse;
+import com.microsoft.exchange.messages.GetStreamingEventsResponseMessageType;
+import com.microsoft.exchange.messages.ObjectFactory;
+import com.microsoft.exchange.messages.ResponseCodeType;
+import com.microsoft.exchange.messages.ResponseMessageType;
+import com.microsoft.exchange.messages.Subscribe;
+import com.microsoft.exchange.messages.SubscribeResponse;
+import com.microsoft.exchange.messages.SubscribeResponseMessageType;
+import com.microsoft.exchange.messages.Unsubscribe;
+import com.microsoft.exchange.messages.UnsubscribeResponse;
+import com.microsoft.exchange.model.ItemChangeEvent;
+import com.microsoft.exchange.model.MailboxAffinity;
+import com.microsoft.exchange.types.BaseObjectChangedEventType;
+import com.microsoft.exchange.types.ConnectionStatusType;
+import com.microsoft.exchange.types.ItemIdType;
+import com.microsoft.exchange.types.ModifiedEventType;
+import com.microsoft.exchange.types.NonEmptyArrayOfNotificationsType;
+import com.microsoft.exchange.types.NonEmptyArrayOfSubscriptionIdsType;
+import com.microsoft.exchange.types.NotificationEventTypeType;
+import com.microsoft.exchange.types.NotificationType;
+import com.microsoft.exchange.types.ResponseClassType;
+
+/**
+ * Tests for {@link StreamingSubscriptionManager}.
+ */
+public class StreamingSubscriptionManagerTest {
+
+	private static final ObjectFactory MESSAGES = new ObjectFactory();
+	private static final com.microsoft.exchange.types.ObjectFactory TYPES = new com.microsoft.exchange.types.ObjectFactory();
+	
+	/**
+	 * Events are delivered, and a failed subscription is re-created with the missed events replayed from its last watermark.
+	 */
+	@Test
+	public void deliversEventsAndResumesFailedSubscriptions() throws InterruptedException {
+		BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao();
+		dao.setRequestFactory(new ExchangeRequestFactory());
+		dao.setResponseUtils(new ExchangeResponseUtilsImpl());
+		RetryExecutor retryExecutor = new RetryExecutor();
+		dao.setRetryExecutor(retryExecutor);
+		
+		final AtomicInteger streamingSubscriptions = new AtomicInteger();
+		final AtomicInteger connections = new AtomicInteger();
+		final List<String> replayedFrom = Collections.synchronizedList(new ArrayList<String>());
+		final List<List<String>> connectionSubscriptionIds = Collections.synchronizedList(new ArrayList<List<String>>());
+		ExchangeWebServices webServices = mock(ExchangeWebServices.class);
+		when(webServices.subscribe(any(Subscribe.class))).thenAnswer(new Answer<SubscribeResponse>() {
+			@Override
+			public SubscribeResponse answer(InvocationOnMock invocation) throws Throwable {
+				Subscribe request = (Subscribe) invocation.getArguments()[0];
+				SubscribeResponseMessageType message = new SubscribeResponseMessageType();
+				message.setResponseClass(ResponseClassType.SUCCESS);
+				message.setResponseCode(ResponseCodeType.NO_ERROR);
+				if(null != request.getPullSubscriptionRequest()) {
+					message.setSubscriptionId("p1");
+					message.setWatermark(request.getPullSubscriptionRequest().getWatermark());
+				}else {
+					message.setSubscriptionId("s" + streamingSubscriptions.incrementAndGet());
+				}
+				SubscribeResponse response = new SubscribeResponse();
+				response.setResponseMessages(new ArrayOfResponseMessagesType());
+				response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().add(
+						MESSAGES.createArrayOfResponseMessagesTypeSubscribeResponseMessage(message));
+				return response;
+			}
+		});
+		when(webServices.getStreamingEvents(any(GetStreamingEvents.class))).thenAnswer(new Answer<GetStreamingEventsResponse>() {
+			@Override
+			public GetStreamingEventsResponse answer(InvocationOnMock invocation) throws Throwable {
+				GetStreamingEvents request = (GetStreamingEvents) invocation.getArguments()[0];
+				connectionSubscriptionIds.add(new ArrayList<String>(request.getSubscriptionIds().getSubscriptionIds()));
+				GetStreamingEventsResponseMessageType message = new GetStreamingEventsResponseMessageType();
+				message.setResponseClass(ResponseClassType.SUCCESS);
+				message.setResponseCode(ResponseCodeType.NO_ERROR);
+				message.setConnectionStatus(ConnectionStatusType.CLOSED);
+				int connection = connections.incrementAndGet();
+				if(1 == connection) {
+					BaseObjectChangedEventType created = new BaseObjectChangedEventType();
+					created.setWatermark("w1");
+					created.setItemId(itemId("a"));
+					message.setNotifications(new NonEmptyArrayOfNotificationsType());
+					message.getNotifications().getNotifications().add(notification("s1", created, "CreatedEvent"));
+				}else if(2 == connection) {
+					message.setResponseClass(ResponseClassType.ERROR);
+					message.setResponseCode(ResponseCodeType.ERROR_SUBSCRIPTION_NOT_FOUND);
+					message.setErrorSubscriptionIds(new NonEmptyArrayOfSubscriptionIdsType());
+					message.getErrorSubscriptionIds().getSubscriptionIds().add("s1");
+				}else {
+					Thread.sleep(20);
+				}
+				GetStreamingEventsResponse response = new GetStreamingEventsResponse();
+				response.setResponseMessages(new ArrayOfResponseMessagesType());
+				response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().add(
+						MESSAGES.createArrayOfResponseMessagesTypeGetStreamingEventsResponseMessage(message));
+				return response;
+			}
+		});
+		when(webServices.getEvents(any(GetEvents.class))).thenAnswer(new Answer<GetEventsResponse>() {
+			@Override
+			public GetEventsResponse answer(InvocationOnMock invocation) throws Throwable {
+				replayedFrom.add(((GetEvents) invocation.getArguments()[0]).getWatermark());
+				ModifiedEventType modified = new ModifiedEventType();
+				modified.setWatermark("w2");
+				modified.setItemId(itemId("b"));
+				GetEventsResponseMessageType message = new GetEventsResponseMessageType();
+				message.setResponseClass(ResponseClassType.SUCCESS);
+				message.setResponseCode(ResponseCodeType.NO_ERROR);
+				message.setNotification(notification("p1", modified, "ModifiedEvent"));
+				GetEventsResponse response = new GetEventsResponse();
+				response.setResponseMessages(new ArrayOfResponseMessagesType());
+				response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().add(
+						MESSAGES.createArrayOfResponseMessagesTypeGetEventsResponseMessage(message));
+				return response;
+			}
+		});
+		when(webServices.unsubscribe(any(Unsubscribe.class))).thenAnswer(new Answer<UnsubscribeResponse>() {
+			@Override
+			public UnsubscribeResponse answer(InvocationOnMock invocation) throws Throwable {
+				ResponseMessageType message = new ResponseMessageType();
+				message.setResponseClass(ResponseClassType.SUCCESS);
+				message.setResponseCode(ResponseCodeType.NO_ERROR);
+				UnsubscribeResponse response = new UnsubscribeResponse();
+				response.setResponseMessages(new ArrayOfResponseMessagesType());
+				response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().add(
+						MESSAGES.createArrayOfResponseMessagesTypeUnsubscribeResponseMessage(message));
+				return response;
+			}
+		});
+		dao.setWebServices(webServices);
+		
+		final List<ItemChangeEvent> events = Collections.synchronizedList(new ArrayList<ItemChangeEvent>());
+		final CountDownLatch delivered = new CountDownLatch(2);
+		StreamingSubscriptionManager manager = new StreamingSubscriptionManager();
+		manager.setCalendarDataDao(dao);
+		manager.setListener(new ItemChangeListener() {
+			@Override
+			public void onItemEvents(String upn, List<ItemChangeEvent> received) {
+				events.addAll(received);
+				for(int i = 0; i < received.size(); i++) {
+					delivered.countDown();
+				}
+			}
+			@Override
+			public void onSubscriptionLost(String upn, RuntimeException cause) {
+				throw new AssertionError("unexpected loss of " + upn);
+			}
+		});
+		try {
+			assertTrue(manager.addMailbox("someone@example.org", null));
+			manager.start();
+			assertTrue(delivered.await(10, TimeUnit.SECONDS));
+			long deadline = System.currentTimeMillis() + 10000;
+			while(connections.get() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			manager.stop();
+			
+			assertEquals(NotificationEventTypeType.CREATED_EVENT, events.get(0).getEventType());
+			assertEquals("a", events.get(0).getItemId().getId());
+			assertEquals(NotificationEventTypeType.MODIFIED_EVENT, events.get(1).getEventType());
+			assertEquals("b", events.get(1).getItemId().getId());
+			assertEquals(Arrays.asList("w1"), replayedFrom);
+			assertEquals(Arrays.asList("s1"), connectionSubscriptionIds.get(0));
+			assertEquals(Arrays.asList("s1"), connectionSubscriptionIds.get(1));
+			assertEquals(Arrays.asList("s2"), connectionSubscriptionIds.get(2));
+			assertEquals(1, manager.getConnectionCount());
+		} finally {
+			manager.stop();
+			retryExecutor.destroy();
+		}
+	}
+	
+	/**
+	 * Each response is delivered while its connection is still open, the group's subscriptions and connection share the anchor's affinity,
+	 * and removing the anchor aborts the connection and re-anchors the group.
+	 */
+	@Test
+	public void deliversResponsesAsTheyArriveWithAnchorAffinity() throws InterruptedException {
+		BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao();
+		dao.setRequestFactory(new ExchangeRequestFactory());
+		dao.setResponseUtils(new ExchangeResponseUtilsImpl());
+		RetryExecutor retryExecutor = new RetryExecutor();
+		dao.setRetryExecutor(retryExecutor);
+		
+		final AtomicInteger subscriptions = new AtomicInteger();
+		final AtomicInteger connections = new AtomicInteger();
+		final List<String> subscribeAnchors = Collections.synchronizedList(new ArrayList<String>());
+		final List<String> connectionAnchors = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch firstDelivered = new CountDownLatch(1);
+		final CountDownLatch aborted = new CountDownLatch(1);
+		ExchangeWebServices webServices = mock(ExchangeWebServices.class, withSettings().extraInterfaces(StreamingEventsOperations.class));
+		StreamingEventsOperations streaming = (StreamingEventsOperations) webServices;
+		when(streaming.subscribe(any(Subscribe.class), any(MailboxAffinity.class))).thenAnswer(new Answer<SubscribeResponse>() {
+			@Override
+			public SubscribeResponse answer(InvocationOnMock invocation) throws Throwable {
+				subscribeAnchors.add(((MailboxAffinity) invocation.getArguments()[1]).getAnchorMailbox());
+				return subscribeResponse("s" + subscriptions.incrementAndGet());
+			}
+		});
+		when(webServices.unsubscribe(any(Unsubscribe.class))).thenReturn(unsubscribeResponse());
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				connectionAnchors.add(((MailboxAffinity) invocation.getArguments()[1]).getAnchorMailbox());
+				StreamingEventsHandler handler = (StreamingEventsHandler) invocation.getArguments()[2];
+				if(1 == connections.incrementAndGet()) {
+					handler.onOpen(new Closeable() {
+						@Override
+						public void close() {
+							aborted.countDown();
+						}
+					});
+					BaseObjectChangedEventType created = new BaseObjectChangedEventType();
+					created.setWatermark("w1");
+					created.setItemId(itemId("a"));
+					GetStreamingEventsResponseMessageType message = new GetStreamingEventsResponseMessageType();
+					message.setResponseClass(ResponseClassType.SUCCESS);
+					message.setResponseCode(ResponseCodeType.NO_ERROR);
+					message.setConnectionStatus(ConnectionStatusType.OK);
+					message.setNotifications(new NonEmptyArrayOfNotificationsType());
+					message.getNotifications().getNotifications().add(notification("s1", created, "CreatedEvent"));
+					handler.onResponse(streamingResponse(message));
+					// the connection stays open until the anchor is removed
+					if(!aborted.await(10, TimeUnit.SECONDS)) {
+						throw new AssertionError("connection was not aborted");
+					}
+					throw new RuntimeException("aborted");
+				}
+				Thread.sleep(20);
+				return null;
+			}
+		}).when(streaming).getStreamingEvents(any(GetStreamingEvents.class), any(MailboxAffinity.class), any(StreamingEventsHandler.class));
+		dao.setWebServices(webServices);
+		
+		StreamingSubscriptionManager manager = new StreamingSubscriptionManager();
+		manager.setCalendarDataDao(dao);
+		manager.setListener(new ItemChangeListener() {
+			@Override
+			public void onItemEvents(String upn, List<ItemChangeEvent> received) {
+				firstDelivered.countDown();
+			}
+			@Override
+			public void onSubscriptionLost(String upn, RuntimeException cause) {
+			}
+		});
+		try {
+			assertTrue(manager.addMailbox("a@example.org", null));
+			assertTrue(manager.addMailbox("b@example.org", null));
+			manager.start();
+			assertTrue(firstDelivered.await(10, TimeUnit.SECONDS));
+			assertEquals(1, connections.get());
+			assertEquals(Arrays.asList("a@example.org", "a@example.org"), subscribeAnchors);
+			
+			assertTrue(manager.removeMailbox("a@example.org"));
+			assertTrue(aborted.await(10, TimeUnit.SECONDS));
+			long deadline = System.currentTimeMillis() + 10000;
+			while(connections.get() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			manager.stop();
+			assertEquals(Arrays.asList("a@example.org", "a@example.org", "b@example.org"), subscribeAnchors);
+			assertEquals("a@example.org", connectionAnchors.get(0));
+			assertEquals("b@example.org", connectionAnchors.get(1));
+		} finally {
+			manager.stop();
+			retryExecutor.destroy();
+		}
+	}
+	
+	/**
+	 * Mailboxes are grouped onto connections of at most maxSubscriptionsPerConnection, and empty groups are discarded.
+	 */
+	@Test
+	public void groupsMailboxesOntoConnections() {
+		StreamingSubscriptionManager manager = new StreamingSubscriptionManager();
+		manager.setMaxSubscriptionsPerConnection(2);
+		for(int i = 0; i < 5; i++) {
+			assertTrue(manager.addMailbox("user" + i + "@example.org", null));
+		}
+		assertEquals(false, manager.addMailbox("USER0@example.org", null));
+		assertEquals(3, manager.getConnectionCount());
+		assertTrue(manager.removeMailbox("user4@example.org"));
+		assertEquals(2, manager.getConnectionCount());
+		assertEquals(4, manager.getMailboxes().size());
+	}
+	
+	/**
+	 * Every group needs a connection of its own, a mailbox which would need more than maxConnections groups is rejected.
+	 */
+	@Test
+	public void rejectsMailboxesBeyondMaxConnections() {
+		StreamingSubscriptionManager manager = new StreamingSubscriptionManager();
+		manager.setMaxSubscriptionsPerConnection(2);
+		manager.setMaxConnections(2);
+		for(int i = 0; i < 4; i++) {
+			assertTrue(manager.addMailbox("user" + i + "@example.org", null));
+		}
+		try {
+			manager.addMailbox("user4@example.org", null);
+			fail("expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			manager.setMaxConnections(1);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertTrue(manager.removeMailbox("user0@example.org"));
+		assertTrue(manager.addMailbox("user4@example.org", null));
+		assertEquals(2, manager.getConnectionCount());
+	}
+	
+	/**
+	 * The members of a group are subscribed concurrently before the group's connection is opened.
+	 */
+	@Test
+	public void subscribesMembersInParallel() throws InterruptedException {
+		BaseExchangeCalendarDataDao dao = new BaseExchangeCalendarDataDao();
+		dao.setRequestFactory(new ExchangeRequestFactory());
+		dao.setResponseUtils(new ExchangeResponseUtilsImpl());
+		RetryExecutor retryExecutor = new RetryExecutor();
+		dao.setRetryExecutor(retryExecutor);
+		
+		final int members = 3;
+		final CountDownLatch subscribing = new CountDownLatch(members);
+		final AtomicInteger subscriptions = new AtomicInteger();
+		final List<Integer> connectionSizes = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch connected = new CountDownLatch(1);
+		ExchangeWebServices webServices = mock(ExchangeWebServices.class);
+		when(webServices.subscribe(any(Subscribe.class))).thenAnswer(new Answer<SubscribeResponse>() {
+			@Override
+			public SubscribeResponse answer(InvocationOnMock invocation) throws Throwable {
+				subscribing.countDown();
+				// completes only once every member's Subscribe is in flight
+				if(!subscribing.await(10, TimeUnit.SECONDS)) {
+					throw new AssertionError("Subscribe requests were not sent concurrently");
+				}
+				return subscribeResponse("s" + subscriptions.incrementAndGet());
+			}
+		});
+		when(webServices.unsubscribe(any(Unsubscribe.class))).thenReturn(unsubscribeResponse());
+		when(webServices.getStreamingEvents(any(GetStreamingEvents.class))).thenAnswer(new Answer<GetStreamingEventsResponse>() {
+			@Override
+			public GetStreamingEventsResponse answer(InvocationOnMock invocation) throws Throwable {
+				connectionSizes.add(((GetStreamingEvents) invocation.getArguments()[0]).getSubscriptionIds().getSubscriptionIds().size());
+				connected.countDown();
+				Thread.sleep(20);
+				GetStreamingEventsResponseMessageType message = new GetStreamingEventsResponseMessageType();
+				message.setResponseClass(ResponseClassType.SUCCESS);
+				message.setResponseCode(ResponseCodeType.NO_ERROR);
+				message.setConnectionStatus(ConnectionStatusType.CLOSED);
+				return streamingResponse(message);
+			}
+		});
+		dao.setWebServices(webServices);
+		
+		StreamingSubscriptionManager manager = new StreamingSubscriptionManager();
+		manager.setCalendarDataDao(dao);
+		manager.setListener(new ItemChangeListener() {
+			@Override
+			public void onItemEvents(String upn, List<ItemChangeEvent> received) {
+			}
+			@Override
+			public void onSubscriptionLost(String upn, RuntimeException cause) {
+				throw new AssertionError("unexpected loss of " + upn);
+			}
+		});
+		try {
+			for(int i = 0; i < members; i++) {
+				assertTrue(manager.addMailbox("user" + i + "@example.org", null));
+			}
+			manager.start();
+			assertTrue(connected.await(10, TimeUnit.SECONDS));
+			manager.stop();
+			assertEquals(members, subscriptions.get());
+			assertEquals(Integer.valueOf(members), connectionSizes.get(0));
+		} finally {
+			manager.stop();
+			retryExecutor.destroy();
+		}
+	}
+	
+	private static SubscribeResponse subscribeResponse(String subscriptionId) {
+		SubscribeResponseMessageType message = new SubscribeResponseMessageType();
+		message.setResponseClass(ResponseClassType.SUCCESS);
+		message.setResponseCode(ResponseCodeType.NO_ERROR);
+		message.setSubscriptionId(subscriptionId);
+		SubscribeResponse response = new SubscribeResponse();
+		response.setResponseMessages(new ArrayOfResponseMessagesType());
+		response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().add(
+				MESSAGES.createArrayOfResponseMessagesTypeSubscribeResponseMessage(message));
+		return response;
+	}
+	
+	private static UnsubscribeResponse unsubscribeResponse() {
+		ResponseMessageType message = new ResponseMessageType();
+		message.setResponseClass(ResponseClassType.SUCCESS);
+		message.setResponseCode(ResponseCodeType.NO_ERROR);
+		UnsubscribeResponse response = new UnsubscribeResponse();
+		response.setResponseMessages(new ArrayOfResponseMessagesType());
+		response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().add(
+				MESSAGES.createArrayOfResponseMessagesTypeUnsubscribeResponseMessage(message));
+		return response;
+	}
+	
+	private static GetStreamingEventsResponse streamingResponse(GetStreamingEventsResponseMessageType message) {
+		GetStreamingEventsResponse response = new GetStreamingEventsResponse();
+		response.setResponseMessages(new ArrayOfResponseMessagesType());
+		response.getResponseMessages().getCreateItemResponseMessagesAndDeleteItemResponseMessagesAndGetItemResponseMessages().add(
+				MESSAGES.createArrayOfResponseMessagesTypeGetStreamingEventsResponseMessage(message));
+		return response;
+	}
+	
+	private static ItemIdType itemId(String id) {
+		ItemIdType itemId = new ItemIdType();
+		itemId.setId(id);
+		return itemId;
+	}
+	
+	private static NotificationType notification(String subscriptionId, BaseObjectChangedEventType event, String eventName) {
+		NotificationType notification = new NotificationType();
+		notification.setSubscriptionId(subscriptionId);
+		if("ModifiedEvent".equals(eventName)) {
+			notification.getCopiedEventsAndCreatedEventsAndDeletedEvents().add(TYPES.createNotificationTypeModifiedEvent((ModifiedEventType) event));
+		}else {
+			notification.getCopiedEventsAndCreatedEventsAndDeletedEvents().add(TYPES.createNotificationTypeCreatedEvent(event));
+		}
+		return notification;
+	}
+}